@@ -0,0 +1,469 @@
+package com.oasis.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit log for the /calculate path
+ *
+ * {@link #logCalculation} and {@link #logError} publish a record to a
+ * lock-free ring buffer and return. A single writer thread drains the ring
+ * and writes a batch to the {@link AuditSink} once it holds
+ * {@link Settings#getBatchSize()} records, or once the oldest has waited
+ * {@link Settings#getFlushIntervalMillis()}. If the ring is full, the record
+ * is dropped and counted; the request is never blocked.
+ *
+ * When the sink is slower than the producers and the ring holds
+ * {@link Settings#getSpoolBacklog()} records or more, batches go to the
+ * {@link AuditSpool} instead of the sink, since a local append keeps up where
+ * the database does not. They are replayed like any spooled segment once the
+ * ring has drained.
+ *
+ * When a write fails, the batch goes to an {@link AuditSpool} segment file
+ * instead. Further batches go straight to the spool until the retry interval
+ * has passed; then the next live batch, or the oldest segment when nothing is
+ * queued, is tried against the sink again. Once the sink is healthy, spooled
+ * segments are replayed oldest first, a batch at a time between live flushes,
+ * so the backlog drains under steady load without holding up live records for
+ * more than one batch write. A segment is deleted only after all of it has
+ * been written; the sink ignores records it already holds, so a segment cut
+ * short by a failure or a restart is simply replayed again.
+ *
+ * A batch the sink refuses ({@link RejectedBatchException}, e.g. a row that
+ * breaks a constraint) is split in halves until each refused record stands
+ * alone; the rest are written and the refused ones go to the spool's
+ * dead-letter file. Live batches and replayed segments are handled the same
+ * way, so one bad row neither sends the writer into retry nor holds a
+ * segment forever. If the sink fails for another reason while a batch is
+ * being split, the batch is retried whole later and a record may be
+ * dead-lettered twice.
+ */
+public class AuditLogWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static volatile AuditLogWriter shared;
+
+    private final AuditSink sink;
+    private final Settings settings;
+    private final MpscRingBuffer<AuditRecord> ring;
+    private final AuditSpool spool;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean healthy = true;
+    // Writer thread only: when the sink may be tried again after a failure
+    private long retryAtNanos;
+    // Writer thread only: the segment being replayed and how much of it the sink has taken
+    private List<AuditRecord> replaying;
+    private int replayOffset;
+    // Writer thread only: whether the last flush found the ring past the spool backlog
+    private boolean behind;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder spooledBehind = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAccumulator maxLagMillis = new LongAccumulator(Math::max, 0);
+    private volatile long lastFlushMillis;
+
+    /**
+     * Ring size, batching and fallback settings
+     */
+    public static class Settings {
+        private final int capacity;
+        private final int batchSize;
+        private final long flushIntervalMillis;
+        private final long retryIntervalMillis;
+        private final long segmentBytes;
+        private final int spoolBacklog;
+
+        /**
+         * Spools once the ring is half full
+         */
+        public Settings(int capacity, int batchSize, long flushIntervalMillis, long retryIntervalMillis,
+                long segmentBytes) {
+            this(capacity, batchSize, flushIntervalMillis, retryIntervalMillis, segmentBytes, capacity / 2);
+        }
+
+        public Settings(int capacity, int batchSize, long flushIntervalMillis, long retryIntervalMillis,
+                long segmentBytes, int spoolBacklog) {
+            if (capacity < 2 || batchSize < 1 || batchSize > 1000 || flushIntervalMillis < 1
+                    || retryIntervalMillis < 1 || segmentBytes < 1 || spoolBacklog < 1) {
+                throw new IllegalArgumentException("capacity must be at least 2, batchSize 1-1000, "
+                        + "intervals, segmentBytes and spoolBacklog positive");
+            }
+            this.capacity = capacity;
+            this.batchSize = batchSize;
+            this.flushIntervalMillis = flushIntervalMillis;
+            this.retryIntervalMillis = retryIntervalMillis;
+            this.segmentBytes = segmentBytes;
+            this.spoolBacklog = spoolBacklog;
+        }
+
+        /**
+         * From oasis.audit.capacity (65536), oasis.audit.batchSize (500),
+         * oasis.audit.flushIntervalMillis (200), oasis.audit.retryIntervalMillis
+         * (5000), oasis.audit.segmentBytes (4 MB) and oasis.audit.spoolBacklog
+         * (half the capacity)
+         */
+        public static Settings defaults() {
+            int capacity = Integer.getInteger("oasis.audit.capacity", 65_536);
+            return new Settings(capacity,
+                    Integer.getInteger("oasis.audit.batchSize", 500),
+                    Long.getLong("oasis.audit.flushIntervalMillis", 200),
+                    Long.getLong("oasis.audit.retryIntervalMillis", 5_000),
+                    Long.getLong("oasis.audit.segmentBytes", 4L << 20),
+                    Integer.getInteger("oasis.audit.spoolBacklog", capacity / 2));
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public long getRetryIntervalMillis() {
+            return retryIntervalMillis;
+        }
+
+        public long getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        /**
+         * Records waiting in the ring at which batches are spooled instead of written
+         */
+        public int getSpoolBacklog() {
+            return spoolBacklog;
+        }
+    }
+
+    public AuditLogWriter(AuditSink sink, Path spoolDirectory) throws IOException {
+        this(sink, spoolDirectory, Settings.defaults());
+    }
+
+    public AuditLogWriter(AuditSink sink, Path spoolDirectory, Settings settings) throws IOException {
+        if (sink == null || spoolDirectory == null || settings == null) {
+            throw new IllegalArgumentException("sink, spoolDirectory and settings are required");
+        }
+        this.sink = sink;
+        this.settings = settings;
+        this.ring = new MpscRingBuffer<>(settings.capacity);
+        this.spool = new AuditSpool(spoolDirectory, settings.segmentBytes);
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Create the process-wide writer for a JDBC URL; later calls return the
+     * existing writer. The spool directory comes from oasis.audit.spoolDir
+     * (default ./audit-spool), and opening a connection gives up after
+     * oasis.audit.loginTimeoutSeconds (10).
+     */
+    public static synchronized AuditLogWriter configureShared(String jdbcUrl, String user, String password)
+            throws IOException {
+        if (shared == null) {
+            JdbcAuditSink sink = new JdbcAuditSink(JdbcAuditSink.driverManager(jdbcUrl, user, password,
+                    Integer.getInteger("oasis.audit.loginTimeoutSeconds", 10)));
+            shared = new AuditLogWriter(sink, Paths.get(System.getProperty("oasis.audit.spoolDir", "audit-spool")));
+        }
+        return shared;
+    }
+
+    /**
+     * Process-wide writer shared by all Ballerina strands
+     */
+    public static AuditLogWriter shared() {
+        AuditLogWriter writer = shared;
+        if (writer == null) {
+            throw new IllegalStateException("AuditLogWriter.configureShared has not been called");
+        }
+        return writer;
+    }
+
+    /**
+     * Queue a calculation_audit row
+     *
+     * @return false if the ring was full and the record was dropped
+     */
+    public boolean logCalculation(String executionId, String schemaId, String calculationType, String inputJson,
+            String resultJson, String finalAmount, int executionTimeMs, String userId) {
+        return publish(AuditRecord.calculation(executionId, schemaId, calculationType, inputJson, resultJson,
+                finalAmount, executionTimeMs, userId));
+    }
+
+    /**
+     * Queue a calculation_errors row
+     *
+     * @return false if the ring was full and the record was dropped
+     */
+    public boolean logError(String executionId, String schemaId, String errorType, String errorMessage,
+            String inputJson, String failedStep) {
+        return publish(AuditRecord.error(executionId, schemaId, errorType, errorMessage, inputJson, failedStep));
+    }
+
+    public boolean publish(AuditRecord record) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        long depth = ring.offer(record);
+        if (depth == 0) {
+            dropped.increment();
+            return false;
+        }
+        published.increment();
+        // Wake the writer early when a batch is ready. Concurrent offers and drains can let several producers
+        // see this depth, or none; a repeated unpark is harmless, and a missed one only leaves the batch for
+        // the writer's next timed wake-up
+        if (depth == settings.batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        AuditRecord[] pending = new AuditRecord[settings.batchSize];
+        Object[] drained = pending;
+        int size = 0;
+        long firstNanos = 0;
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.flushIntervalMillis);
+        long idleParkNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), flushIntervalNanos / 4);
+        while (true) {
+            boolean stopping = !running;
+            int before = size;
+            size += ring.drainTo(drained, size, pending.length - size);
+            if (before == 0 && size > 0) {
+                firstNanos = System.nanoTime();
+            }
+            long now = System.nanoTime();
+            if (size > 0 && (size == pending.length || now - firstNanos >= flushIntervalNanos || stopping)) {
+                List<AuditRecord> batch = new ArrayList<>(Arrays.asList(pending).subList(0, size));
+                Arrays.fill(pending, 0, size, null);
+                size = 0;
+                flush(batch);
+                continue;
+            }
+            if (stopping && size == 0 && ring.size() == 0) {
+                break;
+            }
+            if (!stopping && size < pending.length && (replaying != null || !spool.isEmpty())
+                    && (healthy || now >= retryAtNanos)) {
+                replayBatch();
+                continue;
+            }
+            LockSupport.parkNanos(this, size > 0 ? Math.max(1, flushIntervalNanos - (now - firstNanos))
+                    : idleParkNanos);
+        }
+        try {
+            spool.close();
+        } catch (IOException e) {
+            logger.warn("Closing audit spool failed: {}", e.getMessage());
+        }
+    }
+
+    private void flush(List<AuditRecord> batch) {
+        long now = System.nanoTime();
+        long wallNow = System.currentTimeMillis();
+        long backlog = ring.size();
+        boolean wasBehind = behind;
+        behind = backlog >= settings.spoolBacklog;
+        if (behind) {
+            if (!wasBehind) {
+                logger.warn("Audit writer is {} records behind the producers, spooling to disk", backlog);
+            }
+            spooledBehind.add(batch.size());
+        } else if (healthy || now >= retryAtNanos) {
+            try {
+                int stored = writeOrDeadLetter(batch);
+                flushNanos.add(System.nanoTime() - now);
+                flushes.increment();
+                written.add(stored);
+                lastFlushMillis = System.currentTimeMillis();
+                maxLagMillis.accumulate(wallNow - batch.get(0).getCreatedAtMillis());
+                if (!healthy) {
+                    logger.info("Audit sink recovered; replaying {} spooled segments", spool.getSegmentCount());
+                    healthy = true;
+                }
+                return;
+            } catch (Exception e) {
+                flushFailures.increment();
+                if (healthy) {
+                    logger.warn("Audit sink write failed, spooling to disk: {}", e.getMessage());
+                }
+                markUnhealthy();
+            }
+        }
+        try {
+            spool.append(batch);
+            spooled.add(batch.size());
+        } catch (IOException e) {
+            lost.add(batch.size());
+            logger.error("Audit spool write failed, {} records lost: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private void replayBatch() {
+        try {
+            if (replaying == null) {
+                replaying = spool.readOldest();
+                replayOffset = 0;
+            }
+            int end = Math.min(replaying.size(), replayOffset + settings.batchSize);
+            if (end > replayOffset) {
+                replayed.add(writeOrDeadLetter(replaying.subList(replayOffset, end)));
+                replayOffset = end;
+            }
+            if (replayOffset == replaying.size()) {
+                spool.removeOldest(replaying.size());
+                replaying = null;
+            }
+            healthy = true;
+        } catch (Exception e) {
+            flushFailures.increment();
+            if (healthy) {
+                logger.warn("Audit spool replay failed, will retry: {}", e.getMessage());
+            }
+            markUnhealthy();
+        }
+    }
+
+    // Returns how many records the sink took; refused ones are isolated by halving and dead-lettered
+    private int writeOrDeadLetter(List<AuditRecord> batch) throws Exception {
+        try {
+            sink.write(batch);
+            return batch.size();
+        } catch (RejectedBatchException e) {
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), e.getMessage());
+                return 0;
+            }
+            int half = batch.size() / 2;
+            return writeOrDeadLetter(batch.subList(0, half)) + writeOrDeadLetter(batch.subList(half, batch.size()));
+        }
+    }
+
+    private void deadLetter(AuditRecord record, String reason) {
+        logger.warn("Audit sink refused {}, moving it to the dead-letter file: {}", record, reason);
+        try {
+            spool.deadLetter(record, reason);
+            deadLettered.increment();
+        } catch (IOException e) {
+            lost.increment();
+            logger.error("Audit dead-letter write failed, {} lost: {}", record, e.getMessage());
+        }
+    }
+
+    private void markUnhealthy() {
+        healthy = false;
+        retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.retryIntervalMillis);
+    }
+
+    /**
+     * Stop accepting records, write or spool everything queued, and stop the writer
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        synchronized (AuditLogWriter.class) {
+            if (shared == this) {
+                shared = null;
+            }
+        }
+    }
+
+    // Getter methods for Ballerina interop
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Records the sink refused, now in the dead-letter file
+     */
+    public long getDeadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    public String getDeadLetterFile() {
+        return spool.getDeadLetterFile().toString();
+    }
+
+    /**
+     * Records published but not yet taken by the writer
+     */
+    public long getQueueDepth() {
+        return ring.size();
+    }
+
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("healthy", healthy);
+        metrics.put("published", published.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("queueDepth", ring.size());
+        metrics.put("queueCapacity", ring.capacity());
+        metrics.put("written", written.sum());
+        metrics.put("flushes", flushes.sum());
+        metrics.put("flushFailures", flushFailures.sum());
+        long flushCount = flushes.sum();
+        metrics.put("averageFlushMillis", flushCount == 0 ? 0.0 : flushNanos.sum() / 1e6 / flushCount);
+        metrics.put("averageBatchSize", flushCount == 0 ? 0.0 : (double) written.sum() / flushCount);
+        metrics.put("maxLagMillis", maxLagMillis.get());
+        metrics.put("lastFlushMillis", lastFlushMillis);
+        metrics.put("spooled", spooled.sum());
+        metrics.put("spooledBehind", spooledBehind.sum());
+        metrics.put("replayed", replayed.sum());
+        metrics.put("spoolSegments", spool.getSegmentCount());
+        metrics.put("spoolBytes", spool.getPendingBytes());
+        metrics.put("deadLettered", deadLettered.sum());
+        metrics.put("lost", lost.sum());
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AuditLogWriter{published=%d, written=%d, dropped=%d, spooled=%d, replayed=%d, "
+                + "deadLettered=%d}", published.sum(), written.sum(), dropped.sum(), spooled.sum(), replayed.sum(),
+                deadLettered.sum());
+    }
+}
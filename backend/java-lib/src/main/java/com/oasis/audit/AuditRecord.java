@@ -0,0 +1,221 @@
+package com.oasis.audit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * One row for calculation_audit or calculation_errors
+ *
+ * The id is assigned here rather than by the database, so a batch replayed
+ * from the spool after a partial failure inserts nothing twice. JSON columns
+ * are carried as the JSON text Ballerina already built.
+ */
+public final class AuditRecord {
+    public static final String TYPE_CALCULATION = "calculation";
+    public static final String TYPE_ERROR = "error";
+    public static final String UNKNOWN_ERROR = "unknown_error";
+
+    /**
+     * error_type values allowed by the valid_error_type check on calculation_errors
+     */
+    public static final Set<String> ERROR_TYPES = Set.of("formula_parse_error", "variable_missing",
+            "calculation_overflow", "rule_validation_failed", "database_error", UNKNOWN_ERROR);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String id;
+    private final String type;
+    private final String executionId;
+    private final String schemaId;
+    private final String calculationType;
+    private final String inputJson;
+    private final String resultJson;
+    private final String finalAmount;
+    private final int executionTimeMs;
+    private final String userId;
+    private final String errorType;
+    private final String errorMessage;
+    private final String failedStep;
+    private final long createdAtMillis;
+
+    private AuditRecord(String id, String type, String executionId, String schemaId, String calculationType,
+            String inputJson, String resultJson, String finalAmount, int executionTimeMs, String userId,
+            String errorType, String errorMessage, String failedStep, long createdAtMillis) {
+        this.id = id;
+        this.type = type;
+        this.executionId = executionId;
+        this.schemaId = schemaId;
+        this.calculationType = calculationType;
+        this.inputJson = inputJson;
+        this.resultJson = resultJson;
+        this.finalAmount = finalAmount;
+        this.executionTimeMs = executionTimeMs;
+        this.userId = userId;
+        this.errorType = errorType;
+        this.errorMessage = errorMessage;
+        this.failedStep = failedStep;
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    /**
+     * A calculation_audit row, as built by logCalculationAudit
+     *
+     * @param finalAmount     decimal text, or null
+     * @param executionTimeMs negative when unknown
+     */
+    public static AuditRecord calculation(String executionId, String schemaId, String calculationType,
+            String inputJson, String resultJson, String finalAmount, int executionTimeMs, String userId) {
+        return new AuditRecord(UUID.randomUUID().toString(), TYPE_CALCULATION, executionId, schemaId,
+                calculationType, inputJson != null ? inputJson : "{}", resultJson != null ? resultJson : "{}",
+                finalAmount, executionTimeMs, userId, null, null, null, System.currentTimeMillis());
+    }
+
+    /**
+     * A calculation_errors row, as built by logCalculationError
+     *
+     * @param errorType one of {@link #ERROR_TYPES}, in any case; anything else is stored as unknown_error with
+     *                  the given type in front of the message
+     */
+    public static AuditRecord error(String executionId, String schemaId, String errorType, String errorMessage,
+            String inputJson, String failedStep) {
+        String message = errorMessage != null ? errorMessage : "";
+        return new AuditRecord(UUID.randomUUID().toString(), TYPE_ERROR, executionId, schemaId, null, inputJson,
+                null, null, -1, null, allowedErrorType(errorType), typedMessage(errorType, message), failedStep,
+                System.currentTimeMillis());
+    }
+
+    private static String allowedErrorType(String errorType) {
+        String type = errorType != null ? errorType.trim().toLowerCase(Locale.ROOT) : UNKNOWN_ERROR;
+        return ERROR_TYPES.contains(type) ? type : UNKNOWN_ERROR;
+    }
+
+    // Keeps a type the table does not allow readable in the message
+    private static String typedMessage(String errorType, String message) {
+        if (errorType == null || ERROR_TYPES.contains(errorType.trim().toLowerCase(Locale.ROOT))) {
+            return message;
+        }
+        return message.isEmpty() ? errorType : errorType + ": " + message;
+    }
+
+    /**
+     * One line of a spool segment
+     */
+    String toJsonLine() {
+        return toJson().toString();
+    }
+
+    ObjectNode toJson() {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("id", id);
+        node.put("type", type);
+        node.put("executionId", executionId);
+        node.put("schemaId", schemaId);
+        node.put("calculationType", calculationType);
+        node.put("input", inputJson);
+        node.put("result", resultJson);
+        node.put("finalAmount", finalAmount);
+        node.put("executionTimeMs", executionTimeMs);
+        node.put("userId", userId);
+        node.put("errorType", errorType);
+        node.put("errorMessage", errorMessage);
+        node.put("failedStep", failedStep);
+        node.put("createdAt", createdAtMillis);
+        return node;
+    }
+
+    static AuditRecord fromJsonLine(String line) throws IOException {
+        JsonNode node = MAPPER.readTree(line);
+        if (node == null || !node.hasNonNull("id") || !node.hasNonNull("type")) {
+            throw new IOException("Not an audit record");
+        }
+        String type = node.get("type").asText();
+        String errorType = text(node, "errorType");
+        String errorMessage = text(node, "errorMessage");
+        if (TYPE_ERROR.equals(type)) {
+            // Segments spooled before error types were checked may hold CALCULATION_FAILED
+            errorMessage = typedMessage(errorType, errorMessage != null ? errorMessage : "");
+            errorType = allowedErrorType(errorType);
+        }
+        return new AuditRecord(node.get("id").asText(), type, text(node, "executionId"), text(node, "schemaId"),
+                text(node, "calculationType"), text(node, "input"), text(node, "result"), text(node, "finalAmount"),
+                node.path("executionTimeMs").asInt(-1), text(node, "userId"), errorType, errorMessage,
+                text(node, "failedStep"), node.path("createdAt").asLong());
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // Getter methods for Ballerina interop
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isError() {
+        return TYPE_ERROR.equals(type);
+    }
+
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public String getSchemaId() {
+        return schemaId;
+    }
+
+    public String getCalculationType() {
+        return calculationType;
+    }
+
+    public String getInputJson() {
+        return inputJson;
+    }
+
+    public String getResultJson() {
+        return resultJson;
+    }
+
+    public String getFinalAmount() {
+        return finalAmount;
+    }
+
+    public int getExecutionTimeMs() {
+        return executionTimeMs;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getErrorType() {
+        return errorType;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public String getFailedStep() {
+        return failedStep;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AuditRecord{id=%s, type=%s, executionId=%s}", id, type, executionId);
+    }
+}
@@ -0,0 +1,17 @@
+package com.oasis.audit;
+
+import java.util.List;
+
+/**
+ * Destination for batches of audit records; {@link JdbcAuditSink} in production
+ *
+ * A batch is written entirely or not at all. A record may arrive twice after a
+ * failure and replay, so writes must be idempotent on {@link AuditRecord#getId()}.
+ * Throw {@link RejectedBatchException} when the records themselves were refused
+ * and any other exception when the destination is unavailable; only the
+ * latter is retried.
+ */
+@FunctionalInterface
+public interface AuditSink {
+    void write(List<AuditRecord> batch) throws Exception;
+}
@@ -0,0 +1,194 @@
+package com.oasis.audit;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only local segment files holding audit records the database did not take
+ *
+ * Records are appended as JSON lines to the newest segment, which is forced to
+ * disk after every batch and rolled over once it reaches the segment size.
+ * Replay reads the oldest segment whole and deletes it once the sink has
+ * taken it. A line cut short by a crash is skipped. Segments left by an
+ * earlier process are picked up when the spool opens. Only the audit writer
+ * thread uses a spool.
+ *
+ * Records the database refused are appended to dead-letter.jsonl in the same
+ * directory, each with the reason and time, for someone to fix and load by
+ * hand; they are never replayed.
+ */
+final class AuditSpool {
+    private static final Logger logger = LoggerFactory.getLogger(AuditSpool.class);
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".seg";
+    static final String DEAD_LETTER_FILE = "dead-letter.jsonl";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private long nextSegment;
+    private FileChannel active;
+    private long activeNumber = -1;
+    private long pendingBytes;
+    private long pendingRecords;
+
+    AuditSpool(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    try {
+                        long number = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                        segments.put(number, file);
+                        pendingBytes += Files.size(file);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+        nextSegment = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        if (!segments.isEmpty()) {
+            logger.info("Audit spool {} holds {} segments ({} bytes) from an earlier run", directory,
+                    segments.size(), pendingBytes);
+        }
+    }
+
+    void append(List<AuditRecord> batch) throws IOException {
+        if (active == null || active.size() >= segmentBytes) {
+            roll();
+        }
+        StringBuilder lines = new StringBuilder(batch.size() * 256);
+        for (AuditRecord record : batch) {
+            lines.append(record.toJsonLine()).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        int length = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            active.write(bytes);
+        }
+        active.force(false);
+        pendingBytes += length;
+        pendingRecords += batch.size();
+    }
+
+    /**
+     * Append a refused record to the dead-letter file, forced to disk
+     */
+    void deadLetter(AuditRecord record, String reason) throws IOException {
+        ObjectNode line = record.toJson();
+        line.put("rejectedAt", System.currentTimeMillis());
+        line.put("reason", reason);
+        ByteBuffer bytes = ByteBuffer.wrap((line.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+    }
+
+    Path getDeadLetterFile() {
+        return directory.resolve(DEAD_LETTER_FILE);
+    }
+
+    boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Records of the oldest segment, sealing it first if it is being appended to
+     */
+    List<AuditRecord> readOldest() throws IOException {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+        long number = segments.firstKey();
+        if (number == activeNumber) {
+            sealActive();
+        }
+        List<AuditRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segments.get(number), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    records.add(AuditRecord.fromJsonLine(line));
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable line in audit segment {}", segments.get(number));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Delete the oldest segment once its records are in the database
+     */
+    void removeOldest(int records) throws IOException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path file = segments.pollFirstEntry().getValue();
+        pendingBytes = Math.max(0, pendingBytes - Files.size(file));
+        pendingRecords = Math.max(0, pendingRecords - records);
+        Files.deleteIfExists(file);
+    }
+
+    long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Records spooled by this process and not yet replayed; segments from an earlier run are counted in bytes only
+     */
+    long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    void close() throws IOException {
+        sealActive();
+    }
+
+    private void roll() throws IOException {
+        sealActive();
+        long number = nextSegment++;
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, number, SUFFIX));
+        active = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeNumber = number;
+        segments.put(number, file);
+    }
+
+    private void sealActive() throws IOException {
+        if (active != null) {
+            active.close();
+            active = null;
+            activeNumber = -1;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.oasis.audit;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes audit batches to calculation_audit and calculation_errors with one
+ * multi-row INSERT per table, in one transaction
+ *
+ * Rows carry their own ids and conflicts on id (the only unique key of
+ * either table) are ignored, so replaying a batch that was partly committed
+ * before a failure is harmless. The connection is kept open between batches
+ * and reopened after an error.
+ *
+ * A data exception or constraint violation (SQLState class 22 or 23: a
+ * missing schema_id, a negative final_amount, text that is not a uuid or
+ * JSON) fails the same way however often it is retried, so it is thrown as
+ * {@link RejectedBatchException} and the connection is kept.
+ *
+ * Every INSERT has a query timeout, and the connection has a network timeout,
+ * so a database that hangs fails the write instead of stalling the writer
+ * thread. A timeout is never a rejection: the connection is dropped and the
+ * exception thrown as is, so the writer spools the batch and retries it.
+ * {@link #driverManager} also bounds the time spent opening a connection.
+ */
+public class JdbcAuditSink implements AuditSink {
+    private static final String AUDIT_COLUMNS = "INSERT INTO calculation_audit (id, execution_id, schema_id, "
+            + "input_data, calculation_result, execution_time_ms, calculation_type, final_amount, user_id, "
+            + "created_at) VALUES ";
+    private static final String AUDIT_ROW = "(CAST(? AS uuid), CAST(? AS uuid), ?, CAST(? AS jsonb), "
+            + "CAST(? AS jsonb), ?, ?, CAST(? AS numeric), ?, ?)";
+    private static final String ERROR_COLUMNS = "INSERT INTO calculation_errors (id, execution_id, schema_id, "
+            + "error_type, error_message, input_data, failed_step, created_at) VALUES ";
+    private static final String ERROR_ROW = "(CAST(? AS uuid), CAST(? AS uuid), ?, ?, ?, CAST(? AS jsonb), ?, ?)";
+    private static final String ON_CONFLICT = " ON CONFLICT DO NOTHING";
+
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    // Runs the driver's abort of a connection that hit its network timeout
+    private static final ExecutorService TIMEOUTS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "audit-jdbc-timeout-" + THREAD_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConnectionSource connections;
+    private final int queryTimeoutSeconds;
+    private final int networkTimeoutMillis;
+    private Connection connection;
+
+    /**
+     * Opens JDBC connections; a DataSource's getConnection or a DriverManager call
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Timeouts from oasis.audit.queryTimeoutSeconds (10) and
+     * oasis.audit.networkTimeoutMillis (30000)
+     */
+    public JdbcAuditSink(ConnectionSource connections) {
+        this(connections, Integer.getInteger("oasis.audit.queryTimeoutSeconds", 10),
+                Integer.getInteger("oasis.audit.networkTimeoutMillis", 30_000));
+    }
+
+    /**
+     * @param queryTimeoutSeconds  limit on each INSERT
+     * @param networkTimeoutMillis limit on any wait for the database, including commit; longer than the query
+     *                             timeout, so a slow INSERT is cancelled before its connection is aborted
+     */
+    public JdbcAuditSink(ConnectionSource connections, int queryTimeoutSeconds, int networkTimeoutMillis) {
+        if (connections == null || queryTimeoutSeconds < 1 || networkTimeoutMillis < 1) {
+            throw new IllegalArgumentException("connections is required and timeouts must be positive");
+        }
+        this.connections = connections;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+        this.networkTimeoutMillis = networkTimeoutMillis;
+    }
+
+    /**
+     * DriverManager connections that give up after loginTimeoutSeconds
+     *
+     * The limit is passed as the PostgreSQL driver's loginTimeout and
+     * connectTimeout properties, so it does not touch the process-wide
+     * DriverManager login timeout. Other drivers get only user and password.
+     */
+    public static ConnectionSource driverManager(String jdbcUrl, String user, String password,
+            int loginTimeoutSeconds) {
+        Properties properties = new Properties();
+        if (user != null) {
+            properties.setProperty("user", user);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        if (jdbcUrl.startsWith("jdbc:postgresql:")) {
+            properties.setProperty("loginTimeout", Integer.toString(loginTimeoutSeconds));
+            properties.setProperty("connectTimeout", Integer.toString(loginTimeoutSeconds));
+        }
+        return () -> DriverManager.getConnection(jdbcUrl, properties);
+    }
+
+    @Override
+    public synchronized void write(List<AuditRecord> batch) throws SQLException, RejectedBatchException {
+        List<AuditRecord> audits = new ArrayList<>(batch.size());
+        List<AuditRecord> errors = new ArrayList<>();
+        for (AuditRecord record : batch) {
+            (record.isError() ? errors : audits).add(record);
+        }
+        try {
+            if (connection == null) {
+                connection = connections.open();
+                connection.setAutoCommit(false);
+                setNetworkTimeout(connection);
+            }
+            if (!audits.isEmpty()) {
+                insertAudits(audits);
+            }
+            if (!errors.isEmpty()) {
+                insertErrors(errors);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            if (!isTimeout(e) && isRejection(e)) {
+                rollbackQuietly();
+                throw new RejectedBatchException(e.getSQLState() + " " + e.getMessage(), e);
+            }
+            closeQuietly();
+            throw e;
+        }
+    }
+
+    /**
+     * True for SQLState classes 22 (data exception) and 23 (integrity
+     * constraint violation), here or in a chained batch exception
+     */
+    static boolean isRejection(SQLException error) {
+        for (SQLException e = error; e != null; e = e.getNextException()) {
+            String state = e.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True for a timeout: SQLTimeoutException, PostgreSQL's query_canceled
+     * (57014) or the SQL timeout class HYT
+     */
+    static boolean isTimeout(SQLException error) {
+        for (SQLException e = error; e != null; e = e.getNextException()) {
+            String state = e.getSQLState();
+            if (e instanceof SQLTimeoutException || "57014".equals(state)
+                    || (state != null && state.startsWith("HYT"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setNetworkTimeout(Connection opened) throws SQLException {
+        try {
+            opened.setNetworkTimeout(TIMEOUTS, networkTimeoutMillis);
+        } catch (SQLFeatureNotSupportedException e) {
+            // The query timeout still bounds each INSERT
+        }
+    }
+
+    private void insertAudits(List<AuditRecord> records) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(statement(AUDIT_COLUMNS, AUDIT_ROW,
+                records.size()))) {
+            insert.setQueryTimeout(queryTimeoutSeconds);
+            int p = 1;
+            for (AuditRecord record : records) {
+                insert.setString(p++, record.getId());
+                insert.setString(p++, record.getExecutionId());
+                insert.setString(p++, record.getSchemaId());
+                insert.setString(p++, record.getInputJson());
+                insert.setString(p++, record.getResultJson());
+                if (record.getExecutionTimeMs() >= 0) {
+                    insert.setInt(p++, record.getExecutionTimeMs());
+                } else {
+                    insert.setNull(p++, Types.INTEGER);
+                }
+                insert.setString(p++, record.getCalculationType());
+                insert.setString(p++, record.getFinalAmount());
+                insert.setString(p++, record.getUserId());
+                insert.setTimestamp(p++, new Timestamp(record.getCreatedAtMillis()));
+            }
+            insert.executeUpdate();
+        }
+    }
+
+    private void insertErrors(List<AuditRecord> records) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(statement(ERROR_COLUMNS, ERROR_ROW,
+                records.size()))) {
+            insert.setQueryTimeout(queryTimeoutSeconds);
+            int p = 1;
+            for (AuditRecord record : records) {
+                insert.setString(p++, record.getId());
+                insert.setString(p++, record.getExecutionId());
+                insert.setString(p++, record.getSchemaId());
+                insert.setString(p++, record.getErrorType());
+                insert.setString(p++, record.getErrorMessage());
+                insert.setString(p++, record.getInputJson());
+                insert.setString(p++, record.getFailedStep());
+                insert.setTimestamp(p++, new Timestamp(record.getCreatedAtMillis()));
+            }
+            insert.executeUpdate();
+        }
+    }
+
+    private static String statement(String columns, String row, int rows) {
+        StringBuilder sql = new StringBuilder(columns.length() + rows * (row.length() + 2) + ON_CONFLICT.length());
+        sql.append(columns);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.append(ON_CONFLICT).toString();
+    }
+
+    private void rollbackQuietly() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            // A connection that cannot roll back is not reused
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // The connection is being discarded
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Already broken
+        }
+        connection = null;
+    }
+
+    /**
+     * Close the held connection
+     */
+    public synchronized void close() {
+        closeQuietly();
+    }
+}
@@ -0,0 +1,75 @@
+package com.oasis.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and one consumer
+ *
+ * A producer claims a sequence number with one compare-and-set on the tail
+ * and publishes by storing its element in the slot with release semantics.
+ * When the ring is full, {@link #offer} returns false and never waits, so a
+ * slow consumer cannot stall the request path. The consumer treats a null
+ * slot as not yet published. It clears each slot before advancing the head,
+ * so a producer that sees the head move past its slot also sees the slot empty.
+ */
+final class MpscRingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    MpscRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Publish an element
+     *
+     * @return the number of elements in the ring including this one, or 0 if it was full
+     */
+    long offer(T element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                return 0;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, element);
+        return sequence + 1 - head.get();
+    }
+
+    /**
+     * Move up to max published elements into target, oldest first; consumer thread only
+     */
+    int drainTo(Object[] target, int offset, int max) {
+        long position = head.get();
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) position & mask;
+            T element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            target[offset + drained++] = element;
+            slots.lazySet(index, null);
+            position++;
+            head.lazySet(position);
+        }
+        return drained;
+    }
+
+    /**
+     * Claimed but not yet consumed elements
+     */
+    long size() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,15 @@
+package com.oasis.audit;
+
+/**
+ * The sink refused the records themselves (a constraint or data error), so
+ * writing the same batch again cannot succeed
+ *
+ * Nothing of the batch was written. {@link AuditLogWriter} splits the batch
+ * to find the refused records and moves them to the dead-letter file.
+ */
+public class RejectedBatchException extends Exception {
+
+    public RejectedBatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,397 @@
+package com.oasis.chat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answer cache for the chat ask endpoint keyed by question meaning
+ *
+ * Entries hold the normalised query embedding and the answer JSON, within a
+ * partition of calc type plus a caller-supplied scope (intent, target date).
+ * A lookup returns the answer of the most similar entry in the partition if
+ * its cosine similarity reaches the threshold, so "what is the WHT rate on
+ * interest" and "withholding tax rate for interest income" share one answer.
+ *
+ * Embeddings barely move with the numbers in a question, so "tax on Rs 5M"
+ * and "tax on Rs 6M" would match each other. The amounts written in digits
+ * ("5M", "5,000,000", "12.5%") are therefore part of the partition, and
+ * questions that spell an amount out ("five million") are not cached at all.
+ *
+ * Each calc type has a rules generation that re-aggregation bumps through
+ * {@link #invalidateCalcType(String)}; entries recorded under an older
+ * generation are never served. Entries without a calc type (general
+ * questions) are invalidated by any re-aggregation. The cache is bounded by
+ * LRU eviction and a time-to-live.
+ *
+ * Each partition has its own lock, so a lookup scans and locks only the
+ * entries it could match; a short global lock covers the LRU order.
+ */
+public class SemanticAnswerCache {
+    private static final Logger logger = LoggerFactory.getLogger(SemanticAnswerCache.class);
+
+    public static final double DEFAULT_SIMILARITY_THRESHOLD =
+            Double.parseDouble(System.getProperty("oasis.chat.cacheSimilarity", "0.92"));
+    public static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("oasis.chat.cacheMaxEntries", 2000);
+    public static final long DEFAULT_TTL_MILLIS =
+            Long.getLong("oasis.chat.cacheTtlMinutes", 360L) * 60_000L;
+
+    private static final String GENERAL = "";
+    private static final SemanticAnswerCache SHARED =
+            new SemanticAnswerCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_SIMILARITY_THRESHOLD);
+
+    // A number with an optional magnitude: "5M", "Rs. 1,200,000", "2.5 million", "12%"
+    private static final Pattern AMOUNT = Pattern.compile(
+            "(\\d[\\d,]*(?:\\.\\d+)?)(?:\\s*(k|mn|m|million|lakhs?|bn|billion)\\b)?",
+            Pattern.CASE_INSENSITIVE);
+    // A magnitude word with no digits in front of it
+    private static final Pattern SPELLED_AMOUNT = Pattern.compile(
+            "(?<![\\d,.]\\s?)\\b(hundred|thousand|million|lakhs?|crores?|billion)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final double similarityThreshold;
+
+    private final ConcurrentHashMap<String, Partition> partitions = new ConcurrentHashMap<>();
+    // Access-ordered: iteration starts at the least recently used entry. Guarded by itself
+    private final LinkedHashMap<Entry, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong generalGeneration = new AtomicLong();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder uncacheable = new LongAdder();
+    private final LongAdder staleRejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Entries sharing calc type, scope and amounts. Once emptied it is retired
+     * and removed from the map; a writer that still holds it starts over
+     */
+    private static final class Partition {
+        final String key;
+        final List<Entry> entries = new ArrayList<>(4);
+        boolean retired;
+
+        Partition(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Entry {
+        final Partition partition;
+        final String calcType;
+        final long generation;
+        final float[] embedding;
+        final String answerJson;
+        final long expiresAt;
+
+        Entry(Partition partition, String calcType, long generation, float[] embedding, String answerJson,
+                long expiresAt) {
+            this.partition = partition;
+            this.calcType = calcType;
+            this.generation = generation;
+            this.embedding = embedding;
+            this.answerJson = answerJson;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public SemanticAnswerCache(int maxEntries, long ttlMillis, double similarityThreshold) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * Process-wide cache shared by all Ballerina strands
+     */
+    public static SemanticAnswerCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Cached answer for a question, or null on a miss
+     *
+     * @param calcType       calc type the answer was built from, or "" for general questions
+     * @param scope          everything else the answer depends on, e.g. intent and target date;
+     *                       questions with conversation context should not be cached
+     * @param question       the question text, for the amounts it mentions
+     * @param queryEmbedding embedding of the question
+     */
+    public String lookup(String calcType, String scope, String question, double[] queryEmbedding) {
+        lookups.increment();
+        String key = partitionKey(calcType, scope, question);
+        if (key == null) {
+            uncacheable.increment();
+            return null;
+        }
+        float[] query = normalize(queryEmbedding);
+        Partition partition = partitions.get(key);
+        if (query == null || partition == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+
+        Entry best = null;
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (partition) {
+            double bestSimilarity = similarityThreshold;
+            Iterator<Entry> iterator = partition.entries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.expiresAt <= now) {
+                    iterator.remove();
+                    dropped.add(entry);
+                    expirations.increment();
+                    continue;
+                }
+                if (entry.generation != generation(entry.calcType)) {
+                    iterator.remove();
+                    dropped.add(entry);
+                    staleRejections.increment();
+                    continue;
+                }
+                if (entry.embedding.length != query.length) {
+                    continue;
+                }
+                double similarity = dot(entry.embedding, query);
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    best = entry;
+                }
+            }
+            retireIfEmpty(partition);
+        }
+        synchronized (lru) {
+            for (Entry entry : dropped) {
+                lru.remove(entry);
+            }
+            if (best != null) {
+                lru.get(best); // Refresh LRU position
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        hits.increment();
+        return best.answerJson;
+    }
+
+    /**
+     * Rules generation of a calc type; read it before building an answer and
+     * pass it to {@link #put}
+     */
+    public long getGeneration(String calcType) {
+        return generation(calcType != null ? calcType : GENERAL);
+    }
+
+    /**
+     * Record an answer; a near-identical question already cached in the same
+     * partition is replaced
+     *
+     * @param generation {@link #getGeneration(String)} from before the answer was built; if the
+     *                   rules were re-aggregated since, the answer is not cached
+     */
+    public void put(String calcType, String scope, String question, double[] queryEmbedding, String answerJson,
+            long generation) {
+        String key = partitionKey(calcType, scope, question);
+        float[] embedding = normalize(queryEmbedding);
+        String type = calcType != null ? calcType : GENERAL;
+        if (key == null || embedding == null || answerJson == null || generation != generation(type)) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        List<Entry> replaced = new ArrayList<>();
+        Entry added;
+        while (true) {
+            Partition partition = partitions.computeIfAbsent(key, Partition::new);
+            synchronized (partition) {
+                if (partition.retired) {
+                    continue;
+                }
+                Iterator<Entry> iterator = partition.entries.iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (entry.embedding.length == embedding.length
+                            && dot(entry.embedding, embedding) >= similarityThreshold) {
+                        iterator.remove();
+                        replaced.add(entry);
+                    }
+                }
+                added = new Entry(partition, type, generation, embedding, answerJson, expiresAt);
+                partition.entries.add(added);
+                break;
+            }
+        }
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (lru) {
+            for (Entry entry : replaced) {
+                lru.remove(entry);
+            }
+            lru.put(added, Boolean.TRUE);
+            while (lru.size() > maxEntries) {
+                Iterator<Entry> eldest = lru.keySet().iterator();
+                evicted.add(eldest.next());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        // Partition locks are never taken while holding the LRU lock
+        for (Entry entry : evicted) {
+            synchronized (entry.partition) {
+                entry.partition.entries.remove(entry);
+                retireIfEmpty(entry.partition);
+            }
+        }
+    }
+
+    /**
+     * Drop every answer built from a calc type's rules, e.g. after
+     * re-aggregation; general answers are dropped too
+     */
+    public void invalidateCalcType(String calcType) {
+        String type = calcType != null ? calcType : GENERAL;
+        generations.merge(type, 1L, Long::sum);
+        generalGeneration.incrementAndGet();
+        logger.info("Semantic answer cache invalidated for calc type '{}'", type);
+    }
+
+    public void clear() {
+        for (Partition partition : partitions.values()) {
+            synchronized (partition) {
+                partition.entries.clear();
+                retireIfEmpty(partition);
+            }
+        }
+        synchronized (lru) {
+            lru.clear();
+        }
+    }
+
+    private void retireIfEmpty(Partition partition) {
+        if (partition.entries.isEmpty() && !partition.retired) {
+            partition.retired = true;
+            partitions.remove(partition.key, partition);
+        }
+    }
+
+    private long generation(String calcType) {
+        if (GENERAL.equals(calcType)) {
+            return generalGeneration.get();
+        }
+        return generations.getOrDefault(calcType, 0L);
+    }
+
+    /**
+     * Calc type, scope and the amounts in the question, or null if the question
+     * spells an amount out and so cannot be told apart from other amounts
+     */
+    static String partitionKey(String calcType, String scope, String question) {
+        StringBuilder key = new StringBuilder(partition(calcType, scope));
+        if (question == null) {
+            return key.toString();
+        }
+        if (SPELLED_AMOUNT.matcher(question).find()) {
+            return null;
+        }
+        Matcher amount = AMOUNT.matcher(question);
+        while (amount.find()) {
+            BigDecimal value = new BigDecimal(amount.group(1).replace(",", ""));
+            if (amount.group(2) != null) {
+                value = value.multiply(BigDecimal.valueOf(magnitude(amount.group(2))));
+            }
+            key.append('\u0000').append(value.stripTrailingZeros().toPlainString());
+        }
+        return key.toString();
+    }
+
+    private static long magnitude(String suffix) {
+        switch (suffix.toLowerCase(Locale.ROOT)) {
+            case "k":
+                return 1_000L;
+            case "lakh":
+            case "lakhs":
+                return 100_000L;
+            case "bn":
+            case "billion":
+                return 1_000_000_000L;
+            default:
+                return 1_000_000L;
+        }
+    }
+
+    private static String partition(String calcType, String scope) {
+        return (calcType != null ? calcType : GENERAL) + '\u0000' + (scope != null ? scope : "");
+    }
+
+    // Unit-length float copy, so similarity is a plain dot product; null for a zero vector
+    private static float[] normalize(double[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = 0;
+        for (double value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        double scale = 1 / Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] * scale);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public int size() {
+        synchronized (lru) {
+            return lru.size();
+        }
+    }
+
+    public double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0.0 : (double) hits.sum() / total;
+    }
+
+    /**
+     * Hit rate and eviction counters for the admin metrics endpoint
+     */
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", size());
+        metrics.put("maxEntries", maxEntries);
+        metrics.put("similarityThreshold", similarityThreshold);
+        metrics.put("lookups", lookups.sum());
+        metrics.put("hits", hits.sum());
+        metrics.put("hitRate", getHitRate());
+        metrics.put("uncacheable", uncacheable.sum());
+        metrics.put("staleRejections", staleRejections.sum());
+        metrics.put("expirations", expirations.sum());
+        metrics.put("evictions", evictions.sum());
+        return metrics;
+    }
+}
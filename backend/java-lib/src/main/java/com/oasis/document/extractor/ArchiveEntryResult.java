@@ -0,0 +1,59 @@
+package com.oasis.document.extractor;
+
+/**
+ * Extraction result for one document inside an archive bundle
+ */
+public class ArchiveEntryResult {
+    private final String archiveName;
+    private final String entryName;
+    private final int entryIndex;
+    private final long entrySize;
+    private final DocumentExtractionResult result;
+
+    public ArchiveEntryResult(String archiveName, String entryName, int entryIndex, long entrySize,
+            DocumentExtractionResult result) {
+        this.archiveName = archiveName;
+        this.entryName = entryName;
+        this.entryIndex = entryIndex;
+        this.entrySize = entrySize;
+        this.result = result;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getArchiveName() {
+        return archiveName;
+    }
+
+    public String getEntryName() {
+        return entryName;
+    }
+
+    /**
+     * Position of the entry in the archive, or -1 for an archive-level failure
+     */
+    public int getEntryIndex() {
+        return entryIndex;
+    }
+
+    public long getEntrySize() {
+        return entrySize;
+    }
+
+    public DocumentExtractionResult getResult() {
+        return result;
+    }
+
+    public boolean isExtractionSuccessful() {
+        return result.isExtractionSuccessful();
+    }
+
+    public boolean isArchiveError() {
+        return entryIndex < 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ArchiveEntryResult{entry='%s', index=%d, size=%d, success=%s}",
+                entryName, entryIndex, entrySize, result.isExtractionSuccessful());
+    }
+}
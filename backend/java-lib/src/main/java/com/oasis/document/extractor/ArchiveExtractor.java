@@ -0,0 +1,560 @@
+package com.oasis.document.extractor;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.StreamingNotSupportedException;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streaming bulk extraction of ZIP, TAR (optionally gzip/bzip2/xz compressed)
+ * and 7z bundles such as the yearly IRD circular and gazette archives
+ *
+ * A reader thread walks the archive entries in order and hands each supported
+ * document to a worker pool; entries with unsupported extensions, including
+ * nested archives, are skipped without being buffered. Only a bounded number
+ * of entries is held at once: a permit is taken before an entry is read and
+ * given back when its result is consumed through {@link #next()}. The bytes
+ * of each buffered entry are also reserved from the
+ * {@link ExtractionMemoryBudget} until its extraction finishes, so a bundle
+ * never holds more than the budget however many workers run; an entry the
+ * budget cannot admit is reported as a failure. Results are returned in
+ * completion order, with the entry index identifying the archive position.
+ *
+ * A handle that is dropped without {@link #close()} would leave the reader
+ * waiting for permits forever, so the reader stops once no result has been
+ * consumed for the idle timeout (oasis.archive.idleTimeoutMillis, default
+ * 10 minutes) and reports that as an archive-level failure.
+ *
+ * ZIP and TAR are read as streams. 7z needs random access, so 7z bundles
+ * must be opened from a file path.
+ */
+public class ArchiveExtractor implements Iterator<ArchiveEntryResult>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveExtractor.class);
+
+    public static final int DEFAULT_CONCURRENCY = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static final long DEFAULT_MAX_ENTRY_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = Long.getLong("oasis.archive.idleTimeoutMillis",
+            TimeUnit.MINUTES.toMillis(10));
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private static final byte[] SEVEN_Z_SIGNATURE = { '7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C };
+    private static final Object END = new Object();
+
+    private final String archiveName;
+    private final long maxEntryBytes;
+    private final ExtractionMemoryBudget budget;
+    private final long idleTimeoutMillis;
+    private final ExecutorService workers;
+    private final Semaphore entryPermits;
+    private final LinkedBlockingQueue<Object> results = new LinkedBlockingQueue<>();
+    private final Thread reader;
+
+    private final AtomicInteger entriesSeen = new AtomicInteger();
+    private final AtomicInteger entriesSkipped = new AtomicInteger();
+    private final AtomicInteger entriesSubmitted = new AtomicInteger();
+
+    private volatile boolean closed;
+    private Object pending;
+    private boolean finished;
+
+    /**
+     * Source of entries shared by the streaming and 7z readers
+     */
+    private interface EntrySource extends AutoCloseable {
+        ArchiveEntry nextEntry() throws IOException;
+
+        InputStream entryStream();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * A buffered entry waiting for or under extraction, with the budget it holds
+     */
+    private final class EntryTask implements Runnable {
+        private final String name;
+        private final int index;
+        private final byte[] data;
+        private final List<ExtractionMemoryBudget.Reservation> reservations;
+
+        private EntryTask(String name, int index, byte[] data, List<ExtractionMemoryBudget.Reservation> reservations) {
+            this.name = name;
+            this.index = index;
+            this.data = data;
+            this.reservations = reservations;
+        }
+
+        @Override
+        public void run() {
+            try {
+                extractEntry(name, index, data);
+            } finally {
+                release(reservations);
+            }
+        }
+    }
+
+    private ArchiveExtractor(String archiveName, int concurrency, long maxEntryBytes, ExtractionMemoryBudget budget,
+            long idleTimeoutMillis, EntrySourceOpener opener) {
+        this.archiveName = archiveName != null ? archiveName : "archive";
+        this.maxEntryBytes = maxEntryBytes > 0 ? maxEntryBytes : DEFAULT_MAX_ENTRY_BYTES;
+        this.budget = budget != null ? budget : ExtractionMemoryBudget.shared();
+        this.idleTimeoutMillis = idleTimeoutMillis > 0 ? idleTimeoutMillis : DEFAULT_IDLE_TIMEOUT_MILLIS;
+        int workerCount = Math.max(1, concurrency);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "archive-extract-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Entries being extracted plus one finished result per worker waiting to be consumed
+        this.entryPermits = new Semaphore(workerCount * 2);
+        this.reader = new Thread(() -> readEntries(opener), "archive-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @FunctionalInterface
+    private interface EntrySourceOpener {
+        EntrySource open() throws IOException;
+    }
+
+    /**
+     * Stream a ZIP or TAR bundle with default concurrency and entry size limit
+     */
+    public static ArchiveExtractor open(InputStream archive, String archiveName) {
+        return open(archive, archiveName, DEFAULT_CONCURRENCY, DEFAULT_MAX_ENTRY_BYTES);
+    }
+
+    /**
+     * Stream a ZIP or TAR bundle; the caller keeps ownership of the stream
+     *
+     * @param concurrency   number of entries extracted in parallel
+     * @param maxEntryBytes entries larger than this are reported as failures
+     */
+    public static ArchiveExtractor open(InputStream archive, String archiveName, int concurrency,
+            long maxEntryBytes) {
+        return open(archive, archiveName, concurrency, maxEntryBytes, ExtractionMemoryBudget.shared(),
+                DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stream a ZIP or TAR bundle against a specific memory budget
+     *
+     * @param budget            reserves the bytes of every buffered entry
+     * @param idleTimeoutMillis reading stops once no result has been consumed for this long
+     */
+    public static ArchiveExtractor open(InputStream archive, String archiveName, int concurrency,
+            long maxEntryBytes, ExtractionMemoryBudget budget, long idleTimeoutMillis) {
+        return new ArchiveExtractor(archiveName, concurrency, maxEntryBytes, budget, idleTimeoutMillis,
+                () -> openStream(archive));
+    }
+
+    /**
+     * Extract a bundle already on disk; this is the only way to read 7z
+     */
+    public static ArchiveExtractor open(Path archivePath, int concurrency, long maxEntryBytes) {
+        return new ArchiveExtractor(archivePath.getFileName().toString(), concurrency, maxEntryBytes,
+                ExtractionMemoryBudget.shared(), DEFAULT_IDLE_TIMEOUT_MILLIS, () -> {
+            if (isSevenZ(archivePath)) {
+                return openSevenZ(archivePath);
+            }
+            InputStream in = Files.newInputStream(archivePath);
+            try {
+                EntrySource source = openStream(in);
+                return new EntrySource() {
+                    @Override
+                    public ArchiveEntry nextEntry() throws IOException {
+                        return source.nextEntry();
+                    }
+
+                    @Override
+                    public InputStream entryStream() {
+                        return source.entryStream();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        in.close();
+                    }
+                };
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Extract an in-memory bundle, including 7z
+     */
+    public static ArchiveExtractor open(byte[] archiveData, String archiveName) {
+        if (archiveData != null && startsWith(archiveData, SEVEN_Z_SIGNATURE)) {
+            return new ArchiveExtractor(archiveName, DEFAULT_CONCURRENCY, DEFAULT_MAX_ENTRY_BYTES,
+                    ExtractionMemoryBudget.shared(), DEFAULT_IDLE_TIMEOUT_MILLIS,
+                    () -> sevenZSource(new SevenZFile(new SeekableInMemoryByteChannel(archiveData))));
+        }
+        return open(new ByteArrayInputStream(archiveData != null ? archiveData : new byte[0]), archiveName);
+    }
+
+    private static EntrySource openStream(InputStream archive) throws IOException {
+        InputStream in = archive.markSupported() ? archive : new BufferedInputStream(archive);
+        try {
+            // tar.gz, tar.bz2 and tar.xz: unwrap the compressor first
+            String compressor = CompressorStreamFactory.detect(in);
+            in = new BufferedInputStream(new CompressorStreamFactory().createCompressorInputStream(compressor, in));
+        } catch (CompressorException notCompressed) {
+            // Plain archive
+        }
+        try {
+            ArchiveInputStream archiveStream = new ArchiveStreamFactory().createArchiveInputStream(in);
+            return new EntrySource() {
+                @Override
+                public ArchiveEntry nextEntry() throws IOException {
+                    ArchiveEntry entry;
+                    while ((entry = archiveStream.getNextEntry()) != null) {
+                        if (archiveStream.canReadEntryData(entry)) {
+                            return entry;
+                        }
+                        logger.warn("Skipping unreadable archive entry (encrypted or unsupported method): {}",
+                                entry.getName());
+                    }
+                    return null;
+                }
+
+                @Override
+                public InputStream entryStream() {
+                    return archiveStream;
+                }
+
+                @Override
+                public void close() {
+                    // The caller owns the underlying stream
+                }
+            };
+        } catch (StreamingNotSupportedException e) {
+            throw new IOException("7z archives need random access; open them from a file path", e);
+        } catch (ArchiveException e) {
+            throw new IOException("Unrecognised archive format: " + e.getMessage(), e);
+        }
+    }
+
+    private static EntrySource openSevenZ(Path archivePath) throws IOException {
+        return sevenZSource(new SevenZFile(archivePath.toFile()));
+    }
+
+    private static EntrySource sevenZSource(SevenZFile sevenZ) {
+        InputStream current = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return sevenZ.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return sevenZ.read(b, off, len);
+            }
+        };
+        return new EntrySource() {
+            @Override
+            public ArchiveEntry nextEntry() throws IOException {
+                SevenZArchiveEntry entry;
+                while ((entry = sevenZ.getNextEntry()) != null) {
+                    if (entry.hasStream()) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public InputStream entryStream() {
+                return current;
+            }
+
+            @Override
+            public void close() throws IOException {
+                sevenZ.close();
+            }
+        };
+    }
+
+    private static boolean isSevenZ(Path path) throws IOException {
+        byte[] head = new byte[SEVEN_Z_SIGNATURE.length];
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.readNBytes(head, 0, head.length) == head.length && startsWith(head, SEVEN_Z_SIGNATURE);
+        }
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readEntries(EntrySourceOpener opener) {
+        boolean abandoned = false;
+        try (EntrySource source = opener.open()) {
+            ArchiveEntry entry;
+            while (!closed && (entry = source.nextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                int index = entriesSeen.getAndIncrement();
+                String name = entry.getName();
+                if (!isDocumentEntry(name)) {
+                    entriesSkipped.incrementAndGet();
+                    continue;
+                }
+
+                if (!entryPermits.tryAcquire(idleTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    abandoned = true;
+                    break;
+                }
+                List<ExtractionMemoryBudget.Reservation> reservations = new ArrayList<>();
+                byte[] data;
+                try {
+                    data = readEntry(source.entryStream(), entry.getSize(), reservations);
+                } catch (IOException e) {
+                    release(reservations);
+                    results.put(new ArchiveEntryResult(archiveName, name, index, entry.getSize(),
+                            new DocumentExtractionResult("Could not read archive entry: " + e.getMessage())));
+                    continue;
+                } catch (InterruptedException e) {
+                    release(reservations);
+                    throw e;
+                }
+                EntryTask task = new EntryTask(name, index, data, reservations);
+                try {
+                    workers.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // close() shut the workers down while this entry was being read
+                    release(reservations);
+                    break;
+                }
+                entriesSubmitted.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Failed reading archive {}: {}", archiveName, e.getMessage());
+            results.add(new ArchiveEntryResult(archiveName, archiveName, -1, -1,
+                    new DocumentExtractionResult("Archive processing failed: " + e.getMessage())));
+        } finally {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                abandonQueuedEntries();
+            }
+            if (abandoned) {
+                logger.warn("Stopped reading archive {}: no result was consumed for {} ms; close() it when done",
+                        archiveName, idleTimeoutMillis);
+                results.clear();
+                results.add(new ArchiveEntryResult(archiveName, archiveName, -1, -1, new DocumentExtractionResult(
+                        "Archive processing stopped: no result was consumed for " + idleTimeoutMillis + " ms")));
+            }
+            results.add(END);
+        }
+    }
+
+    private void extractEntry(String name, int index, byte[] data) {
+        DocumentExtractionResult result;
+        try {
+            result = UnifiedDocumentExtractor.extractContent(data, baseName(name));
+        } catch (IOException e) {
+            result = new DocumentExtractionResult(e.getMessage());
+        } catch (RuntimeException e) {
+            result = new DocumentExtractionResult("Extraction failed: " + e.getMessage());
+        }
+        results.add(new ArchiveEntryResult(archiveName, name, index, data.length, result));
+    }
+
+    private byte[] readEntry(InputStream in, long declaredSize, List<ExtractionMemoryBudget.Reservation> reservations)
+            throws IOException, InterruptedException {
+        if (declaredSize > maxEntryBytes) {
+            throw new IOException("entry is " + declaredSize + " bytes, limit is " + maxEntryBytes);
+        }
+        if (declaredSize >= 0) {
+            reserve(declaredSize, reservations);
+            byte[] data = new byte[(int) declaredSize];
+            int read = in.readNBytes(data, 0, data.length);
+            if (read < data.length || in.read() != -1) {
+                throw new IOException("entry does not match its declared size of " + declaredSize + " bytes");
+            }
+            return data;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(READ_BUFFER_BYTES);
+        byte[] buffer = new byte[READ_BUFFER_BYTES];
+        long total = 0;
+        long reserved = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            // Declared sizes are optional in ZIP streams, so enforce the limit while reading
+            if (total > maxEntryBytes) {
+                throw new IOException("entry exceeds the " + maxEntryBytes + " byte limit");
+            }
+            if (total > reserved) {
+                // Without a declared size the reservation doubles as the output buffer does
+                reserved += reserve(Math.max(total - reserved, Math.max(reserved, READ_BUFFER_BYTES)), reservations);
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private long reserve(long bytes, List<ExtractionMemoryBudget.Reservation> reservations)
+            throws IOException, InterruptedException {
+        ExtractionMemoryBudget.Reservation reservation = budget.reserve(bytes);
+        if (reservation == null) {
+            throw new IOException("extraction memory budget exhausted, entry was not buffered");
+        }
+        reservations.add(reservation);
+        return reservation.getReservedBytes();
+    }
+
+    private static void release(List<ExtractionMemoryBudget.Reservation> reservations) {
+        reservations.forEach(ExtractionMemoryBudget.Reservation::close);
+        reservations.clear();
+    }
+
+    private void abandonQueuedEntries() {
+        for (Runnable queued : workers.shutdownNow()) {
+            release(((EntryTask) queued).reservations);
+        }
+    }
+
+    private static boolean isDocumentEntry(String name) {
+        String base = baseName(name);
+        // Resource forks and metadata added by macOS zip tools
+        if (name.startsWith("__MACOSX/") || base.startsWith("._")) {
+            return false;
+        }
+        return UnifiedDocumentExtractor.isSupportedFormat(base);
+    }
+
+    private static String baseName(String entryName) {
+        int slash = Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\'));
+        return slash >= 0 ? entryName.substring(slash + 1) : entryName;
+    }
+
+    /**
+     * Blocks until the next entry finishes or the archive is exhausted
+     */
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        if (pending == null) {
+            try {
+                pending = results.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for archive entries", e);
+            }
+        }
+        if (pending == END) {
+            finished = true;
+            pending = null;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ArchiveEntryResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ArchiveEntryResult result = (ArchiveEntryResult) pending;
+        pending = null;
+        if (!result.isArchiveError()) {
+            entryPermits.release();
+        }
+        return result;
+    }
+
+    public String getArchiveName() {
+        return archiveName;
+    }
+
+    /**
+     * Files seen so far, including skipped ones
+     */
+    public int getEntriesSeen() {
+        return entriesSeen.get();
+    }
+
+    /**
+     * Files skipped because their extension is not a supported document format
+     */
+    public int getEntriesSkipped() {
+        return entriesSkipped.get();
+    }
+
+    public int getEntriesSubmitted() {
+        return entriesSubmitted.get();
+    }
+
+    /**
+     * Whether the reader is still walking the archive
+     */
+    boolean isReading() {
+        return reader.isAlive();
+    }
+
+    /**
+     * Stop reading the archive and abandon unfinished entries
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        abandonQueuedEntries();
+        // Unblock a reader waiting for a permit held by unconsumed results
+        entryPermits.release(Integer.MAX_VALUE / 2);
+        results.clear();
+        finished = true;
+    }
+}
@@ -1,6 +1,7 @@
 package com.oasis.document.extractor;
 
-import java.util.List;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Map;
 
 /**
@@ -10,19 +11,27 @@ import java.util.Map;
  * information
  */
 public class DocumentExtractionResult {
-    private final String extractedText;
-    private final DocumentStructure structure;
+    /** Longest spilled text {@link #getExtractedText()} will return as one String */
+    public static final int MAX_INTEROP_TEXT_CHARS =
+            Integer.getInteger("oasis.extraction.maxInteropTextChars", 32 * 1024 * 1024);
+
+    // A String, or a SpillingTextBuffer when the text layer was spilled to disk
+    private final CharSequence extractedText;
     private final String contentType;
-    private final String[] detectedLanguages;
-    private final TableData[] tables;
-    private final ImageData[] images;
     private final Map<String, String> metadata;
-    private final TikaExtractionInfo extractionInfo;
     private final boolean extractionSuccessful;
     private final String errorMessage;
 
+    // Derived parts; null until first access when the result is backed by a parse
+    private DocumentStructure structure;
+    private String[] detectedLanguages;
+    private TableData[] tables;
+    private ImageData[] images;
+    private TikaExtractionInfo extractionInfo;
+    private ParsedDocument source;
+
     // Constructor for successful extraction
-    public DocumentExtractionResult(String extractedText, DocumentStructure structure,
+    public DocumentExtractionResult(CharSequence extractedText, DocumentStructure structure,
             String contentType, String[] detectedLanguages,
             TableData[] tables, ImageData[] images,
             Map<String, String> metadata, TikaExtractionInfo extractionInfo) {
@@ -40,6 +49,17 @@ public class DocumentExtractionResult {
         this.errorMessage = null;
     }
 
+    // Constructor for a parse whose structure, languages, tables and images are derived on first access
+    DocumentExtractionResult(CharSequence extractedText, String contentType, Map<String, String> metadata,
+            ParsedDocument source) {
+        this.extractedText = extractedText;
+        this.contentType = contentType != null ? contentType : "application/octet-stream";
+        this.metadata = metadata;
+        this.source = source;
+        this.extractionSuccessful = true;
+        this.errorMessage = null;
+    }
+
     // Constructor for failed extraction
     public DocumentExtractionResult(String errorMessage) {
         this.extractedText = "";
@@ -55,11 +75,64 @@ public class DocumentExtractionResult {
     }
 
     // Getter methods for Ballerina interop
+
+    /**
+     * Extracted text as one String
+     *
+     * Text spilled to disk is only materialised up to
+     * {@link #MAX_INTEROP_TEXT_CHARS} (oasis.extraction.maxInteropTextChars,
+     * default 32M chars); past that, read it with {@link #getTextChunk} or
+     * {@link #openTextReader()} instead of turning the mapping back into a
+     * String the heap budget never accounted for.
+     *
+     * @throws IllegalStateException if spilled text exceeds the limit
+     */
     public String getExtractedText() {
+        if (!(extractedText instanceof String) && extractedText.length() > MAX_INTEROP_TEXT_CHARS) {
+            throw new IllegalStateException(String.format("Extracted text has %d chars, more than the %d "
+                    + "returned as one String; read it with getTextChunk", extractedText.length(),
+                    MAX_INTEROP_TEXT_CHARS));
+        }
+        return extractedText.toString();
+    }
+
+    /**
+     * Up to maxChars of the text from offset, for paging through spilled text
+     * from Ballerina; empty past the end
+     */
+    public String getTextChunk(int offset, int maxChars) {
+        int length = extractedText.length();
+        if (offset < 0 || maxChars < 0) {
+            throw new IllegalArgumentException("offset and maxChars must not be negative");
+        }
+        if (offset >= length) {
+            return "";
+        }
+        return extractedText.subSequence(offset, (int) Math.min(length, (long) offset + maxChars)).toString();
+    }
+
+    /**
+     * Extracted text without materialising a String for spilled documents
+     */
+    public CharSequence getTextSequence() {
         return extractedText;
     }
 
-    public DocumentStructure getStructure() {
+    public int getTextLength() {
+        return extractedText.length();
+    }
+
+    public Reader openTextReader() {
+        if (extractedText instanceof SpillingTextBuffer) {
+            return ((SpillingTextBuffer) extractedText).openReader();
+        }
+        return new StringReader(extractedText.toString());
+    }
+
+    public synchronized DocumentStructure getStructure() {
+        if (structure == null) {
+            structure = source.structure();
+        }
         return structure;
     }
 
@@ -67,15 +140,24 @@ public class DocumentExtractionResult {
         return contentType;
     }
 
-    public String[] getDetectedLanguages() {
+    public synchronized String[] getDetectedLanguages() {
+        if (detectedLanguages == null) {
+            detectedLanguages = source.languages();
+        }
         return detectedLanguages;
     }
 
-    public TableData[] getTables() {
+    public synchronized TableData[] getTables() {
+        if (tables == null) {
+            resolveMarkup();
+        }
         return tables;
     }
 
-    public ImageData[] getImages() {
+    public synchronized ImageData[] getImages() {
+        if (images == null) {
+            resolveMarkup();
+        }
         return images;
     }
 
@@ -83,7 +165,10 @@ public class DocumentExtractionResult {
         return metadata;
     }
 
-    public TikaExtractionInfo getExtractionInfo() {
+    public synchronized TikaExtractionInfo getExtractionInfo() {
+        if (extractionInfo == null) {
+            extractionInfo = source.extractionInfo(getTables(), getImages());
+        }
         return extractionInfo;
     }
 
@@ -95,10 +180,37 @@ public class DocumentExtractionResult {
         return errorMessage;
     }
 
+    /**
+     * Drop the parse intermediates (table markup, PDF bytes) early
+     *
+     * Tables and images that have not been read yet come back empty
+     * afterwards; text, metadata, structure and languages are unaffected.
+     */
+    public synchronized void release() {
+        if (source != null) {
+            source.release();
+        }
+    }
+
+    /**
+     * Add an entry to the metadata of a result built in this package
+     */
+    void putMetadata(String key, String value) {
+        metadata.put(key, value);
+    }
+
+    private void resolveMarkup() {
+        ParsedDocument.Markup markup = source.markup();
+        tables = markup.tables;
+        images = markup.images;
+    }
+
     @Override
-    public String toString() {
+    public synchronized String toString() {
+        // Counts are only shown once resolved; logging must not trigger the table pass
         return String.format(
-                "DocumentExtractionResult{success=%s, contentType='%s', textLength=%d, tables=%d, images=%d}",
-                extractionSuccessful, contentType, extractedText.length(), tables.length, images.length);
+                "DocumentExtractionResult{success=%s, contentType='%s', textLength=%d, tables=%s, images=%s}",
+                extractionSuccessful, contentType, extractedText.length(),
+                tables != null ? tables.length : "pending", images != null ? images.length : "pending");
     }
 }
@@ -0,0 +1,144 @@
+package com.oasis.document.extractor;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.parser.CompositeParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.SecureContentHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Magic-byte format detection with direct dispatch to the concrete Tika parser
+ *
+ * Detection looks only at the header bytes through the MimeTypes magic
+ * database and ignores the file name, so an upload with a wrong or guessed
+ * name (document.pdf for a DOCX) is still parsed by the right parser. For the
+ * formats we accept (PDF, OOXML, OLE2, ODF, RTF and text) the concrete parser
+ * is resolved once per media type and cached, which skips the
+ * AutoDetectParser detector chain on every parse. Anything else, including
+ * ZIP containers whose first entry is not [Content_Types].xml, falls back to
+ * AutoDetectParser.
+ */
+public final class DocumentFormatDetector {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentFormatDetector.class);
+
+    private static final MimeTypes MIME_TYPES = MimeTypes.getDefaultMimeTypes();
+    private static final MediaTypeRegistry REGISTRY = MIME_TYPES.getMediaTypeRegistry();
+
+    private static final MediaType PDF = MediaType.application("pdf");
+    private static final MediaType OOXML = MediaType.application("x-tika-ooxml");
+    private static final MediaType OLE2 = MediaType.application("x-tika-msoffice");
+    private static final MediaType RTF = MediaType.application("rtf");
+    // The OOXML parser works out docx/xlsx/pptx from the package itself
+    private static final MediaType OOXML_DISPATCH = MediaType
+            .application("vnd.openxmlformats-officedocument.wordprocessingml.document");
+    private static final String ODF_PREFIX = "vnd.oasis.opendocument.";
+
+    private final Parser fallbackParser;
+    // The fallback parser doubles as the "no direct parser" marker, since the map cannot hold nulls
+    private final Map<MediaType, Parser> parserCache = new ConcurrentHashMap<>();
+
+    public DocumentFormatDetector(Parser fallbackParser) {
+        this.fallbackParser = fallbackParser;
+    }
+
+    /**
+     * Media type from the document's header bytes only
+     */
+    public static MediaType detect(byte[] documentContent) {
+        if (documentContent == null || documentContent.length == 0) {
+            return MediaType.OCTET_STREAM;
+        }
+        try {
+            // MimeTypes reads at most getMinLength() bytes and ignores the rest of the array
+            MediaType type = MIME_TYPES.detect(new ByteArrayInputStream(documentContent), new Metadata());
+            return type != null ? type.getBaseType() : MediaType.OCTET_STREAM;
+        } catch (IOException e) {
+            // Cannot happen for an in-memory stream
+            return MediaType.OCTET_STREAM;
+        }
+    }
+
+    /**
+     * True for media types that belong to a format family we parse directly
+     */
+    public static boolean isDirectlySupported(MediaType type) {
+        for (MediaType t = type; t != null; t = REGISTRY.getSupertype(t)) {
+            if (PDF.equals(t) || OOXML.equals(t) || OLE2.equals(t) || RTF.equals(t) || MediaType.TEXT_PLAIN.equals(t)
+                    || ("application".equals(t.getType()) && t.getSubtype().startsWith(ODF_PREFIX))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Concrete parser for a detected type, or the fallback parser
+     */
+    public Parser parserFor(MediaType type) {
+        return parserCache.computeIfAbsent(type.getBaseType(), this::resolveParser);
+    }
+
+    private Parser resolveParser(MediaType type) {
+        if (!isDirectlySupported(type)) {
+            return fallbackParser;
+        }
+        MediaType lookupType = OOXML.equals(type) ? OOXML_DISPATCH : type;
+        Parser parser = fallbackParser;
+        ParseContext context = new ParseContext();
+        // Walk down through composite parsers (AutoDetectParser, DefaultParser) to the leaf parser
+        while (parser instanceof CompositeParser) {
+            Map<MediaType, Parser> parsers = ((CompositeParser) parser).getParsers(context);
+            Parser next = null;
+            for (MediaType t = lookupType; t != null && next == null; t = REGISTRY.getSupertype(t)) {
+                next = parsers.get(t);
+            }
+            if (next == null) {
+                return fallbackParser;
+            }
+            parser = next;
+        }
+        logger.info("Dispatching {} directly to {}", type, parser.getClass().getSimpleName());
+        return parser;
+    }
+
+    /**
+     * Parse with the parser for an already detected type
+     *
+     * Direct dispatch keeps the zip-bomb guard AutoDetectParser would have
+     * installed, and records the detected type when the parser does not set one.
+     */
+    public void parse(MediaType type, byte[] documentContent, ContentHandler handler, Metadata metadata,
+            ParseContext context) throws IOException, SAXException, TikaException {
+        Parser parser = parserFor(type);
+        try (TikaInputStream stream = TikaInputStream.get(documentContent)) {
+            if (parser == fallbackParser) {
+                parser.parse(stream, handler, metadata, context);
+                return;
+            }
+            if (metadata.get(Metadata.CONTENT_TYPE) == null) {
+                metadata.set(Metadata.CONTENT_TYPE, type.toString());
+            }
+            SecureContentHandler secureHandler = new SecureContentHandler(handler, stream);
+            try {
+                parser.parse(stream, secureHandler, metadata, context);
+            } catch (SAXException e) {
+                secureHandler.throwIfCauseOf(e);
+                throw e;
+            }
+        }
+    }
+}
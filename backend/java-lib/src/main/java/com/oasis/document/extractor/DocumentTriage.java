@@ -0,0 +1,312 @@
+package com.oasis.document.extractor;
+
+import org.apache.tika.Tika;
+import org.apache.tika.exception.EncryptedDocumentException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.apache.tika.sax.BodyContentHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded single-pass parse used for triage
+ *
+ * The parse stops as soon as the page or character limit is reached, and runs
+ * on a small worker pool so the caller gets an answer when the latency budget
+ * expires even if the parser is still busy (the parse is then interrupted and
+ * the result describes what was seen so far). Tika's Metadata is not thread
+ * safe, so the worker hands back a copy when it finishes; after a timeout only
+ * the collector, which is synchronized, is read.
+ *
+ * PDFBox and POI do not always stop when interrupted, so a timed-out parse can
+ * hold its worker for a while. The queue in front of the workers is bounded;
+ * when it is full, triage answers at once with the format detected from the
+ * header bytes instead of waiting behind parses that will not finish in time.
+ */
+final class DocumentTriage {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentTriage.class);
+
+    // Below this many non-whitespace chars per page a PDF is treated as scanned
+    private static final double IMAGE_ONLY_DENSITY = 20.0;
+
+    private static final Parser PARSER = new AutoDetectParser();
+    private static final DocumentFormatDetector FORMAT_DETECTOR = new DocumentFormatDetector(PARSER);
+    private static final Tika TIKA = new Tika();
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    private static final int WORKER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final ThreadPoolExecutor WORKERS = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(
+                    Integer.getInteger("oasis.triage.queueCapacity", WORKER_COUNT * 4)), runnable -> {
+                        Thread thread = new Thread(runnable, "document-triage-" + THREAD_INDEX.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    private DocumentTriage() {
+    }
+
+    static TriageResult triage(byte[] documentContent, String fileName, int maxPages, int maxChars,
+            long budgetMillis) {
+        long start = System.nanoTime();
+        boolean supported = UnifiedDocumentExtractor.isSupportedFormat(fileName);
+        if (documentContent == null || documentContent.length == 0) {
+            return new TriageResult(null, supported, null, null, -1, 0, 0, 0.0, false, false, false, false, 0,
+                    "Document content is empty or null");
+        }
+
+        SampleCollector collector = new SampleCollector(Math.max(1, maxPages), Math.max(1, maxChars));
+        FutureTask<ParseOutcome> parse = new FutureTask<>(() -> {
+            Metadata metadata = new Metadata();
+            metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, fileName);
+            Throwable failure = null;
+            try {
+                ParseContext context = new ParseContext();
+                context.set(Parser.class, PARSER);
+                // Otherwise the PDF parser swallows the per-page stop and walks every remaining page
+                PDFParserConfig pdfConfig = new PDFParserConfig();
+                pdfConfig.setCatchIntermediateIOExceptions(false);
+                context.set(PDFParserConfig.class, pdfConfig);
+                FORMAT_DETECTOR.parse(DocumentFormatDetector.detect(documentContent), documentContent,
+                        new BodyContentHandler(collector), metadata, context);
+                collector.markComplete();
+            } catch (Exception e) {
+                failure = e;
+            }
+            return new ParseOutcome(failure, snapshot(metadata));
+        });
+        try {
+            WORKERS.execute(parse);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Triage workers saturated; answering {} from the header bytes only", fileName);
+            return new TriageResult(TIKA.detect(documentContent, fileName), supported, null, null, -1, 0, 0, 0.0,
+                    false, false, false, false, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    "Triage workers are busy; only the format was detected");
+        }
+
+        ParseOutcome outcome = null;
+        Throwable failure = null;
+        boolean timedOut = false;
+        try {
+            outcome = parse.get(Math.max(1, budgetMillis), TimeUnit.MILLISECONDS);
+            failure = outcome.failure;
+        } catch (TimeoutException e) {
+            timedOut = true;
+            abandon(parse, collector);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(parse, collector);
+            failure = e;
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        }
+        // Without an outcome the parser may still be writing its Metadata, so none of it is read
+        Map<String, String> metadata = outcome != null ? outcome.metadata : Map.of();
+
+        boolean encrypted = "true".equalsIgnoreCase(metadata.get("pdf:encrypted"));
+        String errorMessage = null;
+        if (failure != null && !SampleCollector.isLimitReached(failure)) {
+            if (hasCause(failure, EncryptedDocumentException.class)) {
+                encrypted = true;
+                errorMessage = "Document is password protected";
+            } else if (!(failure instanceof InterruptedException)) {
+                errorMessage = "Triage parse failed: " + failure.getMessage();
+            }
+        }
+
+        String contentType = metadata.get(Metadata.CONTENT_TYPE);
+        if (contentType == null) {
+            contentType = TIKA.detect(documentContent, fileName);
+        }
+
+        String sample = collector.sample();
+        int pagesSampled = collector.pagesSeen();
+        int pageCount = pageCount(metadata);
+        int nonWhitespace = countNonWhitespace(sample);
+        double density = nonWhitespace / (double) Math.max(1, pagesSampled);
+        // A timed-out parse may have stopped inside the first page, so it cannot prove a PDF is scanned
+        boolean imageOnly = contentType.startsWith("image/")
+                || (contentType.contains("pdf") && pagesSampled > 0 && density < IMAGE_ONLY_DENSITY
+                        && !timedOut && !encrypted);
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new TriageResult(contentType, supported,
+                nonWhitespace > 0 ? UnifiedDocumentExtractor.detectSriLankanTaxType(sample) : null,
+                detectLanguage(sample), pageCount, pagesSampled, sample.length(), density, imageOnly, encrypted,
+                collector.isComplete(), timedOut, elapsedMillis, errorMessage);
+    }
+
+    private static void abandon(FutureTask<ParseOutcome> parse, SampleCollector collector) {
+        collector.stop();
+        parse.cancel(true);
+        // Frees the queue slot at once if the parse never started
+        WORKERS.remove(parse);
+    }
+
+    private static Map<String, String> snapshot(Metadata metadata) {
+        Map<String, String> copy = new HashMap<>();
+        for (String name : metadata.names()) {
+            copy.put(name, metadata.get(name));
+        }
+        return copy;
+    }
+
+    private static int pageCount(Map<String, String> metadata) {
+        for (String key : new String[] { "xmpTPg:NPages", "meta:page-count", "Page-Count" }) {
+            String value = metadata.get(key);
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    // Try the next key
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String detectLanguage(String sample) {
+        if (sample.length() < 50) {
+            return "en"; // Same default as the full extractor
+        }
+        String language = LanguageDetectorPool.shared().detect(sample);
+        return language != null ? language : "en";
+    }
+
+    private static int countNonWhitespace(CharSequence text) {
+        int count = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects body text and counts pages, aborting the parse at the limits
+     */
+    private static final class SampleCollector extends DefaultHandler {
+        private final int maxPages;
+        private final int maxChars;
+        private final StringBuilder text = new StringBuilder();
+        private int pagesSeen;
+        private boolean complete;
+        private volatile boolean stopped;
+
+        SampleCollector(int maxPages, int maxChars) {
+            this.maxPages = maxPages;
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            checkStopped();
+            // Paged formats (PDF) wrap each page in <div class="page">
+            if ("div".equals(localName) && "page".equals(attributes.getValue("class"))) {
+                synchronized (this) {
+                    if (pagesSeen == maxPages) {
+                        throw new LimitReached();
+                    }
+                    pagesSeen++;
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            checkStopped();
+            synchronized (this) {
+                int room = maxChars - text.length();
+                text.append(ch, start, Math.min(room, length));
+                if (length > room) {
+                    throw new LimitReached();
+                }
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        private void checkStopped() throws SAXException {
+            if (stopped || Thread.currentThread().isInterrupted()) {
+                throw new LimitReached();
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        synchronized void markComplete() {
+            complete = true;
+        }
+
+        synchronized boolean isComplete() {
+            return complete;
+        }
+
+        synchronized String sample() {
+            return text.toString();
+        }
+
+        synchronized int pagesSeen() {
+            return pagesSeen;
+        }
+
+        static boolean isLimitReached(Throwable error) {
+            return hasCause(error, LimitReached.class);
+        }
+    }
+
+    /**
+     * What the worker saw: the parse failure, if any, and a copy of the metadata
+     */
+    private static final class ParseOutcome {
+        final Throwable failure;
+        final Map<String, String> metadata;
+
+        ParseOutcome(Throwable failure, Map<String, String> metadata) {
+            this.failure = failure;
+            this.metadata = metadata;
+        }
+    }
+
+    /**
+     * Thrown from the handler to end the parse early; not an error
+     */
+    private static final class LimitReached extends SAXException {
+        LimitReached() {
+            super("Triage limit reached");
+        }
+    }
+}
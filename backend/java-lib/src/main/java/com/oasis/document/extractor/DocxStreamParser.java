@@ -0,0 +1,658 @@
+package com.oasis.document.extractor;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.util.XMLHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass SAX parser for DOCX packages
+ *
+ * Reads the main document part straight out of the zip and emits one
+ * {@link WordParagraphInfo} per paragraph with its style name, heading level,
+ * run count and table membership. Heading levels come from the outline level
+ * of the paragraph or its style chain in styles.xml, falling back to the
+ * built-in "heading N" style names, so no regex guessing is involved.
+ */
+final class DocxStreamParser {
+
+    static final String DOCX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    // Guards against zip bombs; a 500-page Act is a few megabytes of document.xml
+    private static final long MAX_PART_BYTES = 512L * 1024 * 1024;
+    private static final int WORDS_PER_PAGE = 500;
+
+    private static final String REL_OFFICE_DOCUMENT = "/officeDocument";
+    private static final String REL_STYLES = "/styles";
+    private static final String REL_CORE_PROPERTIES = "/metadata/core-properties";
+    private static final Pattern HEADING_STYLE_NAME = Pattern.compile("heading\\s*(\\d)", Pattern.CASE_INSENSITIVE);
+
+    private DocxStreamParser() {
+    }
+
+    /**
+     * Parse a DOCX package
+     *
+     * @return the extraction result, or null when the bytes are an OOXML
+     *         package but not a Word document (a workbook or presentation)
+     * @throws IOException if the package or its XML is malformed
+     */
+    static WordExtractionResult parse(byte[] docxContent) throws IOException {
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(docxContent))) {
+            String mainPart = relationshipTarget(zip, "", "_rels/.rels", REL_OFFICE_DOCUMENT);
+            if (mainPart == null || !isWordprocessingType(partContentType(zip, mainPart))) {
+                return null;
+            }
+            int slash = mainPart.lastIndexOf('/');
+            String mainDir = slash >= 0 ? mainPart.substring(0, slash + 1) : "";
+            String mainRels = mainDir + "_rels/" + mainPart.substring(slash + 1) + ".rels";
+
+            StyleSheet styles = new StyleSheet();
+            String stylesPart = relationshipTarget(zip, mainDir, mainRels, REL_STYLES);
+            if (stylesPart != null && zip.getEntry(stylesPart) != null) {
+                parsePart(zip, stylesPart, styles);
+            }
+
+            Map<String, String> metadata = new LinkedHashMap<>();
+            String corePart = relationshipTarget(zip, "", "_rels/.rels", REL_CORE_PROPERTIES);
+            if (corePart != null && zip.getEntry(corePart) != null) {
+                parsePart(zip, corePart, new CorePropertiesHandler(metadata));
+            }
+
+            BodyHandler body = new BodyHandler(styles);
+            parsePart(zip, mainPart, body);
+            return body.toResult(metadata);
+        } catch (SAXException e) {
+            throw new IOException("Malformed DOCX XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Content type of an OOXML package's main part, as declared in [Content_Types].xml
+     *
+     * Tika reports every OOXML container as application/x-tika-ooxml; this is
+     * what tells a workbook from a document or presentation before a format
+     * specific reader is chosen.
+     *
+     * @return the content type, or null when the package declares no main part
+     * @throws IOException if the package or its XML is malformed
+     */
+    static String mainPartContentType(byte[] packageContent) throws IOException {
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(packageContent))) {
+            String mainPart = relationshipTarget(zip, "", "_rels/.rels", REL_OFFICE_DOCUMENT);
+            return mainPart != null ? partContentType(zip, mainPart) : null;
+        } catch (SAXException e) {
+            throw new IOException("Malformed OOXML package XML: " + e.getMessage(), e);
+        }
+    }
+
+    private static void parsePart(ZipFile zip, String partName, DefaultHandler handler)
+            throws IOException, SAXException {
+        ZipArchiveEntry entry = zip.getEntry(partName);
+        if (entry == null) {
+            throw new IOException("DOCX package is missing part " + partName);
+        }
+        try (InputStream in = new BoundedInputStream(zip.getInputStream(entry), partName)) {
+            XMLReader reader = XMLHelper.newXMLReader();
+            reader.setContentHandler(handler);
+            reader.parse(new InputSource(in));
+        } catch (ParserConfigurationException e) {
+            throw new IOException("No SAX parser available: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolved part name of the first relationship whose type ends with the given suffix
+     */
+    private static String relationshipTarget(ZipFile zip, String baseDir, String relsPart, String typeSuffix)
+            throws IOException, SAXException {
+        if (zip.getEntry(relsPart) == null) {
+            return null;
+        }
+        String[] target = new String[1];
+        parsePart(zip, relsPart, new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                String type = attributes.getValue("Type");
+                if (target[0] == null && "Relationship".equals(localName) && type != null
+                        && type.endsWith(typeSuffix) && !"External".equals(attributes.getValue("TargetMode"))) {
+                    target[0] = attributes.getValue("Target");
+                }
+            }
+        });
+        if (target[0] == null) {
+            return null;
+        }
+        String resolved = URI.create("/" + baseDir).resolve(target[0]).getPath();
+        return resolved.startsWith("/") ? resolved.substring(1) : resolved;
+    }
+
+    private static String partContentType(ZipFile zip, String partName) throws IOException, SAXException {
+        String[] contentType = new String[1];
+        String[] defaultType = new String[1];
+        String extension = partName.substring(partName.lastIndexOf('.') + 1);
+        parsePart(zip, "[Content_Types].xml", new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if ("Override".equals(localName) && ("/" + partName).equals(attributes.getValue("PartName"))) {
+                    contentType[0] = attributes.getValue("ContentType");
+                } else if ("Default".equals(localName) && extension.equals(attributes.getValue("Extension"))) {
+                    defaultType[0] = attributes.getValue("ContentType");
+                }
+            }
+        });
+        return contentType[0] != null ? contentType[0] : defaultType[0];
+    }
+
+    private static boolean isWordprocessingType(String type) {
+        // Covers .docx, .dotx and the macro-enabled .docm/.dotm main parts
+        return type != null && (type.contains("wordprocessingml") || type.contains("ms-word"));
+    }
+
+    private static boolean isWordNamespace(String uri) {
+        // Transitional and Strict OOXML use different namespace URIs for the same vocabulary
+        return uri.contains("wordprocessingml");
+    }
+
+    private static String wordAttribute(Attributes attributes, String localName) {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            if (localName.equals(attributes.getLocalName(i)) && isWordNamespace(attributes.getURI(i))) {
+                return attributes.getValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Paragraph styles from styles.xml with their resolved heading levels
+     */
+    private static final class StyleSheet extends DefaultHandler {
+        private final Map<String, String> names = new HashMap<>();
+        private final Map<String, String> basedOn = new HashMap<>();
+        private final Map<String, Integer> outlineLevels = new HashMap<>();
+        private final Map<String, Integer> resolvedLevels = new HashMap<>();
+        private String defaultStyleId;
+        private String currentStyleId;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (!isWordNamespace(uri)) {
+                return;
+            }
+            switch (localName) {
+                case "style":
+                    currentStyleId = "paragraph".equals(wordAttribute(attributes, "type"))
+                            ? wordAttribute(attributes, "styleId") : null;
+                    String isDefault = wordAttribute(attributes, "default");
+                    if (currentStyleId != null && ("1".equals(isDefault) || "true".equals(isDefault))) {
+                        defaultStyleId = currentStyleId;
+                    }
+                    break;
+                case "name":
+                    if (currentStyleId != null) {
+                        names.put(currentStyleId, wordAttribute(attributes, "val"));
+                    }
+                    break;
+                case "basedOn":
+                    if (currentStyleId != null) {
+                        basedOn.put(currentStyleId, wordAttribute(attributes, "val"));
+                    }
+                    break;
+                case "outlineLvl":
+                    if (currentStyleId != null) {
+                        outlineLevels.put(currentStyleId, parseOutlineLevel(wordAttribute(attributes, "val")));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if ("style".equals(localName) && isWordNamespace(uri)) {
+                currentStyleId = null;
+            }
+        }
+
+        String effectiveStyle(String styleId) {
+            return styleId != null ? styleId : defaultStyleId;
+        }
+
+        String name(String styleId) {
+            String name = styleId != null ? names.get(styleId) : null;
+            return name != null ? name : styleId;
+        }
+
+        int headingLevel(String styleId) {
+            if (styleId == null) {
+                return 0;
+            }
+            return resolvedLevels.computeIfAbsent(styleId, id -> resolveLevel(id, 0));
+        }
+
+        private int resolveLevel(String styleId, int depth) {
+            Integer outline = outlineLevels.get(styleId);
+            if (outline != null) {
+                return outline;
+            }
+            String name = names.get(styleId);
+            if (name != null) {
+                Matcher heading = HEADING_STYLE_NAME.matcher(name);
+                if (heading.matches()) {
+                    return Integer.parseInt(heading.group(1));
+                }
+            }
+            String parent = basedOn.get(styleId);
+            // Style chains are short; the depth cap only protects against cycles in broken files
+            return parent != null && depth < 16 ? resolveLevel(parent, depth + 1) : 0;
+        }
+    }
+
+    /**
+     * outlineLvl 0-8 are heading levels 1-9; 9 is explicit body text
+     */
+    private static int parseOutlineLevel(String value) {
+        try {
+            int level = Integer.parseInt(value);
+            return level >= 0 && level < 9 ? level + 1 : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Collects the Dublin Core fields of docProps/core.xml under their prefixed names (dc:title, ...)
+     */
+    private static final class CorePropertiesHandler extends DefaultHandler {
+        private final Map<String, String> metadata;
+        private final StringBuilder value = new StringBuilder();
+        private int depth;
+
+        CorePropertiesHandler(Map<String, String> metadata) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            depth++;
+            value.setLength(0);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (depth == 2) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (depth == 2) {
+                String text = value.toString().trim();
+                if (!text.isEmpty()) {
+                    metadata.put(qName.indexOf(':') > 0 ? qName : localName, text);
+                }
+            }
+            depth--;
+        }
+    }
+
+    /**
+     * Paragraph being read; text boxes nest paragraphs inside runs, hence the stack
+     */
+    private static final class Paragraph {
+        final StringBuilder text = new StringBuilder();
+        String styleId;
+        int outlineLevel = -1;
+        int runCount;
+    }
+
+    /**
+     * SAX handler for the main document part
+     */
+    private static final class BodyHandler extends DefaultHandler {
+        private final StyleSheet styles;
+
+        private final StringBuilder documentText = new StringBuilder();
+        private final List<WordParagraphInfo> paragraphs = new ArrayList<>();
+        private final List<String> headers = new ArrayList<>();
+        private final List<String> sections = new ArrayList<>();
+        private final StringBuilder currentSection = new StringBuilder();
+        private final List<TableData> tables = new ArrayList<>();
+        private final Deque<Paragraph> openParagraphs = new ArrayDeque<>();
+
+        private int paragraphIndex;
+        private String title;
+        private int imageCount;
+        private int renderedPageBreaks;
+        private int manualPageBreaks;
+
+        private int tableDepth;
+        private int tableCount;
+        private List<String[]> tableRows;
+        private String[] headerRow;
+        private List<String> rowCells;
+        private boolean rowIsHeader;
+        private StringBuilder cellText;
+
+        private int runDepth;
+        private boolean inText;
+        private int fallbackDepth;
+
+        BodyHandler(StyleSheet styles) {
+            this.styles = styles;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            // mc:Fallback repeats the mc:Choice content (VML copies of drawings and text boxes)
+            if (fallbackDepth > 0 || ("Fallback".equals(localName) && uri.contains("markup-compatibility"))) {
+                fallbackDepth++;
+                return;
+            }
+            if (!isWordNamespace(uri)) {
+                return;
+            }
+            Paragraph paragraph = openParagraphs.peek();
+            switch (localName) {
+                case "p":
+                    openParagraphs.push(new Paragraph());
+                    break;
+                case "pStyle":
+                    if (paragraph != null) {
+                        paragraph.styleId = wordAttribute(attributes, "val");
+                    }
+                    break;
+                case "outlineLvl":
+                    if (paragraph != null) {
+                        paragraph.outlineLevel = parseOutlineLevel(wordAttribute(attributes, "val"));
+                    }
+                    break;
+                case "r":
+                    runDepth++;
+                    if (paragraph != null) {
+                        paragraph.runCount++;
+                    }
+                    break;
+                case "t":
+                    inText = runDepth > 0 && paragraph != null;
+                    break;
+                case "tab":
+                    // Tab stops in pPr share the element name; only run-level tabs are text
+                    appendInRun(paragraph, '\t');
+                    break;
+                case "br":
+                    if ("page".equals(wordAttribute(attributes, "type"))) {
+                        manualPageBreaks++;
+                    }
+                    appendInRun(paragraph, '\n');
+                    break;
+                case "cr":
+                    appendInRun(paragraph, '\n');
+                    break;
+                case "noBreakHyphen":
+                    appendInRun(paragraph, '-');
+                    break;
+                case "lastRenderedPageBreak":
+                    renderedPageBreaks++;
+                    break;
+                case "drawing":
+                case "pict":
+                    imageCount++;
+                    break;
+                case "tbl":
+                    if (++tableDepth == 1) {
+                        tableRows = new ArrayList<>();
+                        headerRow = null;
+                    }
+                    break;
+                case "tr":
+                    if (tableDepth == 1) {
+                        rowCells = new ArrayList<>();
+                        rowIsHeader = false;
+                    }
+                    break;
+                case "tblHeader":
+                    String repeat = wordAttribute(attributes, "val");
+                    if (tableDepth == 1 && rowCells != null && !"0".equals(repeat) && !"false".equals(repeat)) {
+                        rowIsHeader = true;
+                    }
+                    break;
+                case "tc":
+                    if (tableDepth == 1) {
+                        cellText = new StringBuilder();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void appendInRun(Paragraph paragraph, char c) {
+            if (runDepth > 0 && paragraph != null) {
+                paragraph.text.append(c);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inText && fallbackDepth == 0) {
+                openParagraphs.peek().text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (fallbackDepth > 0) {
+                fallbackDepth--;
+                return;
+            }
+            if (!isWordNamespace(uri)) {
+                return;
+            }
+            switch (localName) {
+                case "p":
+                    endParagraph(openParagraphs.pop());
+                    break;
+                case "r":
+                    runDepth--;
+                    break;
+                case "t":
+                    inText = false;
+                    break;
+                case "tc":
+                    if (tableDepth == 1 && rowCells != null) {
+                        rowCells.add(cellText.toString().trim());
+                        cellText = null;
+                    }
+                    break;
+                case "tr":
+                    if (tableDepth == 1 && rowCells != null) {
+                        endRow();
+                    }
+                    break;
+                case "tbl":
+                    if (tableDepth-- == 1) {
+                        endTable();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endParagraph(Paragraph paragraph) {
+            int index = paragraphIndex++;
+            String text = paragraph.text.toString();
+            String styleId = styles.effectiveStyle(paragraph.styleId);
+            int level = paragraph.outlineLevel >= 0 ? paragraph.outlineLevel : styles.headingLevel(styleId);
+            String styleName = styles.name(styleId);
+            boolean inTable = tableDepth > 0;
+
+            if (inTable) {
+                if (cellText != null && !text.isBlank()) {
+                    if (cellText.length() > 0) {
+                        cellText.append(' ');
+                    }
+                    cellText.append(text.trim());
+                }
+            } else {
+                documentText.append(text).append('\n');
+            }
+            if (text.isBlank()) {
+                return;
+            }
+
+            paragraphs.add(new WordParagraphInfo(index, text, styleName, paragraph.runCount, level,
+                    inTable ? tableCount : -1));
+            if (inTable) {
+                return;
+            }
+            if (title == null && "title".equalsIgnoreCase(styleName)) {
+                title = text.trim();
+            }
+            if (level > 0) {
+                headers.add(text.trim());
+                flushSection();
+            }
+            currentSection.append(text).append('\n');
+        }
+
+        private void endRow() {
+            String[] cells = rowCells.toArray(new String[0]);
+            documentText.append(String.join("\t", cells)).append('\n');
+            // Rows marked "repeat as header row" become the table header
+            if (rowIsHeader && headerRow == null && tableRows.isEmpty()) {
+                headerRow = cells;
+            } else {
+                tableRows.add(cells);
+            }
+            currentSection.append(String.join("\t", cells)).append('\n');
+            rowCells = null;
+        }
+
+        private void endTable() {
+            int width = headerRow != null ? headerRow.length : 0;
+            for (String[] row : tableRows) {
+                width = Math.max(width, row.length);
+            }
+            String[][] data = new String[tableRows.size()][];
+            for (int i = 0; i < data.length; i++) {
+                String[] row = tableRows.get(i);
+                data[i] = row.length == width ? row : pad(row, width);
+            }
+            tables.add(new TableData(data, headerRow != null ? headerRow : new String[0], null));
+            tableCount++;
+            tableRows = null;
+        }
+
+        private static String[] pad(String[] row, int width) {
+            String[] padded = new String[width];
+            System.arraycopy(row, 0, padded, 0, row.length);
+            Arrays.fill(padded, row.length, width, "");
+            return padded;
+        }
+
+        private void flushSection() {
+            String section = currentSection.toString().trim();
+            if (!section.isEmpty()) {
+                sections.add(section);
+            }
+            currentSection.setLength(0);
+        }
+
+        WordExtractionResult toResult(Map<String, String> metadata) {
+            flushSection();
+            String text = documentText.toString();
+
+            int pages;
+            if (renderedPageBreaks > 0) {
+                // Word records where pages ended the last time it laid the document out
+                pages = Math.max(renderedPageBreaks, manualPageBreaks) + 1;
+            } else {
+                pages = Math.max(manualPageBreaks + 1,
+                        (TikaDocumentExtractor.estimateWordCount(text) + WORDS_PER_PAGE - 1) / WORDS_PER_PAGE);
+            }
+
+            String documentTitle = metadata.get("dc:title");
+            if (documentTitle == null) {
+                documentTitle = title != null ? title : (headers.isEmpty() ? "" : headers.get(0));
+            }
+
+            ImageData[] images = new ImageData[imageCount];
+            for (int i = 0; i < imageCount; i++) {
+                images[i] = new ImageData("docx_img_" + i, "embedded");
+            }
+
+            metadata.put("Content-Type", DOCX_CONTENT_TYPE);
+            metadata.put("Paragraph-Count", Integer.toString(paragraphs.size()));
+            metadata.put("Table-Count", Integer.toString(tables.size()));
+            metadata.put("Page-Count", Integer.toString(pages));
+
+            WordDocumentStructure structure = new WordDocumentStructure(documentTitle,
+                    headers.toArray(new String[0]), sections.toArray(new String[0]));
+            return new WordExtractionResult(text, pages, structure, paragraphs, tables.toArray(new TableData[0]),
+                    images, metadata, true, "Extracted " + paragraphs.size() + " paragraphs");
+        }
+    }
+
+    /**
+     * Fails the read once a part inflates past {@link #MAX_PART_BYTES}
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private final String partName;
+        private long remaining = MAX_PART_BYTES;
+
+        BoundedInputStream(InputStream in, String partName) {
+            super(in);
+            this.partName = partName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consumed(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            if (n > 0) {
+                consumed(n);
+            }
+            return n;
+        }
+
+        private void consumed(int n) throws IOException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new IOException("DOCX part " + partName + " inflates past " + MAX_PART_BYTES + " bytes");
+            }
+        }
+    }
+}
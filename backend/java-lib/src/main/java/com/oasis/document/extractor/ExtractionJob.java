@@ -0,0 +1,168 @@
+package com.oasis.document.extractor;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous extraction submitted through {@link ExtractionJobService}
+ * Tracks lifecycle state and holds the result until its TTL expires
+ */
+public class ExtractionJob {
+
+    /**
+     * Lifecycle of a job; terminal states are SUCCEEDED, FAILED and CANCELLED
+     */
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    /**
+     * Scheduling lane; interactive uploads are always started before backfills
+     */
+    public enum Lane {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private final String jobId;
+    private final String fileName;
+    private final Lane lane;
+    private final long sequence;
+    private final long submittedAtMillis;
+    private final CompletableFuture<DocumentExtractionResult> completion = new CompletableFuture<>();
+
+    private byte[] documentContent;
+    private volatile Status status = Status.QUEUED;
+    private volatile long startedAtMillis;
+    private volatile long completedAtMillis;
+    private volatile String errorMessage;
+    private Thread worker;
+
+    ExtractionJob(String jobId, byte[] documentContent, String fileName, Lane lane, long sequence) {
+        this.jobId = jobId;
+        this.documentContent = documentContent;
+        this.fileName = fileName;
+        this.lane = lane;
+        this.sequence = sequence;
+        this.submittedAtMillis = System.currentTimeMillis();
+    }
+
+    // Getter methods for Ballerina interop
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Lane getLane() {
+        return lane;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getStatusName() {
+        return status.name();
+    }
+
+    public boolean isDone() {
+        return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public long getSubmittedAtMillis() {
+        return submittedAtMillis;
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public long getCompletedAtMillis() {
+        return completedAtMillis;
+    }
+
+    /**
+     * Time spent waiting for a parse permit, in milliseconds
+     */
+    public long getQueueMillis() {
+        long started = startedAtMillis > 0 ? startedAtMillis : System.currentTimeMillis();
+        return started - submittedAtMillis;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    CompletableFuture<DocumentExtractionResult> completion() {
+        return completion;
+    }
+
+    /**
+     * Hand the document bytes to the worker once and drop the reference so a
+     * finished job only retains its result
+     */
+    synchronized byte[] takeContent() {
+        byte[] content = documentContent;
+        documentContent = null;
+        return content;
+    }
+
+    synchronized boolean markRunning(Thread thread) {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startedAtMillis = System.currentTimeMillis();
+        worker = thread;
+        return true;
+    }
+
+    synchronized void markSucceeded(DocumentExtractionResult result) {
+        if (status == Status.CANCELLED) {
+            return;
+        }
+        worker = null;
+        status = Status.SUCCEEDED;
+        completedAtMillis = System.currentTimeMillis();
+        completion.complete(result);
+    }
+
+    synchronized void markFailed(Throwable error) {
+        if (status == Status.CANCELLED) {
+            return;
+        }
+        worker = null;
+        status = Status.FAILED;
+        errorMessage = error.getMessage();
+        completedAtMillis = System.currentTimeMillis();
+        completion.completeExceptionally(error);
+    }
+
+    synchronized boolean markCancelled() {
+        if (isDone()) {
+            return false;
+        }
+        status = Status.CANCELLED;
+        errorMessage = "Extraction job was cancelled";
+        completedAtMillis = System.currentTimeMillis();
+        documentContent = null;
+        if (worker != null) {
+            // Best effort: parsers that check for interruption stop early, others run to completion
+            worker.interrupt();
+            worker = null;
+        }
+        completion.cancel(false);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExtractionJob{id='%s', file='%s', lane=%s, status=%s}",
+                jobId, fileName, lane, status);
+    }
+}
@@ -0,0 +1,258 @@
+package com.oasis.document.extractor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous extraction jobs with submit/poll/cancel/await by job id
+ *
+ * Each job runs on its own virtual thread when the JVM provides them (Java 21,
+ * as used by the Ballerina runtime) and on a daemon platform thread otherwise.
+ * A semaphore caps how many CPU-heavy parses run at once; queued jobs wait in
+ * a priority queue so interactive uploads are always started before
+ * background backfills, FIFO within a lane. Finished jobs keep their result
+ * for a TTL and are then evicted.
+ *
+ * Critical Application Mode still applies: a failed job reports the same
+ * IOException that the synchronous extractContent call would have thrown.
+ */
+public class ExtractionJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionJobService.class);
+
+    private static final long DEFAULT_RESULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final ExtractionJobService SHARED = new ExtractionJobService(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), DEFAULT_RESULT_TTL_MILLIS);
+
+    private final ExecutorService executor;
+    private final Extraction extraction;
+    private final Semaphore parsePermits;
+    private final int maxConcurrentParses;
+    private final long resultTtlMillis;
+    private final PriorityBlockingQueue<ExtractionJob> queue = new PriorityBlockingQueue<>(16,
+            Comparator.comparing(ExtractionJob::getLane).thenComparingLong(ExtractionJob::getSequence));
+    private final Map<String, ExtractionJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * The parse a job runs; UnifiedDocumentExtractor.extractContent outside tests
+     */
+    @FunctionalInterface
+    interface Extraction {
+        DocumentExtractionResult extract(byte[] documentContent, String fileName) throws IOException;
+    }
+
+    public ExtractionJobService(int maxConcurrentParses, long resultTtlMillis) {
+        this(maxConcurrentParses, resultTtlMillis, UnifiedDocumentExtractor::extractContent);
+    }
+
+    ExtractionJobService(int maxConcurrentParses, long resultTtlMillis, Extraction extraction) {
+        if (maxConcurrentParses < 1) {
+            throw new IllegalArgumentException("maxConcurrentParses must be at least 1");
+        }
+        this.maxConcurrentParses = maxConcurrentParses;
+        this.parsePermits = new Semaphore(maxConcurrentParses);
+        this.resultTtlMillis = resultTtlMillis;
+        this.extraction = extraction;
+        this.executor = newTaskExecutor();
+    }
+
+    /**
+     * Process-wide service used by InteropBridge
+     */
+    public static ExtractionJobService shared() {
+        return SHARED;
+    }
+
+    /**
+     * Queue a document for extraction and return immediately
+     *
+     * @param documentContent the document bytes
+     * @param fileName        the original filename
+     * @param lane            INTERACTIVE for user uploads, BACKGROUND for backfills
+     * @return the job id to poll, await or cancel
+     * @throws IOException if the document is empty (rejected up front, like the synchronous path)
+     */
+    public String submit(byte[] documentContent, String fileName, ExtractionJob.Lane lane) throws IOException {
+        if (documentContent == null || documentContent.length == 0) {
+            throw new IOException(
+                    "Document processing failed: Document content is null or empty for file: " + fileName);
+        }
+        evictExpired();
+
+        String jobId = UUID.randomUUID().toString();
+        ExtractionJob job = new ExtractionJob(jobId, documentContent, fileName,
+                lane != null ? lane : ExtractionJob.Lane.INTERACTIVE, sequence.incrementAndGet());
+        jobs.put(jobId, job);
+        queue.add(job);
+        logger.info("Queued extraction job {} for '{}' in {} lane ({} waiting)",
+                jobId, fileName, job.getLane(), queue.size());
+        dispatch();
+        return jobId;
+    }
+
+    /**
+     * Current state of a job, or null if the id is unknown or its result has expired
+     */
+    public ExtractionJob poll(String jobId) {
+        evictExpired();
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Cancel a queued or running job; returns false if it had already finished
+     */
+    public boolean cancel(String jobId) {
+        ExtractionJob job = jobs.get(jobId);
+        if (job == null || !job.markCancelled()) {
+            return false;
+        }
+        queue.remove(job);
+        logger.info("Cancelled extraction job {}", jobId);
+        return true;
+    }
+
+    /**
+     * Wait for a job to finish
+     *
+     * @param timeoutMillis maximum wait; 0 or less returns the current state without waiting
+     * @return the extraction result, or null if the job is still running after the timeout
+     * @throws IOException if the job is unknown, expired, failed or was cancelled
+     */
+    public DocumentExtractionResult await(String jobId, long timeoutMillis) throws IOException {
+        ExtractionJob job = poll(jobId);
+        if (job == null) {
+            throw new IOException("Unknown or expired extraction job: " + jobId);
+        }
+        try {
+            return timeoutMillis > 0
+                    ? job.completion().get(timeoutMillis, TimeUnit.MILLISECONDS)
+                    : job.completion().getNow(null);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (CancellationException e) {
+            throw new IOException("Extraction job " + jobId + " was cancelled", e);
+        } catch (ExecutionException | CompletionException e) {
+            // get() wraps the failure in ExecutionException, getNow() in CompletionException
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Extraction job " + jobId + " failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for extraction job " + jobId, e);
+        }
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    public int getMaxConcurrentParses() {
+        return maxConcurrentParses;
+    }
+
+    /**
+     * Start queued jobs while parse permits are available; called on submit
+     * and whenever a job releases its permit, so no dispatcher thread is needed
+     */
+    private void dispatch() {
+        while (parsePermits.tryAcquire()) {
+            ExtractionJob job = queue.poll();
+            if (job == null) {
+                parsePermits.release();
+                // A job may have been queued between poll and release
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                executor.execute(() -> run(job));
+            } catch (RuntimeException e) {
+                parsePermits.release();
+                job.markFailed(new IOException("Extraction executor rejected job: " + e.getMessage(), e));
+            }
+        }
+    }
+
+    private void run(ExtractionJob job) {
+        try {
+            if (!job.markRunning(Thread.currentThread())) {
+                return; // cancelled while queued
+            }
+            running.incrementAndGet();
+            try {
+                DocumentExtractionResult result = extraction.extract(job.takeContent(), job.getFileName());
+                job.markSucceeded(result);
+                logger.info("Extraction job {} finished in {} ms after {} ms queued", job.getJobId(),
+                        System.currentTimeMillis() - job.getStartedAtMillis(), job.getQueueMillis());
+            } catch (Exception e) {
+                job.markFailed(e);
+                logger.warn("Extraction job {} failed: {}", job.getJobId(), e.getMessage());
+            } finally {
+                running.decrementAndGet();
+            }
+        } finally {
+            Thread.interrupted(); // do not leak a cancel interrupt into the next task on a pooled thread
+            parsePermits.release();
+            dispatch();
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - resultTtlMillis;
+        Iterator<ExtractionJob> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            ExtractionJob job = it.next();
+            if (job.isDone() && job.getCompletedAtMillis() < cutoff) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Virtual-thread-per-task executor when running on Java 21+, looked up
+     * reflectively because the library is still compiled for Java 17
+     */
+    private static ExecutorService newTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Extraction jobs will run on virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads unavailable; extraction jobs will run on platform threads");
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "extraction-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.oasis.document.extractor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global heap budget for concurrent extractions
+ *
+ * Each extraction reserves an estimate of its peak heap use before parsing:
+ * the document bytes times a parser overhead factor, plus the in-memory part
+ * of its text buffers (anything past the spill threshold goes to a mapped
+ * temp file). Reservations are granted FIFO; when the budget is exhausted a
+ * request waits up to the admission timeout and is then rejected.
+ *
+ * The shared instance is sized from system properties:
+ * oasis.extraction.heapBudgetBytes (default a quarter of -Xmx),
+ * oasis.extraction.spillThresholdChars (default 4M chars) and
+ * oasis.extraction.admissionTimeoutMillis (default 30s, 0 rejects immediately).
+ */
+public class ExtractionMemoryBudget {
+    // POI and PDFBox object models typically run to a few times the file size
+    private static final int PARSE_OVERHEAD_FACTOR = 4;
+    // Plain text and HTML sinks, two bytes per char
+    private static final int BUFFERS_PER_EXTRACTION = 2;
+
+    private static final ExtractionMemoryBudget SHARED = new ExtractionMemoryBudget(
+            Long.getLong("oasis.extraction.heapBudgetBytes", Runtime.getRuntime().maxMemory() / 4),
+            Integer.getInteger("oasis.extraction.spillThresholdChars", 4 * 1024 * 1024),
+            Long.getLong("oasis.extraction.admissionTimeoutMillis", 30_000L));
+
+    private final long budgetBytes;
+    private final int spillThresholdChars;
+    private final long admissionTimeoutMillis;
+    private final int totalPermits;
+    private final Semaphore permits;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder spillCount = new LongAdder();
+    private final LongAdder spilledBytes = new LongAdder();
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong peakReservedBytes = new AtomicLong();
+
+    /**
+     * A granted reservation; close it when the extraction finishes
+     */
+    public final class Reservation implements AutoCloseable {
+        private final int reservedPermits;
+        private boolean released;
+
+        private Reservation(int reservedPermits) {
+            this.reservedPermits = reservedPermits;
+        }
+
+        public long getReservedBytes() {
+            return reservedPermits * 1024L;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                reservedBytes.addAndGet(-getReservedBytes());
+                permits.release(reservedPermits);
+            }
+        }
+    }
+
+    public ExtractionMemoryBudget(long budgetBytes, int spillThresholdChars, long admissionTimeoutMillis) {
+        if (budgetBytes < 1024 * 1024) {
+            throw new IllegalArgumentException("Extraction heap budget must be at least 1 MB");
+        }
+        this.budgetBytes = budgetBytes;
+        this.spillThresholdChars = Math.max(1024, spillThresholdChars);
+        this.admissionTimeoutMillis = Math.max(0, admissionTimeoutMillis);
+        // Permits are kilobytes so budgets beyond 2 GB fit in an int
+        this.totalPermits = (int) Math.min(Integer.MAX_VALUE, budgetBytes / 1024);
+        this.permits = new Semaphore(totalPermits, true);
+    }
+
+    public static ExtractionMemoryBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * Estimated peak heap use for extracting a document of the given size
+     */
+    public long estimateBytes(long documentBytes) {
+        long estimate = documentBytes * PARSE_OVERHEAD_FACTOR
+                + (long) BUFFERS_PER_EXTRACTION * spillThresholdChars * 2;
+        // A document larger than the whole budget still runs, on its own
+        return Math.min(estimate, budgetBytes);
+    }
+
+    /**
+     * Reserve heap for one extraction, waiting up to the admission timeout
+     *
+     * @return the reservation, or null when the budget stayed exhausted
+     */
+    public Reservation acquire(long documentBytes) throws InterruptedException {
+        return reservePermits(estimateBytes(documentBytes), true);
+    }
+
+    /**
+     * Reserve heap for one extraction only if it is available right now
+     *
+     * For optional work, such as an extra document copy for a parallel range,
+     * that is better skipped than waited for.
+     *
+     * @return the reservation, or null when the budget is exhausted
+     */
+    public Reservation tryAcquire(long documentBytes) {
+        try {
+            return reservePermits(estimateBytes(documentBytes), false);
+        } catch (InterruptedException e) {
+            // Not reached: a reservation that does not wait is never interrupted
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Reserve exactly the given number of bytes, for buffers held outside a parse
+     *
+     * @return the reservation, or null when the budget stayed exhausted
+     */
+    public Reservation reserve(long bytes) throws InterruptedException {
+        return reservePermits(Math.min(Math.max(0, bytes), budgetBytes), true);
+    }
+
+    private Reservation reservePermits(long bytes, boolean wait) throws InterruptedException {
+        int needed = (int) Math.min(totalPermits, (bytes + 1023) / 1024);
+        if (!permits.tryAcquire(needed)) {
+            if (!wait) {
+                return null;
+            }
+            throttled.increment();
+            if (admissionTimeoutMillis == 0
+                    || !permits.tryAcquire(needed, admissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                return null;
+            }
+        }
+        admitted.increment();
+        long inUse = reservedBytes.addAndGet(needed * 1024L);
+        peakReservedBytes.accumulateAndGet(inUse, Math::max);
+        return new Reservation(needed);
+    }
+
+    /**
+     * New text sink using this budget's spill threshold
+     */
+    public SpillingTextBuffer newTextBuffer() {
+        return new SpillingTextBuffer(spillThresholdChars, this);
+    }
+
+    void recordSpill(long bytes) {
+        spillCount.increment();
+        spilledBytes.add(bytes);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public int getSpillThresholdChars() {
+        return spillThresholdChars;
+    }
+
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    public long getPeakReservedBytes() {
+        return peakReservedBytes.get();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getSpillCount() {
+        return spillCount.sum();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.sum();
+    }
+
+    /**
+     * Counters for Ballerina interop
+     */
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("budgetBytes", budgetBytes);
+        map.put("reservedBytes", getReservedBytes());
+        map.put("peakReservedBytes", getPeakReservedBytes());
+        map.put("admitted", getAdmittedCount());
+        map.put("throttled", getThrottledCount());
+        map.put("rejected", getRejectedCount());
+        map.put("spills", getSpillCount());
+        map.put("spilledBytes", getSpilledBytes());
+        return map;
+    }
+}
@@ -0,0 +1,465 @@
+package com.oasis.document.extractor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-loop load driver that replays a document corpus through
+ * {@link InteropBridge#extractContent(byte[], String)}
+ *
+ * Requests arrive on a fixed schedule (Poisson or evenly spaced) at the
+ * configured rate, whatever the state of the workers. Latency is measured
+ * from the scheduled arrival time, not from when a worker picked the request
+ * up, so time spent queued behind slow extractions is counted. A driver that
+ * waits for each response before sending the next would hide exactly that
+ * queueing (coordinated omission).
+ *
+ * A warm-up phase at the same rate is run first and discarded. The measured
+ * phase reports throughput, p50/p90/p99/max latency overall and per media
+ * type, GC pauses, and peak heap and RSS. It also writes a JSON report so
+ * runs can be compared over time.
+ *
+ * Usage: IngestionLoadDriver corpusDir [reportFile]
+ * Tuning: oasis.load.rate (docs/s, default 10), oasis.load.concurrency,
+ * oasis.load.durationSeconds (60), oasis.load.warmupSeconds (10),
+ * oasis.load.arrival (poisson|uniform), oasis.load.seed, oasis.load.drainSeconds (120)
+ */
+public class IngestionLoadDriver {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("oasis.load.rate", "10"));
+    private static final int CONCURRENCY = Integer.getInteger("oasis.load.concurrency",
+            Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+    private static final int DURATION_SECONDS = Integer.getInteger("oasis.load.durationSeconds", 60);
+    private static final int WARMUP_SECONDS = Integer.getInteger("oasis.load.warmupSeconds", 10);
+    private static final String ARRIVAL = System.getProperty("oasis.load.arrival", "poisson");
+    private static final long SEED = Long.getLong("oasis.load.seed", 42L);
+    private static final int DRAIN_SECONDS = Integer.getInteger("oasis.load.drainSeconds", 120);
+
+    private static final String ALL = "all";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: IngestionLoadDriver corpusDir [reportFile]");
+            System.exit(2);
+        }
+        Map<String, byte[]> corpus = loadCorpus(Paths.get(args[0]));
+        Path reportFile = Paths.get(args.length > 1 ? args[1] : "ingestion-load-report.json");
+        if (corpus.isEmpty()) {
+            System.out.println("No documents to replay");
+            System.exit(2);
+        }
+        List<String> names = new ArrayList<>(corpus.keySet());
+
+        System.out.printf("Corpus: %d documents from %s%n", corpus.size(), args[0]);
+        System.out.printf("Load: %.1f docs/s %s arrivals, %d workers, %ds warm-up, %ds measured%n", RATE, ARRIVAL,
+                CONCURRENCY, WARMUP_SECONDS, DURATION_SECONDS);
+
+        GcPauseRecorder gcPauses = new GcPauseRecorder();
+        MemorySampler memory = new MemorySampler();
+        memory.start();
+
+        if (WARMUP_SECONDS > 0) {
+            Phase warmup = runPhase(corpus, names, WARMUP_SECONDS, new Random(SEED ^ 0x5DEECE66DL));
+            System.out.printf("warm-up: %d requests, %d failed%n", warmup.series(ALL).count(),
+                    warmup.series(ALL).failures);
+        }
+        gcPauses.reset();
+        memory.reset();
+
+        Phase measured = runPhase(corpus, names, DURATION_SECONDS, new Random(SEED));
+        memory.stop();
+
+        printSummary(measured, gcPauses, memory);
+        ObjectNode report = buildReport(corpus, args[0], measured, gcPauses, memory);
+        Files.write(reportFile, new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValueAsBytes(report));
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+    }
+
+    private static Phase runPhase(Map<String, byte[]> corpus, List<String> names, int seconds, Random random)
+            throws InterruptedException {
+        AtomicInteger workerIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(CONCURRENCY, task -> {
+            Thread thread = new Thread(task, "load-worker-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Phase phase = new Phase();
+        boolean poisson = !"uniform".equalsIgnoreCase(ARRIVAL);
+        double meanGapNanos = 1e9 / RATE;
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        double intended = start;
+        while (intended < end) {
+            long scheduledAt = (long) intended;
+            long now;
+            while ((now = System.nanoTime()) < scheduledAt) {
+                LockSupport.parkNanos(scheduledAt - now);
+            }
+            phase.maxScheduleLagNanos = Math.max(phase.maxScheduleLagNanos, now - scheduledAt);
+
+            String name = names.get(random.nextInt(names.size()));
+            byte[] content = corpus.get(name);
+            phase.submitted++;
+            workers.execute(() -> {
+                long begin = System.nanoTime();
+                String mediaType = null;
+                boolean ok;
+                try {
+                    DocumentExtractionResult result = InteropBridge.extractContent(content, name);
+                    ok = result.isExtractionSuccessful();
+                    mediaType = result.getContentType();
+                    result.release();
+                } catch (Exception | Error e) {
+                    ok = false;
+                }
+                long done = System.nanoTime();
+                phase.record(mediaType(mediaType, name), done - scheduledAt, done - begin, ok);
+            });
+            // The next arrival is fixed by the schedule, not by when this one completes
+            intended += poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+        phase.scheduleEndNanos = System.nanoTime();
+
+        workers.shutdown();
+        if (!workers.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+            phase.abandoned = workers.shutdownNow().size();
+        }
+        phase.elapsedNanos = Math.max(end, phase.lastCompletionNanos.get()) - start;
+        return phase;
+    }
+
+    private static String mediaType(String contentType, String fileName) {
+        if (contentType != null && !contentType.isEmpty()) {
+            int parameters = contentType.indexOf(';');
+            return (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim();
+        }
+        int dot = fileName.lastIndexOf('.');
+        return "unknown/" + (dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "none");
+    }
+
+    private static void printSummary(Phase phase, GcPauseRecorder gcPauses, MemorySampler memory) {
+        Series all = phase.series(ALL);
+        double seconds = phase.elapsedNanos / 1e9;
+        System.out.printf("%nsubmitted=%d completed=%d failed=%d abandoned=%d  throughput=%.2f docs/s  "
+                + "max schedule lag=%.1f ms%n", phase.submitted, all.count(), all.failures, phase.abandoned,
+                all.count() / seconds, phase.maxScheduleLagNanos / 1e6);
+        System.out.printf("%-72s %7s %6s %9s %9s %9s %9s %9s%n", "media type", "count", "failed", "p50 ms",
+                "p90 ms", "p99 ms", "max ms", "svc p50");
+        for (Map.Entry<String, Series> entry : phase.sortedSeries().entrySet()) {
+            Series series = entry.getValue();
+            long[] latency = series.sortedLatencies();
+            long[] service = series.sortedServiceTimes();
+            System.out.printf("%-72s %7d %6d %9.1f %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), latency.length,
+                    series.failures, millis(percentile(latency, 50)), millis(percentile(latency, 90)),
+                    millis(percentile(latency, 99)), millis(percentile(latency, 100)),
+                    millis(percentile(service, 50)));
+        }
+        System.out.printf("GC pauses: %d, total %.1f ms, max %.1f ms%n", gcPauses.count(), gcPauses.totalMillis(),
+                gcPauses.maxMillis());
+        System.out.printf("Peak heap used %.1f MB of %.1f MB max; peak RSS %.1f MB (process high-water %.1f MB)%n",
+                memory.peakHeapBytes / 1048576.0, Runtime.getRuntime().maxMemory() / 1048576.0,
+                memory.peakRssBytes / 1048576.0, MemorySampler.readStatusBytes("VmHWM:") / 1048576.0);
+    }
+
+    private static ObjectNode buildReport(Map<String, byte[]> corpus, String source, Phase phase,
+            GcPauseRecorder gcPauses, MemorySampler memory) {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("timestamp", Instant.now().toString());
+
+        ObjectNode environment = report.putObject("environment");
+        environment.put("javaVersion", System.getProperty("java.version"));
+        environment.put("vmName", System.getProperty("java.vm.name"));
+        environment.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        environment.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        ArrayNode collectors = environment.putArray("garbageCollectors");
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectors.add(collector.getName());
+        }
+
+        ObjectNode config = report.putObject("config");
+        config.put("corpus", source);
+        config.put("documents", corpus.size());
+        config.put("corpusBytes", corpus.values().stream().mapToLong(bytes -> bytes.length).sum());
+        config.put("ratePerSecond", RATE);
+        config.put("arrival", ARRIVAL);
+        config.put("concurrency", CONCURRENCY);
+        config.put("warmupSeconds", WARMUP_SECONDS);
+        config.put("durationSeconds", DURATION_SECONDS);
+        config.put("seed", SEED);
+
+        Series all = phase.series(ALL);
+        ObjectNode totals = report.putObject("totals");
+        totals.put("submitted", phase.submitted);
+        totals.put("completed", all.count());
+        totals.put("failed", all.failures);
+        totals.put("abandoned", phase.abandoned);
+        totals.put("elapsedSeconds", phase.elapsedNanos / 1e9);
+        totals.put("throughputPerSecond", all.count() / (phase.elapsedNanos / 1e9));
+        totals.put("maxScheduleLagMillis", phase.maxScheduleLagNanos / 1e6);
+
+        ObjectNode latency = report.putObject("latencyMillis");
+        for (Map.Entry<String, Series> entry : phase.sortedSeries().entrySet()) {
+            Series series = entry.getValue();
+            long[] latencies = series.sortedLatencies();
+            long[] service = series.sortedServiceTimes();
+            ObjectNode node = latency.putObject(entry.getKey());
+            node.put("count", latencies.length);
+            node.put("failed", series.failures);
+            node.put("p50", millis(percentile(latencies, 50)));
+            node.put("p90", millis(percentile(latencies, 90)));
+            node.put("p99", millis(percentile(latencies, 99)));
+            node.put("max", millis(percentile(latencies, 100)));
+            node.put("serviceP50", millis(percentile(service, 50)));
+            node.put("serviceP99", millis(percentile(service, 99)));
+        }
+
+        ObjectNode gc = report.putObject("gc");
+        gc.put("pauses", gcPauses.count());
+        gc.put("totalPauseMillis", gcPauses.totalMillis());
+        gc.put("maxPauseMillis", gcPauses.maxMillis());
+        gc.put("pauseShare", gcPauses.totalMillis() / (phase.elapsedNanos / 1e6));
+
+        ObjectNode memoryNode = report.putObject("memory");
+        memoryNode.put("peakHeapUsedBytes", memory.peakHeapBytes);
+        memoryNode.put("peakRssBytes", memory.peakRssBytes);
+        memoryNode.put("processRssHighWaterBytes", MemorySampler.readStatusBytes("VmHWM:"));
+        return report;
+    }
+
+    // Nearest-rank percentile of sorted values; 0 when empty
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Map<String, byte[]> loadCorpus(Path directory) throws IOException {
+        Map<String, byte[]> corpus = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                corpus.put(directory.relativize(file).toString(), Files.readAllBytes(file));
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Results of one scheduled phase
+     */
+    private static final class Phase {
+        final Map<String, Series> series = new ConcurrentHashMap<>();
+        final AtomicLong lastCompletionNanos = new AtomicLong();
+        long submitted;
+        long maxScheduleLagNanos;
+        long scheduleEndNanos;
+        long elapsedNanos;
+        int abandoned;
+
+        void record(String mediaType, long latencyNanos, long serviceNanos, boolean ok) {
+            series(ALL).add(latencyNanos, serviceNanos, ok);
+            series(mediaType).add(latencyNanos, serviceNanos, ok);
+            lastCompletionNanos.accumulateAndGet(System.nanoTime(), Math::max);
+        }
+
+        Series series(String name) {
+            return series.computeIfAbsent(name, key -> new Series());
+        }
+
+        // "all" first, then media types by name
+        Map<String, Series> sortedSeries() {
+            Map<String, Series> sorted = new TreeMap<>((a, b) -> ALL.equals(a) ? (ALL.equals(b) ? 0 : -1)
+                    : ALL.equals(b) ? 1 : a.compareTo(b));
+            sorted.putAll(series);
+            return sorted;
+        }
+    }
+
+    /**
+     * Every sample of one media type; exact percentiles are cheap at load-test sample counts
+     */
+    private static final class Series {
+        private long[] latencies = new long[1024];
+        private long[] serviceTimes = new long[1024];
+        private int size;
+        long failures;
+
+        synchronized void add(long latencyNanos, long serviceNanos, boolean ok) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+                serviceTimes = Arrays.copyOf(serviceTimes, size * 2);
+            }
+            latencies[size] = latencyNanos;
+            serviceTimes[size] = serviceNanos;
+            size++;
+            if (!ok) {
+                failures++;
+            }
+        }
+
+        synchronized int count() {
+            return size;
+        }
+
+        synchronized long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        synchronized long[] sortedServiceTimes() {
+            long[] sorted = Arrays.copyOf(serviceTimes, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Stop-the-world pauses reported through GC notifications; concurrent
+     * cycles run alongside the workers and are not counted
+     */
+    private static final class GcPauseRecorder implements NotificationListener {
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        GcPauseRecorder() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            String name = info.getGcName();
+            if (name.contains("Concurrent") || name.contains("Cycles")
+                    || info.getGcAction().contains("concurrent")) {
+                return;
+            }
+            long duration = info.getGcInfo().getDuration();
+            count++;
+            totalMillis += duration;
+            maxMillis = Math.max(maxMillis, duration);
+        }
+
+        synchronized void reset() {
+            count = 0;
+            totalMillis = 0;
+            maxMillis = 0;
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        synchronized double totalMillis() {
+            return totalMillis;
+        }
+
+        synchronized double maxMillis() {
+            return maxMillis;
+        }
+    }
+
+    /**
+     * Samples heap use and resident set size every 50 ms
+     */
+    private static final class MemorySampler implements Runnable {
+        private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        private final Thread thread = new Thread(this, "load-memory-sampler");
+        private volatile boolean running = true;
+        volatile long peakHeapBytes;
+        volatile long peakRssBytes;
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void reset() {
+            peakHeapBytes = 0;
+            peakRssBytes = 0;
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.interrupt();
+            thread.join(1000);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                peakHeapBytes = Math.max(peakHeapBytes, memoryBean.getHeapMemoryUsage().getUsed());
+                peakRssBytes = Math.max(peakRssBytes, readStatusBytes("VmRSS:"));
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        // A "VmRSS:"-style field of /proc/self/status in bytes, or -1 off Linux
+        static long readStatusBytes(String field) {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                    if (line.startsWith(field)) {
+                        String[] parts = line.substring(field.length()).trim().split("\\s+");
+                        return Long.parseLong(parts[0]) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Not Linux
+            }
+            return -1;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.oasis.document.extractor;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
 
 /**
  * Ballerina-Java interop bridge for type conversion
@@ -50,4 +52,73 @@ public class InteropBridge {
     public static boolean isSupportedFormat(String fileName) {
         return UnifiedDocumentExtractor.isSupportedFormat(fileName);
     }
+
+    // Asynchronous extraction jobs: submit returns a job id immediately so the
+    // HTTP layer can answer 202 and poll or await the result later
+    public static String submitExtraction(byte[] documentData, String fileName, String lane) throws IOException {
+        ExtractionJob.Lane jobLane = "background".equalsIgnoreCase(lane)
+                ? ExtractionJob.Lane.BACKGROUND
+                : ExtractionJob.Lane.INTERACTIVE;
+        return ExtractionJobService.shared().submit(documentData, fileName, jobLane);
+    }
+
+    // Returns QUEUED, RUNNING, SUCCEEDED, FAILED or CANCELLED, or UNKNOWN for expired/unknown ids
+    public static String pollExtraction(String jobId) {
+        ExtractionJob job = ExtractionJobService.shared().poll(jobId);
+        return job != null ? job.getStatusName() : "UNKNOWN";
+    }
+
+    public static boolean cancelExtraction(String jobId) {
+        return ExtractionJobService.shared().cancel(jobId);
+    }
+
+    // Returns null if the job is still running when the timeout elapses
+    public static DocumentExtractionResult awaitExtraction(String jobId, long timeoutMillis) throws IOException {
+        return ExtractionJobService.shared().await(jobId, timeoutMillis);
+    }
+
+    // Heap budget counters: reserved bytes, throttled/rejected requests, bytes spilled to disk
+    public static Map<String, Object> getExtractionMemoryMetrics() {
+        return ExtractionMemoryBudget.shared().getMetricsMap();
+    }
+
+    // Bulk archive ingestion: iterate the returned handle with hasNext()/next() and close() it when done.
+    // ZIP and TAR bundles are streamed; 7z needs random access so large 7z bundles should be opened by path
+    public static ArchiveExtractor openArchive(byte[] archiveData, String archiveName) {
+        return ArchiveExtractor.open(archiveData, archiveName);
+    }
+
+    public static ArchiveExtractor openArchiveFile(String archivePath) {
+        return ArchiveExtractor.open(Paths.get(archivePath), ArchiveExtractor.DEFAULT_CONCURRENCY,
+                ArchiveExtractor.DEFAULT_MAX_ENTRY_BYTES);
+    }
+
+    // Fast classification from the first pages, for the upload validator and admin UI
+    public static TriageResult triageDocument(byte[] documentData, String fileName) {
+        return UnifiedDocumentExtractor.triage(documentData, fileName);
+    }
+
+    // Format checks from the header bytes, for callers that only know the HTTP content type
+    public static boolean isSupportedContent(byte[] documentData) {
+        return UnifiedDocumentExtractor.isSupportedContent(documentData);
+    }
+
+    public static String detectContentType(byte[] documentData) {
+        return UnifiedDocumentExtractor.detectContentType(documentData);
+    }
+
+    // Spreadsheets: XLSX workbooks are streamed sheet by sheet with typed cells, every sheet becomes a table
+    public static DocumentExtractionResult extractFromExcel(byte[] excelData, String fileName) throws IOException {
+        return UnifiedDocumentExtractor.extractFromExcel(excelData, fileName);
+    }
+
+    // Tax bracket schedules and other tables rebuilt from PDF text layout, with page numbers
+    public static TableInfo[] detectPdfTables(byte[] pdfData) throws IOException {
+        return PdfTableDetector.detect(pdfData).toArray(new TableInfo[0]);
+    }
+
+    // Large PDFs (Acts, gazettes): page ranges stripped concurrently, same text as the sequential strip
+    public static DocumentExtractionResult extractFromPDFParallel(byte[] pdfData, String fileName) throws IOException {
+        return PDFTextExtractor.extractTextParallel(pdfData, fileName);
+    }
 }
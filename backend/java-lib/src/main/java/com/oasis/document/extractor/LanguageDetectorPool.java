@@ -0,0 +1,131 @@
+package com.oasis.document.extractor;
+
+import org.apache.tika.language.detect.LanguageDetector;
+import org.apache.tika.language.detect.LanguageResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of Tika language detectors shared by all extractors
+ *
+ * A LanguageDetector accumulates text between reset() and detect(), so one
+ * instance must never serve two threads at once. Detectors are created
+ * lazily, since each one loads its own language profiles, up to a fixed
+ * maximum; when all of them are busy the caller waits for one to be returned.
+ */
+public final class LanguageDetectorPool {
+    private static final Logger logger = LoggerFactory.getLogger(LanguageDetectorPool.class);
+
+    private static final LanguageDetectorPool SHARED = new LanguageDetectorPool(Integer.getInteger(
+            "oasis.extraction.languageDetectors", Math.max(2, Runtime.getRuntime().availableProcessors())));
+
+    private final int maxDetectors;
+    private final BlockingQueue<LanguageDetector> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private final LongAdder detections = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private volatile boolean unavailable;
+
+    public LanguageDetectorPool(int maxDetectors) {
+        this.maxDetectors = Math.max(1, maxDetectors);
+        this.idle = new ArrayBlockingQueue<>(this.maxDetectors);
+    }
+
+    public static LanguageDetectorPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Language code for the sample, or null when no detector is available or detection fails
+     */
+    public String detect(String sample) {
+        LanguageDetector detector;
+        try {
+            detector = borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (detector == null) {
+            return null;
+        }
+        try {
+            detections.increment();
+            LanguageResult result = detector.detect(sample);
+            return result.getLanguage().isEmpty() ? null : result.getLanguage();
+        } catch (Exception e) {
+            logger.warn("Language detection failed: {}", e.getMessage());
+            return null;
+        } finally {
+            idle.offer(detector);
+        }
+    }
+
+    private LanguageDetector borrow() throws InterruptedException {
+        LanguageDetector detector = idle.poll();
+        if (detector != null || unavailable) {
+            return detector;
+        }
+        int slot = created.get();
+        while (slot < maxDetectors) {
+            if (created.compareAndSet(slot, slot + 1)) {
+                detector = load();
+                if (detector == null) {
+                    created.decrementAndGet();
+                }
+                return detector;
+            }
+            slot = created.get();
+        }
+        waits.increment();
+        // Re-check periodically: if the loads in flight fail, nothing will ever be returned
+        while ((detector = idle.poll(100, TimeUnit.MILLISECONDS)) == null) {
+            if (unavailable) {
+                return null;
+            }
+        }
+        return detector;
+    }
+
+    private LanguageDetector load() {
+        try {
+            LanguageDetector detector = LanguageDetector.getDefaultLanguageDetector();
+            detector.loadModels();
+            return detector;
+        } catch (Exception e) {
+            // No detector implementation on the classpath; stop trying and let callers use their default
+            unavailable = true;
+            logger.warn("Could not initialize language detector: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public int getMaxDetectors() {
+        return maxDetectors;
+    }
+
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    public long getDetectionCount() {
+        return detections.sum();
+    }
+
+    /**
+     * Detections that had to wait for a busy detector
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    public boolean isAvailable() {
+        return !unavailable;
+    }
+}
@@ -42,4 +42,21 @@ public class PDFTextExtractor {
                              fileName, e.getMessage()), e);
         }
     }
+
+    /**
+     * Extract text from PDF by stripping page ranges in parallel
+     * Documents below PdfParallelExtractor.DEFAULT_PARALLEL_PAGE_THRESHOLD pages are stripped sequentially
+     * @param pdfData The PDF content as byte array
+     * @param fileName The original filename for context
+     * @return DocumentExtractionResult with text, layout tables and document information; a corrupted
+     *         document, or one the extraction memory budget rejects, gives an unsuccessful result
+     *         carrying the error message
+     * @throws IOException if the PDF data is null or empty
+     */
+    public static DocumentExtractionResult extractTextParallel(byte[] pdfData, String fileName) throws IOException {
+        if (pdfData == null || pdfData.length == 0) {
+            throw new IOException("Document processing failed: PDF data is null or empty for file: " + fileName);
+        }
+        return PdfParallelExtractor.extract(pdfData, fileName);
+    }
 }
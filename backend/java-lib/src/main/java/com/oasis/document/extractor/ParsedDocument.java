@@ -0,0 +1,82 @@
+package com.oasis.document.extractor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one Tika parse leaves behind for a lazily populated result
+ *
+ * Holds the extracted text and metadata map, plus the table bodies and image
+ * count cut from the HTML rendering of the same parse. Structure and
+ * languages are derived from the text, tables and images from the HTML
+ * leftovers. PDF tables are detected during extraction instead, so the
+ * document bytes are never kept by a result. The leftovers are dropped once
+ * tables and images have been read or the result is released.
+ *
+ * Not thread-safe on its own; the owning {@link DocumentExtractionResult}
+ * serialises access.
+ */
+final class ParsedDocument {
+
+    static final class Markup {
+        static final Markup EMPTY = new Markup(new TableData[0], new ImageData[0]);
+
+        final TableData[] tables;
+        final ImageData[] images;
+
+        Markup(TableData[] tables, ImageData[] images) {
+            this.tables = tables;
+            this.images = images;
+        }
+    }
+
+    private final TikaDocumentExtractor extractor;
+    private final CharSequence text;
+    private final Map<String, String> metadata;
+    private List<String> tableFragments;
+    private int htmlImageCount;
+    private TableData[] pdfTables;
+
+    ParsedDocument(TikaDocumentExtractor extractor, CharSequence text, Map<String, String> metadata,
+            List<String> tableFragments, int htmlImageCount, TableData[] pdfTables) {
+        this.extractor = extractor;
+        this.text = text;
+        this.metadata = metadata;
+        this.tableFragments = tableFragments;
+        this.htmlImageCount = htmlImageCount;
+        this.pdfTables = pdfTables;
+    }
+
+    DocumentStructure structure() {
+        return extractor.extractDocumentStructure(metadata, text);
+    }
+
+    String[] languages() {
+        return extractor.detectLanguages(text);
+    }
+
+    /**
+     * Tables and images from the parse; empty once released
+     */
+    Markup markup() {
+        if (tableFragments == null) {
+            return Markup.EMPTY;
+        }
+        try {
+            TableData[] tables = pdfTables != null ? pdfTables : extractor.extractTables(tableFragments);
+            return new Markup(tables, extractor.extractImageReferences(metadata, htmlImageCount));
+        } finally {
+            release();
+        }
+    }
+
+    TikaExtractionInfo extractionInfo(TableData[] tables, ImageData[] images) {
+        return extractor.createExtractionInfo(metadata, text, tables, images);
+    }
+
+    void release() {
+        tableFragments = null;
+        htmlImageCount = 0;
+        pdfTables = null;
+    }
+}
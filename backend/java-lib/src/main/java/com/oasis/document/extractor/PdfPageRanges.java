@@ -0,0 +1,143 @@
+package com.oasis.document.extractor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs per-page PDF work over contiguous page ranges in parallel
+ *
+ * PDFBox documents are not thread-safe, so every range gets its own
+ * PDDocument loaded from the shared bytes; the copy made to count pages is
+ * reused by the calling thread for the first range. That first copy is
+ * covered by the caller's reservation; each further copy reserves its own
+ * share of the {@link ExtractionMemoryBudget} without waiting, and when the
+ * budget cannot cover a copy the document is split into fewer ranges, down
+ * to a single sequential one. Results come back in page order.
+ */
+final class PdfPageRanges {
+
+    static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("pdf-pages-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    /**
+     * Work over pages first..last (1-based, inclusive) of a document
+     */
+    @FunctionalInterface
+    interface RangeTask<T> {
+        T apply(PDDocument document, int firstPage, int lastPage) throws IOException;
+    }
+
+    private PdfPageRanges() {
+    }
+
+    /**
+     * Split the document into at most {@code pool.getParallelism()} ranges of
+     * at least {@code minPagesPerRange} pages and run the task on each
+     *
+     * @return one result per range, in page order
+     */
+    static <T> List<T> map(byte[] pdfContent, ForkJoinPool pool, int minPagesPerRange,
+            ExtractionMemoryBudget budget, RangeTask<T> task) throws IOException {
+        return map(pdfContent, pool, minPagesPerRange, 0, budget, task);
+    }
+
+    /**
+     * As {@link #map(byte[], ForkJoinPool, int, ExtractionMemoryBudget, RangeTask)}, but documents with
+     * fewer than {@code sequentialBelowPages} pages run as one range on the
+     * calling thread
+     */
+    static <T> List<T> map(byte[] pdfContent, ForkJoinPool pool, int minPagesPerRange, int sequentialBelowPages,
+            ExtractionMemoryBudget budget, RangeTask<T> task) throws IOException {
+        try (PDDocument first = PDDocument.load(pdfContent)) {
+            int pages = first.getNumberOfPages();
+            int wanted = pages < sequentialBelowPages ? 1
+                    : Math.max(1, Math.min(pool.getParallelism(), pages / Math.max(1, minPagesPerRange)));
+            List<ExtractionMemoryBudget.Reservation> copies = new ArrayList<>(wanted - 1);
+            for (int r = 1; r < wanted; r++) {
+                ExtractionMemoryBudget.Reservation copy = budget.tryAcquire(pdfContent.length);
+                if (copy == null) {
+                    break;
+                }
+                copies.add(copy);
+            }
+            int ranges = copies.size() + 1;
+            if (ranges == 1) {
+                List<T> single = new ArrayList<>(1);
+                single.add(task.apply(first, 1, pages));
+                return single;
+            }
+
+            List<ForkJoinTask<T>> forked = new ArrayList<>(ranges - 1);
+            AtomicBoolean failed = new AtomicBoolean();
+            for (int r = 1; r < ranges; r++) {
+                int firstPage = rangeStart(r, ranges, pages);
+                int lastPage = rangeStart(r + 1, ranges, pages) - 1;
+                ExtractionMemoryBudget.Reservation reservation = copies.get(r - 1);
+                try {
+                    forked.add(pool.submit(() -> {
+                        // Every submitted range runs, if only to give its reservation back
+                        try (reservation) {
+                            if (failed.get()) {
+                                return null;
+                            }
+                            try (PDDocument copy = PDDocument.load(pdfContent)) {
+                                return task.apply(copy, firstPage, lastPage);
+                            }
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    // A pool that has been shut down: the ranges already submitted stop early
+                    failed.set(true);
+                    copies.subList(r - 1, copies.size()).forEach(ExtractionMemoryBudget.Reservation::close);
+                    throw e;
+                }
+            }
+
+            List<T> results = new ArrayList<>(ranges);
+            boolean completed = false;
+            try {
+                results.add(task.apply(first, 1, rangeStart(1, ranges, pages) - 1));
+                for (ForkJoinTask<T> range : forked) {
+                    results.add(range.get());
+                }
+                completed = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted during parallel PDF processing", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // The pool wraps a range's IOException in RuntimeExceptions
+                for (Throwable wrapped = cause; wrapped != null; wrapped = wrapped.getCause()) {
+                    if (wrapped instanceof IOException) {
+                        cause = wrapped;
+                        break;
+                    }
+                }
+                throw cause instanceof IOException ? (IOException) cause
+                        : new IOException("Parallel PDF processing failed: " + cause.getMessage(), cause);
+            } finally {
+                // After a failure, ranges that have not started yet return straight away
+                if (!completed) {
+                    failed.set(true);
+                }
+            }
+            return results;
+        }
+    }
+
+    private static int rangeStart(int range, int ranges, int pages) {
+        return 1 + (int) ((long) range * pages / ranges);
+    }
+}
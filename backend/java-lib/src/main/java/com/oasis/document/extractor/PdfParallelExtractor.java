@@ -0,0 +1,192 @@
+package com.oasis.document.extractor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Page-range parallel PDF text extraction
+ *
+ * The document is split into contiguous page ranges that are stripped
+ * concurrently by separate PDFTextStripper instances, and the range texts are
+ * joined in page order. With the default stripper settings used here the
+ * output of a page does not depend on the pages before it, so the merged text
+ * equals a single PDFTextStripper run over the whole document; the tests
+ * compare the two on a multi-range document with blank pages at the range
+ * boundaries.
+ * Documents below the page threshold are stripped sequentially, where
+ * loading extra document copies would cost more than it saves. Every range
+ * after the first loads its own copy of the document, reserved from the
+ * extraction memory budget; when the budget is short, fewer ranges run.
+ */
+public final class PdfParallelExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(PdfParallelExtractor.class);
+
+    public static final int DEFAULT_PARALLEL_PAGE_THRESHOLD =
+            Integer.getInteger("oasis.pdf.parallelPageThreshold", 32);
+    // Each range pays for its own document load, so ranges stay at least this long
+    private static final int MIN_PAGES_PER_RANGE = 8;
+
+    private static final TikaDocumentExtractor tikaExtractor = new TikaDocumentExtractor();
+
+    private PdfParallelExtractor() {
+    }
+
+    /**
+     * Text of the whole document, stripped in parallel page ranges
+     *
+     * @param parallelPageThreshold documents with fewer pages are stripped sequentially
+     */
+    public static String extractText(byte[] pdfContent, ForkJoinPool pool, int parallelPageThreshold)
+            throws IOException {
+        List<RangeOutput> ranges = PdfPageRanges.map(pdfContent, pool, MIN_PAGES_PER_RANGE,
+                parallelPageThreshold, ExtractionMemoryBudget.shared(),
+                (document, first, last) -> strip(document, first, last, false));
+        return merge(ranges);
+    }
+
+    /**
+     * Full extraction result from one parallel pass: text, layout tables and document information
+     *
+     * Never throws: a corrupt or encrypted document, or one the memory budget
+     * cannot admit, comes back as an unsuccessful result with the reason.
+     */
+    public static DocumentExtractionResult extract(byte[] pdfContent, String fileName) {
+        if (pdfContent == null || pdfContent.length == 0) {
+            return new DocumentExtractionResult("Document content is empty or null");
+        }
+
+        ExtractionMemoryBudget.Reservation reservation;
+        try {
+            reservation = ExtractionMemoryBudget.shared().acquire(pdfContent.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DocumentExtractionResult("Extraction interrupted while waiting for extraction memory");
+        }
+        if (reservation == null) {
+            return new DocumentExtractionResult(
+                    "Extraction rejected: server is at its extraction memory limit, please retry shortly");
+        }
+
+        try (reservation) {
+            long start = System.nanoTime();
+            List<RangeOutput> ranges = PdfPageRanges.map(pdfContent, PdfPageRanges.POOL, MIN_PAGES_PER_RANGE,
+                    DEFAULT_PARALLEL_PAGE_THRESHOLD, ExtractionMemoryBudget.shared(),
+                    (document, first, last) -> strip(document, first, last, true));
+            String text = merge(ranges);
+            List<TableInfo> tables = new ArrayList<>();
+            for (RangeOutput range : ranges) {
+                tables.addAll(range.tables);
+            }
+
+            Metadata metadata = ranges.get(0).metadata;
+            Map<String, String> metadataMap = tikaExtractor.convertMetadataToMap(metadata);
+            TableData[] tableData = PdfTableDetector.toTableData(tables);
+            TikaExtractionInfo info = new TikaExtractionInfo(PdfParallelExtractor.class.getSimpleName(),
+                    "application/pdf", false, tableData.length > 0, TikaDocumentExtractor.estimateWordCount(text),
+                    null);
+            logger.info("Extracted {} ({} ranges, {} chars, {} tables) in {} ms", fileName, ranges.size(),
+                    text.length(), tableData.length, (System.nanoTime() - start) / 1_000_000);
+            return new DocumentExtractionResult(text, tikaExtractor.extractDocumentStructure(metadataMap, text),
+                    "application/pdf", tikaExtractor.detectLanguages(text), tableData, new ImageData[0],
+                    metadataMap, info);
+        } catch (IOException e) {
+            logger.warn("Parallel PDF extraction failed for {}: {}", fileName, e.getMessage());
+            return new DocumentExtractionResult("Extraction failed: " + e.getMessage());
+        }
+    }
+
+    private static final class RangeOutput {
+        final String text;
+        final List<TableInfo> tables;
+        final Metadata metadata;
+
+        RangeOutput(String text, List<TableInfo> tables, Metadata metadata) {
+            this.text = text;
+            this.tables = tables;
+            this.metadata = metadata;
+        }
+    }
+
+    /**
+     * Text stripper that can also run table detection on each page's glyphs
+     */
+    private static final class RangeStripper extends PDFTextStripper {
+        private final boolean detectTables;
+        final List<TableInfo> tables = new ArrayList<>();
+
+        RangeStripper(boolean detectTables) throws IOException {
+            this.detectTables = detectTables;
+        }
+
+        @Override
+        protected void writePage() throws IOException {
+            super.writePage();
+            if (detectTables) {
+                tables.addAll(PdfTableDetector.tablesOnPage(getCurrentPageNo(), charactersByArticle));
+            }
+        }
+    }
+
+    private static RangeOutput strip(PDDocument document, int firstPage, int lastPage, boolean detectTables)
+            throws IOException {
+        RangeStripper stripper = new RangeStripper(detectTables);
+        stripper.setStartPage(firstPage);
+        stripper.setEndPage(lastPage);
+        StringWriter text = new StringWriter();
+        stripper.writeText(document, text);
+        return new RangeOutput(text.toString(), stripper.tables,
+                firstPage == 1 ? documentMetadata(document) : null);
+    }
+
+    private static String merge(List<RangeOutput> ranges) {
+        int length = 0;
+        for (RangeOutput range : ranges) {
+            length += range.text.length();
+        }
+        StringBuilder merged = new StringBuilder(length);
+        for (RangeOutput range : ranges) {
+            merged.append(range.text);
+        }
+        return merged.toString();
+    }
+
+    /**
+     * Document information dictionary under the keys Tika's PDF parser uses
+     */
+    private static Metadata documentMetadata(PDDocument document) {
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "application/pdf");
+        metadata.set("xmpTPg:NPages", Integer.toString(document.getNumberOfPages()));
+        PDDocumentInformation info = document.getDocumentInformation();
+        setIfPresent(metadata, TikaCoreProperties.TITLE.getName(), info.getTitle());
+        setIfPresent(metadata, TikaCoreProperties.CREATOR.getName(), info.getAuthor());
+        setIfPresent(metadata, TikaCoreProperties.SUBJECT.getName(), info.getSubject());
+        setIfPresent(metadata, "pdf:producer", info.getProducer());
+        setIfPresent(metadata, TikaCoreProperties.CREATED.getName(), isoDate(info.getCreationDate()));
+        setIfPresent(metadata, TikaCoreProperties.MODIFIED.getName(), isoDate(info.getModificationDate()));
+        return metadata;
+    }
+
+    private static void setIfPresent(Metadata metadata, String key, String value) {
+        if (value != null && !value.isBlank()) {
+            metadata.set(key, value.trim());
+        }
+    }
+
+    private static String isoDate(Calendar calendar) {
+        return calendar != null ? calendar.toInstant().toString() : null;
+    }
+}
@@ -0,0 +1,356 @@
+package com.oasis.document.extractor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+/**
+ * Layout-aware table detection for PDFs from PDFBox text positions
+ *
+ * Tika's PDF output carries no table markup, so tables are rebuilt from
+ * geometry: glyphs are grouped into lines by baseline, lines are cut into
+ * segments at gaps wider than a word space, and runs of consecutive
+ * multi-segment lines become table candidates. Column boundaries are the
+ * vertical whitespace channels shared by every row of a candidate, which
+ * works for left-, right- and centre-aligned columns alike. Pages are
+ * processed in parallel page ranges.
+ */
+public final class PdfTableDetector {
+    private static final Logger logger = LoggerFactory.getLogger(PdfTableDetector.class);
+
+    /** Fewer rows than this (header included) is not reported as a table */
+    public static final int MIN_ROWS = 3;
+    /** Pages per parallel range; detection is cheap per page, so ranges are kept coarse */
+    private static final int MIN_PAGES_PER_RANGE = 4;
+
+    // A gap wider than this many space widths separates two cells on a line
+    private static final float CELL_GAP_SPACES = 2.0f;
+    // Lines further apart than this many line heights end a table
+    private static final float MAX_ROW_GAP_LINES = 2.5f;
+    // A cell wrapped over more lines than this is taken as prose between two tables
+    private static final int MAX_WRAPPED_LINES = 2;
+    // At least one column must be mostly short values; long cells in every column means prose
+    private static final int SHORT_CELL_CHARS = 40;
+    private static final Pattern HAS_DIGIT = Pattern.compile(".*\\d.*");
+
+    private PdfTableDetector() {
+    }
+
+    /**
+     * Detect tables on every page, using the shared PDF page pool
+     */
+    public static List<TableInfo> detect(byte[] pdfContent) throws IOException {
+        return detect(pdfContent, PdfPageRanges.POOL);
+    }
+
+    /**
+     * Detect tables on every page using the given pool
+     *
+     * @return tables in page order; empty for encrypted documents
+     */
+    public static List<TableInfo> detect(byte[] pdfContent, ForkJoinPool pool) throws IOException {
+        return detect(pdfContent, pool, ExtractionMemoryBudget.shared());
+    }
+
+    /**
+     * Detect tables on every page; extra document copies for parallel ranges are reserved from the budget
+     */
+    public static List<TableInfo> detect(byte[] pdfContent, ForkJoinPool pool, ExtractionMemoryBudget budget)
+            throws IOException {
+        long start = System.nanoTime();
+        List<List<TableInfo>> perRange;
+        try {
+            perRange = PdfPageRanges.map(pdfContent, pool, MIN_PAGES_PER_RANGE, budget,
+                    PdfTableDetector::detectRange);
+        } catch (InvalidPasswordException e) {
+            return List.of();
+        }
+        List<TableInfo> tables = new ArrayList<>();
+        perRange.forEach(tables::addAll);
+        logger.debug("Detected {} tables in {} ms", tables.size(), (System.nanoTime() - start) / 1_000_000);
+        return tables;
+    }
+
+    /**
+     * Convert detected tables to the TableData shape used by DocumentExtractionResult
+     */
+    public static TableData[] toTableData(List<TableInfo> tables) {
+        TableData[] converted = new TableData[tables.size()];
+        int onPage = 0;
+        for (int i = 0; i < converted.length; i++) {
+            TableInfo table = tables.get(i);
+            onPage = i > 0 && tables.get(i - 1).getPage() == table.getPage() ? onPage + 1 : 1;
+            String[] headers = Arrays.stream(table.getHeaders()).allMatch(String::isEmpty)
+                    ? new String[0] : table.getHeaders();
+            converted[i] = new TableData(table.getData(), headers,
+                    "Page " + table.getPage() + " table " + onPage);
+        }
+        return converted;
+    }
+
+    private static List<TableInfo> detectRange(PDDocument document, int firstPage, int lastPage)
+            throws IOException {
+        GlyphCollector collector = new GlyphCollector();
+        collector.setStartPage(firstPage);
+        collector.setEndPage(lastPage);
+        collector.writeText(document, Writer.nullWriter());
+        return collector.tables;
+    }
+
+    /**
+     * Takes each page's glyphs after PDFBox has removed overlapping duplicates
+     * and runs table detection on them instead of writing text
+     */
+    private static final class GlyphCollector extends PDFTextStripper {
+        final List<TableInfo> tables = new ArrayList<>();
+
+        GlyphCollector() throws IOException {
+            super();
+        }
+
+        @Override
+        protected void writePage() {
+            tables.addAll(tablesOnPage(getCurrentPageNo(), charactersByArticle));
+        }
+    }
+
+    /**
+     * Tables on one page from a text stripper's per-article glyph lists
+     */
+    static List<TableInfo> tablesOnPage(int page, List<List<TextPosition>> charactersByArticle) {
+        List<TextPosition> glyphs = new ArrayList<>();
+        for (List<TextPosition> article : charactersByArticle) {
+            for (TextPosition glyph : article) {
+                if (!glyph.getUnicode().isBlank()) {
+                    glyphs.add(glyph);
+                }
+            }
+        }
+        List<TableInfo> tables = new ArrayList<>();
+        for (String[][] rows : findTables(glyphs)) {
+            tables.add(toTableInfo(page, rows));
+        }
+        return tables;
+    }
+
+    /**
+     * Run of glyphs on one line with no cell-sized gap inside
+     */
+    private static final class Segment {
+        final StringBuilder text = new StringBuilder();
+        float x0;
+        float x1;
+    }
+
+    private static final class Line {
+        final float baseline;
+        final float height;
+        final List<Segment> segments;
+
+        Line(float baseline, float height, List<Segment> segments) {
+            this.baseline = baseline;
+            this.height = height;
+            this.segments = segments;
+        }
+    }
+
+    private static List<String[][]> findTables(List<TextPosition> glyphs) {
+        List<String[][]> tables = new ArrayList<>();
+        List<Line> lines = toLines(glyphs);
+        int i = 0;
+        while (i < lines.size()) {
+            if (lines.get(i).segments.size() < 2) {
+                i++;
+                continue;
+            }
+            // Grow a candidate over multi-segment lines and up to MAX_WRAPPED_LINES single-segment lines after each
+            int end = i + 1;
+            int lastTabular = i;
+            while (end < lines.size() && end - lastTabular <= MAX_WRAPPED_LINES
+                    && lines.get(end).baseline - lines.get(end - 1).baseline
+                            <= MAX_ROW_GAP_LINES * Math.max(lines.get(end).height, lines.get(end - 1).height)) {
+                if (lines.get(end).segments.size() >= 2) {
+                    lastTabular = end;
+                }
+                end++;
+            }
+            // Trailing single-segment lines are kept too: they may be the wrapped last row
+            buildTables(lines.subList(i, end), tables);
+            i = end;
+        }
+        return tables;
+    }
+
+    private static List<Line> toLines(List<TextPosition> glyphs) {
+        List<TextPosition> sorted = new ArrayList<>(glyphs);
+        sorted.sort(Comparator.comparingDouble(TextPosition::getYDirAdj));
+
+        List<Line> lines = new ArrayList<>();
+        int start = 0;
+        while (start < sorted.size()) {
+            TextPosition anchor = sorted.get(start);
+            float tolerance = Math.max(1f, anchor.getHeightDir() * 0.5f);
+            int end = start + 1;
+            while (end < sorted.size() && sorted.get(end).getYDirAdj() - anchor.getYDirAdj() <= tolerance) {
+                end++;
+            }
+            List<TextPosition> lineGlyphs = new ArrayList<>(sorted.subList(start, end));
+            lineGlyphs.sort(Comparator.comparingDouble(TextPosition::getXDirAdj));
+            float height = 0;
+            for (TextPosition glyph : lineGlyphs) {
+                height = Math.max(height, glyph.getHeightDir());
+            }
+            lines.add(new Line(anchor.getYDirAdj(), Math.max(1f, height), segment(lineGlyphs)));
+            start = end;
+        }
+        return lines;
+    }
+
+    private static List<Segment> segment(List<TextPosition> lineGlyphs) {
+        List<Segment> segments = new ArrayList<>();
+        Segment current = null;
+        float previousEnd = 0;
+        for (TextPosition glyph : lineGlyphs) {
+            float x = glyph.getXDirAdj();
+            float space = glyph.getWidthOfSpace() > 0 ? glyph.getWidthOfSpace() : glyph.getFontSizeInPt() * 0.25f;
+            float gap = x - previousEnd;
+            if (current == null || gap > CELL_GAP_SPACES * space) {
+                current = new Segment();
+                current.x0 = x;
+                segments.add(current);
+            } else if (gap > space * 0.3f) {
+                current.text.append(' ');
+            }
+            current.text.append(glyph.getUnicode());
+            previousEnd = Math.max(previousEnd, x + glyph.getWidthDirAdj());
+            if (current.x1 < previousEnd) {
+                current.x1 = previousEnd;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Column layout from the candidate's multi-segment lines, then rows from all of its lines
+     */
+    private static void buildTables(List<Line> candidate, List<String[][]> tables) {
+        List<float[]> columns = columnChannels(candidate);
+        if (columns.size() < 2) {
+            return;
+        }
+        List<String[]> rows = new ArrayList<>();
+        for (Line line : candidate) {
+            if (line.segments.size() == 1) {
+                // A wrapped cell continues the row above; anything else ends the table here
+                Segment segment = line.segments.get(0);
+                int column = columnOf(segment, columns);
+                if (!rows.isEmpty() && column >= 0 && segment.x1 <= columns.get(column)[1] + 0.5f) {
+                    String[] previous = rows.get(rows.size() - 1);
+                    previous[column] = (previous[column] + " " + segment.text).trim();
+                    continue;
+                }
+                addIfTable(rows, columns.size(), tables);
+                rows = new ArrayList<>();
+                continue;
+            }
+            String[] cells = new String[columns.size()];
+            Arrays.fill(cells, "");
+            for (Segment segment : line.segments) {
+                int column = Math.max(0, columnOf(segment, columns));
+                cells[column] = cells[column].isEmpty() ? segment.text.toString()
+                        : cells[column] + " " + segment.text;
+            }
+            rows.add(cells);
+        }
+        addIfTable(rows, columns.size(), tables);
+    }
+
+    /**
+     * Union of the segments' horizontal extents; each disjoint interval is one column
+     */
+    private static List<float[]> columnChannels(List<Line> candidate) {
+        List<float[]> extents = new ArrayList<>();
+        for (Line line : candidate) {
+            if (line.segments.size() >= 2) {
+                for (Segment segment : line.segments) {
+                    extents.add(new float[] { segment.x0, segment.x1 });
+                }
+            }
+        }
+        extents.sort(Comparator.comparingDouble(extent -> extent[0]));
+        List<float[]> columns = new ArrayList<>();
+        for (float[] extent : extents) {
+            float[] last = columns.isEmpty() ? null : columns.get(columns.size() - 1);
+            if (last != null && extent[0] <= last[1]) {
+                last[1] = Math.max(last[1], extent[1]);
+            } else {
+                columns.add(new float[] { extent[0], extent[1] });
+            }
+        }
+        return columns;
+    }
+
+    private static int columnOf(Segment segment, List<float[]> columns) {
+        int best = -1;
+        float bestOverlap = 0;
+        for (int c = 0; c < columns.size(); c++) {
+            float overlap = Math.min(segment.x1, columns.get(c)[1]) - Math.max(segment.x0, columns.get(c)[0]);
+            if (overlap > bestOverlap) {
+                bestOverlap = overlap;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static void addIfTable(List<String[]> rows, int columnCount, List<String[][]> tables) {
+        if (rows.size() < MIN_ROWS) {
+            return;
+        }
+        for (int c = 0; c < columnCount; c++) {
+            int filled = 0;
+            int shortCells = 0;
+            for (String[] row : rows) {
+                if (!row[c].isEmpty()) {
+                    filled++;
+                    if (row[c].length() <= SHORT_CELL_CHARS) {
+                        shortCells++;
+                    }
+                }
+            }
+            if (filled > 0 && shortCells * 10 >= filled * 6) {
+                tables.add(rows.toArray(new String[0][]));
+                return;
+            }
+        }
+    }
+
+    /**
+     * The first row is a header when it has no figures and the rows below do
+     */
+    private static TableInfo toTableInfo(int page, String[][] rows) {
+        boolean headerHasDigits = Arrays.stream(rows[0]).anyMatch(cell -> HAS_DIGIT.matcher(cell).matches());
+        boolean bodyHasDigits = false;
+        for (int r = 1; r < rows.length && !bodyHasDigits; r++) {
+            bodyHasDigits = Arrays.stream(rows[r]).anyMatch(cell -> HAS_DIGIT.matcher(cell).matches());
+        }
+        if (!headerHasDigits && bodyHasDigits) {
+            return new TableInfo(page, Arrays.copyOfRange(rows, 1, rows.length), rows[0]);
+        }
+        String[] noHeaders = new String[rows[0].length];
+        Arrays.fill(noHeaders, "");
+        return new TableInfo(page, rows, noHeaders);
+    }
+}
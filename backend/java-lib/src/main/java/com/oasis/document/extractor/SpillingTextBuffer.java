@@ -0,0 +1,377 @@
+package com.oasis.document.extractor;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Text sink for Tika content handlers that keeps small documents on the heap
+ * and spills large ones to a memory-mapped temp file
+ *
+ * Characters are buffered in a char array up to the spill threshold. Past it
+ * the buffered text and everything after it is written to a temp file as
+ * UTF-16; on {@link #close()} the file is mapped read-only and the buffer is
+ * served from the mapping, so a 200 MB text layer never becomes a 400 MB
+ * String. The temp file is unlinked as soon as it is mapped; the pages go
+ * away when the mapping is garbage collected.
+ *
+ * The CharSequence view is only available once the buffer is closed.
+ */
+public class SpillingTextBuffer extends Writer implements CharSequence {
+    // A mapping is addressed by int, so a spilled buffer holds at most this many chars
+    private static final long MAX_SPILLED_CHARS = Integer.MAX_VALUE / 2;
+    private static final int STAGING_BYTES = 64 * 1024;
+    private static final int CHUNK_CHARS = 8 * 1024;
+
+    private final int spillThresholdChars;
+    private final ExtractionMemoryBudget budget;
+
+    private char[] memory = new char[1024];
+    private int memoryLength;
+
+    private Path spillFile;
+    private FileChannel channel;
+    private ByteBuffer staging;
+    private CharBuffer stagingChars;
+    private CharBuffer mapped;
+    // Reused to copy String slices once the buffer writes to disk
+    private char[] chunk;
+    private long spilledLength;
+    private boolean closed;
+
+    /**
+     * @param spillThresholdChars chars kept on the heap before spilling
+     * @param budget              budget credited with spilled bytes, or null
+     */
+    public SpillingTextBuffer(int spillThresholdChars, ExtractionMemoryBudget budget) {
+        this.spillThresholdChars = Math.max(1024, spillThresholdChars);
+        this.budget = budget;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Text buffer is closed");
+        }
+        if (channel == null && memoryLength + len <= spillThresholdChars) {
+            ensureMemoryCapacity(memoryLength + len);
+            System.arraycopy(cbuf, off, memory, memoryLength, len);
+            memoryLength += len;
+            return;
+        }
+        prepareSpilledWrite(len);
+        while (len > 0) {
+            int count = Math.min(len, stagingChars.remaining());
+            stagingChars.put(cbuf, off, count);
+            off += count;
+            len -= count;
+            spilledLength += count;
+            if (!stagingChars.hasRemaining()) {
+                flushStaging();
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        // Copies only the slice, never the whole source string
+        if (closed) {
+            throw new IOException("Text buffer is closed");
+        }
+        if (channel == null && memoryLength + len <= spillThresholdChars) {
+            ensureMemoryCapacity(memoryLength + len);
+            str.getChars(off, off + len, memory, memoryLength);
+            memoryLength += len;
+            return;
+        }
+        if (chunk == null) {
+            chunk = new char[CHUNK_CHARS];
+        }
+        while (len > 0) {
+            int count = Math.min(len, CHUNK_CHARS);
+            str.getChars(off, off + count, chunk, 0);
+            write(chunk, 0, count);
+            off += count;
+            len -= count;
+        }
+    }
+
+    private void prepareSpilledWrite(int len) throws IOException {
+        if (channel == null) {
+            startSpill();
+        }
+        if (spilledLength + len > MAX_SPILLED_CHARS) {
+            throw new IOException("Extracted text exceeds " + MAX_SPILLED_CHARS + " characters");
+        }
+    }
+
+    private void ensureMemoryCapacity(int required) {
+        if (required > memory.length) {
+            int grown = Math.max(required, Math.min(spillThresholdChars, memory.length * 2));
+            char[] larger = new char[grown];
+            System.arraycopy(memory, 0, larger, 0, memoryLength);
+            memory = larger;
+        }
+    }
+
+    private void startSpill() throws IOException {
+        spillFile = Files.createTempFile("oasis-extract-", ".utf16");
+        channel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        staging = ByteBuffer.allocateDirect(STAGING_BYTES);
+        stagingChars = staging.asCharBuffer();
+
+        char[] buffered = memory;
+        int bufferedLength = memoryLength;
+        memory = null;
+        memoryLength = 0;
+        for (int off = 0; off < bufferedLength;) {
+            int count = Math.min(bufferedLength - off, stagingChars.remaining());
+            stagingChars.put(buffered, off, count);
+            off += count;
+            spilledLength += count;
+            if (!stagingChars.hasRemaining()) {
+                flushStaging();
+            }
+        }
+    }
+
+    private void flushStaging() throws IOException {
+        staging.position(0).limit(stagingChars.position() * 2);
+        while (staging.hasRemaining()) {
+            channel.write(staging);
+        }
+        staging.clear();
+        stagingChars.clear();
+    }
+
+    /**
+     * Byte view for handlers that only accept an OutputStream
+     *
+     * The handler must encode as UTF-16BE (for example
+     * {@code new ToHTMLContentHandler(buffer.utf16OutputStream(), "UTF-16BE")});
+     * each byte pair is one char, so no decoder is involved.
+     */
+    public OutputStream utf16OutputStream() {
+        return new OutputStream() {
+            private final char[] chars = new char[4096];
+            private int pendingHighByte = -1;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                int count = 0;
+                int end = off + len;
+                int i = off;
+                if (pendingHighByte >= 0 && i < end) {
+                    chars[count++] = (char) ((pendingHighByte << 8) | (bytes[i++] & 0xFF));
+                    pendingHighByte = -1;
+                }
+                while (i + 1 < end) {
+                    chars[count++] = (char) (((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF));
+                    i += 2;
+                    if (count == chars.length) {
+                        SpillingTextBuffer.this.write(chars, 0, count);
+                        count = 0;
+                    }
+                }
+                if (i < end) {
+                    pendingHighByte = bytes[i] & 0xFF;
+                }
+                if (count > 0) {
+                    SpillingTextBuffer.this.write(chars, 0, count);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to do: spilled text is flushed in close() before mapping
+    }
+
+    /**
+     * Seal the buffer; spilled text is mapped and becomes readable
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel == null) {
+            // Results keep the buffer, so give back the slack left by doubling
+            if (memory.length - memoryLength > 1024) {
+                memory = Arrays.copyOf(memory, memoryLength);
+            }
+            return;
+        }
+        try {
+            flushStaging();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, spilledLength * 2).asCharBuffer();
+            if (budget != null) {
+                budget.recordSpill(spilledLength * 2);
+            }
+        } finally {
+            channel.close();
+            channel = null;
+            staging = null;
+            stagingChars = null;
+            chunk = null;
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                // Some platforms refuse to delete a mapped file
+                spillFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Whether the text went to a temp file instead of staying on the heap
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Abandon the buffer, e.g. after a failed parse: an open temp file is
+     * closed and deleted without being mapped, and the text is dropped
+     */
+    public void discard() {
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Deleting the file below is what matters
+            }
+            channel = null;
+            staging = null;
+            stagingChars = null;
+            chunk = null;
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                spillFile.toFile().deleteOnExit();
+            }
+        }
+        release();
+    }
+
+    /**
+     * Drop the text so heap and mapped pages can be reclaimed
+     */
+    public void release() {
+        memory = new char[0];
+        memoryLength = 0;
+        mapped = CharBuffer.allocate(0);
+        spilledLength = 0;
+    }
+
+    /**
+     * Reader over the buffered text without materialising a String
+     */
+    public Reader openReader() {
+        if (mapped == null) {
+            checkReadable();
+            return new CharArrayReader(memory, 0, memoryLength);
+        }
+        CharBuffer view = mapped.duplicate();
+        return new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(len, view.remaining());
+                view.get(cbuf, off, count);
+                return count;
+            }
+
+            @Override
+            public void close() {
+                // The mapping is owned by the buffer
+            }
+        };
+    }
+
+    /**
+     * True when the text is empty or whitespace only
+     */
+    public boolean isBlank() {
+        return isBlank(this);
+    }
+
+    /**
+     * Whitespace test without the copy made by trim()
+     */
+    public static boolean isBlank(CharSequence text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkReadable() {
+        if (!closed && channel != null) {
+            throw new IllegalStateException("Spilled text buffer must be closed before it is read");
+        }
+    }
+
+    @Override
+    public int length() {
+        if (mapped != null) {
+            return mapped.length();
+        }
+        checkReadable();
+        return memoryLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (mapped != null) {
+            return mapped.get(index);
+        }
+        if (index < 0 || index >= memoryLength) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + memoryLength);
+        }
+        return memory[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (mapped != null) {
+            return mapped.subSequence(start, end);
+        }
+        checkReadable();
+        return new String(memory, start, end - start);
+    }
+
+    /**
+     * Materialises the whole text; prefer the CharSequence view or
+     * {@link #openReader()} for large documents
+     */
+    @Override
+    public String toString() {
+        if (mapped != null) {
+            return mapped.toString();
+        }
+        checkReadable();
+        return new String(memory, 0, memoryLength);
+    }
+}
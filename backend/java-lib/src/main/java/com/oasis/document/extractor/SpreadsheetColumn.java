@@ -0,0 +1,157 @@
+package com.oasis.document.extractor;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One column of a {@link SpreadsheetColumnBatch}, stored as typed arrays
+ *
+ * Numbers, dates and booleans live in a primitive double array (dates as the
+ * Excel serial value, booleans as 1/0) and text and error codes in a String
+ * array, so a batch of numeric cells costs no per-cell objects.
+ */
+public class SpreadsheetColumn {
+
+    /** Kind of value held in a cell, or in the whole column when all cells agree */
+    public enum ValueType {
+        EMPTY, NUMBER, DATE, BOOLEAN, TEXT, ERROR, MIXED
+    }
+
+    private static final ValueType[] TYPES = ValueType.values();
+
+    private final int columnIndex;
+    private final byte[] cellTypes;
+    private final double[] numbers;
+    private final String[] texts;
+    private final boolean date1904;
+    private final ValueType valueType;
+
+    SpreadsheetColumn(int columnIndex, byte[] cellTypes, double[] numbers, String[] texts, boolean date1904) {
+        this.columnIndex = columnIndex;
+        this.cellTypes = cellTypes;
+        this.numbers = numbers;
+        this.texts = texts;
+        this.date1904 = date1904;
+        this.valueType = summarize(cellTypes);
+    }
+
+    private static ValueType summarize(byte[] cellTypes) {
+        ValueType result = ValueType.EMPTY;
+        for (byte type : cellTypes) {
+            ValueType cell = TYPES[type];
+            if (cell == ValueType.EMPTY || cell == result) {
+                continue;
+            }
+            if (result != ValueType.EMPTY) {
+                return ValueType.MIXED;
+            }
+            result = cell;
+        }
+        return result;
+    }
+
+    // Getter methods for Ballerina interop
+    /**
+     * Zero-based column position in the sheet (A = 0)
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * Column letters as shown in Excel (A, B, ..., AA)
+     */
+    public String getColumnName() {
+        return columnName(columnIndex);
+    }
+
+    /**
+     * Type shared by every non-empty cell in the batch, MIXED when they differ
+     */
+    public ValueType getValueType() {
+        return valueType;
+    }
+
+    public int getRowCount() {
+        return cellTypes.length;
+    }
+
+    public ValueType getType(int row) {
+        return TYPES[cellTypes[row]];
+    }
+
+    public boolean isEmpty(int row) {
+        return cellTypes[row] == ValueType.EMPTY.ordinal();
+    }
+
+    /**
+     * Numeric value of a NUMBER, DATE (Excel serial) or BOOLEAN (1/0) cell, NaN otherwise
+     */
+    public double getNumber(int row) {
+        return numbers[row];
+    }
+
+    /**
+     * Date value of a DATE cell, or null
+     */
+    public LocalDateTime getDate(int row) {
+        return getType(row) == ValueType.DATE ? DateUtil.getLocalDateTime(numbers[row], date1904) : null;
+    }
+
+    public boolean getBoolean(int row) {
+        return getType(row) == ValueType.BOOLEAN && numbers[row] != 0;
+    }
+
+    /**
+     * Cell value rendered as text: plain decimals, ISO dates, TRUE/FALSE; null for empty cells
+     */
+    public String getText(int row) {
+        switch (getType(row)) {
+            case NUMBER:
+                return formatNumber(numbers[row]);
+            case DATE:
+                LocalDateTime date = getDate(row);
+                return date.toLocalTime().toSecondOfDay() == 0 ? date.toLocalDate().toString() : date.toString();
+            case BOOLEAN:
+                return numbers[row] != 0 ? "TRUE" : "FALSE";
+            case TEXT:
+            case ERROR:
+                return texts[row];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Backing array of numeric values, one per batch row (NaN where the cell is not numeric)
+     */
+    public double[] getNumbers() {
+        return numbers;
+    }
+
+    static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    static String columnName(int columnIndex) {
+        StringBuilder name = new StringBuilder();
+        for (int i = columnIndex + 1; i > 0; i = (i - 1) / 26) {
+            name.insert(0, (char) ('A' + (i - 1) % 26));
+        }
+        return name.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SpreadsheetColumn{column=%s, type=%s, rows=%d}",
+                getColumnName(), valueType, cellTypes.length);
+    }
+}
@@ -0,0 +1,81 @@
+package com.oasis.document.extractor;
+
+/**
+ * A run of consecutive rows from one worksheet, stored column by column, as
+ * emitted by {@link XlsxStreamReader}
+ */
+public class SpreadsheetColumnBatch {
+    private final String sheetName;
+    private final int sheetIndex;
+    private final int batchIndex;
+    private final int[] rowNumbers;
+    private final SpreadsheetColumn[] columns;
+    private final boolean lastInSheet;
+
+    SpreadsheetColumnBatch(String sheetName, int sheetIndex, int batchIndex, int[] rowNumbers,
+            SpreadsheetColumn[] columns, boolean lastInSheet) {
+        this.sheetName = sheetName;
+        this.sheetIndex = sheetIndex;
+        this.batchIndex = batchIndex;
+        this.rowNumbers = rowNumbers;
+        this.columns = columns;
+        this.lastInSheet = lastInSheet;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getSheetName() {
+        return sheetName;
+    }
+
+    public int getSheetIndex() {
+        return sheetIndex;
+    }
+
+    /**
+     * Position of this batch within its sheet, starting at 0
+     */
+    public int getBatchIndex() {
+        return batchIndex;
+    }
+
+    public int getRowCount() {
+        return rowNumbers.length;
+    }
+
+    /**
+     * Zero-based sheet row of each batch row; rows absent from the sheet are not emitted
+     */
+    public int getRowNumber(int row) {
+        return rowNumbers[row];
+    }
+
+    public int[] getRowNumbers() {
+        return rowNumbers;
+    }
+
+    /**
+     * Columns from A up to the rightmost column with a value in this batch,
+     * indexed by column position; null where a column has no value in the batch
+     */
+    public SpreadsheetColumn[] getColumns() {
+        return columns;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public SpreadsheetColumn getColumn(int columnIndex) {
+        return columnIndex < columns.length ? columns[columnIndex] : null;
+    }
+
+    public boolean isLastInSheet() {
+        return lastInSheet;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SpreadsheetColumnBatch{sheet='%s', batch=%d, rows=%d, columns=%d, last=%s}",
+                sheetName, batchIndex, rowNumbers.length, columns.length, lastInSheet);
+    }
+}
@@ -3,16 +3,18 @@ package com.oasis.document.extractor;
 import org.apache.tika.Tika;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.TeeContentHandler;
 import org.apache.tika.sax.ToHTMLContentHandler;
-import org.apache.tika.language.detect.LanguageDetector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -26,23 +28,30 @@ import java.util.regex.Pattern;
 public class TikaDocumentExtractor {
     private static final Logger logger = LoggerFactory.getLogger(TikaDocumentExtractor.class);
 
+    private static final int LANGUAGE_SAMPLE_CHARS = 20000;
+    private static final Pattern PARAGRAPH_DELIMITER = Pattern.compile("\\n\\s*\\n");
+    private static final MediaType PDF = MediaType.application("pdf");
+    private static final Pattern TABLE_PATTERN =
+            Pattern.compile("<table[^>]*>(.*?)</table>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern IMG_PATTERN = Pattern.compile("<img[^>]*>", Pattern.CASE_INSENSITIVE);
+
     private final Parser parser;
+    private final DocumentFormatDetector formatDetector;
     private final Tika tika;
-    private final LanguageDetector languageDetector;
+    private final LanguageDetectorPool languagePool;
+    private final ExtractionMemoryBudget memoryBudget;
 
     public TikaDocumentExtractor() {
+        this(ExtractionMemoryBudget.shared());
+    }
+
+    public TikaDocumentExtractor(ExtractionMemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
         this.parser = new AutoDetectParser();
+        this.formatDetector = new DocumentFormatDetector(parser);
         this.tika = new Tika();
-
-        // Initialize language detector
-        LanguageDetector detector = null;
-        try {
-            detector = LanguageDetector.getDefaultLanguageDetector();
-            detector.loadModels();
-        } catch (Exception e) {
-            logger.warn("Could not initialize language detector: {}", e.getMessage());
-        }
-        this.languageDetector = detector;
+        // Language detectors are stateful and come from the shared pool, so one extractor serves all threads
+        this.languagePool = LanguageDetectorPool.shared();
     }
 
     /**
@@ -57,11 +66,34 @@ public class TikaDocumentExtractor {
             return new DocumentExtractionResult("Document content is empty or null");
         }
 
+        ExtractionMemoryBudget.Reservation reservation;
+        try {
+            reservation = memoryBudget.acquire(documentContent.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DocumentExtractionResult("Extraction interrupted while waiting for extraction memory");
+        }
+        if (reservation == null) {
+            logger.warn("Rejected extraction of {} ({} bytes): extraction memory budget exhausted",
+                    fileName, documentContent.length);
+            return new DocumentExtractionResult(
+                    "Extraction rejected: server is at its extraction memory limit, please retry shortly");
+        }
+
+        try (reservation) {
+            return extractWithinBudget(documentContent, fileName);
+        }
+    }
+
+    private DocumentExtractionResult extractWithinBudget(byte[] documentContent, String fileName) {
+        SpillingTextBuffer htmlBuffer = memoryBudget.newTextBuffer();
+        SpillingTextBuffer textBuffer = memoryBudget.newTextBuffer();
+        boolean textKept = false;
         try {
             logger.info("Starting document extraction for: {}", fileName);
 
-            // Create input stream from byte array
-            InputStream inputStream = new ByteArrayInputStream(documentContent);
+            // Sniff the header bytes once and go straight to the concrete parser
+            MediaType detectedType = DocumentFormatDetector.detect(documentContent);
 
             // Initialize Tika components
             Metadata metadata = new Metadata();
@@ -70,35 +102,35 @@ public class TikaDocumentExtractor {
             ParseContext parseContext = new ParseContext();
             parseContext.set(Parser.class, parser);
 
-            // Create content handlers
-            BodyContentHandler textHandler = new BodyContentHandler(-1); // No limit
-            ToHTMLContentHandler htmlHandler = new ToHTMLContentHandler();
+            // Create content handlers; both sinks spill to disk past the threshold
+            BodyContentHandler textHandler = new BodyContentHandler(textBuffer);
+            ToHTMLContentHandler htmlHandler = new ToHTMLContentHandler(htmlBuffer.utf16OutputStream(), "UTF-16BE");
 
-            logger.info("Created content handlers with no size limit");
+            logger.info("Created spilling content handlers (threshold {} chars)",
+                    memoryBudget.getSpillThresholdChars());
 
-            // Parse document for text content
-            parser.parse(inputStream, textHandler, metadata, parseContext);
-
-            // Parse again for HTML structure (reset stream)
-            inputStream = new ByteArrayInputStream(documentContent);
-            parser.parse(inputStream, htmlHandler, metadata, parseContext);
+            // One parse feeds both the text and the HTML rendering
+            formatDetector.parse(detectedType, documentContent, new TeeContentHandler(textHandler, htmlHandler),
+                    metadata, parseContext);
+            textBuffer.close();
+            htmlBuffer.close();
 
             // Extract basic information
-            String extractedText = textHandler.toString();
-            String htmlContent = htmlHandler.toString();
+            CharSequence extractedText = textBuffer;
+            CharSequence htmlContent = htmlBuffer;
             String contentType = metadata.get(Metadata.CONTENT_TYPE);
 
-            logger.info("Extraction completed - Text length: {}, Content type: {}",
-                    extractedText.length(), contentType);
+            logger.info("Extraction completed - Text length: {}, Content type: {}, spilled: {}",
+                    extractedText.length(), contentType, textBuffer.isSpilled());
 
             // Debug logging for text extraction issues
-            if (extractedText.trim().isEmpty()) {
+            if (SpillingTextBuffer.isBlank(extractedText)) {
                 System.out.println("DEBUG: Empty text extracted! Debugging information:");
                 System.out.println("DEBUG: - Document size: " + documentContent.length + " bytes");
                 System.out.println("DEBUG: - Content type detected: " + contentType);
                 System.out.println("DEBUG: - HTML content length: " + htmlContent.length());
                 System.out.println("DEBUG: - First 500 chars of HTML: " +
-                        (htmlContent.length() > 500 ? htmlContent.substring(0, 500) + "..." : htmlContent));
+                        (htmlContent.length() > 500 ? htmlContent.subSequence(0, 500) + "..." : htmlContent));
 
                 // Log all metadata for debugging
                 System.out.println("DEBUG: Document metadata:");
@@ -155,10 +187,10 @@ public class TikaDocumentExtractor {
             } else {
                 System.out.println("DEBUG: Successfully extracted " + extractedText.length() + " characters of text");
                 System.out.println("DEBUG: Text preview (first 200 chars): " +
-                        (extractedText.length() > 200 ? extractedText.substring(0, 200) + "..." : extractedText));
+                        (extractedText.length() > 200 ? extractedText.subSequence(0, 200) + "..." : extractedText));
             }
 
-            if (extractedText.trim().isEmpty()) {
+            if (SpillingTextBuffer.isBlank(extractedText)) {
                 // Don't immediately fail - provide more information about why extraction failed
                 System.out.println("DEBUG: No text content extracted. Document may be image-based or encrypted.");
                 System.out.println("DEBUG: Document metadata: " + metadata.toString());
@@ -178,64 +210,61 @@ public class TikaDocumentExtractor {
                         new TikaExtractionInfo());
             }
 
-            // Detect languages
-            String[] detectedLanguages = detectLanguages(extractedText);
-
-            // Extract document structure
-            DocumentStructure structure = extractDocumentStructure(metadata, extractedText);
-
-            // Extract tables from HTML content
-            TableData[] tables = extractTables(htmlContent);
-
-            // Extract image references
-            ImageData[] images = extractImageReferences(metadata, htmlContent);
-
-            // Convert metadata to map
+            // Metadata is converted once and shared with the structure
             Map<String, String> metadataMap = convertMetadataToMap(metadata);
 
-            // Create extraction info
-            TikaExtractionInfo extractionInfo = createExtractionInfo(metadata, extractedText, tables, images);
+            // Structure, languages, tables and images are derived when first read. Only the table
+            // bodies and image count outlive the HTML. PDF tables need the document bytes for the
+            // layout fallback, so they are detected now rather than keeping the bytes in the result
+            List<String> tableFragments = extractTableFragments(htmlContent);
+            TableData[] pdfTables = PDF.equals(detectedType) ? extractPdfTables(tableFragments, documentContent,
+                    fileName) : null;
+            ParsedDocument parsed = new ParsedDocument(this, extractedText, metadataMap,
+                    tableFragments, countHtmlImages(htmlContent), pdfTables);
 
             System.out.println("DEBUG: Successfully extracted content from: " + fileName + " (size: " +
-                    extractedText.length() + " chars, tables: " + tables.length + ", images: " + images.length + ")");
+                    extractedText.length() + " chars)");
 
-            return new DocumentExtractionResult(
-                    extractedText, structure, contentType, detectedLanguages,
-                    tables, images, metadataMap, extractionInfo);
+            textKept = extractedText == textBuffer;
+            return new DocumentExtractionResult(extractedText, contentType, metadataMap, parsed);
 
         } catch (Exception e) {
             System.out.println("DEBUG: Error extracting content from document: " + fileName + " - " + e.getMessage());
             e.printStackTrace();
             return new DocumentExtractionResult("Extraction failed: " + e.getMessage());
+        } finally {
+            // Tables and images have been cut out; the HTML rendering is not kept. A failed or
+            // empty parse keeps no text either, so any temp file still open is closed and deleted
+            htmlBuffer.discard();
+            if (!textKept) {
+                textBuffer.discard();
+            }
         }
     }
 
     /**
      * Detect languages in the document text
      */
-    private String[] detectLanguages(String text) {
-        if (languageDetector == null || text.length() < 50) {
+    String[] detectLanguages(CharSequence text) {
+        if (text.length() < 50) {
             return new String[] { "en" }; // Default to English
         }
 
-        try {
-            org.apache.tika.language.detect.LanguageResult result = languageDetector.detect(text);
-            return new String[] { result.getLanguage() };
-        } catch (Exception e) {
-            logger.warn("Language detection failed: {}", e.getMessage());
-            return new String[] { "en" };
-        }
+        // The Optimaize detector only looks at the first 20k chars anyway
+        String sample = text.subSequence(0, Math.min(text.length(), LANGUAGE_SAMPLE_CHARS)).toString();
+        String language = languagePool.detect(sample);
+        return new String[] { language != null ? language : "en" };
     }
 
     /**
-     * Extract document structure from metadata and text
+     * Extract document structure from the metadata map and text
      */
-    private DocumentStructure extractDocumentStructure(Metadata metadata, String text) {
-        String title = getMetadataValue(metadata, TikaCoreProperties.TITLE.getName(), "");
-        String author = getMetadataValue(metadata, TikaCoreProperties.CREATOR.getName(), "");
-        String subject = getMetadataValue(metadata, TikaCoreProperties.SUBJECT.getName(), "");
-        String creationDate = getMetadataValue(metadata, TikaCoreProperties.CREATED.getName(), "");
-        String modificationDate = getMetadataValue(metadata, TikaCoreProperties.MODIFIED.getName(), "");
+    DocumentStructure extractDocumentStructure(Map<String, String> metadataMap, CharSequence text) {
+        String title = metadataMap.getOrDefault(TikaCoreProperties.TITLE.getName(), "");
+        String author = metadataMap.getOrDefault(TikaCoreProperties.CREATOR.getName(), "");
+        String subject = metadataMap.getOrDefault(TikaCoreProperties.SUBJECT.getName(), "");
+        String creationDate = metadataMap.getOrDefault(TikaCoreProperties.CREATED.getName(), "");
+        String modificationDate = metadataMap.getOrDefault(TikaCoreProperties.MODIFIED.getName(), "");
 
         // Extract headers using regex patterns
         String[] headers = extractHeaders(text);
@@ -243,9 +272,6 @@ public class TikaDocumentExtractor {
         // Extract sections using patterns common in tax documents
         String[] sections = extractSections(text);
 
-        // Convert metadata to map
-        Map<String, String> metadataMap = convertMetadataToMap(metadata);
-
         return new DocumentStructure(title, headers, sections, author, subject,
                 creationDate, modificationDate, metadataMap);
     }
@@ -253,7 +279,7 @@ public class TikaDocumentExtractor {
     /**
      * Extract headers from text using regex patterns
      */
-    private String[] extractHeaders(String text) {
+    private String[] extractHeaders(CharSequence text) {
         List<String> headers = new ArrayList<>();
 
         // Pattern for common header formats in tax documents
@@ -272,15 +298,27 @@ public class TikaDocumentExtractor {
     /**
      * Extract sections from text
      */
-    private String[] extractSections(String text) {
+    private String[] extractSections(CharSequence text) {
         List<String> sections = new ArrayList<>();
 
-        // Split by common section delimiters
-        String[] paragraphs = text.split("\\n\\s*\\n");
-
-        for (String paragraph : paragraphs) {
-            paragraph = paragraph.trim();
-            if (paragraph.length() > 50 && paragraph.length() < 500) {
+        // Walk the paragraphs between common section delimiters without splitting the whole text
+        Matcher delimiter = PARAGRAPH_DELIMITER.matcher(text);
+        int start = 0;
+        while (start <= text.length()) {
+            int end = delimiter.find() ? delimiter.start() : text.length();
+            int next = end < text.length() ? delimiter.end() : text.length() + 1;
+            int trimmedStart = start;
+            int trimmedEnd = end;
+            while (trimmedStart < trimmedEnd && text.charAt(trimmedStart) <= ' ') {
+                trimmedStart++;
+            }
+            while (trimmedEnd > trimmedStart && text.charAt(trimmedEnd - 1) <= ' ') {
+                trimmedEnd--;
+            }
+            start = next;
+            int length = trimmedEnd - trimmedStart;
+            if (length > 50 && length < 500) {
+                String paragraph = text.subSequence(trimmedStart, trimmedEnd).toString();
                 // Filter for meaningful sections
                 if (paragraph.matches(".*(?i)(tax|rate|income|deduction|exemption|calculation).*")) {
                     sections.add(paragraph);
@@ -294,18 +332,28 @@ public class TikaDocumentExtractor {
     }
 
     /**
-     * Extract table data from HTML content
+     * Cut the table bodies out of the HTML rendering so the rest of it can be dropped
      */
-    private TableData[] extractTables(String htmlContent) {
-        List<TableData> tables = new ArrayList<>();
+    List<String> extractTableFragments(CharSequence htmlContent) {
+        List<String> fragments = new ArrayList<>();
+        Matcher tableMatcher = TABLE_PATTERN.matcher(htmlContent);
+        while (tableMatcher.find()) {
+            fragments.add(tableMatcher.group(1));
+        }
+        return fragments;
+    }
 
-        // Simple table extraction from HTML
-        Pattern tablePattern = Pattern.compile("<table[^>]*>(.*?)</table>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        Matcher tableMatcher = tablePattern.matcher(htmlContent);
+    /**
+     * Extract table data from HTML table bodies
+     */
+    TableData[] extractTables(List<String> tableFragments) {
+        List<TableData> tables = new ArrayList<>();
 
         int tableIndex = 0;
-        while (tableMatcher.find() && tableIndex < 10) { // Limit to 10 tables
-            String tableHtml = tableMatcher.group(1);
+        for (String tableHtml : tableFragments) {
+            if (tableIndex >= 10) { // Limit to 10 tables
+                break;
+            }
             TableData table = parseHtmlTable(tableHtml, "Table " + (tableIndex + 1));
             if (table.getRowCount() > 0) {
                 tables.add(table);
@@ -389,9 +437,53 @@ public class TikaDocumentExtractor {
     }
 
     /**
-     * Extract image references from metadata and HTML
+     * Tables of a PDF: those in the HTML rendering, else those rebuilt from the text layout
      */
-    private ImageData[] extractImageReferences(Metadata metadata, String htmlContent) {
+    TableData[] extractPdfTables(List<String> tableFragments, byte[] pdfContent, String fileName) {
+        TableData[] tables = extractTables(tableFragments);
+        return tables.length > 0 ? tables : extractLayoutTables(pdfContent, fileName);
+    }
+
+    /**
+     * Tables rebuilt from the PDF text layout, for PDFs whose HTML has none
+     */
+    TableData[] extractLayoutTables(byte[] pdfContent, String fileName) {
+        ExtractionMemoryBudget.Reservation reservation;
+        try {
+            reservation = memoryBudget.acquire(pdfContent.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TableData[0];
+        }
+        if (reservation == null) {
+            logger.warn("Skipped layout table detection for {}: extraction memory budget exhausted", fileName);
+            return new TableData[0];
+        }
+        try (reservation) {
+            return PdfTableDetector.toTableData(PdfTableDetector.detect(pdfContent, PdfPageRanges.POOL,
+                    memoryBudget));
+        } catch (IOException e) {
+            logger.warn("Layout table detection failed for {}: {}", fileName, e.getMessage());
+            return new TableData[0];
+        }
+    }
+
+    /**
+     * Count the image tags in the HTML rendering, up to the number reported
+     */
+    int countHtmlImages(CharSequence htmlContent) {
+        Matcher imgMatcher = IMG_PATTERN.matcher(htmlContent);
+        int count = 0;
+        while (count < 10 && imgMatcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Extract image references from metadata and the HTML image count
+     */
+    ImageData[] extractImageReferences(Map<String, String> metadata, int htmlImageCount) {
         List<ImageData> images = new ArrayList<>();
 
         // Check metadata for image count
@@ -407,14 +499,8 @@ public class TikaDocumentExtractor {
             }
         }
 
-        // Extract images from HTML content
-        Pattern imgPattern = Pattern.compile("<img[^>]*>", Pattern.CASE_INSENSITIVE);
-        Matcher imgMatcher = imgPattern.matcher(htmlContent);
-
-        int imgIndex = 0;
-        while (imgMatcher.find() && imgIndex < 10) {
+        for (int imgIndex = 0; imgIndex < htmlImageCount; imgIndex++) {
             images.add(new ImageData("html_img_" + imgIndex, "html_embedded"));
-            imgIndex++;
         }
 
         return images.toArray(new ImageData[0]);
@@ -423,7 +509,7 @@ public class TikaDocumentExtractor {
     /**
      * Create extraction info from parsed data
      */
-    private TikaExtractionInfo createExtractionInfo(Metadata metadata, String text,
+    TikaExtractionInfo createExtractionInfo(Map<String, String> metadata, CharSequence text,
             TableData[] tables, ImageData[] images) {
         String parsedBy = metadata.get("X-Parsed-By");
         String mediaType = metadata.get(Metadata.CONTENT_TYPE);
@@ -438,19 +524,29 @@ public class TikaDocumentExtractor {
     /**
      * Estimate word count in text
      */
-    private int estimateWordCount(String text) {
-        if (text == null || text.trim().isEmpty()) {
+    static int estimateWordCount(CharSequence text) {
+        if (text == null) {
             return 0;
         }
 
-        String[] words = text.trim().split("\\s+");
-        return words.length;
+        // Same count as trim().split("\\s+") without copying the text
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            boolean space = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return words;
     }
 
     /**
      * Convert Tika metadata to map
      */
-    private Map<String, String> convertMetadataToMap(Metadata metadata) {
+    Map<String, String> convertMetadataToMap(Metadata metadata) {
         Map<String, String> map = new HashMap<>();
 
         for (String name : metadata.names()) {
@@ -463,11 +559,4 @@ public class TikaDocumentExtractor {
         return map;
     }
 
-    /**
-     * Get metadata value with fallback
-     */
-    private String getMetadataValue(Metadata metadata, String key, String defaultValue) {
-        String value = metadata.get(key);
-        return value != null ? value : defaultValue;
-    }
 }
@@ -0,0 +1,120 @@
+package com.oasis.document.extractor;
+
+/**
+ * Quick classification of a document from its first pages, produced by
+ * {@link UnifiedDocumentExtractor#triage(byte[], String)}
+ */
+public class TriageResult {
+    private final String contentType;
+    private final boolean supportedFormat;
+    private final String taxType;
+    private final String language;
+    private final int pageCount;
+    private final int pagesSampled;
+    private final int sampledChars;
+    private final double textDensity;
+    private final boolean imageOnly;
+    private final boolean encrypted;
+    private final boolean complete;
+    private final boolean timedOut;
+    private final long elapsedMillis;
+    private final String errorMessage;
+
+    public TriageResult(String contentType, boolean supportedFormat, String taxType, String language,
+            int pageCount, int pagesSampled, int sampledChars, double textDensity, boolean imageOnly,
+            boolean encrypted, boolean complete, boolean timedOut, long elapsedMillis, String errorMessage) {
+        this.contentType = contentType != null ? contentType : "application/octet-stream";
+        this.supportedFormat = supportedFormat;
+        this.taxType = taxType;
+        this.language = language;
+        this.pageCount = pageCount;
+        this.pagesSampled = pagesSampled;
+        this.sampledChars = sampledChars;
+        this.textDensity = textDensity;
+        this.imageOnly = imageOnly;
+        this.encrypted = encrypted;
+        this.complete = complete;
+        this.timedOut = timedOut;
+        this.elapsedMillis = elapsedMillis;
+        this.errorMessage = errorMessage;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getContentType() {
+        return contentType;
+    }
+
+    public boolean isSupportedFormat() {
+        return supportedFormat;
+    }
+
+    public String getTaxType() {
+        return taxType;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Total pages reported by the document, or -1 when the format does not say
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getPagesSampled() {
+        return pagesSampled;
+    }
+
+    public int getSampledChars() {
+        return sampledChars;
+    }
+
+    /**
+     * Non-whitespace characters per sampled page (per document for unpaged formats)
+     */
+    public double getTextDensity() {
+        return textDensity;
+    }
+
+    /**
+     * True for scanned PDFs and images with no usable text layer
+     */
+    public boolean isImageOnly() {
+        return imageOnly;
+    }
+
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    /**
+     * True when the whole document fit inside the page and character limits
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * True when the latency budget ran out; the other fields describe what was seen so far
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TriageResult{contentType='%s', taxType='%s', language='%s', pages=%d/%d, "
+                + "density=%.1f, imageOnly=%s, encrypted=%s, timedOut=%s, elapsed=%dms}", contentType, taxType,
+                language, pagesSampled, pageCount, textDensity, imageOnly, encrypted, timedOut, elapsedMillis);
+    }
+}
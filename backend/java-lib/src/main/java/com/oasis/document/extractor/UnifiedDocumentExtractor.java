@@ -1,6 +1,10 @@
 package com.oasis.document.extractor;
 
+import org.apache.tika.mime.MediaType;
+
 import java.io.IOException;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Unified document extractor that can handle multiple document formats
@@ -13,6 +17,7 @@ import java.io.IOException;
 public class UnifiedDocumentExtractor {
 
     private static final TikaDocumentExtractor tikaExtractor = new TikaDocumentExtractor();
+    private static final MediaType XLSX_CONTAINER = MediaType.application("x-tika-ooxml");
 
     /**
      * Extract content from any supported document format
@@ -93,6 +98,12 @@ public class UnifiedDocumentExtractor {
         }
 
         try {
+            // XLSX is streamed sheet by sheet; legacy .xls workbooks and OOXML packages
+            // that are not workbooks (a mislabelled .docx or .pptx) still go through Tika
+            if (XLSX_CONTAINER.equals(DocumentFormatDetector.detect(excelData))
+                    && XlsxStreamReader.isWorkbook(excelData)) {
+                return XlsxStreamReader.extract(excelData, fileName, ExtractionMemoryBudget.shared());
+            }
             return tikaExtractor.extractContent(excelData, fileName);
         } catch (Exception e) {
             // Critical application: No fallback processing - fail explicitly
@@ -105,62 +116,99 @@ public class UnifiedDocumentExtractor {
         }
     }
 
+    /** Default triage limits: enough for routing decisions, small enough to answer interactively */
+    public static final int TRIAGE_MAX_PAGES = 3;
+    public static final int TRIAGE_MAX_CHARS = 20000;
+    public static final long TRIAGE_BUDGET_MILLIS = 500;
+
+    /**
+     * Classify a document from its first pages without a full extraction
+     *
+     * @param documentContent The document content as byte array
+     * @param fileName        The original filename
+     * @return TriageResult with content type, tax type, language, page count,
+     *         encryption status and text density
+     */
+    public static TriageResult triage(byte[] documentContent, String fileName) {
+        return triage(documentContent, fileName, TRIAGE_MAX_PAGES, TRIAGE_MAX_CHARS, TRIAGE_BUDGET_MILLIS);
+    }
+
+    /**
+     * Classify a document from at most maxPages pages or maxChars characters
+     *
+     * @param budgetMillis hard latency budget; when it runs out the result
+     *                     describes the part of the document parsed so far
+     */
+    public static TriageResult triage(byte[] documentContent, String fileName, int maxPages, int maxChars,
+            long budgetMillis) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            fileName = "unknown_document";
+        }
+        return DocumentTriage.triage(documentContent, fileName, maxPages, maxChars, budgetMillis);
+    }
+
     /**
      * Enhance extraction result with Sri Lankan tax-specific analysis
      */
     private static DocumentExtractionResult enhanceWithTaxAnalysis(DocumentExtractionResult result) {
         // Add tax-specific keywords and metadata
-        String extractedText = result.getExtractedText();
+        CharSequence extractedText = result.getTextSequence();
 
         // Detect Sri Lankan tax document type
         String documentType = detectSriLankanTaxType(extractedText);
 
-        // Enhance metadata with tax-specific information
-        java.util.Map<String, String> enhancedMetadata = new java.util.HashMap<>(result.getMetadata());
-        enhancedMetadata.put("sri-lanka-tax-type", documentType);
-        enhancedMetadata.put("tax-analysis", "enhanced");
+        // Tax-specific entries go straight into the result's metadata
+        result.putMetadata("sri-lanka-tax-type", documentType);
+        result.putMetadata("tax-analysis", "enhanced");
 
         // Add tax-specific sections if detected
         if (documentType.contains("income_tax")) {
-            enhancedMetadata.put("contains-income-tax-rules", "true");
+            result.putMetadata("contains-income-tax-rules", "true");
         }
         if (documentType.contains("vat")) {
-            enhancedMetadata.put("contains-vat-rules", "true");
+            result.putMetadata("contains-vat-rules", "true");
         }
         if (documentType.contains("paye")) {
-            enhancedMetadata.put("contains-paye-rules", "true");
+            result.putMetadata("contains-paye-rules", "true");
         }
 
-        // Return enhanced result (note: this is a simplified approach)
-        // In a full implementation, you'd create a new result with enhanced data
         return result;
     }
 
+    /**
+     * Sri Lankan tax document types, checked in order; the first match wins
+     */
+    private static final String[][] TAX_TYPE_KEYWORDS = {
+            { "income_tax", "income tax|ආදායම් බදු" },
+            { "vat", "vat|value added tax|වැඩි වටිනාකම් බදු" },
+            { "paye", "paye|pay as you earn" },
+            { "withholding_tax", "withholding tax|wht" },
+            { "nbt", "nbt|nation building tax" },
+            { "sscl", "sscl|social security" },
+            { "regulation", "regulation|act|amendment" }
+    };
+
+    private static final Pattern[] TAX_TYPE_PATTERNS = new Pattern[TAX_TYPE_KEYWORDS.length];
+
+    static {
+        for (int i = 0; i < TAX_TYPE_KEYWORDS.length; i++) {
+            TAX_TYPE_PATTERNS[i] = Pattern.compile(TAX_TYPE_KEYWORDS[i][1],
+                    Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        }
+    }
+
     /**
      * Detect Sri Lankan tax document type from text content
+     * Matches case-insensitively on the CharSequence so spilled text is never
+     * copied into a lower-cased String
      */
-    private static String detectSriLankanTaxType(String text) {
-        String lowerText = text.toLowerCase();
-
-        if (lowerText.contains("income tax") || lowerText.contains("ආදායම් බදු")) {
-            return "income_tax";
-        } else if (lowerText.contains("vat") || lowerText.contains("value added tax") ||
-                lowerText.contains("වැඩි වටිනාකම් බදු")) {
-            return "vat";
-        } else if (lowerText.contains("paye") || lowerText.contains("pay as you earn")) {
-            return "paye";
-        } else if (lowerText.contains("withholding tax") || lowerText.contains("wht")) {
-            return "withholding_tax";
-        } else if (lowerText.contains("nbt") || lowerText.contains("nation building tax")) {
-            return "nbt";
-        } else if (lowerText.contains("sscl") || lowerText.contains("social security")) {
-            return "sscl";
-        } else if (lowerText.contains("regulation") || lowerText.contains("act") ||
-                lowerText.contains("amendment")) {
-            return "regulation";
-        } else {
-            return "general_tax_document";
+    static String detectSriLankanTaxType(CharSequence text) {
+        for (int i = 0; i < TAX_TYPE_PATTERNS.length; i++) {
+            if (TAX_TYPE_PATTERNS[i].matcher(text).find()) {
+                return TAX_TYPE_KEYWORDS[i][0];
+            }
         }
+        return "general_tax_document";
     }
 
     /**
@@ -175,12 +223,27 @@ public class UnifiedDocumentExtractor {
         return fileName.substring(lastDotIndex + 1);
     }
 
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of(getSupportedExtensions());
+
     /**
      * Check if the document content appears to be a supported format
      */
     public static boolean isSupportedFormat(String fileName) {
-        String extension = getFileExtension(fileName).toLowerCase();
-        return extension.matches("pdf|doc|docx|xls|xlsx|ppt|pptx|txt|rtf|odt|ods|odp");
+        return SUPPORTED_EXTENSIONS.contains(getFileExtension(fileName).toLowerCase());
+    }
+
+    /**
+     * Check the document's header bytes rather than its (possibly guessed) name
+     */
+    public static boolean isSupportedContent(byte[] documentContent) {
+        return DocumentFormatDetector.isDirectlySupported(DocumentFormatDetector.detect(documentContent));
+    }
+
+    /**
+     * Media type sniffed from the document's header bytes
+     */
+    public static String detectContentType(byte[] documentContent) {
+        return DocumentFormatDetector.detect(documentContent).toString();
     }
 
     /**
@@ -0,0 +1,16 @@
+package com.oasis.document.extractor;
+
+/**
+ * Word document structure
+ */
+public class WordDocumentStructure {
+    public final String title;
+    public final String[] headers;
+    public final String[] sections;
+
+    public WordDocumentStructure(String title, String[] headers, String[] sections) {
+        this.title = title;
+        this.headers = headers;
+        this.sections = sections;
+    }
+}
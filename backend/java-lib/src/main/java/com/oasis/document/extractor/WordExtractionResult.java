@@ -11,6 +11,8 @@ public class WordExtractionResult {
     public final int estimatedPages;
     public final WordDocumentStructure structure;
     public final List<WordParagraphInfo> paragraphs;
+    public final TableData[] tables;
+    public final ImageData[] images;
     public final Map<String, String> metadata;
     public final boolean success;
     public final String message;
@@ -18,10 +20,20 @@ public class WordExtractionResult {
     public WordExtractionResult(String extractedText, int estimatedPages,
             WordDocumentStructure structure, List<WordParagraphInfo> paragraphs,
             Map<String, String> metadata, boolean success, String message) {
+        this(extractedText, estimatedPages, structure, paragraphs, new TableData[0], new ImageData[0], metadata,
+                success, message);
+    }
+
+    public WordExtractionResult(String extractedText, int estimatedPages,
+            WordDocumentStructure structure, List<WordParagraphInfo> paragraphs,
+            TableData[] tables, ImageData[] images,
+            Map<String, String> metadata, boolean success, String message) {
         this.extractedText = extractedText;
         this.estimatedPages = estimatedPages;
         this.structure = structure;
         this.paragraphs = paragraphs;
+        this.tables = tables;
+        this.images = images;
         this.metadata = metadata;
         this.success = success;
         this.message = message;
@@ -33,35 +45,3 @@ public class WordExtractionResult {
                 success, estimatedPages, extractedText.length());
     }
 }
-
-/**
- * Word document structure
- */
-class WordDocumentStructure {
-    public final String title;
-    public final String[] headers;
-    public final String[] sections;
-
-    public WordDocumentStructure(String title, String[] headers, String[] sections) {
-        this.title = title;
-        this.headers = headers;
-        this.sections = sections;
-    }
-}
-
-/**
- * Word paragraph information
- */
-class WordParagraphInfo {
-    public final int index;
-    public final String text;
-    public final String style;
-    public final int runCount;
-
-    public WordParagraphInfo(int index, String text, String style, int runCount) {
-        this.index = index;
-        this.text = text;
-        this.style = style;
-        this.runCount = runCount;
-    }
-}
@@ -0,0 +1,37 @@
+package com.oasis.document.extractor;
+
+/**
+ * Word paragraph information
+ */
+public class WordParagraphInfo {
+    public final int index;
+    public final String text;
+    public final String style;
+    public final int runCount;
+    /** Outline level from the paragraph style (1 = Heading 1), 0 for body text */
+    public final int headingLevel;
+    /** Index of the enclosing top-level table, -1 outside tables */
+    public final int tableIndex;
+
+    public WordParagraphInfo(int index, String text, String style, int runCount) {
+        this(index, text, style, runCount, 0, -1);
+    }
+
+    public WordParagraphInfo(int index, String text, String style, int runCount, int headingLevel,
+            int tableIndex) {
+        this.index = index;
+        this.text = text;
+        this.style = style;
+        this.runCount = runCount;
+        this.headingLevel = headingLevel;
+        this.tableIndex = tableIndex;
+    }
+
+    public boolean isHeading() {
+        return headingLevel > 0;
+    }
+
+    public boolean isInTable() {
+        return tableIndex >= 0;
+    }
+}
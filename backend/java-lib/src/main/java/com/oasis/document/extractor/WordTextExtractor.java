@@ -1,14 +1,20 @@
 package com.oasis.document.extractor;
 
+import org.apache.tika.mime.MediaType;
+
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Word document text extraction using comprehensive Tika-based extractor
- * Delegates to TikaDocumentExtractor for unified processing
+ * Word document text extraction
+ * DOCX packages are read in a single SAX pass over document.xml; legacy .doc
+ * files and anything else are delegated to TikaDocumentExtractor
  */
 public class WordTextExtractor {
     
     private static final TikaDocumentExtractor tikaExtractor = new TikaDocumentExtractor();
+    private static final MediaType OOXML = MediaType.application("x-tika-ooxml");
 
     /**
      * Extract text from Word document using Apache Tika
@@ -32,6 +38,11 @@ public class WordTextExtractor {
         }
 
         try {
+            WordExtractionResult docx = OOXML.equals(DocumentFormatDetector.detect(wordData))
+                    ? DocxStreamParser.parse(wordData) : null;
+            if (docx != null) {
+                return toDocumentResult(docx);
+            }
             return tikaExtractor.extractContent(wordData, fileName);
         } catch (Exception e) {
             // Critical application: No fallback processing - fail explicitly
@@ -42,4 +53,37 @@ public class WordTextExtractor {
                              fileName, e.getMessage()), e);
         }
     }
+
+    /**
+     * Extract paragraph-level structure from a DOCX document
+     * @param wordData The DOCX content as byte array
+     * @param fileName The original filename for context
+     * @return WordExtractionResult with paragraphs, style-based headings and tables;
+     *         unsuccessful when the content is not a DOCX package
+     * @throws IOException if the package is corrupted
+     */
+    public static WordExtractionResult extractStructure(byte[] wordData, String fileName) throws IOException {
+        if (wordData == null || wordData.length == 0) {
+            throw new IOException("Document processing failed: Word data is null or empty for file: " + fileName);
+        }
+        WordExtractionResult docx = OOXML.equals(DocumentFormatDetector.detect(wordData))
+                ? DocxStreamParser.parse(wordData) : null;
+        if (docx == null) {
+            return new WordExtractionResult("", 0, new WordDocumentStructure("", new String[0], new String[0]),
+                    List.of(), Map.of(), false, "Not a DOCX document: " + fileName);
+        }
+        return docx;
+    }
+
+    private static DocumentExtractionResult toDocumentResult(WordExtractionResult docx) {
+        Map<String, String> metadata = docx.metadata;
+        DocumentStructure structure = new DocumentStructure(docx.structure.title, docx.structure.headers,
+                docx.structure.sections, metadata.get("dc:creator"), metadata.get("dc:subject"),
+                metadata.get("dcterms:created"), metadata.get("dcterms:modified"), metadata);
+        TikaExtractionInfo info = new TikaExtractionInfo(DocxStreamParser.class.getSimpleName(),
+                DocxStreamParser.DOCX_CONTENT_TYPE, docx.images.length > 0, docx.tables.length > 0,
+                TikaDocumentExtractor.estimateWordCount(docx.extractedText), "UTF-8");
+        return new DocumentExtractionResult(docx.extractedText, structure, DocxStreamParser.DOCX_CONTENT_TYPE,
+                tikaExtractor.detectLanguages(docx.extractedText), docx.tables, docx.images, metadata, info);
+    }
 }
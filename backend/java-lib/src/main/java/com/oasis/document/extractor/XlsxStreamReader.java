@@ -0,0 +1,574 @@
+package com.oasis.document.extractor;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event-model XLSX reader that streams worksheets as typed column batches
+ *
+ * Sheet XML is read with SAX straight from the package, so heap use is bounded
+ * by the batch size and does not grow with the row count. Shared strings are
+ * resolved through POI's read-only table, numeric cells whose style carries a
+ * date format come out as DATE, and every sheet in the workbook is read.
+ */
+public final class XlsxStreamReader {
+    private static final Logger logger = LoggerFactory.getLogger(XlsxStreamReader.class);
+
+    public static final int DEFAULT_BATCH_ROWS = 1024;
+
+    /** Rows kept as TableData across the whole workbook; later rows reach the text only */
+    public static final int MAX_TABLE_ROWS = Integer.getInteger("oasis.xlsx.maxTableRows", 10_000);
+
+    private static final String XLSX_CONTENT_TYPE =
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static final String SPREADSHEETML_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    /**
+     * Receives batches in sheet order; throwing aborts the read
+     */
+    @FunctionalInterface
+    public interface BatchHandler {
+        void onBatch(SpreadsheetColumnBatch batch) throws Exception;
+    }
+
+    private XlsxStreamReader() {
+    }
+
+    /**
+     * Whether an OOXML package's main part is a workbook
+     *
+     * Covers .xlsx, .xltx and the macro-enabled .xlsm/.xltm main parts; a DOCX
+     * or PPTX package answers false so the caller can hand it to Tika instead.
+     */
+    static boolean isWorkbook(byte[] packageContent) throws IOException {
+        String type = DocxStreamParser.mainPartContentType(packageContent);
+        return type != null && (type.contains("spreadsheetml") || type.contains("ms-excel"));
+    }
+
+    /**
+     * Stream an in-memory workbook
+     *
+     * The bytes are staged to a temporary file: POI's stream-based package
+     * loader inflates every part into memory, while a file-backed package
+     * inflates each sheet only as it is read.
+     *
+     * @return number of rows emitted across all sheets
+     */
+    public static long read(byte[] workbookContent, int batchRows, BatchHandler handler) throws IOException {
+        if (workbookContent == null || workbookContent.length == 0) {
+            throw new IOException("Workbook content is empty or null");
+        }
+        Path staged = Files.createTempFile("oasis-xlsx-", ".xlsx");
+        try {
+            Files.write(staged, workbookContent);
+            return read(staged, batchRows, handler);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    /**
+     * Stream a workbook file
+     *
+     * @return number of rows emitted across all sheets
+     */
+    public static long read(Path workbookPath, int batchRows, BatchHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(workbookPath.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            reader.setUseReadOnlySharedStringsTable(true);
+            SharedStrings sharedStrings = reader.getSharedStringsTable();
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904 = usesDate1904(reader);
+
+            long rows = 0;
+            int sheetIndex = 0;
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheetData = sheets.next()) {
+                    SheetHandler sheetHandler = new SheetHandler(sheets.getSheetName(), sheetIndex++,
+                            Math.max(1, batchRows), sharedStrings, styles, date1904, handler);
+                    parse(sheetData, sheetHandler);
+                    sheetHandler.finish();
+                    rows += sheetHandler.rowsEmitted;
+                }
+            }
+            logger.info("Streamed {} rows from {} sheets of {}", rows, sheetIndex, workbookPath.getFileName());
+            return rows;
+        } catch (OpenXML4JException e) {
+            throw new IOException("Not a readable XLSX workbook: " + e.getMessage(), e);
+        } catch (SAXException e) {
+            if (e.getCause() instanceof HandlerAbort) {
+                throw handlerFailure((HandlerAbort) e.getCause());
+            }
+            throw new IOException("Malformed worksheet XML: " + e.getMessage(), e);
+        } catch (HandlerAbort e) {
+            throw handlerFailure(e);
+        } catch (RuntimeException e) {
+            // POIXMLException and friends for structurally broken packages
+            throw new IOException("Not a readable XLSX workbook: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Full extraction result for a workbook: one tab-separated text block and
+     * one table per sheet, for every sheet
+     *
+     * The text goes to a spilling buffer, so only the tables grow with the
+     * workbook; callers that cannot hold a whole sheet should use
+     * {@link #read(byte[], int, BatchHandler)} directly.
+     */
+    static DocumentExtractionResult extract(byte[] workbookContent, String fileName, ExtractionMemoryBudget budget)
+            throws IOException {
+        return extract(workbookContent, fileName, budget, MAX_TABLE_ROWS);
+    }
+
+    static DocumentExtractionResult extract(byte[] workbookContent, String fileName, ExtractionMemoryBudget budget,
+            int maxTableRows) throws IOException {
+        ExtractionMemoryBudget.Reservation reservation;
+        try {
+            reservation = budget.acquire(workbookContent.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new DocumentExtractionResult("Extraction interrupted while waiting for extraction memory");
+        }
+        if (reservation == null) {
+            return new DocumentExtractionResult(
+                    "Extraction rejected: server is at its extraction memory limit, please retry shortly");
+        }
+        try (reservation) {
+            return extractWithinBudget(workbookContent, fileName, budget, maxTableRows);
+        }
+    }
+
+    private static DocumentExtractionResult extractWithinBudget(byte[] workbookContent, String fileName,
+            ExtractionMemoryBudget budget, int maxTableRows) throws IOException {
+        SpillingTextBuffer text = budget.newTextBuffer();
+        List<TableData> tables = new ArrayList<>();
+        long[] droppedRows = new long[1];
+        long words;
+        try {
+            words = readInto(workbookContent, text, tables, Math.max(0, maxTableRows), droppedRows);
+        } catch (IOException | RuntimeException e) {
+            text.release();
+            throw e;
+        }
+        text.close();
+
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("Content-Type", XLSX_CONTENT_TYPE);
+        metadata.put("resourceName", fileName);
+        metadata.put("sheet-count", Integer.toString(tables.size()));
+        if (droppedRows[0] > 0) {
+            metadata.put("table-rows-omitted", Long.toString(droppedRows[0]));
+        }
+        TikaExtractionInfo info = new TikaExtractionInfo(XlsxStreamReader.class.getSimpleName(), XLSX_CONTENT_TYPE,
+                false, !tables.isEmpty(), (int) Math.min(Integer.MAX_VALUE, words), null);
+        return new DocumentExtractionResult(text, new DocumentStructure(), XLSX_CONTENT_TYPE,
+                new String[] { "en" }, tables.toArray(new TableData[0]), new ImageData[0], metadata, info);
+    }
+
+    /**
+     * Stream every sheet into the text buffer and tables, returning the word count
+     *
+     * Every row is written to the text buffer as it arrives. Only the first
+     * maxTableRows rows of the workbook are also held for the tables; the
+     * number left out is added to droppedRows.
+     */
+    private static long readInto(byte[] workbookContent, SpillingTextBuffer text, List<TableData> tables,
+            int maxTableRows, long[] droppedRows) throws IOException {
+        long[] words = new long[1];
+        int[] tableRows = new int[1];
+        List<String[]> sheetRows = new ArrayList<>();
+        int[] sheetWidth = new int[1];
+        boolean[] headerRow = new boolean[1];
+
+        read(workbookContent, DEFAULT_BATCH_ROWS, batch -> {
+            SpreadsheetColumn[] columns = batch.getColumns();
+            if (batch.getBatchIndex() == 0) {
+                text.write(batch.getSheetName());
+                text.write('\n');
+                headerRow[0] = batch.getRowCount() > 1 && isLabelRow(columns);
+            }
+            sheetWidth[0] = Math.max(sheetWidth[0], columns.length);
+            for (int row = 0; row < batch.getRowCount(); row++) {
+                String[] cells = new String[columns.length];
+                int lastFilled = -1;
+                for (int c = 0; c < columns.length; c++) {
+                    String cell = columns[c] != null ? columns[c].getText(row) : null;
+                    cells[c] = cell != null ? cell : "";
+                    if (!cells[c].isEmpty()) {
+                        lastFilled = c;
+                        words[0] += cells[c].split("\\s+").length;
+                    }
+                }
+                // Text rows stop at their last value instead of padding out to the widest row
+                for (int c = 0; c <= lastFilled; c++) {
+                    if (c > 0) {
+                        text.write('\t');
+                    }
+                    text.write(cells[c]);
+                }
+                text.write('\n');
+                if (tableRows[0] < maxTableRows) {
+                    sheetRows.add(cells);
+                    tableRows[0]++;
+                } else {
+                    droppedRows[0]++;
+                }
+            }
+            if (batch.isLastInSheet()) {
+                if (!sheetRows.isEmpty()) {
+                    tables.add(toTable(batch.getSheetName(), sheetRows, sheetWidth[0], headerRow[0]));
+                }
+                text.write('\n');
+                sheetRows.clear();
+                sheetWidth[0] = 0;
+            }
+        });
+        return words[0];
+    }
+
+    /**
+     * True when the first row is a full row of text labels
+     */
+    private static boolean isLabelRow(SpreadsheetColumn[] columns) {
+        for (SpreadsheetColumn column : columns) {
+            if (column == null || column.getType(0) != SpreadsheetColumn.ValueType.TEXT) {
+                return false;
+            }
+        }
+        return columns.length > 0;
+    }
+
+    private static TableData toTable(String sheetName, List<String[]> rows, int width, boolean headerRow) {
+        // A label row becomes the header and is dropped from the data, as in the HTML table extraction
+        int first = headerRow ? 1 : 0;
+        String[][] data = new String[rows.size() - first][];
+        for (int i = first; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            if (row.length < width) {
+                int filled = row.length;
+                row = Arrays.copyOf(row, width);
+                Arrays.fill(row, filled, width, "");
+            }
+            data[i - first] = row;
+        }
+        return new TableData(data, headerRow ? rows.get(0) : new String[0], sheetName);
+    }
+
+    private static IOException handlerFailure(HandlerAbort abort) {
+        Throwable cause = abort.getCause();
+        return cause instanceof IOException ? (IOException) cause
+                : new IOException("Batch handler failed: " + cause.getMessage(), cause);
+    }
+
+    private static void parse(InputStream xml, DefaultHandler handler) throws IOException, SAXException {
+        try {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(handler);
+            parser.parse(new InputSource(xml));
+        } catch (ParserConfigurationException e) {
+            throw new IOException("No SAX parser available: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean usesDate1904(XSSFReader reader) throws IOException, OpenXML4JException, SAXException {
+        boolean[] date1904 = new boolean[1];
+        try (InputStream workbook = reader.getWorkbookData()) {
+            parse(workbook, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("workbookPr".equals(localName)) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                    }
+                }
+            });
+        }
+        return date1904[0];
+    }
+
+    /**
+     * Zero-based column index from a cell reference such as "AB12"
+     */
+    static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * Wraps a handler failure so it can travel through the SAX parser
+     */
+    private static final class HandlerAbort extends RuntimeException {
+        HandlerAbort(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * SAX handler for one worksheet part, filling column arrays row by row
+     */
+    private static final class SheetHandler extends DefaultHandler {
+        private static final byte NUMBER = (byte) SpreadsheetColumn.ValueType.NUMBER.ordinal();
+        private static final byte DATE = (byte) SpreadsheetColumn.ValueType.DATE.ordinal();
+        private static final byte BOOLEAN = (byte) SpreadsheetColumn.ValueType.BOOLEAN.ordinal();
+        private static final byte TEXT = (byte) SpreadsheetColumn.ValueType.TEXT.ordinal();
+        private static final byte ERROR = (byte) SpreadsheetColumn.ValueType.ERROR.ordinal();
+
+        private final String sheetName;
+        private final int sheetIndex;
+        private final int batchRows;
+        private final SharedStrings sharedStrings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final BatchHandler handler;
+
+        // Per-style date flag: 0 unknown, 1 date, 2 not a date
+        private byte[] dateStyles = new byte[64];
+
+        private byte[][] columnTypes = new byte[16][];
+        private double[][] columnNumbers = new double[16][];
+        private String[][] columnTexts = new String[16][];
+        private final int[] rowNumbers;
+        private int rowsInBatch;
+        private int widestColumn;
+        private int batchIndex;
+        private long rowsEmitted;
+
+        private int currentRow = -1;
+        private boolean rowHasValue;
+        private int currentColumn;
+        private String cellType;
+        private int cellStyle;
+        private boolean inValue;
+        private boolean inInlineText;
+        private final StringBuilder value = new StringBuilder();
+
+        SheetHandler(String sheetName, int sheetIndex, int batchRows, SharedStrings sharedStrings,
+                StylesTable styles, boolean date1904, BatchHandler handler) {
+            this.sheetName = sheetName;
+            this.sheetIndex = sheetIndex;
+            this.batchRows = batchRows;
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.handler = handler;
+            this.rowNumbers = new int[batchRows];
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (!SPREADSHEETML_NS.equals(uri) && !uri.isEmpty()) {
+                return;
+            }
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    currentRow = r != null ? Integer.parseInt(r) - 1 : currentRow + 1;
+                    currentColumn = -1;
+                    rowHasValue = false;
+                    break;
+                case "c":
+                    String ref = attributes.getValue("r");
+                    currentColumn = ref != null ? columnIndex(ref) : currentColumn + 1;
+                    cellType = attributes.getValue("t");
+                    String style = attributes.getValue("s");
+                    cellStyle = style != null ? Integer.parseInt(style) : 0;
+                    value.setLength(0);
+                    break;
+                case "v":
+                    inValue = true;
+                    break;
+                case "t":
+                    // Inline strings, including every run of rich text, are concatenated
+                    inInlineText = "inlineStr".equals(cellType);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineText) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (!SPREADSHEETML_NS.equals(uri) && !uri.isEmpty()) {
+                return;
+            }
+            switch (localName) {
+                case "v":
+                    inValue = false;
+                    break;
+                case "t":
+                    inInlineText = false;
+                    break;
+                case "c":
+                    endCell();
+                    break;
+                case "row":
+                    endRow();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endCell() {
+            if (value.length() == 0 && !"inlineStr".equals(cellType)) {
+                return; // Styled but empty cell
+            }
+            String raw = value.toString();
+            byte type;
+            double number = Double.NaN;
+            String text = null;
+            if (cellType == null || "n".equals(cellType)) {
+                number = Double.parseDouble(raw);
+                type = isDateStyle(cellStyle) && DateUtil.isValidExcelDate(number) ? DATE : NUMBER;
+            } else if ("s".equals(cellType)) {
+                type = TEXT;
+                text = sharedStrings.getItemAt(Integer.parseInt(raw)).getString();
+            } else if ("b".equals(cellType)) {
+                type = BOOLEAN;
+                number = "1".equals(raw) || "true".equalsIgnoreCase(raw) ? 1 : 0;
+            } else if ("e".equals(cellType)) {
+                type = ERROR;
+                text = raw;
+            } else {
+                // "str" (formula result) and "inlineStr"
+                type = TEXT;
+                text = raw;
+            }
+            if (type == TEXT && text.isEmpty()) {
+                return;
+            }
+            ensureColumn(currentColumn);
+            columnTypes[currentColumn][rowsInBatch] = type;
+            columnNumbers[currentColumn][rowsInBatch] = number;
+            columnTexts[currentColumn][rowsInBatch] = text;
+            widestColumn = Math.max(widestColumn, currentColumn + 1);
+            rowHasValue = true;
+        }
+
+        private void endRow() {
+            if (!rowHasValue) {
+                return; // Formatting-only rows carry nothing to emit
+            }
+            rowNumbers[rowsInBatch++] = currentRow;
+            if (rowsInBatch == batchRows) {
+                flush(false);
+            }
+        }
+
+        void finish() {
+            // Always emitted, so the consumer sees the end of every sheet, even an empty one
+            flush(true);
+        }
+
+        private void flush(boolean last) {
+            int rows = rowsInBatch;
+            SpreadsheetColumn[] columns = new SpreadsheetColumn[widestColumn];
+            for (int c = 0; c < widestColumn; c++) {
+                if (columnTypes[c] == null) {
+                    continue;
+                }
+                byte[] types = columnTypes[c];
+                double[] numbers = columnNumbers[c];
+                String[] texts = columnTexts[c];
+                if (rows < batchRows) {
+                    types = Arrays.copyOf(types, rows);
+                    numbers = Arrays.copyOf(numbers, rows);
+                    texts = Arrays.copyOf(texts, rows);
+                }
+                columns[c] = new SpreadsheetColumn(c, types, numbers, texts, date1904);
+            }
+            SpreadsheetColumnBatch batch = new SpreadsheetColumnBatch(sheetName, sheetIndex, batchIndex++,
+                    Arrays.copyOf(rowNumbers, rows), columns, last);
+
+            // The consumer owns the handed-over arrays; columns are reallocated when next used
+            Arrays.fill(columnTypes, null);
+            Arrays.fill(columnNumbers, null);
+            Arrays.fill(columnTexts, null);
+            widestColumn = 0;
+            rowsInBatch = 0;
+            rowsEmitted += rows;
+
+            try {
+                handler.onBatch(batch);
+            } catch (Exception e) {
+                throw new HandlerAbort(e);
+            }
+        }
+
+        private void ensureColumn(int column) {
+            if (column >= columnTypes.length) {
+                int size = Math.max(column + 1, columnTypes.length * 2);
+                columnTypes = Arrays.copyOf(columnTypes, size);
+                columnNumbers = Arrays.copyOf(columnNumbers, size);
+                columnTexts = Arrays.copyOf(columnTexts, size);
+            }
+            if (columnTypes[column] == null) {
+                columnTypes[column] = new byte[batchRows];
+                double[] numbers = new double[batchRows];
+                Arrays.fill(numbers, Double.NaN);
+                columnNumbers[column] = numbers;
+                columnTexts[column] = new String[batchRows];
+            }
+        }
+
+        private boolean isDateStyle(int styleIndex) {
+            if (styles == null || styleIndex < 0) {
+                return false;
+            }
+            if (styleIndex >= dateStyles.length) {
+                dateStyles = Arrays.copyOf(dateStyles, Math.max(styleIndex + 1, dateStyles.length * 2));
+            }
+            if (dateStyles[styleIndex] == 0) {
+                boolean isDate = false;
+                if (styleIndex < styles.getNumCellStyles()) {
+                    XSSFCellStyle style = styles.getStyleAt(styleIndex);
+                    isDate = style != null
+                            && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+                }
+                dateStyles[styleIndex] = isDate ? (byte) 1 : (byte) 2;
+            }
+            return dateStyles[styleIndex] == 1;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.oasis.document.text;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Income tax bracket candidates assembled from {@link TaxTextLexer} tokens,
+ * one per line that carries a rate
+ *
+ * Follows parseBracketsFromChunk in document_service.bal, but decides the
+ * bounds from token types rather than substring tests:
+ * - "first Rs. X" is [0, X] and "next Rs. X" continues from the previous upper bound,
+ *   so progressive tables ("on the balance") come out as contiguous brackets
+ * - two values with a range marker between, or "exceeding X but not exceeding Y", are [X, Y];
+ *   in "Rs. X - Y" the bare Y after the amount is still the upper bound
+ * - "up to X" is [0, X] and "exceeding X" is [X, open)
+ * - otherwise two values are a range and a single value is an upper bound
+ * Values marked as currency are preferred. Without them, bare numbers of 1,000
+ * or more (or zero) are used, so list numbering and section references are not
+ * taken for bounds. A "/-" after an amount is not read as a range, unlike the
+ * Ballerina "-" substring test.
+ *
+ * Candidates live in primitive arrays and refer to their source line by
+ * offsets, so assembling into a reused instance allocates nothing;
+ * {@link #toJson(CharSequence)} creates the strings for Ballerina.
+ */
+public final class BracketCandidates {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_LINE_VALUES = 8;
+    private static final long MIN_BARE_AMOUNT = 1_000 * TaxTokenBuffer.VALUE_UNIT;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private int count;
+    private int[] lineStarts = new int[16];
+    private int[] lineEnds = new int[16];
+    private long[] minimums = new long[16];
+    private long[] maximums = new long[16];
+    private long[] rates = new long[16];
+    private boolean[] hasMinimums = new boolean[16];
+    private boolean[] hasMaximums = new boolean[16];
+    private final long[] lineValues = new long[MAX_LINE_VALUES];
+
+    private static final class Scratch {
+        final TaxTokenBuffer tokens = new TaxTokenBuffer(256);
+        final BracketCandidates brackets = new BracketCandidates();
+    }
+
+    /**
+     * Parse brackets from a chunk and return the ParsedBracket JSON array
+     * (minIncome, maxIncome, ratePercent, fixedAmount, bracketOrder, sourceLine)
+     */
+    public static String parseBracketsJson(String text) {
+        Scratch scratch = SCRATCH.get();
+        TaxTextLexer.lex(text, scratch.tokens);
+        scratch.brackets.assemble(text, scratch.tokens);
+        return scratch.brackets.toJson(text);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Assemble candidates from tokens lexed from the whole of text
+     */
+    public void assemble(CharSequence text, TaxTokenBuffer tokens) {
+        assemble(text, 0, text.length(), tokens);
+    }
+
+    /**
+     * Assemble candidates from tokens lexed from text[from, to), replacing the contents
+     */
+    public void assemble(CharSequence text, int from, int to, TaxTokenBuffer tokens) {
+        clear();
+        long running = 0;
+        int lineStart = from;
+        int tokenCount = tokens.size();
+        int first = 0;
+        while (first <= tokenCount) {
+            int last = first;
+            while (last < tokenCount && tokens.type(last) != TaxTextLexer.NEWLINE) {
+                last++;
+            }
+            int lineEnd = last < tokenCount ? tokens.start(last) : to;
+            running = assembleLine(text, lineStart, lineEnd, tokens, first, last, running);
+            lineStart = lineEnd + 1;
+            first = last + 1;
+        }
+    }
+
+    // Returns the upper bound that a following "next" bracket continues from
+    private long assembleLine(CharSequence text, int lineStart, int lineEnd, TaxTokenBuffer tokens, int first,
+            int last, long running) {
+        long rate = -1;
+        int values = 0;
+        boolean range = false;
+        boolean upTo = false;
+        boolean exceeding = false;
+        boolean firstBand = false;
+        boolean nextBand = false;
+        boolean balance = false;
+        for (int t = first; t < last; t++) {
+            switch (tokens.type(t)) {
+                case TaxTextLexer.PERCENT:
+                    if (rate < 0) {
+                        rate = tokens.value(t);
+                    }
+                    break;
+                case TaxTextLexer.AMOUNT:
+                    if (values < MAX_LINE_VALUES) {
+                        lineValues[values++] = tokens.value(t);
+                    }
+                    break;
+                case TaxTextLexer.RANGE:
+                    // Only a marker between two values makes a range
+                    if (values == 1 && t + 1 < last && TaxTextLexer.isValue(tokens.type(t + 1))) {
+                        range = true;
+                        // "Rs. X - Y" marks only the first value as currency; Y is the upper bound
+                        if (tokens.type(t + 1) == TaxTextLexer.NUMBER) {
+                            lineValues[values++] = tokens.value(t + 1);
+                        }
+                    }
+                    break;
+                case TaxTextLexer.UP_TO:
+                    upTo = true;
+                    break;
+                case TaxTextLexer.EXCEEDING:
+                    exceeding = true;
+                    break;
+                case TaxTextLexer.FIRST:
+                    firstBand = true;
+                    break;
+                case TaxTextLexer.NEXT:
+                    nextBand = true;
+                    break;
+                case TaxTextLexer.BALANCE:
+                    balance = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (rate < 0) {
+            return running;
+        }
+        if (values == 0) {
+            for (int t = first; t < last && values < MAX_LINE_VALUES; t++) {
+                if (tokens.type(t) == TaxTextLexer.NUMBER) {
+                    long value = tokens.value(t);
+                    if (value == 0 || value >= MIN_BARE_AMOUNT) {
+                        lineValues[values++] = value;
+                    }
+                }
+            }
+            range = false;
+            for (int t = first; t + 2 < last && !range; t++) {
+                range = tokens.type(t) == TaxTextLexer.NUMBER && tokens.type(t + 1) == TaxTextLexer.RANGE
+                        && tokens.type(t + 2) == TaxTextLexer.NUMBER;
+            }
+        }
+
+        boolean hasMinimum = false;
+        boolean hasMaximum = false;
+        long minimum = 0;
+        long maximum = 0;
+        if (firstBand && values >= 1) {
+            hasMinimum = hasMaximum = true;
+            maximum = lineValues[0];
+        } else if (nextBand && values >= 1) {
+            hasMinimum = hasMaximum = true;
+            minimum = running;
+            maximum = running + lineValues[0];
+        } else if (balance && !upTo && values == 0) {
+            hasMinimum = true;
+            minimum = running;
+        } else if (values >= 2 && (range || (exceeding && upTo))) {
+            hasMinimum = hasMaximum = true;
+            minimum = lineValues[0];
+            maximum = lineValues[1];
+        } else if (upTo && values >= 1) {
+            hasMinimum = hasMaximum = true;
+            maximum = lineValues[0];
+        } else if (exceeding && values >= 1) {
+            hasMinimum = true;
+            minimum = lineValues[0];
+        } else if (values >= 2) {
+            hasMinimum = hasMaximum = true;
+            minimum = lineValues[0];
+            maximum = lineValues[1];
+        } else if (values == 1) {
+            hasMaximum = true;
+            maximum = lineValues[0];
+        }
+
+        while (lineStart < lineEnd && Character.isWhitespace(text.charAt(lineStart))) {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && Character.isWhitespace(text.charAt(lineEnd - 1))) {
+            lineEnd--;
+        }
+        add(lineStart, lineEnd, hasMinimum, minimum, hasMaximum, maximum, rate);
+        return hasMaximum ? maximum : running;
+    }
+
+    private void add(int lineStart, int lineEnd, boolean hasMinimum, long minimum, boolean hasMaximum,
+            long maximum, long rate) {
+        if (count == lineStarts.length) {
+            int capacity = count * 2;
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            lineEnds = Arrays.copyOf(lineEnds, capacity);
+            minimums = Arrays.copyOf(minimums, capacity);
+            maximums = Arrays.copyOf(maximums, capacity);
+            rates = Arrays.copyOf(rates, capacity);
+            hasMinimums = Arrays.copyOf(hasMinimums, capacity);
+            hasMaximums = Arrays.copyOf(hasMaximums, capacity);
+        }
+        lineStarts[count] = lineStart;
+        lineEnds[count] = lineEnd;
+        hasMinimums[count] = hasMinimum;
+        minimums[count] = minimum;
+        hasMaximums[count] = hasMaximum;
+        maximums[count] = maximum;
+        rates[count] = rate;
+        count++;
+    }
+
+    /**
+     * Candidates as the ParsedBracket JSON array used by document_service.bal
+     */
+    public String toJson(CharSequence text) {
+        ArrayNode array = MAPPER.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode bracket = array.addObject();
+            if (hasMinimums[i]) {
+                bracket.put("minIncome", TaxTokenBuffer.toDecimal(minimums[i]));
+            } else {
+                bracket.putNull("minIncome");
+            }
+            if (hasMaximums[i]) {
+                bracket.put("maxIncome", TaxTokenBuffer.toDecimal(maximums[i]));
+            } else {
+                bracket.putNull("maxIncome");
+            }
+            bracket.put("ratePercent", TaxTokenBuffer.toDecimal(rates[i]));
+            bracket.putNull("fixedAmount");
+            bracket.put("bracketOrder", i + 1);
+            bracket.put("sourceLine", text.subSequence(lineStarts[i], lineEnds[i]).toString());
+        }
+        return array.toString();
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int lineStart(int index) {
+        return lineStarts[index];
+    }
+
+    public int lineEnd(int index) {
+        return lineEnds[index];
+    }
+
+    public boolean hasMinimum(int index) {
+        return hasMinimums[index];
+    }
+
+    /**
+     * Lower bound in {@link TaxTokenBuffer} fixed-point units
+     */
+    public long minimum(int index) {
+        return minimums[index];
+    }
+
+    public boolean hasMaximum(int index) {
+        return hasMaximums[index];
+    }
+
+    public long maximum(int index) {
+        return maximums[index];
+    }
+
+    /**
+     * Rate in percent, in {@link TaxTokenBuffer} fixed-point units
+     */
+    public long rate(int index) {
+        return rates[index];
+    }
+
+    public BigDecimal ratePercent(int index) {
+        return TaxTokenBuffer.toDecimal(rates[index]);
+    }
+}
@@ -0,0 +1,151 @@
+package com.oasis.document.text;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Output of {@link TextNormalizer}: the normalised text plus a map from its
+ * offsets back to the extracted text
+ *
+ * The map is stored as runs of offsets that advance together, so it costs
+ * two ints per edit rather than one per character. Offsets inside an NFC
+ * rewrite map to the start of the original cluster.
+ */
+public class NormalizedText {
+    private final String text;
+    private final int originalLength;
+    private final int[] runStarts;
+    private final int[] runOriginalStarts;
+    private final int runCount;
+
+    private final int pageCount;
+    private final int removedLines;
+    private final int removedLineChars;
+    private final int furniturePatterns;
+    private final int dehyphenations;
+    private final int collapsedWhitespace;
+    private final int nfcRewrites;
+
+    NormalizedText(String text, int originalLength, int[] runStarts, int[] runOriginalStarts, int runCount,
+            int pageCount, int removedLines, int removedLineChars, int furniturePatterns, int dehyphenations,
+            int collapsedWhitespace, int nfcRewrites) {
+        this.text = text;
+        this.originalLength = originalLength;
+        this.runStarts = runStarts;
+        this.runOriginalStarts = runOriginalStarts;
+        this.runCount = runCount;
+        this.pageCount = pageCount;
+        this.removedLines = removedLines;
+        this.removedLineChars = removedLineChars;
+        this.furniturePatterns = furniturePatterns;
+        this.dehyphenations = dehyphenations;
+        this.collapsedWhitespace = collapsedWhitespace;
+        this.nfcRewrites = nfcRewrites;
+    }
+
+    /**
+     * Offset in the extracted text of the character at a normalised offset
+     */
+    public int toOriginalOffset(int offset) {
+        if (runCount == 0 || offset >= text.length()) {
+            return originalLength;
+        }
+        int low = 0;
+        int high = runCount - 1;
+        offset = Math.max(0, offset);
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (runStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return Math.min(originalLength, runOriginalStarts[low] + offset - runStarts[low]);
+    }
+
+    /**
+     * Exclusive end in the extracted text of a normalised range ending at
+     * an offset, e.g. a chunk's end position
+     */
+    public int toOriginalEnd(int end) {
+        if (end <= 0) {
+            return toOriginalOffset(0);
+        }
+        return Math.min(originalLength, toOriginalOffset(Math.min(end, text.length()) - 1) + 1);
+    }
+
+    // Getter methods for Ballerina interop
+
+    public String getText() {
+        return text;
+    }
+
+    public int getOriginalLength() {
+        return originalLength;
+    }
+
+    public int getNormalizedLength() {
+        return text.length();
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getRemovedLineCount() {
+        return removedLines;
+    }
+
+    public int getRemovedLineChars() {
+        return removedLineChars;
+    }
+
+    public int getFurniturePatternCount() {
+        return furniturePatterns;
+    }
+
+    public int getDehyphenationCount() {
+        return dehyphenations;
+    }
+
+    public int getCollapsedWhitespaceCount() {
+        return collapsedWhitespace;
+    }
+
+    public int getNfcRewriteCount() {
+        return nfcRewrites;
+    }
+
+    public int getOffsetRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Fraction of characters removed
+     */
+    public double getReduction() {
+        return originalLength == 0 ? 0.0 : 1.0 - (double) text.length() / originalLength;
+    }
+
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("originalLength", originalLength);
+        metrics.put("normalizedLength", text.length());
+        metrics.put("reduction", getReduction());
+        metrics.put("pageCount", pageCount);
+        metrics.put("removedLines", removedLines);
+        metrics.put("removedLineChars", removedLineChars);
+        metrics.put("furniturePatterns", furniturePatterns);
+        metrics.put("dehyphenations", dehyphenations);
+        metrics.put("collapsedWhitespace", collapsedWhitespace);
+        metrics.put("nfcRewrites", nfcRewrites);
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NormalizedText{length=%d->%d, removedLines=%d, dehyphenations=%d, nfcRewrites=%d}",
+                originalLength, text.length(), removedLines, dehyphenations, nfcRewrites);
+    }
+}
@@ -0,0 +1,394 @@
+package com.oasis.document.text;
+
+/**
+ * Single-pass lexer for the money, rate and bound vocabulary of tax text
+ *
+ * Replaces the substring-and-replace parsing of extractNumbers,
+ * extractPercent, removeCommas and the rate scans in document_service.bal.
+ * The text is read once, left to right, and typed tokens go into a
+ * caller-owned {@link TaxTokenBuffer}. Numbers are accumulated digit by
+ * digit into fixed-point longs, and keywords are compared in place, so
+ * lexing creates no objects.
+ *
+ * Recognised forms:
+ * - amounts: "Rs. 1,200,000", "LKR 500,000/-", "Rs 5 million", "Rs. 12,00,000/=", and the
+ *   Sinhala and Tamil rupee abbreviations
+ * - percentages: "12%", "12.5 %", "6 per cent", "6 per centum"
+ * - bounds: "up to", "not exceeding", "not more than", "less than", "below", "<=", "≤"
+ *   and "exceeding", "over", "above", "in excess of", "more than", ">", "≥"
+ * - ranges: "–", "—" or "-" between values, and "to" after a value
+ * - progressive tables: "first", "next", "balance" / "remainder"
+ * Dotted and slashed digit runs (25.03.2024, 2.1.3, 2023/2024) are dates,
+ * years of assessment or section numbers, and produce no token.
+ */
+public final class TaxTextLexer {
+    /** Number with a currency marker or a "/-" suffix */
+    public static final int AMOUNT = 1;
+    /** Bare number */
+    public static final int NUMBER = 2;
+    public static final int PERCENT = 3;
+    public static final int UP_TO = 4;
+    public static final int EXCEEDING = 5;
+    public static final int RANGE = 6;
+    public static final int FIRST = 7;
+    public static final int NEXT = 8;
+    public static final int BALANCE = 9;
+    public static final int NEWLINE = 10;
+
+    private static final long UNIT = TaxTokenBuffer.VALUE_UNIT;
+    private static final long MAX_WHOLE = Long.MAX_VALUE / UNIT / 10;
+
+    // Sinhala and Tamil rupee abbreviations (ru)
+    private static final String SINHALA_RUPEE = "\u0DBB\u0DD4";
+    private static final String TAMIL_RUPEE = "\u0BB0\u0BC2";
+
+    private TaxTextLexer() {
+    }
+
+    public static void lex(CharSequence text, TaxTokenBuffer tokens) {
+        lex(text, 0, text.length(), tokens);
+    }
+
+    /**
+     * Lex text[from, to) into the buffer, replacing its contents
+     */
+    public static void lex(CharSequence text, int from, int to, TaxTokenBuffer tokens) {
+        tokens.clear();
+        int currency = -1; // Start of a currency marker still waiting for its number
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                tokens.add(NEWLINE, i, i + 1, 0);
+                currency = -1;
+                i++;
+            } else if (isDigit(c)) {
+                i = lexNumber(text, i, to, currency, tokens);
+                currency = -1;
+            } else if (isWordChar(c)) {
+                int end = wordEnd(text, i, to);
+                if (isCurrency(text, i, end)) {
+                    currency = i;
+                    i = end;
+                } else {
+                    i = lexWord(text, i, end, to, tokens);
+                    currency = -1;
+                }
+            } else {
+                int type = 0;
+                int end = i + 1;
+                switch (c) {
+                    case '\u2012':
+                    case '\u2013':
+                    case '\u2014':
+                        type = RANGE;
+                        break;
+                    case '-':
+                        // Hyphen inside a word (non-resident) is not a range
+                        if (!(i > from && isWordChar(text.charAt(i - 1)) && end < to
+                                && isWordChar(text.charAt(end)))) {
+                            type = RANGE;
+                        }
+                        break;
+                    case '\u2264':
+                        type = UP_TO;
+                        break;
+                    case '\u2265':
+                        type = EXCEEDING;
+                        break;
+                    case '<':
+                    case '>':
+                        type = c == '<' ? UP_TO : EXCEEDING;
+                        if (end < to && text.charAt(end) == '=') {
+                            end++;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                if (type != 0) {
+                    tokens.add(type, i, end, 0);
+                }
+                // "Rs. 500" and "LKR: 500" keep the marker pending across the separator
+                if (c != '.' && c != ':' && !isBlank(c)) {
+                    currency = -1;
+                }
+                i = end;
+            }
+        }
+    }
+
+    private static int lexNumber(CharSequence text, int i, int to, int currency, TaxTokenBuffer tokens) {
+        long whole = 0;
+        boolean overflow = false;
+        int j = i;
+        while (j < to) {
+            char c = text.charAt(j);
+            if (isDigit(c)) {
+                if (whole > MAX_WHOLE) {
+                    overflow = true;
+                } else {
+                    whole = whole * 10 + (c - '0');
+                }
+                j++;
+            } else if (c == ',' && j + 1 < to && isDigit(text.charAt(j + 1))) {
+                j++; // Thousands and lakh grouping
+            } else {
+                break;
+            }
+        }
+
+        long fraction = 0;
+        if (j + 1 < to && text.charAt(j) == '.' && isDigit(text.charAt(j + 1))) {
+            long place = UNIT / 10;
+            j++;
+            while (j < to && isDigit(text.charAt(j))) {
+                fraction += (text.charAt(j) - '0') * place;
+                place /= 10;
+                j++;
+            }
+            if (j + 1 < to && text.charAt(j) == '.' && isDigit(text.charAt(j + 1))) {
+                return skipDigitRun(text, j, to);
+            }
+        }
+        if (j + 1 < to && text.charAt(j) == '/' && isDigit(text.charAt(j + 1))) {
+            return skipDigitRun(text, j, to);
+        }
+        if (overflow) {
+            return j;
+        }
+        long value = whole * UNIT + fraction;
+
+        int k = skipBlanks(text, j, to);
+        if (k < to && isWordChar(text.charAt(k))) {
+            int wordEnd = wordEnd(text, k, to);
+            long multiplier = 0;
+            if (wordEquals(text, k, wordEnd, "million") || wordEquals(text, k, wordEnd, "mn")) {
+                multiplier = 1_000_000L;
+            } else if (wordEquals(text, k, wordEnd, "billion") || wordEquals(text, k, wordEnd, "bn")) {
+                multiplier = 1_000_000_000L;
+            } else if (wordEquals(text, k, wordEnd, "lakh") || wordEquals(text, k, wordEnd, "lakhs")) {
+                multiplier = 100_000L;
+            }
+            if (multiplier != 0) {
+                if (value > Long.MAX_VALUE / multiplier) {
+                    return wordEnd;
+                }
+                value *= multiplier;
+                j = wordEnd;
+                k = skipBlanks(text, j, to);
+            }
+        }
+
+        int start = currency >= 0 ? currency : i;
+        if (k < to && text.charAt(k) == '%') {
+            tokens.add(PERCENT, i, k + 1, value);
+            return k + 1;
+        }
+        if (k < to && isWordChar(text.charAt(k))) {
+            int wordEnd = wordEnd(text, k, to);
+            if (wordEquals(text, k, wordEnd, "percent")) {
+                tokens.add(PERCENT, i, wordEnd, value);
+                return wordEnd;
+            }
+            if (wordEquals(text, k, wordEnd, "per")) {
+                int next = nextWord(text, wordEnd, to);
+                if (next >= 0) {
+                    int nextEnd = wordEnd(text, next, to);
+                    if (wordEquals(text, next, nextEnd, "cent") || wordEquals(text, next, nextEnd, "centum")) {
+                        tokens.add(PERCENT, i, nextEnd, value);
+                        return nextEnd;
+                    }
+                }
+            }
+        }
+        if (j + 1 < to && text.charAt(j) == '/' && (text.charAt(j + 1) == '-' || text.charAt(j + 1) == '=')) {
+            tokens.add(AMOUNT, start, j + 2, value);
+            return j + 2;
+        }
+        tokens.add(currency >= 0 ? AMOUNT : NUMBER, start, j, value);
+        return j;
+    }
+
+    private static int lexWord(CharSequence text, int start, int end, int to, TaxTokenBuffer tokens) {
+        int next;
+        int nextEnd;
+        switch (Character.toLowerCase(text.charAt(start))) {
+            case 'a':
+                if (wordEquals(text, start, end, "above")) {
+                    tokens.add(EXCEEDING, start, end, 0);
+                }
+                return end;
+            case 'b':
+                if (wordEquals(text, start, end, "below")) {
+                    tokens.add(UP_TO, start, end, 0);
+                } else if (wordEquals(text, start, end, "balance")) {
+                    tokens.add(BALANCE, start, end, 0);
+                }
+                return end;
+            case 'e':
+                if (wordEquals(text, start, end, "exceeding") || wordEquals(text, start, end, "exceeds")
+                        || wordEquals(text, start, end, "exceed")) {
+                    tokens.add(EXCEEDING, start, end, 0);
+                }
+                return end;
+            case 'f':
+                if (wordEquals(text, start, end, "first")) {
+                    tokens.add(FIRST, start, end, 0);
+                }
+                return end;
+            case 'i':
+                if (wordEquals(text, start, end, "in") && (next = nextWord(text, end, to)) >= 0
+                        && wordEquals(text, next, nextEnd = wordEnd(text, next, to), "excess")) {
+                    int of = nextWord(text, nextEnd, to);
+                    int ofEnd = of >= 0 ? wordEnd(text, of, to) : -1;
+                    int phraseEnd = of >= 0 && wordEquals(text, of, ofEnd, "of") ? ofEnd : nextEnd;
+                    tokens.add(EXCEEDING, start, phraseEnd, 0);
+                    return phraseEnd;
+                }
+                return end;
+            case 'l':
+                if (wordEquals(text, start, end, "less") && (next = nextWord(text, end, to)) >= 0
+                        && wordEquals(text, next, nextEnd = wordEnd(text, next, to), "than")) {
+                    tokens.add(UP_TO, start, nextEnd, 0);
+                    return nextEnd;
+                }
+                return end;
+            case 'm':
+                if (wordEquals(text, start, end, "more") && (next = nextWord(text, end, to)) >= 0
+                        && wordEquals(text, next, nextEnd = wordEnd(text, next, to), "than")) {
+                    tokens.add(EXCEEDING, start, nextEnd, 0);
+                    return nextEnd;
+                }
+                return end;
+            case 'n':
+                if (wordEquals(text, start, end, "next")) {
+                    tokens.add(NEXT, start, end, 0);
+                    return end;
+                }
+                if (wordEquals(text, start, end, "not") && (next = nextWord(text, end, to)) >= 0) {
+                    nextEnd = wordEnd(text, next, to);
+                    if (wordEquals(text, next, nextEnd, "exceeding") || wordEquals(text, next, nextEnd, "exceed")
+                            || wordEquals(text, next, nextEnd, "exceeds")) {
+                        tokens.add(UP_TO, start, nextEnd, 0);
+                        return nextEnd;
+                    }
+                    boolean more = wordEquals(text, next, nextEnd, "more");
+                    if (more || wordEquals(text, next, nextEnd, "less")) {
+                        int than = nextWord(text, nextEnd, to);
+                        int thanEnd = than >= 0 ? wordEnd(text, than, to) : -1;
+                        if (than >= 0 && wordEquals(text, than, thanEnd, "than")) {
+                            // "not less than X" is a lower bound
+                            tokens.add(more ? UP_TO : EXCEEDING, start, thanEnd, 0);
+                            return thanEnd;
+                        }
+                    }
+                }
+                return end;
+            case 'o':
+                if (wordEquals(text, start, end, "over")) {
+                    tokens.add(EXCEEDING, start, end, 0);
+                }
+                return end;
+            case 'r':
+                if (wordEquals(text, start, end, "remainder") || wordEquals(text, start, end, "remaining")) {
+                    tokens.add(BALANCE, start, end, 0);
+                }
+                return end;
+            case 't':
+                if (wordEquals(text, start, end, "to") && tokens.size() > 0
+                        && isValue(tokens.type(tokens.size() - 1))) {
+                    tokens.add(RANGE, start, end, 0);
+                }
+                return end;
+            case 'u':
+                if (wordEquals(text, start, end, "upto")) {
+                    tokens.add(UP_TO, start, end, 0);
+                } else if (wordEquals(text, start, end, "up") && (next = nextWord(text, end, to)) >= 0
+                        && wordEquals(text, next, nextEnd = wordEnd(text, next, to), "to")) {
+                    tokens.add(UP_TO, start, nextEnd, 0);
+                    return nextEnd;
+                }
+                return end;
+            default:
+                return end;
+        }
+    }
+
+    static boolean isValue(int type) {
+        return type == AMOUNT || type == NUMBER;
+    }
+
+    private static boolean isCurrency(CharSequence text, int start, int end) {
+        return wordEquals(text, start, end, "rs") || wordEquals(text, start, end, "lkr")
+                || wordEquals(text, start, end, "slr") || wordEquals(text, start, end, "rupees")
+                || wordEquals(text, start, end, SINHALA_RUPEE) || wordEquals(text, start, end, TAMIL_RUPEE);
+    }
+
+    // ASCII case-insensitive comparison of text[start, end) with a lower-case word
+    private static boolean wordEquals(CharSequence text, int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int k = 0; k < word.length(); k++) {
+            char c = text.charAt(start + k);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != word.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipDigitRun(CharSequence text, int j, int to) {
+        while (j < to) {
+            char c = text.charAt(j);
+            if (isDigit(c) || ((c == '.' || c == '/') && j + 1 < to && isDigit(text.charAt(j + 1)))) {
+                j++;
+            } else {
+                break;
+            }
+        }
+        return j;
+    }
+
+    // Start of the word after blanks on the same line, or -1
+    private static int nextWord(CharSequence text, int from, int to) {
+        int k = skipBlanks(text, from, to);
+        return k < to && isWordChar(text.charAt(k)) ? k : -1;
+    }
+
+    private static int skipBlanks(CharSequence text, int from, int to) {
+        while (from < to && isBlank(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int wordEnd(CharSequence text, int from, int to) {
+        while (from < to && isWordChar(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\u00A0' || c == '\r';
+    }
+
+    // Letters plus combining marks, so Sinhala and Tamil words are not split at vowel signs
+    private static boolean isWordChar(char c) {
+        if (c < 0x80) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+        int type = Character.getType(c);
+        return Character.isLetter(c) || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK;
+    }
+}
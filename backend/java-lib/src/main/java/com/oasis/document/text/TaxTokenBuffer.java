@@ -0,0 +1,97 @@
+package com.oasis.document.text;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Reusable, growable buffer of {@link TaxTextLexer} tokens held in parallel
+ * primitive arrays
+ *
+ * A token is a type, a [start, end) range in the lexed text and, for
+ * numeric tokens, a fixed-point value with {@link #VALUE_SCALE} decimals
+ * (12.5% is 125000, Rs. 1,200,000 is 12000000000). Clearing keeps the
+ * arrays, so a buffer reused across lines and chunks stops allocating once
+ * it has grown to the largest input.
+ */
+public final class TaxTokenBuffer {
+    /** Decimal digits kept in token values */
+    public static final int VALUE_SCALE = 4;
+    /** Multiplier from whole units to token values */
+    public static final long VALUE_UNIT = 10_000L;
+
+    private int count;
+    private int[] types;
+    private int[] starts;
+    private int[] ends;
+    private long[] values;
+
+    public TaxTokenBuffer() {
+        this(64);
+    }
+
+    public TaxTokenBuffer(int initialCapacity) {
+        int capacity = Math.max(4, initialCapacity);
+        types = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        values = new long[capacity];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    void add(int type, int start, int end, long value) {
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        types[count] = type;
+        starts[count] = start;
+        ends[count] = end;
+        values[count] = value;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * One of the {@link TaxTextLexer} token type constants
+     */
+    public int type(int index) {
+        return types[index];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * Fixed-point value of a numeric token, in units of 1/{@link #VALUE_UNIT}
+     */
+    public long value(int index) {
+        return values[index];
+    }
+
+    public double doubleValue(int index) {
+        return (double) values[index] / VALUE_UNIT;
+    }
+
+    public BigDecimal decimalValue(int index) {
+        return toDecimal(values[index]);
+    }
+
+    static BigDecimal toDecimal(long value) {
+        BigDecimal decimal = BigDecimal.valueOf(value, VALUE_SCALE).stripTrailingZeros();
+        return decimal.scale() < 0 ? decimal.setScale(0) : decimal;
+    }
+}
@@ -0,0 +1,607 @@
+package com.oasis.document.text;
+
+import com.oasis.document.extractor.DocumentExtractionResult;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token-reducing clean-up of extracted text before chunking and embedding
+ *
+ * Removes page furniture: running headers, footers and page numbers, found
+ * as lines that recur (page numbers masked) among the first or last lines of many
+ * pages. Also joins words hyphenated across line breaks, collapses
+ * whitespace and blank-line runs, drops zero-width and soft-hyphen
+ * characters, and applies NFC so Sinhala and Tamil vowel signs stored as two
+ * code points become one.
+ *
+ * Work is linear in the text. One scan records line boundaries, pages and a
+ * hash of each line. A second scan writes the output and the
+ * {@link NormalizedText} offset map. Only character clusters containing a
+ * composable pair go through {@link Normalizer}. Instances are immutable and
+ * safe to share.
+ */
+public class TextNormalizer {
+    public static final int DEFAULT_EDGE_LINES = Integer.getInteger("oasis.normalize.edgeLines", 2);
+    public static final double DEFAULT_MIN_PAGE_FRACTION =
+            Double.parseDouble(System.getProperty("oasis.normalize.minPageFraction", "0.4"));
+
+    private static final int MIN_FURNITURE_PAGES = 3;
+    private static final int MAX_FURNITURE_LINE_LENGTH = 160;
+    private static final int SHORT_LINE_LENGTH = 24;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Left halves that keep a line-end hyphen when the document uses neither the hyphenated nor the joined form
+    private static final Set<String> COMPOUND_PREFIXES = Set.of("anti", "co", "counter", "cross", "ex", "inter",
+            "intra", "mid", "multi", "non", "post", "pre", "pseudo", "quasi", "self", "semi", "sub");
+
+    // Characters that can begin, or be appended in, a canonical composition
+    private static final BitSet COMPOSITION_LEADS = new BitSet(0x10000);
+    private static final BitSet COMPOSITION_TRAILS = new BitSet(0x10000);
+
+    static {
+        for (int c = 0; c <= 0xFFFF; c++) {
+            if (c < 0xC0 || Character.isSurrogate((char) c) || (c >= 0xAC00 && c <= 0xD7A3)
+                    || Character.getType(c) == Character.UNASSIGNED) {
+                continue;
+            }
+            String decomposed = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD);
+            for (int k = 1; k < decomposed.length(); k++) {
+                COMPOSITION_TRAILS.set(decomposed.charAt(k));
+                // Partially composed prefixes (u + diaeresis -> u-umlaut) can lead the next step
+                String prefix = Normalizer.normalize(decomposed.substring(0, k), Normalizer.Form.NFC);
+                for (int p = 0; p < prefix.length(); p++) {
+                    COMPOSITION_LEADS.set(prefix.charAt(p));
+                }
+            }
+        }
+    }
+
+    private static final TextNormalizer SHARED = new TextNormalizer(DEFAULT_EDGE_LINES, DEFAULT_MIN_PAGE_FRACTION);
+
+    private final int edgeLines;
+    private final double minPageFraction;
+
+    /**
+     * @param edgeLines       lines at the top and at the bottom of each page that may be furniture
+     * @param minPageFraction share of pages a line must appear on to be removed as furniture
+     */
+    public TextNormalizer(int edgeLines, double minPageFraction) {
+        if (edgeLines < 0 || minPageFraction <= 0 || minPageFraction > 1) {
+            throw new IllegalArgumentException("edgeLines must be >= 0 and minPageFraction in (0, 1]");
+        }
+        this.edgeLines = edgeLines;
+        this.minPageFraction = minPageFraction;
+    }
+
+    /**
+     * Process-wide normaliser shared by all Ballerina strands
+     */
+    public static TextNormalizer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Normalise text of unknown pagination; page furniture is kept
+     */
+    public NormalizedText normalize(CharSequence text) {
+        return normalize(text, 0);
+    }
+
+    /**
+     * Normalise extracted text
+     *
+     * @param pageCount page count from the extraction metadata. Furniture is removed
+     *                  only for documents of at least 3 pages whose text shows the page
+     *                  breaks (blank-line runs or form feeds)
+     */
+    public NormalizedText normalize(CharSequence text, int pageCount) {
+        return new Pass(text != null ? text : "", pageCount).run();
+    }
+
+    /**
+     * Normalise the text of an extraction result, paginated by its metadata
+     */
+    public NormalizedText normalize(DocumentExtractionResult result) {
+        return normalize(result.getTextSequence(), pageCount(result.getMetadata()));
+    }
+
+    static int pageCount(Map<String, String> metadata) {
+        if (metadata == null) {
+            return 0;
+        }
+        for (String key : new String[] { "xmpTPg:NPages", "meta:page-count", "Page-Count" }) {
+            String value = metadata.get(key);
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    // Try the next key
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Collapsed to one space; line and page breaks are handled separately
+    private static boolean isSpace(char c) {
+        if (c <= ' ') {
+            return c != '\n' && c != '\f';
+        }
+        return c >= 0x80 && Character.isSpaceChar(c);
+    }
+
+    // Dropped outright: zero-width space, BOM, word joiner, soft hyphen
+    private static boolean isIgnorable(char c) {
+        return c == '\u200B' || c == '\uFEFF' || c == '\u2060' || c == '\u00AD';
+    }
+
+    private static boolean isMark(char c, int type) {
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK || c == '\u200C' || c == '\u200D';
+    }
+
+    private static int[] grow(int[] array, int needed) {
+        return needed < array.length ? array : Arrays.copyOf(array, Math.max(needed + 1, array.length * 2));
+    }
+
+    /**
+     * State of one normalisation
+     */
+    private final class Pass {
+        private final CharSequence text;
+        private final int length;
+        private final int pageCount;
+
+        // Per line: trimmed content bounds, terminator position, page, index among the page's non-blank lines
+        private int lineCount;
+        private int[] contentStart;
+        private int[] contentEnd;
+        private int[] breakPos;
+        private int[] page;
+        private int[] index;
+        private long[] key;
+        private int pages;
+        private boolean[] dropped;
+        private BitSet keepHyphen;
+
+        private StringBuilder out;
+        private int[] runStarts = new int[64];
+        private int[] runOriginalStarts = new int[64];
+        private int runCount;
+        private int nextOriginal = -1;
+
+        private int clusterStart;
+        private int clusterOriginal;
+        private boolean clusterDirty;
+        private char previousChar;
+        private int previousType;
+
+        private int originalWhitespace;
+        private int outputWhitespace;
+        private int removedLines;
+        private int removedLineChars;
+        private int furniturePatterns;
+        private int dehyphenations;
+        private int nfcRewrites;
+
+        Pass(CharSequence text, int pageCount) {
+            this.text = text;
+            this.length = text.length();
+            this.pageCount = Math.max(0, pageCount);
+        }
+
+        NormalizedText run() {
+            scanLines();
+            markFurniture();
+            resolveHyphens();
+            emit();
+            return new NormalizedText(out.toString(), length, runStarts, runOriginalStarts, runCount, pageCount,
+                    removedLines, removedLineChars, furniturePatterns, dehyphenations,
+                    Math.max(0, originalWhitespace - outputWhitespace), nfcRewrites);
+        }
+
+        private void scanLines() {
+            int capacity = length / 48 + 16;
+            contentStart = new int[capacity];
+            contentEnd = new int[capacity];
+            breakPos = new int[capacity];
+            page = new int[capacity];
+            index = new int[capacity];
+            key = new long[capacity];
+
+            int currentPage = -1;
+            int indexInPage = 0;
+            int blankRun = 0;
+            boolean formFeed = false;
+            int pos = 0;
+            while (pos <= length) {
+                // Short lines ("Page 3 of 40") mask every number; longer ones only a leading
+                // or trailing one, so numbered headings that differ mid-line stay distinct
+                long masked = FNV_OFFSET;
+                long edgeMasked = FNV_OFFSET;
+                long beforeDigits = FNV_OFFSET;
+                boolean pendingSpace = false;
+                boolean inDigits = false;
+                boolean leadingDigits = false;
+                boolean endsInDigits = false;
+                int first = -1;
+                int last = -1;
+                int i = pos;
+                for (; i < length; i++) {
+                    char c = text.charAt(i);
+                    if (c == '\n' || c == '\f') {
+                        break;
+                    }
+                    if (isSpace(c)) {
+                        originalWhitespace++;
+                        pendingSpace = first >= 0;
+                        inDigits = false;
+                        continue;
+                    }
+                    if (isIgnorable(c)) {
+                        continue;
+                    }
+                    if (first < 0) {
+                        first = i;
+                    }
+                    last = i;
+                    if (pendingSpace) {
+                        masked = (masked ^ ' ') * FNV_PRIME;
+                        edgeMasked = (edgeMasked ^ ' ') * FNV_PRIME;
+                        pendingSpace = false;
+                    }
+                    if (c >= '0' && c <= '9') {
+                        if (!inDigits) {
+                            masked = (masked ^ '#') * FNV_PRIME;
+                            beforeDigits = edgeMasked;
+                            leadingDigits = first == i;
+                            if (leadingDigits) {
+                                edgeMasked = (edgeMasked ^ '#') * FNV_PRIME;
+                            }
+                        }
+                        if (!leadingDigits) {
+                            edgeMasked = (edgeMasked ^ c) * FNV_PRIME;
+                        }
+                        inDigits = true;
+                        endsInDigits = true;
+                    } else {
+                        char folded = Character.toLowerCase(c);
+                        masked = (masked ^ folded) * FNV_PRIME;
+                        edgeMasked = (edgeMasked ^ folded) * FNV_PRIME;
+                        inDigits = false;
+                        leadingDigits = false;
+                        endsInDigits = false;
+                    }
+                }
+                if (endsInDigits && !leadingDigits) {
+                    edgeMasked = (beforeDigits ^ '#') * FNV_PRIME;
+                }
+                long hash = last - first < SHORT_LINE_LENGTH ? masked : edgeMasked;
+                if (i < length) {
+                    originalWhitespace++;
+                }
+
+                if (lineCount == contentStart.length) {
+                    int size = lineCount * 2;
+                    contentStart = Arrays.copyOf(contentStart, size);
+                    contentEnd = Arrays.copyOf(contentEnd, size);
+                    breakPos = Arrays.copyOf(breakPos, size);
+                    page = Arrays.copyOf(page, size);
+                    index = Arrays.copyOf(index, size);
+                    key = Arrays.copyOf(key, size);
+                }
+                if (first < 0) {
+                    blankRun++;
+                    contentStart[lineCount] = pos;
+                    contentEnd[lineCount] = pos;
+                    index[lineCount] = -1;
+                } else {
+                    // Tika separates pages with two or more blank lines, paragraphs with one
+                    if (currentPage < 0 || blankRun >= 2 || formFeed) {
+                        currentPage++;
+                        indexInPage = 0;
+                    }
+                    formFeed = false;
+                    blankRun = 0;
+                    contentStart[lineCount] = first;
+                    contentEnd[lineCount] = last + 1;
+                    index[lineCount] = indexInPage++;
+                }
+                page[lineCount] = Math.max(0, currentPage);
+                breakPos[lineCount] = i;
+                key[lineCount] = hash;
+                lineCount++;
+                if (i < length && text.charAt(i) == '\f') {
+                    formFeed = true;
+                }
+                pos = i + 1;
+            }
+            pages = currentPage + 1;
+            dropped = new boolean[lineCount];
+        }
+
+        private void markFurniture() {
+            if (pageCount < MIN_FURNITURE_PAGES || pages < pageCount * 0.8 || edgeLines == 0) {
+                return;
+            }
+            int threshold = Math.max(MIN_FURNITURE_PAGES, (int) Math.ceil(minPageFraction * pageCount));
+
+            int[] pageLines = new int[pages];
+            for (int l = 0; l < lineCount; l++) {
+                if (index[l] >= 0) {
+                    pageLines[page[l]] = index[l] + 1;
+                }
+            }
+            // Per line key: pages it was seen on, last page seen
+            Map<Long, int[]> seen = new HashMap<>();
+            for (int l = 0; l < lineCount; l++) {
+                if (isCandidate(l, pageLines)) {
+                    int[] count = seen.computeIfAbsent(key[l], k -> new int[] { 0, -1 });
+                    if (count[1] != page[l]) {
+                        count[0]++;
+                        count[1] = page[l];
+                    }
+                }
+            }
+            for (int[] count : seen.values()) {
+                if (count[0] >= threshold) {
+                    furniturePatterns++;
+                }
+            }
+            for (int l = 0; l < lineCount; l++) {
+                if (isCandidate(l, pageLines) && seen.get(key[l])[0] >= threshold) {
+                    dropped[l] = true;
+                    removedLines++;
+                    removedLineChars += contentEnd[l] - contentStart[l];
+                }
+            }
+        }
+
+        private boolean isCandidate(int line, int[] pageLines) {
+            int position = index[line];
+            return position >= 0 && contentEnd[line] - contentStart[line] <= MAX_FURNITURE_LINE_LENGTH
+                    && (position < edgeLines || position >= pageLines[page[line]] - edgeLines);
+        }
+
+        /**
+         * Marks the lines whose line-end hyphen belongs to a compound. A line
+         * ending in a hard hyphen before a lower-case line is a candidate: the
+         * hyphen stays if the document writes the same compound on one line
+         * elsewhere ("non-resident"), goes if it writes the joined word
+         * ("nonresident"), and otherwise stays only after a known prefix
+         */
+        private void resolveHyphens() {
+            keepHyphen = new BitSet(lineCount);
+            Map<Integer, String[]> candidates = new HashMap<>();
+            int next = -1;
+            for (int l = lineCount - 1; l >= 0; l--) {
+                if (index[l] < 0 || dropped[l]) {
+                    continue;
+                }
+                int last = contentEnd[l] - 1;
+                if (next >= 0 && text.charAt(last) == '-' && last > contentStart[l]
+                        && Character.isLetter(text.charAt(last - 1))
+                        && Character.isLowerCase(text.charAt(contentStart[next]))) {
+                    int leftStart = last - 1;
+                    while (leftStart > contentStart[l] && Character.isLetter(text.charAt(leftStart - 1))) {
+                        leftStart--;
+                    }
+                    int rightEnd = contentStart[next];
+                    while (rightEnd < contentEnd[next] && Character.isLetter(text.charAt(rightEnd))) {
+                        rightEnd++;
+                    }
+                    String left = lower(leftStart, last);
+                    String right = lower(contentStart[next], rightEnd);
+                    candidates.put(l, new String[] { left + '-' + right, left + right, left });
+                }
+                next = l;
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            Set<String> wanted = new HashSet<>();
+            BitSet wantedLengths = new BitSet();
+            for (String[] forms : candidates.values()) {
+                for (int f = 0; f < 2; f++) {
+                    wanted.add(forms[f]);
+                    wantedLengths.set(forms[f].length());
+                }
+            }
+            // One scan for words and word-hyphen-word pairs written on a single line
+            Set<String> seen = new HashSet<>();
+            int previousStart = -1;
+            int previousEnd = -1;
+            int i = 0;
+            while (i < length) {
+                if (!Character.isLetter(text.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < length && Character.isLetter(text.charAt(i))) {
+                    i++;
+                }
+                if (wantedLengths.get(i - start)) {
+                    String word = lower(start, i);
+                    if (wanted.contains(word)) {
+                        seen.add(word);
+                    }
+                }
+                if (previousStart >= 0 && previousEnd == start - 1 && text.charAt(previousEnd) == '-'
+                        && wantedLengths.get(i - previousStart)) {
+                    String compound = lower(previousStart, i);
+                    if (wanted.contains(compound)) {
+                        seen.add(compound);
+                    }
+                }
+                previousStart = start;
+                previousEnd = i;
+            }
+
+            for (Map.Entry<Integer, String[]> candidate : candidates.entrySet()) {
+                String[] forms = candidate.getValue();
+                if (seen.contains(forms[0]) || (!seen.contains(forms[1]) && COMPOUND_PREFIXES.contains(forms[2]))) {
+                    keepHyphen.set(candidate.getKey());
+                }
+            }
+        }
+
+        private String lower(int start, int end) {
+            return text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+        }
+
+        private void emit() {
+            out = new StringBuilder(length);
+            boolean started = false;
+            int blankRun = 0;
+            boolean droppedSince = false;
+            int pendingHyphen = -1;
+            int previousLine = -1;
+            int previousBreak = 0;
+
+            for (int l = 0; l < lineCount; l++) {
+                if (index[l] < 0) {
+                    blankRun++;
+                    continue;
+                }
+                if (dropped[l]) {
+                    droppedSince = true;
+                    continue;
+                }
+                int start = contentStart[l];
+                int end = contentEnd[l];
+                boolean startsLower = Character.isLowerCase(text.charAt(start));
+
+                if (started) {
+                    boolean adjacent = blankRun == 0;
+                    if (pendingHyphen >= 0 && (adjacent || droppedSince) && startsLower) {
+                        if (keepHyphen.get(previousLine)) {
+                            append('-', pendingHyphen);
+                        } else {
+                            dehyphenations++;
+                        }
+                    } else {
+                        if (pendingHyphen >= 0 && text.charAt(pendingHyphen) == '-') {
+                            append('-', pendingHyphen);
+                        }
+                        append('\n', previousBreak);
+                        // A paragraph cut by a page break continues in lower case
+                        boolean continuation = droppedSince && startsLower && !endsSentence();
+                        if (!adjacent && !continuation) {
+                            append('\n', breakPos[l - 1]);
+                        }
+                    }
+                }
+                pendingHyphen = -1;
+
+                int last = end - 1;
+                char lastChar = text.charAt(last);
+                if ((lastChar == '-' || lastChar == '\u00AD') && last > start
+                        && Character.isLetter(text.charAt(last - 1))) {
+                    pendingHyphen = last;
+                    end = last;
+                }
+                boolean pendingSpace = false;
+                int spaceOriginal = 0;
+                for (int i = start; i < end; i++) {
+                    char c = text.charAt(i);
+                    if (isSpace(c)) {
+                        if (!pendingSpace) {
+                            pendingSpace = true;
+                            spaceOriginal = i;
+                        }
+                        continue;
+                    }
+                    if (isIgnorable(c)) {
+                        continue;
+                    }
+                    if (pendingSpace) {
+                        append(' ', spaceOriginal);
+                        pendingSpace = false;
+                    }
+                    append(c, i);
+                }
+
+                started = true;
+                blankRun = 0;
+                droppedSince = false;
+                previousLine = l;
+                previousBreak = breakPos[l];
+            }
+            if (pendingHyphen >= 0 && text.charAt(pendingHyphen) == '-') {
+                append('-', pendingHyphen);
+            }
+            finishCluster();
+        }
+
+        private boolean endsSentence() {
+            if (out.length() == 0) {
+                return true;
+            }
+            char c = out.charAt(out.length() - 1);
+            return c == '.' || c == ':' || c == ';' || c == '?' || c == '!';
+        }
+
+        private void append(char c, int original) {
+            int type = Character.getType(c);
+            if (isMark(c, type)) {
+                if ((COMPOSITION_TRAILS.get(c) && COMPOSITION_LEADS.get(previousChar))
+                        || (type == Character.NON_SPACING_MARK && previousType == Character.NON_SPACING_MARK)) {
+                    clusterDirty = true;
+                }
+            } else {
+                finishCluster();
+                clusterStart = out.length();
+                clusterOriginal = original;
+            }
+            if (original != nextOriginal) {
+                addRun(out.length(), original);
+            }
+            if (c == ' ' || c == '\n') {
+                outputWhitespace++;
+            }
+            out.append(c);
+            nextOriginal = original + 1;
+            previousChar = c;
+            previousType = type;
+        }
+
+        // Replace the cluster since the last starter with its NFC form if it differs
+        private void finishCluster() {
+            if (!clusterDirty) {
+                return;
+            }
+            clusterDirty = false;
+            String cluster = out.substring(clusterStart);
+            if (Normalizer.isNormalized(cluster, Normalizer.Form.NFC)) {
+                return;
+            }
+            out.setLength(clusterStart);
+            while (runCount > 0 && runStarts[runCount - 1] >= clusterStart) {
+                runCount--;
+            }
+            addRun(clusterStart, clusterOriginal);
+            out.append(Normalizer.normalize(cluster, Normalizer.Form.NFC));
+            // The next character starts a new run whatever its offset
+            nextOriginal = -1;
+            nfcRewrites++;
+        }
+
+        private void addRun(int start, int original) {
+            runStarts = grow(runStarts, runCount);
+            runOriginalStarts = grow(runOriginalStarts, runCount);
+            runStarts[runCount] = start;
+            runOriginalStarts[runCount] = original;
+            runCount++;
+        }
+    }
+}
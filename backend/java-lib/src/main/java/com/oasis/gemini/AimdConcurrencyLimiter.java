@@ -0,0 +1,90 @@
+package com.oasis.gemini;
+
+/**
+ * Adaptive cap on in-flight requests (additive increase, multiplicative decrease)
+ *
+ * Every fast, successful response raises the limit by 1/limit, so roughly
+ * one slot per round trip of a full window. A 429/503 halves it, and a
+ * response slower than the latency target trims it by 10%. Decreases are
+ * applied at most once per round trip, so a burst of 429s caused by one
+ * overshoot halves the limit once rather than collapsing it to the minimum.
+ */
+public class AimdConcurrencyLimiter {
+    private static final long MIN_DECREASE_INTERVAL_NANOS = 100_000_000L;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private long increases;
+    private long decreases;
+
+    public AimdConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetMillis) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetMillis * 1_000_000L;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - MIN_DECREASE_INTERVAL_NANOS;
+    }
+
+    /**
+     * Wait for a slot under the current limit
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Return a slot and feed the response into the limit
+     *
+     * @param overloaded the server answered 429 or 503
+     */
+    public synchronized void release(long latencyNanos, boolean overloaded) {
+        inFlight--;
+        if (overloaded || latencyNanos > latencyTargetNanos) {
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos >= Math.max(MIN_DECREASE_INTERVAL_NANOS, latencyNanos)) {
+                limit = Math.max(minLimit, limit * (overloaded ? 0.5 : 0.9));
+                lastDecreaseNanos = now;
+                decreases++;
+            }
+        } else if (limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+            increases++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Return a slot without a sample, e.g. after a connection error
+     */
+    public synchronized void releaseWithoutSample() {
+        inFlight--;
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getIncreaseCount() {
+        return increases;
+    }
+
+    public synchronized long getDecreaseCount() {
+        return decreases;
+    }
+}
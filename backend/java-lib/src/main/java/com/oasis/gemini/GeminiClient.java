@@ -0,0 +1,595 @@
+package com.oasis.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.oasis.ingestion.IngestionChunk;
+import com.oasis.ingestion.IngestionStages;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gemini API client shared by embedding, rule aggregation, explanations and chat
+ *
+ * One pooled HTTP/2 connection carries all calls. Single embedding requests
+ * are coalesced into batchEmbedContents calls: a dispatcher thread waits for
+ * a concurrency slot, then gathers whatever arrived within the batch window
+ * (up to the API's 100 items), so batches grow exactly when the API is the
+ * bottleneck. Concurrency per model follows an {@link AimdConcurrencyLimiter}
+ * driven by 429/503 responses and latency. Retryable failures back off with
+ * full jitter (honouring Retry-After) after releasing their slot.
+ *
+ * A merged batch carries texts from unrelated callers, so a 413, or a 400
+ * whose error body blames the content (INVALID_ARGUMENT), is not allowed to
+ * fail the rest: the batch is split in half and each half resent until the
+ * rejected text is alone, and only its future fails. Splitting stops after
+ * {@code oasis.gemini.maxSplitDepth} halvings or
+ * {@code oasis.gemini.maxSplitsPerBatch} splits, and the texts left failing
+ * fail together. Errors that hold for any request (an invalid or expired API
+ * key, auth, unknown model, exhausted retries) fail the whole batch at once.
+ */
+public class GeminiClient implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GeminiClient.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com";
+    public static final String DEFAULT_EMBEDDING_MODEL = "text-embedding-004";
+    public static final String DEFAULT_TEXT_MODEL = "gemini-1.5-flash";
+
+    private static final long BASE_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    // Seven halvings isolate one text in a batch of 100; sixteen splits are enough for two
+    private static final int MAX_SPLIT_DEPTH = Integer.getInteger("oasis.gemini.maxSplitDepth", 7);
+    private static final int MAX_SPLITS_PER_BATCH = Integer.getInteger("oasis.gemini.maxSplitsPerBatch", 16);
+    // ErrorInfo reasons a 400 carries when the request as a whole is refused, whatever its texts
+    private static final Set<String> REQUEST_WIDE_REASONS = Set.of("API_KEY_INVALID", "API_KEY_EXPIRED",
+            "API_KEY_SERVICE_BLOCKED", "API_KEY_HTTP_REFERRER_BLOCKED", "API_KEY_IP_ADDRESS_BLOCKED",
+            "SERVICE_DISABLED", "CONSUMER_INVALID", "BILLING_DISABLED", "USER_PROJECT_DENIED");
+
+    private static volatile GeminiClient shared;
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final String embeddingModel;
+    private final String textModel;
+    private final Settings settings;
+
+    private final HttpClient http;
+    private final ExecutorService senders;
+    private final AimdConcurrencyLimiter embeddingLimiter;
+    private final AimdConcurrencyLimiter textLimiter;
+    private final LinkedBlockingQueue<PendingEmbedding> pending = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder embeddedItems = new LongAdder();
+    private final LongAdder embeddingBatches = new LongAdder();
+    private final LongAdder generateCalls = new LongAdder();
+    private final LongAdder httpRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder splitBatches = new LongAdder();
+    private final LongAdder skippedItems = new LongAdder();
+
+    /**
+     * Batching, concurrency and retry tuning
+     */
+    public static class Settings {
+        private final long batchWindowMillis;
+        private final int maxBatchSize;
+        private final int initialConcurrency;
+        private final int maxConcurrency;
+        private final long latencyTargetMillis;
+        private final int maxRetries;
+
+        public Settings(long batchWindowMillis, int maxBatchSize, int initialConcurrency, int maxConcurrency,
+                long latencyTargetMillis, int maxRetries) {
+            if (batchWindowMillis < 0 || maxBatchSize < 1 || maxBatchSize > 100 || initialConcurrency < 1
+                    || maxConcurrency < initialConcurrency || latencyTargetMillis < 1 || maxRetries < 0) {
+                throw new IllegalArgumentException("invalid Gemini client settings");
+            }
+            this.batchWindowMillis = batchWindowMillis;
+            this.maxBatchSize = maxBatchSize;
+            this.initialConcurrency = initialConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            this.latencyTargetMillis = latencyTargetMillis;
+            this.maxRetries = maxRetries;
+        }
+
+        /**
+         * Settings from oasis.gemini.* system properties
+         */
+        public static Settings defaults() {
+            return new Settings(
+                    Long.getLong("oasis.gemini.batchWindowMillis", 10L),
+                    Integer.getInteger("oasis.gemini.maxBatchSize", 100),
+                    Integer.getInteger("oasis.gemini.initialConcurrency", 4),
+                    Integer.getInteger("oasis.gemini.maxConcurrency", 32),
+                    Long.getLong("oasis.gemini.latencyTargetMillis", 5000L),
+                    Integer.getInteger("oasis.gemini.maxRetries", 5));
+        }
+
+        public long getBatchWindowMillis() {
+            return batchWindowMillis;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public int getInitialConcurrency() {
+            return initialConcurrency;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public long getLatencyTargetMillis() {
+            return latencyTargetMillis;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+    }
+
+    private static final class PendingEmbedding {
+        final String text;
+        final CompletableFuture<float[]> result = new CompletableFuture<>();
+
+        PendingEmbedding(String text) {
+            this.text = text;
+        }
+    }
+
+    public GeminiClient(String baseUrl, String apiKey, String embeddingModel, String textModel) {
+        this(baseUrl, apiKey, embeddingModel, textModel, Settings.defaults());
+    }
+
+    public GeminiClient(String baseUrl, String apiKey, String embeddingModel, String textModel, Settings settings) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+        this.embeddingModel = embeddingModel;
+        this.textModel = textModel;
+        this.settings = settings;
+
+        AtomicInteger senderIds = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "gemini-sender-" + senderIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(senders)
+                .build();
+        this.embeddingLimiter = new AimdConcurrencyLimiter(settings.getInitialConcurrency(), 1,
+                settings.getMaxConcurrency(), settings.getLatencyTargetMillis());
+        this.textLimiter = new AimdConcurrencyLimiter(settings.getInitialConcurrency(), 1,
+                settings.getMaxConcurrency(), settings.getLatencyTargetMillis());
+
+        this.dispatcher = new Thread(this::dispatchLoop, "gemini-embed-coalescer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Create the process-wide client from the Ballerina configurables; later
+     * calls return the existing client
+     */
+    public static synchronized GeminiClient configureShared(String baseUrl, String apiKey, String embeddingModel,
+            String textModel) {
+        if (shared == null) {
+            shared = new GeminiClient(baseUrl, apiKey, embeddingModel, textModel);
+        }
+        return shared;
+    }
+
+    /**
+     * Process-wide client shared by all Ballerina strands
+     */
+    public static GeminiClient shared() {
+        GeminiClient client = shared;
+        if (client == null) {
+            throw new IllegalStateException("GeminiClient.configureShared has not been called");
+        }
+        return client;
+    }
+
+    /**
+     * Embed one text; concurrent callers share batch calls
+     */
+    public float[] embed(String text) throws IOException, InterruptedException {
+        return await(embedAsync(text));
+    }
+
+    public CompletableFuture<float[]> embedAsync(String text) {
+        PendingEmbedding request = new PendingEmbedding(text == null ? "" : text);
+        if (closed) {
+            request.result.completeExceptionally(new IOException("GeminiClient is closed"));
+        } else {
+            pending.add(request);
+        }
+        return request.result;
+    }
+
+    /**
+     * Embed many texts, in input order; they join the same coalescing queue
+     * as single requests so batches stay full
+     */
+    public List<float[]> embedBatch(List<String> texts) throws IOException, InterruptedException {
+        List<CompletableFuture<float[]>> futures = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            futures.add(embedAsync(text));
+        }
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (CompletableFuture<float[]> future : futures) {
+            embeddings.add(await(future));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Embedding stage for {@link com.oasis.ingestion.IngestionPipeline} and
+     * {@link com.oasis.ingestion.EmbeddingBackfill}
+     *
+     * A chunk whose text the API rejects (see {@link #isItemRejection}) is
+     * logged, counted in skippedItems and left without an embedding, so the
+     * rest of the batch is still stored and the backfill can retry it later.
+     * Any other failure fails the batch.
+     */
+    public IngestionStages.ChunkEmbedder chunkEmbedder() {
+        return chunks -> {
+            List<CompletableFuture<float[]>> futures = new ArrayList<>(chunks.size());
+            for (IngestionChunk chunk : chunks) {
+                futures.add(embedAsync(chunk.getChunkText()));
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                try {
+                    chunks.get(i).setEmbedding(await(futures.get(i)));
+                } catch (GeminiException e) {
+                    if (!isItemRejection(e)) {
+                        throw e;
+                    }
+                    skippedItems.increment();
+                    logger.warn("Skipping chunk {}: Gemini rejected its text: {}", chunks.get(i).getId(),
+                            e.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Call generateContent on the text model with a caller-built request body
+     *
+     * @return the raw response JSON
+     */
+    public String generateContent(String requestJson) throws IOException, InterruptedException {
+        generateCalls.increment();
+        return execute(textLimiter, modelPath(textModel, "generateContent"), requestJson, false);
+    }
+
+    private void dispatchLoop() {
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(settings.getBatchWindowMillis());
+        int maxBatch = settings.getMaxBatchSize();
+        while (!closed) {
+            List<PendingEmbedding> batch = new ArrayList<>(maxBatch);
+            boolean permitHeld = false;
+            try {
+                batch.add(pending.take());
+                // Requests arriving while we wait for a slot join this batch
+                embeddingLimiter.acquire();
+                permitHeld = true;
+                pending.drainTo(batch, maxBatch - batch.size());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEmbedding next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    pending.drainTo(batch, maxBatch - batch.size());
+                }
+                senders.execute(() -> sendBatch(batch, true, 0, new int[] { MAX_SPLITS_PER_BATCH }));
+            } catch (InterruptedException e) {
+                if (permitHeld) {
+                    embeddingLimiter.releaseWithoutSample();
+                }
+                fail(batch, new IOException("GeminiClient is closed"));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Rejected by a shut-down executor
+                if (permitHeld) {
+                    embeddingLimiter.releaseWithoutSample();
+                }
+                fail(batch, new IOException("GeminiClient is closed", e));
+            }
+        }
+    }
+
+    /**
+     * @param permitHeld the dispatcher already holds a limiter slot for this batch
+     * @param depth      halvings that led to this batch
+     * @param splitsLeft splits still allowed for the merged batch this one came from
+     */
+    private void sendBatch(List<PendingEmbedding> batch, boolean permitHeld, int depth, int[] splitsLeft) {
+        try {
+            ObjectNode body = MAPPER.createObjectNode();
+            ArrayNode requests = body.putArray("requests");
+            for (PendingEmbedding item : batch) {
+                ObjectNode request = requests.addObject();
+                request.put("model", "models/" + embeddingModel);
+                request.putObject("content").putArray("parts").addObject().put("text", item.text);
+                request.put("taskType", "SEMANTIC_SIMILARITY");
+            }
+            String response = execute(embeddingLimiter, modelPath(embeddingModel, "batchEmbedContents"),
+                    MAPPER.writeValueAsString(body), permitHeld);
+
+            JsonNode embeddings = MAPPER.readTree(response).path("embeddings");
+            if (embeddings.size() != batch.size()) {
+                throw new IOException("Gemini returned " + embeddings.size() + " embeddings for "
+                        + batch.size() + " texts");
+            }
+            embeddingBatches.increment();
+            embeddedItems.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                JsonNode values = embeddings.get(i).path("values");
+                float[] vector = new float[values.size()];
+                for (int j = 0; j < vector.length; j++) {
+                    vector[j] = (float) values.get(j).asDouble();
+                }
+                batch.get(i).result.complete(vector);
+            }
+        } catch (GeminiException e) {
+            if (batch.size() > 1 && isItemRejection(e) && depth < MAX_SPLIT_DEPTH && splitsLeft[0] > 0) {
+                splitsLeft[0]--;
+                splitBatches.increment();
+                int half = batch.size() / 2;
+                sendBatch(new ArrayList<>(batch.subList(0, half)), false, depth + 1, splitsLeft);
+                sendBatch(new ArrayList<>(batch.subList(half, batch.size())), false, depth + 1, splitsLeft);
+            } else {
+                fail(batch, e);
+            }
+        } catch (InterruptedException e) {
+            fail(batch, new IOException("Interrupted while calling Gemini", e));
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            fail(batch, e);
+        }
+    }
+
+    /**
+     * Whether a single bad text can have caused the error: a text over the size
+     * limit, or invalid content. A 400 also reports a bad API key or a disabled
+     * service, so it only counts when the body says INVALID_ARGUMENT without a
+     * request-wide reason
+     */
+    static boolean isItemRejection(GeminiException e) {
+        if (e.getStatusCode() == 413) {
+            return true;
+        }
+        return e.getStatusCode() == 400 && "INVALID_ARGUMENT".equals(e.getReason());
+    }
+
+    /**
+     * The ErrorInfo reason of a Google API error body, else its status; a
+     * request-wide reason wins over any other detail
+     */
+    static String errorReason(String body) {
+        try {
+            JsonNode error = MAPPER.readTree(body).path("error");
+            String reason = null;
+            for (JsonNode detail : error.path("details")) {
+                String detailReason = detail.path("reason").asText(null);
+                if (detailReason != null && (reason == null || REQUEST_WIDE_REASONS.contains(detailReason))) {
+                    reason = detailReason;
+                }
+            }
+            return reason != null ? reason : error.path("status").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * POST with adaptive concurrency and jittered retries
+     *
+     * @param permitHeld the caller already holds a limiter slot for the first attempt
+     */
+    private String execute(AimdConcurrencyLimiter limiter, String path, String body, boolean permitHeld)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            if (!permitHeld) {
+                limiter.acquire();
+            }
+            permitHeld = false;
+
+            long start = System.nanoTime();
+            HttpResponse<String> response;
+            try {
+                httpRequests.increment();
+                response = http.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                limiter.releaseWithoutSample();
+                if (attempt >= settings.getMaxRetries()) {
+                    failures.increment();
+                    throw e;
+                }
+                logger.debug("Gemini call to {} failed, retrying: {}", path, e.getMessage());
+                backoff(attempt, Optional.empty());
+                continue;
+            } catch (InterruptedException e) {
+                limiter.releaseWithoutSample();
+                throw e;
+            }
+
+            int status = response.statusCode();
+            boolean overloaded = status == 429 || status == 503;
+            limiter.release(System.nanoTime() - start, overloaded);
+            if (status / 100 == 2) {
+                return response.body();
+            }
+            if (overloaded) {
+                throttled.increment();
+            }
+            if (!(overloaded || status >= 500) || attempt >= settings.getMaxRetries()) {
+                failures.increment();
+                throw new GeminiException(status, errorReason(response.body()),
+                        "Gemini " + path.substring(path.lastIndexOf(':') + 1)
+                        + " failed with HTTP " + status + ": " + abbreviate(response.body()));
+            }
+            backoff(attempt, response.headers().firstValue("Retry-After"));
+        }
+    }
+
+    // Full jitter: uniform in [0, min(cap, base * 2^attempt)], but never sooner than Retry-After
+    private void backoff(int attempt, Optional<String> retryAfter) throws InterruptedException {
+        retries.increment();
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (retryAfter.isPresent()) {
+            try {
+                delay = Math.max(delay, Math.min(MAX_BACKOFF_MILLIS * 6,
+                        Long.parseLong(retryAfter.get().trim()) * 1000));
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form; the jittered delay stands
+            }
+        }
+        Thread.sleep(delay);
+    }
+
+    private String modelPath(String model, String method) {
+        return "/v1beta/models/" + model + ":" + method;
+    }
+
+    private void fail(List<PendingEmbedding> batch, Throwable cause) {
+        for (PendingEmbedding item : batch) {
+            item.result.completeExceptionally(cause);
+        }
+    }
+
+    private static float[] await(CompletableFuture<float[]> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Gemini embedding failed", cause);
+        }
+    }
+
+    private static String abbreviate(String body) {
+        if (body == null) {
+            return "";
+        }
+        return body.length() <= 300 ? body : body.substring(0, 300) + "...";
+    }
+
+    /**
+     * Stop the dispatcher and fail embeddings that were never sent
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        List<PendingEmbedding> abandoned = new ArrayList<>();
+        pending.drainTo(abandoned);
+        fail(abandoned, new IOException("GeminiClient is closed"));
+        senders.shutdown();
+    }
+
+    // Getter methods for Ballerina interop
+
+    public String getEmbeddingModel() {
+        return embeddingModel;
+    }
+
+    public String getTextModel() {
+        return textModel;
+    }
+
+    public long getEmbeddedItemCount() {
+        return embeddedItems.sum();
+    }
+
+    public long getEmbeddingBatchCount() {
+        return embeddingBatches.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = embeddingBatches.sum();
+        return batches == 0 ? 0.0 : (double) embeddedItems.sum() / batches;
+    }
+
+    /**
+     * Batching, throttling and concurrency counters for the admin metrics endpoint
+     */
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("embeddedItems", embeddedItems.sum());
+        metrics.put("embeddingBatches", embeddingBatches.sum());
+        metrics.put("averageBatchSize", getAverageBatchSize());
+        metrics.put("pendingEmbeddings", pending.size());
+        metrics.put("generateCalls", generateCalls.sum());
+        metrics.put("httpRequests", httpRequests.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("throttled", throttled.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("splitBatches", splitBatches.sum());
+        metrics.put("skippedItems", skippedItems.sum());
+        metrics.put("embeddingConcurrencyLimit", embeddingLimiter.getLimit());
+        metrics.put("embeddingInFlight", embeddingLimiter.getInFlight());
+        metrics.put("textConcurrencyLimit", textLimiter.getLimit());
+        metrics.put("textInFlight", textLimiter.getInFlight());
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GeminiClient{embeddingModel=%s, textModel=%s, embedded=%d, batches=%d, throttled=%d}",
+                embeddingModel, textModel, embeddedItems.sum(), embeddingBatches.sum(), throttled.sum());
+    }
+}
@@ -0,0 +1,38 @@
+package com.oasis.gemini;
+
+import java.io.IOException;
+
+/**
+ * Non-success response from the Gemini API after retries were exhausted
+ * Checked so that Ballerina interop surfaces it as an error value
+ */
+public class GeminiException extends IOException {
+    private final int statusCode;
+    private final String reason;
+
+    public GeminiException(int statusCode, String message) {
+        this(statusCode, null, message);
+    }
+
+    public GeminiException(int statusCode, String reason, String message) {
+        super(message);
+        this.statusCode = statusCode;
+        this.reason = reason;
+    }
+
+    /**
+     * HTTP status of the last attempt, e.g. 429 when the quota never recovered
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Why the API refused the call, from the error body: the ErrorInfo reason
+     * if there is one (e.g. API_KEY_INVALID), else the error status (e.g.
+     * INVALID_ARGUMENT); null if the body carried neither
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,565 @@
+package com.oasis.ingestion;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resumable embedding backfill for rows whose embedding column is NULL
+ *
+ * Replaces the offset-style loop of the admin backfill-embeddings endpoint,
+ * which embeds and updates one row at a time and starts again from the top
+ * after a failure. Here three stages run side by side:
+ * - a reader pages through the table by key (WHERE key > last ORDER BY key LIMIT n),
+ *   so each page is one index range scan and no cursor or transaction stays open
+ * - embed workers pass each page to a {@link IngestionStages.ChunkEmbedder} as one batch
+ * - a writer applies each page as one batched UPDATE in its own transaction
+ *
+ * Pages can finish embedding out of order. After each commit the checkpoint
+ * file is moved to the last key of the longest run of written pages starting
+ * from the previous checkpoint. It is replaced atomically and forced to disk,
+ * so after a crash or {@link #stop()} a new run resumes from there. Rows
+ * written past the checkpoint are not embedded again, because they no longer
+ * match "embedding IS NULL". Rows whose embedding fails are counted and
+ * skipped; clear the checkpoint to retry them.
+ *
+ * The reader is paced to {@link Settings#getRowsPerSecond()}, and the bounded
+ * queues between stages carry that limit through to the embedding provider
+ * and the database.
+ */
+public class EmbeddingBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBackfill.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long POLL_MILLIS = 100;
+
+    private final ConnectionSource connections;
+    private final Target target;
+    private final IngestionStages.ChunkEmbedder embedder;
+    private final Path checkpointFile;
+    private final Settings settings;
+
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsEmbedded = new LongAdder();
+    private final LongAdder rowsUpdated = new LongAdder();
+    private final LongAdder rowsFailed = new LongAdder();
+    private final LongAdder pagesWritten = new LongAdder();
+    private final LongAdder embedNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private volatile String checkpointKey;
+    private volatile long checkpointRows;
+    private volatile boolean stopRequested;
+    private volatile boolean running;
+
+    /**
+     * Opens JDBC connections; a DataSource's getConnection or a DriverManager call
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * The table being backfilled and how its rows are read and written
+     */
+    public static class Target {
+        private final String table;
+        private final String keyColumn;
+        private final String textExpression;
+        private final String embeddingColumn;
+        private final String embeddingParameter;
+        private final String extraAssignments;
+
+        /**
+         * @param textExpression     SQL expression producing the text to embed
+         * @param embeddingParameter placeholder for the vector literal, e.g. "CAST(? AS vector)"
+         * @param extraAssignments   further "col = expr" assignments for the UPDATE, or null
+         */
+        public Target(String table, String keyColumn, String textExpression, String embeddingColumn,
+                String embeddingParameter, String extraAssignments) {
+            if (table == null || keyColumn == null || textExpression == null || embeddingColumn == null
+                    || embeddingParameter == null || !embeddingParameter.contains("?")) {
+                throw new IllegalArgumentException("table, columns, text expression and embedding parameter are required");
+            }
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.textExpression = textExpression;
+            this.embeddingColumn = embeddingColumn;
+            this.embeddingParameter = embeddingParameter;
+            this.extraAssignments = extraAssignments;
+        }
+
+        /**
+         * document_chunks as written by storeChunksInDatabase
+         */
+        public static Target documentChunks() {
+            return new Target("document_chunks", "id", "chunk_text", "embedding", "CAST(? AS vector(768))",
+                    "embedding_generated_at = NOW()");
+        }
+
+        /**
+         * tax_rules, embedding the same text as the admin backfill endpoint
+         */
+        public static Target taxRules() {
+            return new Target("tax_rules", "id",
+                    "title || COALESCE(' \u2014 ' || NULLIF(description, ''), '') || E'\\nrule_data: ' || rule_data::text",
+                    "embedding", "CAST(? AS vector(768))", "updated_at = NOW()");
+        }
+
+        String firstPageSql() {
+            return "SELECT " + keyColumn + ", " + textExpression + " FROM " + table + " WHERE " + embeddingColumn
+                    + " IS NULL ORDER BY " + keyColumn + " LIMIT ?";
+        }
+
+        String nextPageSql() {
+            return "SELECT " + keyColumn + ", " + textExpression + " FROM " + table + " WHERE " + embeddingColumn
+                    + " IS NULL AND " + keyColumn + " > ? ORDER BY " + keyColumn + " LIMIT ?";
+        }
+
+        String updateSql() {
+            return "UPDATE " + table + " SET " + embeddingColumn + " = " + embeddingParameter
+                    + (extraAssignments != null ? ", " + extraAssignments : "") + " WHERE " + keyColumn + " = ?";
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getKeyColumn() {
+            return keyColumn;
+        }
+    }
+
+    /**
+     * Page size, parallelism and pacing
+     */
+    public static class Settings {
+        private final int pageSize;
+        private final int embedWorkers;
+        private final int queueCapacity;
+        private final double rowsPerSecond;
+
+        /**
+         * @param rowsPerSecond read budget; zero or less for unlimited
+         */
+        public Settings(int pageSize, int embedWorkers, int queueCapacity, double rowsPerSecond) {
+            if (pageSize < 1 || embedWorkers < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("pageSize, embedWorkers and queueCapacity must be positive");
+            }
+            this.pageSize = pageSize;
+            this.embedWorkers = embedWorkers;
+            this.queueCapacity = queueCapacity;
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        /**
+         * From oasis.backfill.pageSize (100, the batchEmbedContents limit),
+         * oasis.backfill.embedWorkers (4), oasis.backfill.queuePages (4) and
+         * oasis.backfill.rowsPerSecond (50)
+         */
+        public static Settings defaults() {
+            return new Settings(Integer.getInteger("oasis.backfill.pageSize", 100),
+                    Integer.getInteger("oasis.backfill.embedWorkers", 4),
+                    Integer.getInteger("oasis.backfill.queuePages", 4),
+                    Double.parseDouble(System.getProperty("oasis.backfill.rowsPerSecond", "50")));
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public int getEmbedWorkers() {
+            return embedWorkers;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond;
+        }
+    }
+
+    public EmbeddingBackfill(ConnectionSource connections, Target target, IngestionStages.ChunkEmbedder embedder,
+            Path checkpointFile) {
+        this(connections, target, embedder, checkpointFile, Settings.defaults());
+    }
+
+    public EmbeddingBackfill(ConnectionSource connections, Target target, IngestionStages.ChunkEmbedder embedder,
+            Path checkpointFile, Settings settings) {
+        if (connections == null || target == null || embedder == null || checkpointFile == null || settings == null) {
+            throw new IllegalArgumentException("connections, target, embedder, checkpointFile and settings are required");
+        }
+        this.connections = connections;
+        this.target = target;
+        this.embedder = embedder;
+        this.checkpointFile = checkpointFile;
+        this.settings = settings;
+    }
+
+    /**
+     * Backfill from the checkpoint (or the start) to the end of the table
+     *
+     * @return the metrics of this run
+     * @throws SQLException if reading or writing fails; the checkpoint keeps the last committed page
+     */
+    public Map<String, Object> run() throws IOException, SQLException, InterruptedException {
+        synchronized (this) {
+            if (running) {
+                throw new IllegalStateException("Backfill is already running");
+            }
+            running = true;
+            stopRequested = false;
+        }
+        try {
+            loadCheckpoint();
+            logger.info("Backfilling {}.{} from {} at {} rows/s", target.table, target.embeddingColumn,
+                    checkpointKey != null ? "key " + checkpointKey : "the start", settings.rowsPerSecond);
+            execute();
+            running = false;
+            return getMetricsMap();
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Ask a running backfill to finish the pages in flight and return
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    private void execute() throws IOException, SQLException, InterruptedException {
+        BlockingQueue<Page> toEmbed = new ArrayBlockingQueue<>(settings.queueCapacity);
+        BlockingQueue<Page> toWrite = new ArrayBlockingQueue<>(settings.queueCapacity + settings.embedWorkers);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long[] pagesRead = { -1 };
+
+        Thread reader = new Thread(() -> {
+            try {
+                pagesRead[0] = readPages(toEmbed);
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            }
+        }, "backfill-reader");
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 1; i <= settings.embedWorkers; i++) {
+            workers.add(new Thread(() -> embedPages(toEmbed, toWrite, failure), "backfill-embed-" + i));
+        }
+        reader.setDaemon(true);
+        reader.start();
+        for (Thread worker : workers) {
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        try (Connection connection = connections.open();
+                PreparedStatement update = connection.prepareStatement(target.updateSql())) {
+            connection.setAutoCommit(false);
+            TreeMap<Long, Page> written = new TreeMap<>();
+            long nextSequence = 0;
+            while (true) {
+                Exception error = failure.get();
+                if (error != null) {
+                    throw error instanceof SQLException ? (SQLException) error : new IOException(error);
+                }
+                if (!reader.isAlive() && pagesRead[0] >= 0 && nextSequence >= pagesRead[0]) {
+                    break;
+                }
+                Page page = toWrite.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (page == null) {
+                    continue;
+                }
+                writePage(connection, update, page);
+                written.put(page.sequence, page);
+                Page last = null;
+                long rows = checkpointRows;
+                while (written.containsKey(nextSequence)) {
+                    last = written.remove(nextSequence++);
+                    rows += last.keys.size();
+                }
+                if (last != null) {
+                    saveCheckpoint(last.lastKey(), rows);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            stopRequested = true;
+            throw e;
+        } catch (Exception e) {
+            stopRequested = true;
+            throw new IOException(e);
+        } finally {
+            stopRequested = true;
+            reader.join(TimeUnit.SECONDS.toMillis(5));
+            for (Thread worker : workers) {
+                worker.interrupt();
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+        logger.info("Backfill of {} finished: {}", target.table, this);
+    }
+
+    // Returns the number of pages handed to the embed workers
+    private long readPages(BlockingQueue<Page> toEmbed) throws SQLException, InterruptedException {
+        long sequence = 0;
+        String lastKey = checkpointKey;
+        long started = System.nanoTime();
+        long budgetRows = 0;
+        try (Connection connection = connections.open();
+                PreparedStatement first = connection.prepareStatement(target.firstPageSql());
+                PreparedStatement next = connection.prepareStatement(target.nextPageSql())) {
+            connection.setAutoCommit(true);
+            while (!stopRequested) {
+                // Pace reads so the whole run stays within the rows-per-second budget
+                if (settings.rowsPerSecond > 0) {
+                    long dueNanos = started + (long) (budgetRows / settings.rowsPerSecond * 1e9);
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        throttledNanos.add(waitNanos);
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                }
+                PreparedStatement query;
+                if (lastKey == null) {
+                    query = first;
+                    query.setInt(1, settings.pageSize);
+                } else {
+                    query = next;
+                    query.setString(1, lastKey);
+                    query.setInt(2, settings.pageSize);
+                }
+                Page page = new Page(sequence);
+                try (ResultSet rows = query.executeQuery()) {
+                    while (rows.next()) {
+                        page.keys.add(rows.getString(1));
+                        String text = rows.getString(2);
+                        page.chunks.add(new IngestionChunk(rows.getString(1), 0, text, 0, 0, "backfill"));
+                    }
+                }
+                if (page.keys.isEmpty()) {
+                    break;
+                }
+                rowsRead.add(page.keys.size());
+                budgetRows += page.keys.size();
+                lastKey = page.lastKey();
+                while (!toEmbed.offer(page, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (stopRequested) {
+                        return sequence;
+                    }
+                }
+                sequence++;
+                if (page.keys.size() < settings.pageSize) {
+                    break;
+                }
+            }
+        }
+        return sequence;
+    }
+
+    private void embedPages(BlockingQueue<Page> toEmbed, BlockingQueue<Page> toWrite,
+            AtomicReference<Exception> failure) {
+        try {
+            while (true) {
+                Page page = toEmbed.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (page == null) {
+                    if (stopRequested) {
+                        return;
+                    }
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    embedder.embed(page.chunks);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // Rows left without an embedding are counted as failed by the writer
+                    logger.warn("Embedding failed for {} rows of {} after key {}: {}", page.keys.size(),
+                            target.table, page.keys.get(0), e.getMessage());
+                }
+                embedNanos.add(System.nanoTime() - start);
+                toWrite.put(page);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void writePage(Connection connection, PreparedStatement update, Page page) throws SQLException {
+        long start = System.nanoTime();
+        int batched = 0;
+        for (int i = 0; i < page.keys.size(); i++) {
+            float[] embedding = page.chunks.get(i).getEmbedding();
+            if (embedding == null) {
+                continue;
+            }
+            rowsEmbedded.increment();
+            update.setString(1, toVectorLiteral(embedding));
+            update.setString(2, page.keys.get(i));
+            update.addBatch();
+            batched++;
+        }
+        try {
+            if (batched > 0) {
+                update.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        rowsUpdated.add(batched);
+        rowsFailed.add(page.keys.size() - batched);
+        pagesWritten.increment();
+        writeNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * pgvector text form, "[0.1,0.2,...]"
+     */
+    static String toVectorLiteral(float[] embedding) {
+        StringBuilder literal = new StringBuilder(embedding.length * 12 + 2).append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(embedding[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    private void loadCheckpoint() throws IOException {
+        checkpointKey = null;
+        checkpointRows = 0;
+        if (!Files.exists(checkpointFile)) {
+            return;
+        }
+        JsonNode checkpoint = MAPPER.readTree(checkpointFile.toFile());
+        if (!target.table.equals(checkpoint.path("table").asText())
+                || !target.keyColumn.equals(checkpoint.path("keyColumn").asText())) {
+            throw new IOException("Checkpoint " + checkpointFile + " belongs to " + checkpoint.path("table").asText()
+                    + ", not " + target.table);
+        }
+        JsonNode key = checkpoint.path("lastKey");
+        checkpointKey = key.isNull() || key.isMissingNode() ? null : key.asText();
+        checkpointRows = checkpoint.path("rowsCommitted").asLong();
+    }
+
+    // Write to a temporary file, force it, then rename over the old checkpoint
+    private void saveCheckpoint(String lastKey, long rowsCommitted) throws IOException {
+        ObjectNode checkpoint = MAPPER.createObjectNode();
+        checkpoint.put("table", target.table);
+        checkpoint.put("keyColumn", target.keyColumn);
+        checkpoint.put("lastKey", lastKey);
+        checkpoint.put("rowsCommitted", rowsCommitted);
+        checkpoint.put("updatedAt", Instant.now().toString());
+
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(MAPPER.writeValueAsBytes(checkpoint)));
+            channel.force(true);
+        }
+        Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointKey = lastKey;
+        checkpointRows = rowsCommitted;
+    }
+
+    /**
+     * Forget the checkpoint so the next run starts from the beginning
+     */
+    public void resetCheckpoint() throws IOException {
+        if (running) {
+            throw new IllegalStateException("Backfill is running");
+        }
+        Files.deleteIfExists(checkpointFile);
+        checkpointKey = null;
+        checkpointRows = 0;
+    }
+
+    // Getter methods for Ballerina interop
+    public boolean isRunning() {
+        return running;
+    }
+
+    public String getCheckpointKey() {
+        return checkpointKey;
+    }
+
+    public long getRowsUpdated() {
+        return rowsUpdated.sum();
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed.sum();
+    }
+
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("table", target.table);
+        metrics.put("running", running);
+        metrics.put("checkpointKey", checkpointKey);
+        metrics.put("rowsCommitted", checkpointRows);
+        metrics.put("rowsRead", rowsRead.sum());
+        metrics.put("rowsEmbedded", rowsEmbedded.sum());
+        metrics.put("rowsUpdated", rowsUpdated.sum());
+        metrics.put("rowsFailed", rowsFailed.sum());
+        metrics.put("pagesWritten", pagesWritten.sum());
+        metrics.put("embedSeconds", embedNanos.sum() / 1e9);
+        metrics.put("writeSeconds", writeNanos.sum() / 1e9);
+        metrics.put("throttledSeconds", throttledNanos.sum() / 1e9);
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EmbeddingBackfill{table=%s, read=%d, updated=%d, failed=%d, checkpoint=%s}",
+                target.table, rowsRead.sum(), rowsUpdated.sum(), rowsFailed.sum(), checkpointKey);
+    }
+
+    /**
+     * One keyset page: row keys in order and a chunk per row for the embedder
+     */
+    private static final class Page {
+        final long sequence;
+        final List<String> keys = new ArrayList<>();
+        final List<IngestionChunk> chunks = new ArrayList<>();
+
+        Page(long sequence) {
+            this.sequence = sequence;
+        }
+
+        String lastKey() {
+            return keys.get(keys.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.oasis.ingestion;
+
+import com.oasis.gemini.GeminiClient;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.DriverManager;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command-line runner for {@link EmbeddingBackfill}
+ *
+ * The JDBC driver is not bundled; put it on the classpath next to the
+ * library jar. Credentials come from oasis.backfill.user and
+ * oasis.backfill.password, falling back to PGUSER and PGPASSWORD. Embeddings
+ * come from Gemini (GEMINI_API_KEY); there is no offline mode, because
+ * placeholder vectors written to a real table are indistinguishable from
+ * real ones and stop the backfill from ever revisiting those rows. Chunks
+ * Gemini rejects are left unembedded and counted as failed. Interrupting
+ * the run (Ctrl-C) lets the pages in flight commit, and the next run
+ * continues from the checkpoint.
+ *
+ * Usage: EmbeddingBackfillTool jdbcUrl chunks|rules [checkpointFile] [--reset]
+ */
+public class EmbeddingBackfillTool {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !("chunks".equals(args[1]) || "rules".equals(args[1]))) {
+            System.out.println("Usage: EmbeddingBackfillTool jdbcUrl chunks|rules [checkpointFile] [--reset]");
+            System.exit(2);
+        }
+        String url = args[0];
+        EmbeddingBackfill.Target target = "chunks".equals(args[1]) ? EmbeddingBackfill.Target.documentChunks()
+                : EmbeddingBackfill.Target.taxRules();
+        Path checkpoint = Paths.get(args.length > 2 && !args[2].startsWith("--") ? args[2]
+                : "backfill-" + target.getTable() + ".checkpoint.json");
+        String user = System.getProperty("oasis.backfill.user", System.getenv("PGUSER"));
+        String password = System.getProperty("oasis.backfill.password", System.getenv("PGPASSWORD"));
+
+        String apiKey = System.getenv("GEMINI_API_KEY");
+        if (apiKey == null || apiKey.isEmpty()) {
+            System.out.println("Set GEMINI_API_KEY");
+            System.exit(2);
+        }
+        GeminiClient gemini = new GeminiClient(GeminiClient.DEFAULT_BASE_URL, apiKey,
+                GeminiClient.DEFAULT_EMBEDDING_MODEL, GeminiClient.DEFAULT_TEXT_MODEL);
+
+        EmbeddingBackfill backfill = new EmbeddingBackfill(() -> DriverManager.getConnection(url, user, password),
+                target, gemini.chunkEmbedder(), checkpoint);
+        for (String arg : args) {
+            if ("--reset".equals(arg)) {
+                backfill.resetCheckpoint();
+            }
+        }
+        Thread main = Thread.currentThread();
+        Thread stopper = new Thread(() -> {
+            backfill.stop();
+            try {
+                main.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "backfill-shutdown");
+        Runtime.getRuntime().addShutdownHook(stopper);
+
+        try {
+            Map<String, Object> metrics = backfill.run();
+            metrics.forEach((name, value) -> System.out.printf("%-18s %s%n", name, value));
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(stopper);
+            } catch (IllegalStateException e) {
+                // Already shutting down; the hook is waiting for us
+            }
+            gemini.close();
+        }
+    }
+
+}
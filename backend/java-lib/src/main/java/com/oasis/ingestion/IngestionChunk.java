@@ -0,0 +1,86 @@
+package com.oasis.ingestion;
+
+/**
+ * A chunk of document text flowing through the embed and persist stages
+ * Field names follow the document_chunks columns written by storeChunksInDatabase
+ */
+public class IngestionChunk {
+    private final String documentId;
+    private final int sequence;
+    private final String chunkText;
+    private final int startPosition;
+    private final int endPosition;
+    private final int tokenCount;
+    private final String chunkType;
+    private volatile float[] embedding;
+
+    public IngestionChunk(String documentId, int sequence, String chunkText, int startPosition, int tokenCount,
+            String chunkType) {
+        this(documentId, sequence, chunkText, startPosition,
+                startPosition + (chunkText != null ? chunkText.length() : 0), tokenCount, chunkType);
+    }
+
+    /**
+     * Chunk whose source span differs in length from its text, e.g. after normalisation
+     */
+    public IngestionChunk(String documentId, int sequence, String chunkText, int startPosition, int endPosition,
+            int tokenCount, String chunkType) {
+        this.documentId = documentId;
+        this.sequence = sequence;
+        this.chunkText = chunkText != null ? chunkText : "";
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+        this.tokenCount = tokenCount;
+        this.chunkType = chunkType != null ? chunkType : "paragraph";
+    }
+
+    // Getter methods for Ballerina interop
+    public String getId() {
+        return documentId + "_chunk_" + sequence;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public String getChunkText() {
+        return chunkText;
+    }
+
+    public int getStartPosition() {
+        return startPosition;
+    }
+
+    public int getEndPosition() {
+        return endPosition;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public String getChunkType() {
+        return chunkType;
+    }
+
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    public boolean hasEmbedding() {
+        return embedding != null;
+    }
+
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IngestionChunk{id='%s', tokens=%d, embedded=%s}", getId(), tokenCount, hasEmbedding());
+    }
+}
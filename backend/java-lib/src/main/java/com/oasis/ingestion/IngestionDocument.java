@@ -0,0 +1,37 @@
+package com.oasis.ingestion;
+
+/**
+ * A document submitted to the {@link IngestionPipeline}
+ */
+public class IngestionDocument {
+    private final String documentId;
+    private final String fileName;
+    private final byte[] content;
+
+    public IngestionDocument(String documentId, String fileName, byte[] content) {
+        if (documentId == null || documentId.isEmpty()) {
+            throw new IllegalArgumentException("documentId is required");
+        }
+        this.documentId = documentId;
+        this.fileName = fileName != null ? fileName : "unknown_document";
+        this.content = content != null ? content : new byte[0];
+    }
+
+    // Getter methods for Ballerina interop
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IngestionDocument{id='%s', file='%s', bytes=%d}", documentId, fileName, content.length);
+    }
+}
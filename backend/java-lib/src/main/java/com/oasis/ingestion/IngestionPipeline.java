@@ -0,0 +1,505 @@
+package com.oasis.ingestion;
+
+import com.oasis.document.extractor.DocumentExtractionResult;
+import com.oasis.document.extractor.UnifiedDocumentExtractor;
+import com.oasis.document.text.NormalizedText;
+import com.oasis.document.text.TextNormalizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Staged (SEDA) ingestion pipeline: extract, chunk, embed, persist
+ *
+ * Each stage owns a bounded queue and its own worker pool, so document N+1 can
+ * be parsed while the chunks of document N are being embedded or written.
+ * Items move between stages with a blocking put: when a downstream stage falls
+ * behind its queue fills, the upstream workers stall, and eventually
+ * {@link #submit} blocks the caller. Embed and persist workers drain up to
+ * their batch size per call so a batch API (Gemini batchEmbedContents,
+ * multi-row INSERT) can be used.
+ */
+public class IngestionPipeline implements AutoCloseable {
+
+    public static final String STAGE_EXTRACT = "extract";
+    public static final String STAGE_CHUNK = "chunk";
+    public static final String STAGE_EMBED = "embed";
+    public static final String STAGE_PERSIST = "persist";
+
+    private static final long POLL_MILLIS = 100;
+
+    private final Stage<IngestionDocument> extractStage;
+    private final Stage<ExtractedText> chunkStage;
+    private final Stage<IngestionChunk> embedStage;
+    private final Stage<IngestionChunk> persistStage;
+    private final List<Stage<?>> stages;
+
+    private final Map<String, DocumentTracker> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    /**
+     * Sizing for one stage
+     */
+    public static class StageConfig {
+        private final int workers;
+        private final int queueCapacity;
+        private final int batchSize;
+
+        public StageConfig(int workers, int queueCapacity, int batchSize) {
+            if (workers < 1 || queueCapacity < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("workers, queueCapacity and batchSize must be positive");
+            }
+            this.workers = workers;
+            this.queueCapacity = queueCapacity;
+            this.batchSize = batchSize;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+    }
+
+    /**
+     * Pipeline with default stage sizing
+     */
+    public IngestionPipeline(IngestionStages.TextExtractor extractor, IngestionStages.TextChunker chunker,
+            IngestionStages.ChunkEmbedder embedder, IngestionStages.ChunkPersister persister) {
+        this(extractor, chunker, embedder, persister,
+                new StageConfig(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 16, 1),
+                new StageConfig(2, 16, 1),
+                new StageConfig(4, 256, 32),
+                new StageConfig(2, 512, 64));
+    }
+
+    public IngestionPipeline(IngestionStages.TextExtractor extractor, IngestionStages.TextChunker chunker,
+            IngestionStages.ChunkEmbedder embedder, IngestionStages.ChunkPersister persister,
+            StageConfig extractConfig, StageConfig chunkConfig, StageConfig embedConfig, StageConfig persistConfig) {
+        if (extractor == null || chunker == null || embedder == null || persister == null) {
+            throw new IllegalArgumentException("extractor, chunker, embedder and persister are required");
+        }
+
+        // Stages are built back to front so each handler can hand off to the next queue
+        this.persistStage = new Stage<>(STAGE_PERSIST, persistConfig, chunk -> trackerOf(chunk.getDocumentId()),
+                batch -> {
+                    persister.persist(batch);
+                    for (IngestionChunk chunk : batch) {
+                        DocumentTracker tracker = inFlight.get(chunk.getDocumentId());
+                        if (tracker != null) {
+                            tracker.chunkPersisted();
+                        }
+                    }
+                });
+        this.embedStage = new Stage<>(STAGE_EMBED, embedConfig, chunk -> trackerOf(chunk.getDocumentId()),
+                batch -> {
+                    embedder.embed(batch);
+                    for (IngestionChunk chunk : batch) {
+                        persistStage.put(chunk);
+                    }
+                });
+        this.chunkStage = new Stage<>(STAGE_CHUNK, chunkConfig, text -> text.tracker,
+                batch -> {
+                    for (ExtractedText text : batch) {
+                        List<IngestionChunk> chunks = chunker.chunk(text.tracker.documentId, text.text);
+                        if (text.offsets != null) {
+                            chunks = toExtractedOffsets(chunks, text.offsets);
+                        }
+                        text.tracker.chunksProduced(chunks.size());
+                        for (IngestionChunk chunk : chunks) {
+                            embedStage.put(chunk);
+                        }
+                    }
+                });
+        this.extractStage = new Stage<>(STAGE_EXTRACT, extractConfig, doc -> trackerOf(doc.getDocumentId()),
+                batch -> {
+                    for (IngestionDocument document : batch) {
+                        DocumentTracker tracker = trackerOf(document.getDocumentId());
+                        if (extractor instanceof IngestionStages.NormalizingTextExtractor) {
+                            NormalizedText normalized = ((IngestionStages.NormalizingTextExtractor) extractor)
+                                    .extractNormalized(document);
+                            chunkStage.put(new ExtractedText(tracker, normalized.getText(), normalized));
+                        } else {
+                            String text = extractor.extract(document);
+                            chunkStage.put(new ExtractedText(tracker, text != null ? text : "", null));
+                        }
+                    }
+                });
+
+        List<Stage<?>> all = new ArrayList<>();
+        all.add(extractStage);
+        all.add(chunkStage);
+        all.add(embedStage);
+        all.add(persistStage);
+        this.stages = Collections.unmodifiableList(all);
+        for (Stage<?> stage : stages) {
+            stage.start();
+        }
+    }
+
+    /**
+     * Text extractor backed by the unified Tika extractor
+     */
+    public static IngestionStages.TextExtractor tikaExtractor() {
+        return document -> extractWithTika(document).getExtractedText();
+    }
+
+    /**
+     * Tika extractor followed by {@link TextNormalizer}, so page furniture,
+     * line-break hyphens and whitespace runs are not chunked and embedded;
+     * chunk positions still refer to the extracted text
+     */
+    public static IngestionStages.NormalizingTextExtractor normalizedTikaExtractor() {
+        return document -> TextNormalizer.shared().normalize(extractWithTika(document));
+    }
+
+    private static List<IngestionChunk> toExtractedOffsets(List<IngestionChunk> chunks, NormalizedText offsets) {
+        List<IngestionChunk> mapped = new ArrayList<>(chunks.size());
+        for (IngestionChunk chunk : chunks) {
+            mapped.add(new IngestionChunk(chunk.getDocumentId(), chunk.getSequence(), chunk.getChunkText(),
+                    offsets.toOriginalOffset(chunk.getStartPosition()), offsets.toOriginalEnd(chunk.getEndPosition()),
+                    chunk.getTokenCount(), chunk.getChunkType()));
+        }
+        return mapped;
+    }
+
+    private static DocumentExtractionResult extractWithTika(IngestionDocument document) throws IOException {
+        DocumentExtractionResult result = UnifiedDocumentExtractor.extractContent(document.getContent(),
+                document.getFileName());
+        if (!result.isExtractionSuccessful()) {
+            throw new IllegalStateException("Extraction failed for " + document.getFileName() + ": "
+                    + result.getErrorMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Submit a document, blocking while the extract queue is full
+     */
+    public CompletableFuture<IngestionResult> submit(IngestionDocument document) throws InterruptedException {
+        DocumentTracker tracker = register(document);
+        try {
+            extractStage.put(document);
+        } catch (InterruptedException e) {
+            tracker.fail(e);
+            throw e;
+        }
+        return tracker.future;
+    }
+
+    /**
+     * Submit a document, waiting at most timeoutMillis for queue space
+     *
+     * @return the completion future, or null when the pipeline stayed saturated
+     */
+    public CompletableFuture<IngestionResult> trySubmit(IngestionDocument document, long timeoutMillis)
+            throws InterruptedException {
+        DocumentTracker tracker = register(document);
+        if (!extractStage.offer(document, timeoutMillis)) {
+            inFlight.remove(document.getDocumentId(), tracker);
+            return null;
+        }
+        return tracker.future;
+    }
+
+    private DocumentTracker register(IngestionDocument document) {
+        if (!accepting) {
+            throw new IllegalStateException("Pipeline is shut down");
+        }
+        DocumentTracker tracker = new DocumentTracker(document.getDocumentId(), sequence.incrementAndGet());
+        if (inFlight.putIfAbsent(document.getDocumentId(), tracker) != null) {
+            throw new IllegalArgumentException("Document already in flight: " + document.getDocumentId());
+        }
+        return tracker;
+    }
+
+    private DocumentTracker trackerOf(String documentId) {
+        return inFlight.get(documentId);
+    }
+
+    /**
+     * Number of documents submitted but not yet completed or failed
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Metrics snapshot for each stage, in pipeline order
+     */
+    public List<StageMetrics> getStageMetrics() {
+        List<StageMetrics> metrics = new ArrayList<>(stages.size());
+        for (Stage<?> stage : stages) {
+            metrics.add(stage.snapshot());
+        }
+        return metrics;
+    }
+
+    /**
+     * Metrics snapshot keyed by stage name, for Ballerina interop
+     */
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("inFlightDocuments", inFlight.size());
+        for (StageMetrics metrics : getStageMetrics()) {
+            map.put(metrics.getStageName(), metrics.toMap());
+        }
+        return map;
+    }
+
+    /**
+     * Stop accepting documents and wait for in-flight work to drain
+     *
+     * @return true when every in-flight document finished within the timeout
+     */
+    public boolean shutdown(long timeoutMillis) throws InterruptedException {
+        accepting = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!inFlight.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        boolean drained = inFlight.isEmpty();
+        running = false;
+        for (Stage<?> stage : stages) {
+            stage.stop();
+        }
+        for (DocumentTracker tracker : new ArrayList<>(inFlight.values())) {
+            tracker.fail(new IllegalStateException("Pipeline shut down before document completed"));
+        }
+        return drained;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        shutdown(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Extract stage output
+     */
+    private static final class ExtractedText {
+        final DocumentTracker tracker;
+        final String text;
+        // Null unless the extractor rewrote the text
+        final NormalizedText offsets;
+
+        ExtractedText(DocumentTracker tracker, String text, NormalizedText offsets) {
+            this.tracker = tracker;
+            this.text = text;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * Per-document completion tracking across the chunk-level stages
+     */
+    private final class DocumentTracker {
+        final String documentId;
+        final long submitSequence;
+        final long submittedAt = System.nanoTime();
+        final CompletableFuture<IngestionResult> future = new CompletableFuture<>();
+        final AtomicInteger persisted = new AtomicInteger();
+        volatile int expectedChunks = -1;
+
+        DocumentTracker(String documentId, long submitSequence) {
+            this.documentId = documentId;
+            this.submitSequence = submitSequence;
+        }
+
+        boolean isFailed() {
+            return future.isCompletedExceptionally();
+        }
+
+        void chunksProduced(int count) {
+            expectedChunks = count;
+            if (count == 0) {
+                complete();
+            }
+        }
+
+        void chunkPersisted() {
+            // expectedChunks is set before any chunk of this document is queued for embedding
+            if (persisted.incrementAndGet() == expectedChunks) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            inFlight.remove(documentId, this);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedAt);
+            future.complete(new IngestionResult(documentId, Math.max(expectedChunks, 0), elapsedMillis));
+        }
+
+        void fail(Throwable error) {
+            inFlight.remove(documentId, this);
+            future.completeExceptionally(error);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler<T> {
+        void handle(List<T> batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface TrackerLookup<T> {
+        DocumentTracker trackerFor(T item);
+    }
+
+    /**
+     * Queued item with its enqueue time for wait-time metrics
+     */
+    private static final class Envelope<T> {
+        final T item;
+        final long enqueuedAt;
+
+        Envelope(T item) {
+            this.item = item;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * One pipeline stage: bounded queue, worker threads and counters
+     */
+    private final class Stage<T> {
+        final String name;
+        final StageConfig config;
+        final BlockingQueue<Envelope<T>> queue;
+        final TrackerLookup<T> trackerLookup;
+        final BatchHandler<T> handler;
+        final List<Thread> workers = new ArrayList<>();
+
+        final LongAdder processed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder batches = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder serviceNanos = new LongAdder();
+        final AtomicLong maxServiceNanos = new AtomicLong();
+        final AtomicInteger busyWorkers = new AtomicInteger();
+
+        Stage(String name, StageConfig config, TrackerLookup<T> trackerLookup, BatchHandler<T> handler) {
+            this.name = name;
+            this.config = config;
+            this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+            this.trackerLookup = trackerLookup;
+            this.handler = handler;
+        }
+
+        void start() {
+            for (int i = 0; i < config.getWorkers(); i++) {
+                Thread thread = new Thread(this::workLoop, "ingest-" + name + "-" + i);
+                thread.setDaemon(true);
+                workers.add(thread);
+                thread.start();
+            }
+        }
+
+        void stop() throws InterruptedException {
+            for (Thread thread : workers) {
+                thread.interrupt();
+            }
+            for (Thread thread : workers) {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        }
+
+        void put(T item) throws InterruptedException {
+            queue.put(new Envelope<>(item));
+        }
+
+        boolean offer(T item, long timeoutMillis) throws InterruptedException {
+            return queue.offer(new Envelope<>(item), timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void workLoop() {
+            List<Envelope<T>> drained = new ArrayList<>(config.getBatchSize());
+            List<T> batch = new ArrayList<>(config.getBatchSize());
+            while (running) {
+                drained.clear();
+                batch.clear();
+                try {
+                    Envelope<T> first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    drained.add(first);
+                    if (config.getBatchSize() > 1) {
+                        queue.drainTo(drained, config.getBatchSize() - 1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                long start = System.nanoTime();
+                for (Envelope<T> envelope : drained) {
+                    waitNanos.add(start - envelope.enqueuedAt);
+                    // Skip leftovers of documents that already failed in another stage
+                    DocumentTracker tracker = trackerLookup.trackerFor(envelope.item);
+                    if (tracker != null && !tracker.isFailed()) {
+                        batch.add(envelope.item);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                busyWorkers.incrementAndGet();
+                try {
+                    handler.handle(batch);
+                    processed.add(batch.size());
+                } catch (InterruptedException e) {
+                    failBatch(batch, e);
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    failBatch(batch, e);
+                } finally {
+                    busyWorkers.decrementAndGet();
+                    long elapsed = System.nanoTime() - start;
+                    serviceNanos.add(elapsed);
+                    batches.increment();
+                    maxServiceNanos.accumulateAndGet(elapsed, Math::max);
+                }
+            }
+        }
+
+        private void failBatch(List<T> batch, Exception error) {
+            failed.add(batch.size());
+            for (T item : batch) {
+                DocumentTracker tracker = trackerLookup.trackerFor(item);
+                if (tracker != null) {
+                    tracker.fail(new IllegalStateException("Stage '" + name + "' failed for document "
+                            + tracker.documentId + ": " + error.getMessage(), error));
+                }
+            }
+        }
+
+        StageMetrics snapshot() {
+            return new StageMetrics(name, config.getWorkers(), busyWorkers.get(), queue.size(),
+                    config.getQueueCapacity(), processed.sum(), failed.sum(), batches.sum(),
+                    waitNanos.sum(), serviceNanos.sum(), maxServiceNanos.get());
+        }
+    }
+}
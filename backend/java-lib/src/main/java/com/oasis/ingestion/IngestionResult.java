@@ -0,0 +1,35 @@
+package com.oasis.ingestion;
+
+/**
+ * Outcome of a document that made it through every pipeline stage
+ */
+public class IngestionResult {
+    private final String documentId;
+    private final int chunkCount;
+    private final long elapsedMillis;
+
+    public IngestionResult(String documentId, int chunkCount, long elapsedMillis) {
+        this.documentId = documentId;
+        this.chunkCount = chunkCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IngestionResult{id='%s', chunks=%d, elapsed=%dms}", documentId, chunkCount,
+                elapsedMillis);
+    }
+}
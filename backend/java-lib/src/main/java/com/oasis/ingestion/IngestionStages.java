@@ -0,0 +1,74 @@
+package com.oasis.ingestion;
+
+import com.oasis.document.text.NormalizedText;
+
+import java.util.List;
+
+/**
+ * Pluggable stage implementations for the {@link IngestionPipeline}
+ *
+ * Production wiring uses the Tika extractor, the tokenizer service, Gemini
+ * embeddings and PostgreSQL; tests and load runs can plug in local stubs.
+ */
+public final class IngestionStages {
+
+    private IngestionStages() {
+    }
+
+    /**
+     * Turns document bytes into plain text
+     */
+    @FunctionalInterface
+    public interface TextExtractor {
+        String extract(IngestionDocument document) throws Exception;
+    }
+
+    /**
+     * Extractor that rewrites the extracted text before chunking
+     *
+     * The pipeline keeps the offset map and moves each chunk's start and end
+     * positions back onto the extracted text, which is what gets stored and
+     * highlighted.
+     */
+    @FunctionalInterface
+    public interface NormalizingTextExtractor extends TextExtractor {
+        NormalizedText extractNormalized(IngestionDocument document) throws Exception;
+
+        @Override
+        default String extract(IngestionDocument document) throws Exception {
+            return extractNormalized(document).getText();
+        }
+    }
+
+    /**
+     * Counts model tokens for a piece of text (the tokenizer service in production)
+     */
+    @FunctionalInterface
+    public interface TokenCounter {
+        int countTokens(String text) throws Exception;
+    }
+
+    /**
+     * Splits extracted text into chunks
+     */
+    @FunctionalInterface
+    public interface TextChunker {
+        List<IngestionChunk> chunk(String documentId, String text) throws Exception;
+    }
+
+    /**
+     * Fills in the embedding of each chunk in the batch
+     */
+    @FunctionalInterface
+    public interface ChunkEmbedder {
+        void embed(List<IngestionChunk> chunks) throws Exception;
+    }
+
+    /**
+     * Writes a batch of embedded chunks to storage
+     */
+    @FunctionalInterface
+    public interface ChunkPersister {
+        void persist(List<IngestionChunk> chunks) throws Exception;
+    }
+}
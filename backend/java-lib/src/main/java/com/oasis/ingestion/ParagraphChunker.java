@@ -0,0 +1,111 @@
+package com.oasis.ingestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paragraph-packing chunker with the same rules as createSemanticChunks:
+ * paragraphs are split on blank lines and packed into a chunk until the next
+ * paragraph would exceed the token limit
+ */
+public class ParagraphChunker implements IngestionStages.TextChunker {
+    private final IngestionStages.TokenCounter tokenCounter;
+    private final int maxTokens;
+
+    public ParagraphChunker(IngestionStages.TokenCounter tokenCounter, int maxTokens) {
+        if (tokenCounter == null) {
+            throw new IllegalArgumentException("tokenCounter is required");
+        }
+        this.tokenCounter = tokenCounter;
+        this.maxTokens = maxTokens > 0 ? maxTokens : 1000;
+    }
+
+    @Override
+    public List<IngestionChunk> chunk(String documentId, String text) throws Exception {
+        List<IngestionChunk> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        int sequence = 1;
+        int position = 0;
+
+        for (String paragraph : splitParagraphs(text)) {
+            int paragraphTokens = tokenCounter.countTokens(paragraph);
+            if (currentTokens + paragraphTokens > maxTokens && current.length() > 0) {
+                chunks.add(newChunk(documentId, sequence++, current.toString().trim(), position));
+                current.setLength(0);
+                current.append(paragraph);
+                currentTokens = paragraphTokens;
+                position += paragraph.length();
+            } else {
+                if (current.length() > 0) {
+                    current.append("\n\n");
+                }
+                current.append(paragraph);
+                currentTokens += paragraphTokens;
+            }
+        }
+        String last = current.toString().trim();
+        if (!last.isEmpty()) {
+            chunks.add(newChunk(documentId, sequence, last, position));
+        }
+        return chunks;
+    }
+
+    private IngestionChunk newChunk(String documentId, int sequence, String text, int position) throws Exception {
+        return new IngestionChunk(documentId, sequence, text, position, tokenCounter.countTokens(text),
+                chunkType(text));
+    }
+
+    /**
+     * Split on runs of two or more newlines, trimming each paragraph
+     */
+    static List<String> splitParagraphs(String text) {
+        List<String> paragraphs = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            if (text.charAt(i) == '\n') {
+                int j = i;
+                int newlines = 0;
+                while (j < length && (text.charAt(j) == '\n' || text.charAt(j) == '\r'
+                        || text.charAt(j) == ' ' || text.charAt(j) == '\t')) {
+                    if (text.charAt(j) == '\n') {
+                        newlines++;
+                    }
+                    j++;
+                }
+                if (newlines >= 2) {
+                    addParagraph(paragraphs, text.substring(start, i));
+                    start = j;
+                }
+                i = j;
+            } else {
+                i++;
+            }
+        }
+        addParagraph(paragraphs, text.substring(start));
+        return paragraphs;
+    }
+
+    private static void addParagraph(List<String> paragraphs, String paragraph) {
+        String trimmed = paragraph.trim();
+        if (!trimmed.isEmpty()) {
+            paragraphs.add(trimmed);
+        }
+    }
+
+    /**
+     * Same classification as determineChunkType
+     */
+    static String chunkType(String text) {
+        if (text.toUpperCase().contains("TABLE") || text.indexOf('|') >= 0 || text.indexOf('\t') >= 0) {
+            return "table";
+        } else if (text.length() < 200 && text.indexOf('.') < 0) {
+            return "header";
+        } else if (text.startsWith("-") || text.startsWith("*") || text.startsWith("+")) {
+            return "list";
+        }
+        return "paragraph";
+    }
+}
@@ -0,0 +1,108 @@
+package com.oasis.ingestion;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Point-in-time counters for one {@link IngestionPipeline} stage
+ *
+ * Wait time is measured per item from enqueue to dequeue; service time is
+ * measured per handler call, which covers a whole batch on batching stages.
+ */
+public class StageMetrics {
+    private final String stageName;
+    private final int workers;
+    private final int busyWorkers;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long processedCount;
+    private final long failedCount;
+    private final long batchCount;
+    private final long totalWaitNanos;
+    private final long totalServiceNanos;
+    private final long maxServiceNanos;
+
+    public StageMetrics(String stageName, int workers, int busyWorkers, int queueDepth, int queueCapacity,
+            long processedCount, long failedCount, long batchCount, long totalWaitNanos, long totalServiceNanos,
+            long maxServiceNanos) {
+        this.stageName = stageName;
+        this.workers = workers;
+        this.busyWorkers = busyWorkers;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.processedCount = processedCount;
+        this.failedCount = failedCount;
+        this.batchCount = batchCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.totalServiceNanos = totalServiceNanos;
+        this.maxServiceNanos = maxServiceNanos;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getStageName() {
+        return stageName;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getBusyWorkers() {
+        return busyWorkers;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public double getAverageWaitMillis() {
+        long items = processedCount + failedCount;
+        return items == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / items;
+    }
+
+    public double getAverageServiceMillis() {
+        return batchCount == 0 ? 0.0 : totalServiceNanos / 1_000_000.0 / batchCount;
+    }
+
+    public double getMaxServiceMillis() {
+        return maxServiceNanos / 1_000_000.0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("workers", workers);
+        map.put("busyWorkers", busyWorkers);
+        map.put("queueDepth", queueDepth);
+        map.put("queueCapacity", queueCapacity);
+        map.put("processed", processedCount);
+        map.put("failed", failedCount);
+        map.put("batches", batchCount);
+        map.put("avgWaitMillis", getAverageWaitMillis());
+        map.put("avgServiceMillis", getAverageServiceMillis());
+        map.put("maxServiceMillis", getMaxServiceMillis());
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StageMetrics{stage='%s', depth=%d/%d, busy=%d/%d, processed=%d, failed=%d, "
+                + "avgWait=%.2fms, avgService=%.2fms}", stageName, queueDepth, queueCapacity, busyWorkers, workers,
+                processedCount, failedCount, getAverageWaitMillis(), getAverageServiceMillis());
+    }
+}
@@ -0,0 +1,348 @@
+package com.oasis.retrieval;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process BM25 index over document chunk text
+ *
+ * Chunks are added and removed by chunk id as documents are ingested and
+ * deleted; re-adding an id replaces the chunk. Postings are varint-encoded
+ * {@link PostingList}s keyed by term, documents are numbered in insertion
+ * order, and a removed chunk is only marked deleted until enough of them
+ * accumulate to rewrite the postings. Until then document frequencies still
+ * count deleted chunks, as Lucene's do before a merge.
+ *
+ * Searches run concurrently under a read lock; adds and removes take the
+ * write lock.
+ */
+public class Bm25Index {
+    private static final Logger logger = LoggerFactory.getLogger(Bm25Index.class);
+    private static final Bm25Index SHARED = new Bm25Index();
+
+    public static final double DEFAULT_K1 = 1.2;
+    public static final double DEFAULT_B = 0.75;
+    // Deleted chunks are compacted away once they reach this many and a quarter of the index
+    private static final int MIN_DELETES_BEFORE_COMPACTION = 1024;
+
+    private static final RankedChunk[] NO_RESULTS = new RankedChunk[0];
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final double k1;
+    private final double b;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> docByChunkId = new HashMap<>();
+    private String[] chunkIds = new String[64];
+    private int[] docLengths = new int[64];
+    private final BitSet deleted = new BitSet();
+    private int maxDoc;
+    private int liveDocs;
+    private long liveLength;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    public Bm25Index() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    public Bm25Index(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Process-wide index shared by all Ballerina strands
+     */
+    public static Bm25Index shared() {
+        return SHARED;
+    }
+
+    /**
+     * Index a chunk, replacing any chunk with the same id
+     */
+    public void addChunk(String chunkId, String text) {
+        List<String> tokens = ChunkTokenizer.tokenize(text);
+        Map<String, int[]> frequencies = new LinkedHashMap<>();
+        for (String token : tokens) {
+            frequencies.computeIfAbsent(token, t -> new int[1])[0]++;
+        }
+
+        lock.writeLock().lock();
+        try {
+            boolean replaced = removeLocked(chunkId);
+            int doc = maxDoc++;
+            if (doc == chunkIds.length) {
+                chunkIds = Arrays.copyOf(chunkIds, doc * 2);
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+            }
+            chunkIds[doc] = chunkId;
+            docLengths[doc] = tokens.size();
+            docByChunkId.put(chunkId, doc);
+            for (Map.Entry<String, int[]> term : frequencies.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), t -> new PostingList()).add(doc, term.getValue()[0]);
+            }
+            liveDocs++;
+            liveLength += tokens.size();
+            // Re-ingesting a document replaces every chunk, which deletes as much as removeChunks does
+            if (replaced) {
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return false if the chunk was not indexed
+     */
+    public boolean removeChunk(String chunkId) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = removeLocked(chunkId);
+            if (removed) {
+                compactIfNeeded();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every chunk of a re-ingested or deleted document
+     *
+     * @return number of chunks removed
+     */
+    public int removeChunks(String[] chunkIdsToRemove) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (String chunkId : chunkIdsToRemove) {
+                if (removeLocked(chunkId)) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                compactIfNeeded();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top chunks by BM25 score for the query
+     */
+    public RankedChunk[] search(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    /**
+     * Chunks containing every query term, best first, for queries that name
+     * something exact: a section number, a year of assessment, an amount
+     *
+     * A non-empty result is specific enough to answer from without the
+     * embedding call. Queries without a number return no results, and the
+     * caller should fall back to hybrid search.
+     */
+    public RankedChunk[] searchExactTerms(String query, int limit) {
+        boolean exact = false;
+        for (String token : ChunkTokenizer.tokenize(query)) {
+            exact |= ChunkTokenizer.isNumeric(token);
+        }
+        return exact ? search(query, limit, true) : NO_RESULTS;
+    }
+
+    private RankedChunk[] search(String query, int limit, boolean requireAllTerms) {
+        searches.increment();
+        Set<String> terms = new LinkedHashSet<>(ChunkTokenizer.tokenize(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return NO_RESULTS;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return NO_RESULTS;
+            }
+            Scratch scratch = SCRATCH.get();
+            scratch.ensureCapacity(maxDoc);
+            double averageLength = Math.max(1.0, (double) liveLength / liveDocs);
+            int touchedCount = 0;
+            int termsSeen = 0;
+
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    if (requireAllTerms) {
+                        return NO_RESULTS;
+                    }
+                    continue;
+                }
+                termsSeen++;
+                int df = Math.min(list.count(), liveDocs);
+                double idf = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+                PostingList.Cursor cursor = list.cursor();
+                while (cursor.next()) {
+                    int doc = cursor.doc();
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    int tf = cursor.frequency();
+                    double norm = k1 * (1 - b + b * docLengths[doc] / averageLength);
+                    if (scratch.matched[doc] == 0) {
+                        scratch.touched[touchedCount++] = doc;
+                    }
+                    scratch.scores[doc] += (float) (idf * tf * (k1 + 1) / (tf + norm));
+                    scratch.matched[doc]++;
+                }
+            }
+
+            TopK top = new TopK(Math.min(limit, Math.max(1, touchedCount)));
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = scratch.touched[i];
+                if (!requireAllTerms || scratch.matched[doc] == termsSeen) {
+                    top.offer(doc, scratch.scores[doc]);
+                }
+                scratch.scores[doc] = 0;
+                scratch.matched[doc] = 0;
+            }
+            return top.drain(chunkIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean removeLocked(String chunkId) {
+        Integer doc = docByChunkId.remove(chunkId);
+        if (doc == null) {
+            return false;
+        }
+        deleted.set(doc);
+        chunkIds[doc] = null;
+        liveDocs--;
+        liveLength -= docLengths[doc];
+        return true;
+    }
+
+    private void compactIfNeeded() {
+        int deletedCount = maxDoc - liveDocs;
+        if (deletedCount < MIN_DELETES_BEFORE_COMPACTION || deletedCount * 4 < maxDoc) {
+            return;
+        }
+        long start = System.nanoTime();
+        int[] newDocNumbers = new int[maxDoc];
+        String[] newChunkIds = new String[Math.max(64, liveDocs)];
+        int[] newLengths = new int[newChunkIds.length];
+        int next = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            if (deleted.get(doc)) {
+                newDocNumbers[doc] = -1;
+            } else {
+                newDocNumbers[doc] = next;
+                newChunkIds[next] = chunkIds[doc];
+                newLengths[next] = docLengths[doc];
+                docByChunkId.put(chunkIds[doc], next);
+                next++;
+            }
+        }
+        Iterator<Map.Entry<String, PostingList>> terms = postings.entrySet().iterator();
+        while (terms.hasNext()) {
+            Map.Entry<String, PostingList> term = terms.next();
+            PostingList remapped = term.getValue().remap(newDocNumbers);
+            if (remapped.count() == 0) {
+                terms.remove();
+            } else {
+                term.setValue(remapped);
+            }
+        }
+        chunkIds = newChunkIds;
+        docLengths = newLengths;
+        deleted.clear();
+        maxDoc = next;
+        compactions.increment();
+        logger.info("BM25 index compacted: dropped {} deleted chunks in {} ms", deletedCount,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public int getChunkCount() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsChunk(String chunkId) {
+        lock.readLock().lock();
+        try {
+            return docByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Size and activity counters for the admin metrics endpoint
+     */
+    public Map<String, Object> getMetricsMap() {
+        lock.readLock().lock();
+        try {
+            long postingBytes = 0;
+            long postingCount = 0;
+            for (PostingList list : postings.values()) {
+                postingBytes += list.byteSize();
+                postingCount += list.count();
+            }
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("chunks", liveDocs);
+            metrics.put("deletedPendingCompaction", maxDoc - liveDocs);
+            metrics.put("terms", postings.size());
+            metrics.put("postings", postingCount);
+            metrics.put("postingBytes", postingBytes);
+            metrics.put("averageChunkTokens", liveDocs == 0 ? 0.0 : (double) liveLength / liveDocs);
+            metrics.put("searches", searches.sum());
+            metrics.put("compactions", compactions.sum());
+            return metrics;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Per-thread score accumulators indexed by document number; every search
+     * resets the entries it touched
+     */
+    private static final class Scratch {
+        float[] scores = new float[0];
+        short[] matched = new short[0];
+        int[] touched = new int[0];
+
+        void ensureCapacity(int docs) {
+            if (scores.length < docs) {
+                int capacity = Math.max(docs, scores.length * 2);
+                scores = new float[capacity];
+                matched = new short[capacity];
+                touched = new int[capacity];
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.oasis.retrieval;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Word tokenizer for English, Sinhala and Tamil tax text
+ *
+ * A token is a run of letters and digits together with the combining marks
+ * that Sinhala and Tamil vowel signs and viramas are encoded as; a zero-width
+ * joiner or non-joiner inside a word (Sinhala conjuncts) is kept. Text is
+ * NFC-normalised first so pre-composed and decomposed vowel signs index
+ * alike. Latin text is lower-cased, digit groups such as "1,200,000" become
+ * "1200000", decimals such as "12.5" stay whole, and a small set of English
+ * stop words is dropped.
+ */
+public final class ChunkTokenizer {
+
+    private static final int ZWNJ = 0x200C;
+    private static final int ZWJ = 0x200D;
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be", "by", "can",
+            "do", "does", "for", "from", "how", "i", "in", "is", "it", "me", "my", "of", "on", "or", "the", "to",
+            "what", "when", "which", "who", "with");
+
+    private ChunkTokenizer() {
+    }
+
+    /**
+     * Tokens in text order, duplicates included
+     */
+    public static List<String> tokenize(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.length() == 0) {
+            return tokens;
+        }
+        String normalized = text.toString();
+        if (!Normalizer.isNormalized(normalized, Normalizer.Form.NFC)) {
+            normalized = Normalizer.normalize(normalized, Normalizer.Form.NFC);
+        }
+
+        StringBuilder token = new StringBuilder();
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int cp = normalized.codePointAt(i);
+            int width = Character.charCount(cp);
+            if (isWordChar(cp)) {
+                token.appendCodePoint(Character.isUpperCase(cp) ? Character.toLowerCase(cp) : cp);
+            } else if ((cp == ZWJ || cp == ZWNJ) && token.length() > 0) {
+                token.appendCodePoint(cp);
+            } else if ((cp == ',' || cp == '.') && endsWithDigit(token) && i + 1 < length
+                    && Character.isDigit(normalized.charAt(i + 1))) {
+                // Digit grouping is dropped, a decimal point is kept
+                if (cp == '.') {
+                    token.append('.');
+                }
+            } else {
+                emit(token, tokens);
+            }
+            i += width;
+        }
+        emit(token, tokens);
+        return tokens;
+    }
+
+    private static boolean isWordChar(int cp) {
+        if (Character.isLetterOrDigit(cp)) {
+            return true;
+        }
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
+    private static boolean endsWithDigit(StringBuilder token) {
+        return token.length() > 0 && Character.isDigit(token.charAt(token.length() - 1));
+    }
+
+    private static void emit(StringBuilder token, List<String> tokens) {
+        int end = token.length();
+        while (end > 0 && (token.charAt(end - 1) == ZWJ || token.charAt(end - 1) == ZWNJ)) {
+            end--;
+        }
+        if (end > 0) {
+            String word = token.substring(0, end);
+            if (!STOP_WORDS.contains(word)) {
+                tokens.add(word);
+            }
+        }
+        token.setLength(0);
+    }
+
+    /**
+     * Whether the token is a number, e.g. a section number or year of assessment
+     */
+    static boolean isNumeric(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!Character.isDigit(c) && c != '.') {
+                return false;
+            }
+        }
+        return !token.isEmpty();
+    }
+}
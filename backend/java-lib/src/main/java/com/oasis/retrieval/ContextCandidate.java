@@ -0,0 +1,98 @@
+package com.oasis.retrieval;
+
+/**
+ * A retrieved chunk or rule offered to the {@link ContextPacker}
+ *
+ * The score is whatever the retriever ranked by (cosine, BM25, RRF); the
+ * packer only compares scores within one candidate list. Source offsets are
+ * passed through to the attribution of the packed prompt, -1 when unknown.
+ */
+public class ContextCandidate {
+    private final String id;
+    private final String sourceId;
+    private final String text;
+    private final double score;
+    private final int tokenCount;
+    private final float[] embedding;
+    private final int sourceStart;
+    private final int sourceEnd;
+
+    /**
+     * @param embedding may be null; word overlap is then used to judge redundancy
+     */
+    public ContextCandidate(String id, String sourceId, String text, double score, int tokenCount,
+            float[] embedding, int sourceStart, int sourceEnd) {
+        if (id == null || text == null || tokenCount < 0) {
+            throw new IllegalArgumentException("id and text are required and tokenCount must not be negative");
+        }
+        this.id = id;
+        this.sourceId = sourceId != null ? sourceId : id;
+        this.text = text;
+        this.score = score;
+        this.tokenCount = tokenCount;
+        this.embedding = embedding;
+        this.sourceStart = sourceStart;
+        this.sourceEnd = sourceEnd;
+    }
+
+    public ContextCandidate(String id, String sourceId, String text, double score, int tokenCount,
+            double[] embedding) {
+        this(id, sourceId, text, score, tokenCount, toFloats(embedding), -1, -1);
+    }
+
+    /**
+     * A token per four characters, for callers that have no tokenizer count
+     */
+    public static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private static float[] toFloats(double[] values) {
+        if (values == null) {
+            return null;
+        }
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getId() {
+        return id;
+    }
+
+    public String getSourceId() {
+        return sourceId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    public int getSourceStart() {
+        return sourceStart;
+    }
+
+    public int getSourceEnd() {
+        return sourceEnd;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ContextCandidate{id='%s', score=%.4f, tokens=%d}", id, score, tokenCount);
+    }
+}
@@ -0,0 +1,268 @@
+package com.oasis.retrieval;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Packs retrieved chunks or rules into a prompt within a hard token budget,
+ * using maximal marginal relevance (MMR) to leave out near-repeats
+ *
+ * Candidates are chosen greedily. Each step takes the candidate with the best
+ * lambda * relevance - (1 - lambda) * (highest similarity to anything already
+ * chosen), among those that still fit the remaining budget. Relevance is the
+ * candidate score rescaled to [0, 1] within the list. Similarity is the cosine
+ * of the embeddings, or word-set overlap when a candidate has none. A
+ * candidate at least {@link #getDuplicateThreshold()} similar to a chosen one
+ * is dropped outright; overlapping chunk windows and the same section
+ * reprinted in another gazette are the usual cases.
+ *
+ * Chosen blocks are written best first as "[n] source" followed by the text,
+ * and each block is reported with its offsets in the prompt and in its source,
+ * so an answer citing [n] can be traced back. The label costs
+ * {@link #getLabelTokens()} plus a token per four characters of the source id,
+ * and the blank line between two blocks is charged to the later one.
+ */
+public class ContextPacker {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ContextPacker SHARED = new ContextPacker();
+    private static final String SEPARATOR = "\n\n";
+    private static final int SEPARATOR_TOKENS = ContextCandidate.estimateTokens(SEPARATOR);
+
+    private final double lambda;
+    private final double duplicateThreshold;
+    private final int labelTokens;
+
+    /**
+     * From oasis.context.lambda (0.7), oasis.context.duplicateThreshold (0.92)
+     * and oasis.context.labelTokens (4)
+     */
+    public ContextPacker() {
+        this(Double.parseDouble(System.getProperty("oasis.context.lambda", "0.7")),
+                Double.parseDouble(System.getProperty("oasis.context.duplicateThreshold", "0.92")),
+                Integer.getInteger("oasis.context.labelTokens", 4));
+    }
+
+    /**
+     * @param lambda             weight of relevance against novelty, in [0, 1]; 1 ignores redundancy
+     * @param duplicateThreshold similarity at which a candidate is dropped as a repeat
+     * @param labelTokens        tokens charged for each "[n] source" label besides the source id
+     */
+    public ContextPacker(double lambda, double duplicateThreshold, int labelTokens) {
+        if (lambda < 0 || lambda > 1 || duplicateThreshold <= 0 || labelTokens < 0) {
+            throw new IllegalArgumentException("lambda must be in [0, 1], duplicateThreshold positive, "
+                    + "labelTokens not negative");
+        }
+        this.lambda = lambda;
+        this.duplicateThreshold = duplicateThreshold;
+        this.labelTokens = labelTokens;
+    }
+
+    /**
+     * Process-wide packer shared by all Ballerina strands
+     */
+    public static ContextPacker shared() {
+        return SHARED;
+    }
+
+    /**
+     * Choose and lay out candidates within tokenBudget
+     */
+    public PackedContext pack(List<ContextCandidate> candidates, int tokenBudget) {
+        int count = candidates.size();
+        double[] relevance = rescaledScores(candidates);
+        float[][] unit = new float[count][];
+        List<Set<String>> words = new ArrayList<>(count);
+        int[] cost = new int[count];
+        int candidateTokens = 0;
+        for (int i = 0; i < count; i++) {
+            ContextCandidate candidate = candidates.get(i);
+            unit[i] = unitVector(candidate.getEmbedding());
+            words.add(null);
+            cost[i] = candidate.getTokenCount() + labelTokens
+                    + ContextCandidate.estimateTokens(candidate.getSourceId());
+            candidateTokens += cost[i];
+        }
+
+        boolean[] open = new boolean[count];
+        Arrays.fill(open, true);
+        double[] maxSimilarity = new double[count];
+        List<Integer> chosen = new ArrayList<>();
+        int remaining = Math.max(0, tokenBudget);
+        int droppedRedundant = 0;
+        int droppedOverBudget = 0;
+        while (true) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int separator = chosen.isEmpty() ? 0 : SEPARATOR_TOKENS;
+            for (int i = 0; i < count; i++) {
+                if (!open[i]) {
+                    continue;
+                }
+                if (cost[i] + separator > remaining) {
+                    // The budget only shrinks and the separator only grows, so it will not fit later either
+                    open[i] = false;
+                    droppedOverBudget++;
+                    continue;
+                }
+                double score = lambda * relevance[i] - (1 - lambda) * maxSimilarity[i];
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            open[best] = false;
+            chosen.add(best);
+            remaining -= cost[best] + separator;
+            for (int i = 0; i < count; i++) {
+                if (!open[i]) {
+                    continue;
+                }
+                double similarity = similarity(candidates, unit, words, i, best);
+                if (similarity >= duplicateThreshold) {
+                    open[i] = false;
+                    droppedRedundant++;
+                } else {
+                    maxSimilarity[i] = Math.max(maxSimilarity[i], similarity);
+                }
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        List<PackedContext.Attribution> attributions = new ArrayList<>(chosen.size());
+        int label = 1;
+        for (int index : chosen) {
+            ContextCandidate candidate = candidates.get(index);
+            if (text.length() > 0) {
+                text.append(SEPARATOR);
+            }
+            text.append('[').append(label).append("] ").append(candidate.getSourceId()).append('\n');
+            int start = text.length();
+            text.append(candidate.getText());
+            attributions.add(new PackedContext.Attribution(label++, candidate, start, text.length()));
+        }
+        return new PackedContext(text.toString(), attributions, tokenBudget,
+                Math.max(0, tokenBudget) - remaining, count, candidateTokens, droppedRedundant, droppedOverBudget);
+    }
+
+    /**
+     * Pack a JSON array of candidates ({id, sourceId, text, score, tokenCount?,
+     * embedding?, sourceStart?, sourceEnd?}) and return {@link PackedContext#toJson()}
+     *
+     * A tokenCount that is missing, not a number or negative is estimated from
+     * the text, so such a candidate is not packed as if it were free.
+     */
+    public String packJson(String candidatesJson, int tokenBudget) throws IOException {
+        JsonNode array = MAPPER.readTree(candidatesJson);
+        if (!array.isArray()) {
+            throw new IOException("Expected a JSON array of candidates");
+        }
+        List<ContextCandidate> candidates = new ArrayList<>(array.size());
+        for (JsonNode node : array) {
+            JsonNode embeddingNode = node.path("embedding");
+            float[] embedding = null;
+            if (embeddingNode.isArray()) {
+                embedding = new float[embeddingNode.size()];
+                for (int i = 0; i < embedding.length; i++) {
+                    embedding[i] = (float) embeddingNode.get(i).asDouble();
+                }
+            }
+            String text = node.path("text").asText("");
+            JsonNode tokenCount = node.path("tokenCount");
+            int tokens = tokenCount.isNumber() && tokenCount.asDouble() >= 0
+                    ? (int) Math.ceil(tokenCount.asDouble()) : ContextCandidate.estimateTokens(text);
+            candidates.add(new ContextCandidate(node.path("id").asText(), node.path("sourceId").asText(null), text,
+                    node.path("score").asDouble(), tokens, embedding, node.path("sourceStart").asInt(-1),
+                    node.path("sourceEnd").asInt(-1)));
+        }
+        return pack(candidates, tokenBudget).toJson();
+    }
+
+    private double similarity(List<ContextCandidate> candidates, float[][] unit, List<Set<String>> words, int a,
+            int b) {
+        if (unit[a] != null && unit[b] != null && unit[a].length == unit[b].length) {
+            return SimilarityKernels.PREFERRED.dot(unit[a], 0, unit[b], 0, unit[a].length);
+        }
+        return jaccard(wordsOf(candidates, words, a), wordsOf(candidates, words, b));
+    }
+
+    private static Set<String> wordsOf(List<ContextCandidate> candidates, List<Set<String>> words, int index) {
+        Set<String> set = words.get(index);
+        if (set == null) {
+            set = new HashSet<>(ChunkTokenizer.tokenize(candidates.get(index).getText()));
+            words.set(index, set);
+        }
+        return set;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int shared = 0;
+        for (String word : smaller) {
+            if (larger.contains(word)) {
+                shared++;
+            }
+        }
+        return (double) shared / (a.size() + b.size() - shared);
+    }
+
+    // Scores mapped to [0, 1] within the list; all 1 when they are equal
+    private static double[] rescaledScores(List<ContextCandidate> candidates) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (ContextCandidate candidate : candidates) {
+            min = Math.min(min, candidate.getScore());
+            max = Math.max(max, candidate.getScore());
+        }
+        double[] relevance = new double[candidates.size()];
+        for (int i = 0; i < relevance.length; i++) {
+            relevance[i] = max > min ? (candidates.get(i).getScore() - min) / (max - min) : 1.0;
+        }
+        return relevance;
+    }
+
+    private static float[] unitVector(float[] embedding) {
+        if (embedding == null) {
+            return null;
+        }
+        double sum = 0;
+        for (float value : embedding) {
+            sum += value * value;
+        }
+        if (sum == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        float[] unit = new float[embedding.length];
+        for (int i = 0; i < unit.length; i++) {
+            unit[i] = embedding[i] * scale;
+        }
+        return unit;
+    }
+
+    // Getter methods for Ballerina interop
+    public double getLambda() {
+        return lambda;
+    }
+
+    public double getDuplicateThreshold() {
+        return duplicateThreshold;
+    }
+
+    public int getLabelTokens() {
+        return labelTokens;
+    }
+}
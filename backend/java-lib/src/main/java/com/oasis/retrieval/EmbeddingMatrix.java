@@ -0,0 +1,442 @@
+package com.oasis.retrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Exact nearest-neighbour search over chunk embeddings held in one flat
+ * float array
+ *
+ * Rows are stored back to back (row r starts at r * dimensions), so a scan
+ * reads memory sequentially and each dot product is a single
+ * {@link SimilarityKernel} call. In cosine mode rows and queries are scaled to
+ * unit length on the way in, so cosine similarity is a plain dot product.
+ * Large matrices are split into row ranges scanned on the shared scan pool,
+ * each into its own bounded heap, and the heaps are merged.
+ *
+ * With int8 enabled, each row is also kept as bytes with one scale per row.
+ * {@link #searchInt8} scans those (a quarter of the memory traffic), takes
+ * {@link #INT8_OVERSAMPLE} times as many candidates, and rescores them exactly
+ * from the float rows.
+ *
+ * Meant for re-ranking and for corpora small enough to scan on each query.
+ * A million 768-dimension rows is 3 GB of floats. Searches run concurrently
+ * under a read lock; adds and removes take the write lock.
+ */
+public class EmbeddingMatrix {
+    public static final int INT8_OVERSAMPLE = 4;
+
+    private static final int MIN_ROWS_PER_TASK = Integer.getInteger("oasis.similarity.minRowsPerTask", 16_384);
+    private static final int DEFAULT_PARALLELISM = Integer.getInteger("oasis.similarity.threads",
+            Runtime.getRuntime().availableProcessors());
+    private static final RankedChunk[] NO_RESULTS = new RankedChunk[0];
+
+    private static final ExecutorService SCAN_POOL;
+
+    static {
+        AtomicInteger threadIds = new AtomicInteger();
+        SCAN_POOL = Executors.newFixedThreadPool(Math.max(1, DEFAULT_PARALLELISM), task -> {
+            Thread thread = new Thread(task, "similarity-scan-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private final int dimensions;
+    private final boolean cosine;
+    private final boolean int8;
+    private volatile SimilarityKernel kernel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile int parallelism = DEFAULT_PARALLELISM;
+
+    private final Map<String, Integer> rowByChunkId = new HashMap<>();
+    private String[] chunkIds;
+    private float[] vectors;
+    private byte[] quantized;
+    private float[] scales;
+    private int rows;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+
+    /**
+     * Cosine matrix without the int8 copy
+     */
+    public EmbeddingMatrix(int dimensions) {
+        this(dimensions, true, false, 1024);
+    }
+
+    /**
+     * @param cosine          normalise rows and queries (cosine); false scores raw dot products
+     * @param int8            also keep an int8 copy for {@link #searchInt8}
+     * @param initialCapacity rows to allocate up front, to avoid regrowing a large matrix
+     */
+    public EmbeddingMatrix(int dimensions, boolean cosine, boolean int8, int initialCapacity) {
+        this(dimensions, cosine, int8, initialCapacity, SimilarityKernels.PREFERRED);
+    }
+
+    EmbeddingMatrix(int dimensions, boolean cosine, boolean int8, int initialCapacity, SimilarityKernel kernel) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("dimensions must be positive");
+        }
+        int capacity = Math.max(16, initialCapacity);
+        if ((long) capacity * dimensions > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("initialCapacity * dimensions exceeds the array limit");
+        }
+        this.dimensions = dimensions;
+        this.cosine = cosine;
+        this.int8 = int8;
+        this.kernel = kernel;
+        this.chunkIds = new String[capacity];
+        this.vectors = new float[capacity * dimensions];
+        if (int8) {
+            this.quantized = new byte[capacity * dimensions];
+            this.scales = new float[capacity];
+        }
+    }
+
+    /**
+     * Add or replace the embedding of a chunk
+     */
+    public void add(String chunkId, float[] embedding) {
+        checkDimensions(embedding.length);
+        lock.writeLock().lock();
+        try {
+            Integer existing = rowByChunkId.get(chunkId);
+            int row;
+            if (existing != null) {
+                row = existing;
+            } else {
+                ensureCapacity(rows + 1);
+                row = rows++;
+                chunkIds[row] = chunkId;
+                rowByChunkId.put(chunkId, row);
+            }
+            int offset = row * dimensions;
+            float scale = cosine ? inverseNorm(embedding) : 1f;
+            for (int i = 0; i < dimensions; i++) {
+                vectors[offset + i] = embedding[i] * scale;
+            }
+            if (int8) {
+                scales[row] = quantize(vectors, offset, dimensions, quantized, offset);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace the embedding of a chunk from Ballerina float[]
+     */
+    public void add(String chunkId, double[] embedding) {
+        add(chunkId, toFloats(embedding));
+    }
+
+    /**
+     * Remove a chunk; the last row is moved into its place
+     */
+    public boolean remove(String chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowByChunkId.remove(chunkId);
+            if (row == null) {
+                return false;
+            }
+            int last = --rows;
+            if (row != last) {
+                System.arraycopy(vectors, last * dimensions, vectors, row * dimensions, dimensions);
+                if (int8) {
+                    System.arraycopy(quantized, last * dimensions, quantized, row * dimensions, dimensions);
+                    scales[row] = scales[last];
+                }
+                chunkIds[row] = chunkIds[last];
+                rowByChunkId.put(chunkIds[row], row);
+            }
+            chunkIds[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Exact top-k chunks by similarity to the query
+     */
+    public RankedChunk[] search(float[] query, int limit) {
+        checkDimensions(query.length);
+        float[] prepared = prepareQuery(query);
+        lock.readLock().lock();
+        try {
+            if (rows == 0 || limit < 1) {
+                return NO_RESULTS;
+            }
+            TopK top = scan(prepared, null, 0f, Math.min(limit, rows));
+            return top.drain(chunkIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RankedChunk[] search(double[] query, int limit) {
+        return search(toFloats(query), limit);
+    }
+
+    /**
+     * Top-k by an int8 scan, with the candidates rescored exactly
+     *
+     * Needs a matrix built with int8 enabled. Results can differ from
+     * {@link #search} only when a true neighbour falls outside the
+     * oversampled candidate set.
+     */
+    public RankedChunk[] searchInt8(float[] query, int limit) {
+        if (!int8) {
+            throw new IllegalStateException("Matrix was built without int8 rows");
+        }
+        checkDimensions(query.length);
+        float[] prepared = prepareQuery(query);
+        byte[] quantizedQuery = new byte[dimensions];
+        float queryScale = quantize(prepared, 0, dimensions, quantizedQuery, 0);
+        lock.readLock().lock();
+        try {
+            if (rows == 0 || limit < 1) {
+                return NO_RESULTS;
+            }
+            int candidates = (int) Math.min(rows, (long) limit * INT8_OVERSAMPLE);
+            TopK top = scan(null, quantizedQuery, queryScale, candidates);
+            TopK exact = new TopK(Math.min(limit, rows));
+            for (int row : top.drainDocs()) {
+                exact.offer(row, kernel.dot(vectors, row * dimensions, prepared, 0, dimensions));
+            }
+            return exact.drain(chunkIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RankedChunk[] searchInt8(double[] query, int limit) {
+        return searchInt8(toFloats(query), limit);
+    }
+
+    /**
+     * Exact scores of the named chunks, best first; unknown ids are left out
+     *
+     * For re-ranking a candidate list from BM25 or pgvector without another
+     * database round trip.
+     */
+    public RankedChunk[] rerank(float[] query, String[] candidateIds) {
+        checkDimensions(query.length);
+        float[] prepared = prepareQuery(query);
+        lock.readLock().lock();
+        try {
+            TopK top = new TopK(Math.max(1, candidateIds.length));
+            for (String chunkId : candidateIds) {
+                Integer row = rowByChunkId.get(chunkId);
+                if (row != null) {
+                    top.offer(row, kernel.dot(vectors, row * dimensions, prepared, 0, dimensions));
+                }
+            }
+            return top.drain(chunkIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RankedChunk[] rerank(double[] query, String[] candidateIds) {
+        return rerank(toFloats(query), candidateIds);
+    }
+
+    // Caller holds the read lock; exactly one of floatQuery and byteQuery is set
+    private TopK scan(float[] floatQuery, byte[] byteQuery, float queryScale, int limit) {
+        long start = System.nanoTime();
+        int rowCount = rows;
+        int tasks = (int) Math.max(1, Math.min(parallelism, rowCount / (long) MIN_ROWS_PER_TASK));
+        TopK top;
+        if (tasks == 1) {
+            top = scanRange(floatQuery, byteQuery, queryScale, limit, 0, rowCount);
+        } else {
+            List<Future<TopK>> futures = new ArrayList<>(tasks - 1);
+            int perTask = (rowCount + tasks - 1) / tasks;
+            for (int t = 1; t < tasks; t++) {
+                int from = t * perTask;
+                int to = Math.min(rowCount, from + perTask);
+                futures.add(SCAN_POOL.submit(() -> scanRange(floatQuery, byteQuery, queryScale, limit, from, to)));
+            }
+            top = scanRange(floatQuery, byteQuery, queryScale, limit, 0, Math.min(rowCount, perTask));
+            try {
+                for (Future<TopK> future : futures) {
+                    top.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted during similarity scan", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Similarity scan failed", e.getCause());
+            }
+        }
+        searches.increment();
+        rowsScanned.add(rowCount);
+        scanNanos.add(System.nanoTime() - start);
+        return top;
+    }
+
+    private TopK scanRange(float[] floatQuery, byte[] byteQuery, float queryScale, int limit, int from, int to) {
+        TopK top = new TopK(limit);
+        SimilarityKernel kernel = this.kernel;
+        float[] rowsData = vectors;
+        if (floatQuery != null) {
+            for (int row = from, offset = from * dimensions; row < to; row++, offset += dimensions) {
+                float score = kernel.dot(rowsData, offset, floatQuery, 0, dimensions);
+                if (score > top.threshold()) {
+                    top.offer(row, score);
+                }
+            }
+        } else {
+            byte[] bytes = quantized;
+            float[] rowScales = scales;
+            for (int row = from, offset = from * dimensions; row < to; row++, offset += dimensions) {
+                float score = kernel.dot(bytes, offset, byteQuery, 0, dimensions) * rowScales[row] * queryScale;
+                if (score > top.threshold()) {
+                    top.offer(row, score);
+                }
+            }
+        }
+        return top;
+    }
+
+    private float[] prepareQuery(float[] query) {
+        float scale = cosine ? inverseNorm(query) : 1f;
+        float[] prepared = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            prepared[i] = query[i] * scale;
+        }
+        return prepared;
+    }
+
+    // Symmetric per-row quantisation to [-127, 127]; returns the value of one step
+    private static float quantize(float[] source, int sourceOffset, int length, byte[] target, int targetOffset) {
+        float max = 0;
+        for (int i = 0; i < length; i++) {
+            max = Math.max(max, Math.abs(source[sourceOffset + i]));
+        }
+        if (max == 0) {
+            Arrays.fill(target, targetOffset, targetOffset + length, (byte) 0);
+            return 0f;
+        }
+        float step = max / 127f;
+        for (int i = 0; i < length; i++) {
+            target[targetOffset + i] = (byte) Math.round(source[sourceOffset + i] / step);
+        }
+        return step;
+    }
+
+    // 1/|v|, or 0 for a zero vector so it scores 0 against everything
+    private static float inverseNorm(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return sum == 0 ? 0f : (float) (1 / Math.sqrt(sum));
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    private void checkDimensions(int length) {
+        if (length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + length);
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= chunkIds.length) {
+            return;
+        }
+        long capacity = Math.max(needed, (long) chunkIds.length * 2);
+        capacity = Math.min(capacity, (Integer.MAX_VALUE - 8) / dimensions);
+        if (capacity < needed) {
+            throw new IllegalStateException("EmbeddingMatrix is full at " + chunkIds.length + " rows");
+        }
+        chunkIds = Arrays.copyOf(chunkIds, (int) capacity);
+        vectors = Arrays.copyOf(vectors, (int) capacity * dimensions);
+        if (int8) {
+            quantized = Arrays.copyOf(quantized, (int) capacity * dimensions);
+            scales = Arrays.copyOf(scales, (int) capacity);
+        }
+    }
+
+    // EmbeddingMatrixTest and SimilarityScanBenchmark compare kernels, and single-threaded against parallel
+    // scans, on the same rows
+    void setKernel(SimilarityKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Getter methods for Ballerina interop
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int getRowCount() {
+        lock.readLock().lock();
+        try {
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsChunk(String chunkId) {
+        lock.readLock().lock();
+        try {
+            return rowByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String getKernelName() {
+        return kernel.name();
+    }
+
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("rows", getRowCount());
+        metrics.put("dimensions", dimensions);
+        metrics.put("cosine", cosine);
+        metrics.put("int8", int8);
+        metrics.put("kernel", kernel.name());
+        metrics.put("parallelism", parallelism);
+        metrics.put("searches", searches.sum());
+        metrics.put("rowsScanned", rowsScanned.sum());
+        long nanos = scanNanos.sum();
+        metrics.put("rowsPerSecond", nanos == 0 ? 0.0 : rowsScanned.sum() * 1e9 / nanos);
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EmbeddingMatrix{rows=%d, dimensions=%d, kernel=%s, int8=%s}", getRowCount(),
+                dimensions, kernel.name(), int8);
+    }
+}
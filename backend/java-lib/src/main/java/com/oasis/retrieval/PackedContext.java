@@ -0,0 +1,177 @@
+package com.oasis.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prompt context produced by {@link ContextPacker}: the packed text, where
+ * each block came from, and what was left out
+ */
+public class PackedContext {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String text;
+    private final List<Attribution> attributions;
+    private final int tokenBudget;
+    private final int tokensUsed;
+    private final int candidateCount;
+    private final int candidateTokens;
+    private final int droppedRedundant;
+    private final int droppedOverBudget;
+
+    /**
+     * One packed block: "[label]" in the prompt, its text at [start, end) of
+     * the packed text, and the candidate and source span it came from
+     */
+    public static class Attribution {
+        private final int label;
+        private final String candidateId;
+        private final String sourceId;
+        private final int start;
+        private final int end;
+        private final int sourceStart;
+        private final int sourceEnd;
+        private final double score;
+
+        Attribution(int label, ContextCandidate candidate, int start, int end) {
+            this.label = label;
+            this.candidateId = candidate.getId();
+            this.sourceId = candidate.getSourceId();
+            this.start = start;
+            this.end = end;
+            this.sourceStart = candidate.getSourceStart();
+            this.sourceEnd = candidate.getSourceEnd();
+            this.score = candidate.getScore();
+        }
+
+        // Getter methods for Ballerina interop
+        public int getLabel() {
+            return label;
+        }
+
+        public String getCandidateId() {
+            return candidateId;
+        }
+
+        public String getSourceId() {
+            return sourceId;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getSourceStart() {
+            return sourceStart;
+        }
+
+        public int getSourceEnd() {
+            return sourceEnd;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    PackedContext(String text, List<Attribution> attributions, int tokenBudget, int tokensUsed, int candidateCount,
+            int candidateTokens, int droppedRedundant, int droppedOverBudget) {
+        this.text = text;
+        this.attributions = Collections.unmodifiableList(attributions);
+        this.tokenBudget = tokenBudget;
+        this.tokensUsed = tokensUsed;
+        this.candidateCount = candidateCount;
+        this.candidateTokens = candidateTokens;
+        this.droppedRedundant = droppedRedundant;
+        this.droppedOverBudget = droppedOverBudget;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getText() {
+        return text;
+    }
+
+    public List<Attribution> getAttributions() {
+        return attributions;
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * Tokens of the packed blocks including their labels, never above the budget
+     */
+    public int getTokensUsed() {
+        return tokensUsed;
+    }
+
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * Tokens that concatenating every candidate would have cost
+     */
+    public int getCandidateTokens() {
+        return candidateTokens;
+    }
+
+    public int getDroppedRedundant() {
+        return droppedRedundant;
+    }
+
+    public int getDroppedOverBudget() {
+        return droppedOverBudget;
+    }
+
+    /**
+     * Text and attributions as JSON for Ballerina
+     */
+    public String toJson() {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("text", text);
+        ArrayNode array = root.putArray("attributions");
+        for (Attribution attribution : attributions) {
+            ObjectNode node = array.addObject();
+            node.put("label", attribution.label);
+            node.put("candidateId", attribution.candidateId);
+            node.put("sourceId", attribution.sourceId);
+            node.put("start", attribution.start);
+            node.put("end", attribution.end);
+            node.put("sourceStart", attribution.sourceStart);
+            node.put("sourceEnd", attribution.sourceEnd);
+            node.put("score", attribution.score);
+        }
+        getMetricsMap().forEach((name, value) -> root.putPOJO(name, value));
+        return root.toString();
+    }
+
+    public Map<String, Object> getMetricsMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tokenBudget", tokenBudget);
+        metrics.put("tokensUsed", tokensUsed);
+        metrics.put("candidateCount", candidateCount);
+        metrics.put("candidateTokens", candidateTokens);
+        metrics.put("selectedCount", attributions.size());
+        metrics.put("droppedRedundant", droppedRedundant);
+        metrics.put("droppedOverBudget", droppedOverBudget);
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PackedContext{selected=%d/%d, tokens=%d/%d, redundant=%d, overBudget=%d}",
+                attributions.size(), candidateCount, tokensUsed, tokenBudget, droppedRedundant, droppedOverBudget);
+    }
+}
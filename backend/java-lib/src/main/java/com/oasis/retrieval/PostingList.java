@@ -0,0 +1,120 @@
+package com.oasis.retrieval;
+
+import java.util.Arrays;
+
+/**
+ * Postings for one term: (document, term frequency) pairs in ascending
+ * document order, stored as varint-encoded document gaps and frequencies
+ *
+ * Documents are numbered in insertion order, so new chunks always append and
+ * the gaps stay small. A typical posting takes two bytes instead of the eight
+ * of an int pair.
+ */
+final class PostingList {
+    private byte[] data = new byte[8];
+    private int size;
+    private int count;
+    private int lastDoc = -1;
+
+    void add(int doc, int frequency) {
+        ensureCapacity(size + 10);
+        size = writeVarint(data, size, doc - lastDoc);
+        size = writeVarint(data, size, frequency);
+        lastDoc = doc;
+        count++;
+    }
+
+    /**
+     * Postings recorded, including those of deleted documents
+     */
+    int count() {
+        return count;
+    }
+
+    int byteSize() {
+        return size;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Copy without the postings of documents that {@code newDocNumbers} maps to -1,
+     * renumbering the others
+     */
+    PostingList remap(int[] newDocNumbers) {
+        PostingList remapped = new PostingList();
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            int doc = newDocNumbers[cursor.doc()];
+            if (doc >= 0) {
+                remapped.add(doc, cursor.frequency());
+            }
+        }
+        remapped.trim();
+        return remapped;
+    }
+
+    void trim() {
+        if (data.length > size) {
+            data = Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Forward-only decoder; not thread-safe, each search takes its own
+     */
+    final class Cursor {
+        private int position;
+        private int doc = -1;
+        private int frequency;
+
+        boolean next() {
+            if (position >= size) {
+                return false;
+            }
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int tf = 0;
+            shift = 0;
+            do {
+                b = data[position++];
+                tf |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            frequency = tf;
+            return true;
+        }
+
+        int doc() {
+            return doc;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > data.length) {
+            data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+        }
+    }
+
+    private static int writeVarint(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,28 @@
+package com.oasis.retrieval;
+
+/**
+ * Chunk id with the score it was ranked by
+ */
+public class RankedChunk {
+    private final String chunkId;
+    private final double score;
+
+    public RankedChunk(String chunkId, double score) {
+        this.chunkId = chunkId;
+        this.score = score;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getChunkId() {
+        return chunkId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RankedChunk{chunkId='%s', score=%.4f}", chunkId, score);
+    }
+}
@@ -0,0 +1,74 @@
+package com.oasis.retrieval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges ranked lists by reciprocal rank fusion: a chunk scores
+ * sum(1 / (k + rank)) over the lists it appears in
+ *
+ * Only ranks are used, so BM25 scores and cosine similarities need no
+ * calibration against each other. Chunks found by both lexical and vector
+ * search rise to the top.
+ */
+public final class ReciprocalRankFusion {
+
+    // The constant from Cormack et al.; damps the advantage of the very first ranks
+    public static final int DEFAULT_K = 60;
+
+    private ReciprocalRankFusion() {
+    }
+
+    /**
+     * Fuse BM25 hits with chunk ids from the pgvector search, both best first
+     */
+    public static RankedChunk[] fuse(RankedChunk[] lexical, String[] vectorChunkIds, int limit) {
+        String[] lexicalIds = new String[lexical.length];
+        for (int i = 0; i < lexical.length; i++) {
+            lexicalIds[i] = lexical[i].getChunkId();
+        }
+        List<String[]> rankings = new ArrayList<>(2);
+        rankings.add(lexicalIds);
+        rankings.add(vectorChunkIds);
+        return fuse(rankings, DEFAULT_K, limit);
+    }
+
+    /**
+     * Fuse any number of rankings of chunk ids, each best first
+     *
+     * Ties keep the order in which chunks were first seen, so earlier
+     * rankings win ties.
+     */
+    public static RankedChunk[] fuse(List<String[]> rankings, int k, int limit) {
+        Map<String, double[]> scores = new HashMap<>();
+        List<String> firstSeen = new ArrayList<>();
+        for (String[] ranking : rankings) {
+            Set<String> inRanking = new HashSet<>();
+            for (int rank = 0; rank < ranking.length; rank++) {
+                String chunkId = ranking[rank];
+                if (chunkId == null || !inRanking.add(chunkId)) {
+                    continue; // A chunk counts once per ranking, at its best rank
+                }
+                double[] score = scores.get(chunkId);
+                if (score == null) {
+                    score = new double[1];
+                    scores.put(chunkId, score);
+                    firstSeen.add(chunkId);
+                }
+                score[0] += 1.0 / (k + rank + 1);
+            }
+        }
+
+        List<RankedChunk> fused = new ArrayList<>(firstSeen.size());
+        for (String chunkId : firstSeen) {
+            fused.add(new RankedChunk(chunkId, scores.get(chunkId)[0]));
+        }
+        // List.sort is stable, so first-seen order breaks ties
+        fused.sort((x, y) -> Double.compare(y.getScore(), x.getScore()));
+        return fused.subList(0, Math.min(Math.max(0, limit), fused.size())).toArray(new RankedChunk[0]);
+    }
+}
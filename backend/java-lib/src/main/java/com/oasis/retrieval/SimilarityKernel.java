@@ -0,0 +1,16 @@
+package com.oasis.retrieval;
+
+/**
+ * Dot products over slices of flat embedding arrays
+ *
+ * Implementations are stateless and shared by all scanning threads; see
+ * {@link SimilarityKernels} for how one is chosen.
+ */
+interface SimilarityKernel {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    String name();
+}
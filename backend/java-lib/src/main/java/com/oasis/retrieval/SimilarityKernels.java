@@ -0,0 +1,51 @@
+package com.oasis.retrieval;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses the dot product kernel once per process
+ *
+ * The Vector API kernel is used when the JVM was started with
+ * --add-modules jdk.incubator.vector and oasis.similarity.simd is not false;
+ * otherwise, or if it fails to load, the scalar kernel is used. The vector
+ * class is loaded by name so that nothing else depends on the incubator module.
+ * The build compiles it in a separate step with the module added, and it
+ * ships in the jar either way.
+ */
+final class SimilarityKernels {
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityKernels.class);
+
+    static final SimilarityKernel SCALAR = new ScalarSimilarityKernel();
+    static final SimilarityKernel PREFERRED = select();
+
+    private SimilarityKernels() {
+    }
+
+    /**
+     * The Vector API kernel, or null if this JVM cannot run it
+     */
+    static SimilarityKernel vectorOrNull() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (SimilarityKernel) Class.forName("com.oasis.retrieval.VectorSimilarityKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            logger.info("Vector API similarity kernel not on the classpath, using scalar");
+            return null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            logger.warn("Vector API similarity kernel unavailable, using scalar: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static SimilarityKernel select() {
+        if (!Boolean.parseBoolean(System.getProperty("oasis.similarity.simd", "true"))) {
+            return SCALAR;
+        }
+        SimilarityKernel vector = vectorOrNull();
+        return vector != null ? vector : SCALAR;
+    }
+}
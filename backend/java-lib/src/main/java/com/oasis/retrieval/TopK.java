@@ -0,0 +1,116 @@
+package com.oasis.retrieval;
+
+/**
+ * Bounded min-heap of (score, doc); ties go to the earlier document
+ */
+final class TopK {
+    private final int[] docs;
+    private final float[] scores;
+    private int size;
+
+    TopK(int capacity) {
+        docs = new int[capacity];
+        scores = new float[capacity];
+    }
+
+    void offer(int doc, float score) {
+        if (size < docs.length) {
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (worse(0, doc, score)) {
+            docs[0] = doc;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Score a candidate must beat to enter a full heap; negative infinity until full
+     */
+    float threshold() {
+        return size < docs.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Offer every entry of another heap, to merge per-thread results
+     */
+    void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.docs[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Docs best first, emptying the heap
+     */
+    int[] drainDocs() {
+        int[] ranked = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            ranked[i] = docs[0];
+            size--;
+            docs[0] = docs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return ranked;
+    }
+
+    RankedChunk[] drain(String[] chunkIds) {
+        RankedChunk[] ranked = new RankedChunk[size];
+        for (int i = size - 1; i >= 0; i--) {
+            ranked[i] = new RankedChunk(chunkIds[docs[0]], scores[0]);
+            size--;
+            docs[0] = docs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return ranked;
+    }
+
+    // Whether heap entry i ranks below (doc, score)
+    private boolean worse(int i, int doc, float score) {
+        return scores[i] < score || (scores[i] == score && docs[i] > doc);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!worse(i, docs[parent], scores[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && worse(child + 1, docs[child], scores[child])) {
+                child++;
+            }
+            if (!worse(child, docs[i], scores[i])) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int c) {
+        int doc = docs[a];
+        docs[a] = docs[c];
+        docs[c] = doc;
+        float score = scores[a];
+        scores[a] = scores[c];
+        scores[c] = score;
+    }
+}
@@ -0,0 +1,125 @@
+package com.oasis.tax.calculation;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Columnar output of a bulk calculation
+ *
+ * Holds the final amount, every step's result and an error message per row.
+ * A failed row has a null final amount and the same message the per-request
+ * engine would have returned; other rows are unaffected.
+ */
+public class BulkCalculationResult {
+    private final String[] stepNames;
+    private final BigDecimal[] finalAmounts;
+    private final BigDecimal[][] stepResults;
+    private final String[] errors;
+    private final long elapsedNanos;
+
+    BulkCalculationResult(String[] stepNames, BigDecimal[] finalAmounts, BigDecimal[][] stepResults,
+            String[] errors, long elapsedNanos) {
+        this.stepNames = stepNames;
+        this.finalAmounts = finalAmounts;
+        this.stepResults = stepResults;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getter methods for Ballerina interop
+    public int getRowCount() {
+        return finalAmounts.length;
+    }
+
+    public String[] getStepNames() {
+        return stepNames.clone();
+    }
+
+    public BigDecimal getFinalAmount(int row) {
+        return finalAmounts[row];
+    }
+
+    public BigDecimal[] getFinalAmounts() {
+        return finalAmounts;
+    }
+
+    public BigDecimal getStepResult(int step, int row) {
+        return stepResults[step][row];
+    }
+
+    public String getError(int row) {
+        return errors[row];
+    }
+
+    public boolean isRowSuccessful(int row) {
+        return errors[row] == null;
+    }
+
+    public int getFailedRowCount() {
+        int failed = 0;
+        for (String error : errors) {
+            if (error != null) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? getRowCount() * 1_000_000_000.0 / elapsedNanos : 0.0;
+    }
+
+    /**
+     * Write the CSV header matching {@link #writeCsvRows}
+     */
+    public static void writeCsvHeader(Appendable out, String[] stepNames) throws IOException {
+        out.append("row");
+        for (String step : stepNames) {
+            out.append(',').append(csvEscape(step));
+        }
+        out.append(",final_amount,error\n");
+    }
+
+    /**
+     * Write one CSV line per row with the per-step breakdown
+     *
+     * @param rowOffset added to the row number so streamed blocks keep global numbering
+     */
+    public void writeCsvRows(Appendable out, long rowOffset) throws IOException {
+        for (int row = 0; row < finalAmounts.length; row++) {
+            out.append(Long.toString(rowOffset + row));
+            for (BigDecimal[] step : stepResults) {
+                out.append(',');
+                if (step[row] != null) {
+                    out.append(step[row].toPlainString());
+                }
+            }
+            out.append(',');
+            if (finalAmounts[row] != null) {
+                out.append(finalAmounts[row].toPlainString());
+            }
+            out.append(',');
+            if (errors[row] != null) {
+                out.append(csvEscape(errors[row]));
+            }
+            out.append('\n');
+        }
+    }
+
+    private static String csvEscape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkCalculationResult{rows=%d, failed=%d, rowsPerSecond=%.0f}",
+                getRowCount(), getFailedRowCount(), getRowsPerSecond());
+    }
+}
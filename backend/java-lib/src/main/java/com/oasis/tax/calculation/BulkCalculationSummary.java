@@ -0,0 +1,39 @@
+package com.oasis.tax.calculation;
+
+/**
+ * Totals for a streamed bulk calculation where rows are not retained
+ */
+public class BulkCalculationSummary {
+    private final long rowCount;
+    private final long failedRowCount;
+    private final long elapsedNanos;
+
+    public BulkCalculationSummary(long rowCount, long failedRowCount, long elapsedNanos) {
+        this.rowCount = rowCount;
+        this.failedRowCount = failedRowCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    // Getter methods for Ballerina interop
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getFailedRowCount() {
+        return failedRowCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? rowCount * 1_000_000_000.0 / elapsedNanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BulkCalculationSummary{rows=%d, failed=%d, rowsPerSecond=%.0f}",
+                rowCount, failedRowCount, getRowsPerSecond());
+    }
+}
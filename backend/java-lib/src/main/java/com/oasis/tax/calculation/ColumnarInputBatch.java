@@ -0,0 +1,104 @@
+package com.oasis.tax.calculation;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A batch of calculation inputs stored as one array per variable
+ *
+ * Row i of the batch is the set of values at index i of every column. Missing
+ * or non-numeric values are held as null and surface as "Variable not found"
+ * only if a formula actually reads them, matching the per-request engine.
+ */
+public class ColumnarInputBatch {
+    private final int rowCount;
+    private final Map<String, BigDecimal[]> columns = new LinkedHashMap<>();
+
+    public ColumnarInputBatch(int rowCount) {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("rowCount must not be negative");
+        }
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Add a decimal column; the array is used as-is, not copied
+     */
+    public ColumnarInputBatch addColumn(String name, BigDecimal[] values) {
+        checkLength(name, values.length);
+        columns.put(name, values);
+        return this;
+    }
+
+    /**
+     * Add a column from floating point values (converted via their decimal string form)
+     */
+    public ColumnarInputBatch addColumn(String name, double[] values) {
+        checkLength(name, values.length);
+        BigDecimal[] column = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            column[i] = Double.isFinite(values[i]) ? BigDecimal.valueOf(values[i]) : null;
+        }
+        columns.put(name, column);
+        return this;
+    }
+
+    /**
+     * Add a column from text values; blank or non-numeric cells become null
+     */
+    public ColumnarInputBatch addColumn(String name, String[] values) {
+        checkLength(name, values.length);
+        BigDecimal[] column = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            column[i] = parseDecimal(values[i]);
+        }
+        columns.put(name, column);
+        return this;
+    }
+
+    // Getter methods for Ballerina interop
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String[] getColumnNames() {
+        return columns.keySet().toArray(new String[0]);
+    }
+
+    public BigDecimal[] getColumn(String name) {
+        return columns.get(name);
+    }
+
+    Map<String, BigDecimal[]> columns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    static BigDecimal parseDecimal(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void checkLength(String name, int length) {
+        if (length != rowCount) {
+            throw new IllegalArgumentException(String.format(
+                    "Column '%s' has %d values but the batch has %d rows", name, length, rowCount));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ColumnarInputBatch{rows=%d, columns=%s}", rowCount, columns.keySet());
+    }
+}
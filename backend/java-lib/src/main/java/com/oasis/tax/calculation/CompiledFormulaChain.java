@@ -0,0 +1,90 @@
+package com.oasis.tax.calculation;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * A schema's formula chain compiled once for evaluation over many rows
+ *
+ * Every variable (input or formula output) is assigned a slot index at compile
+ * time, so evaluating a row is a walk over pre-built nodes with no string
+ * parsing, substitution or map lookups. Instances are immutable and safe to
+ * share between threads.
+ */
+public class CompiledFormulaChain {
+    private final String[] slotNames;
+    private final FormulaDefinition[] steps;
+    private final FormulaNode[] nodes;
+    private final int[] outputSlots;
+
+    CompiledFormulaChain(String[] slotNames, FormulaDefinition[] steps, FormulaNode[] nodes, int[] outputSlots) {
+        this.slotNames = slotNames;
+        this.steps = steps;
+        this.nodes = nodes;
+        this.outputSlots = outputSlots;
+    }
+
+    /**
+     * Evaluate all steps for one row
+     *
+     * @param slots       variable values for the row; formula outputs are written back
+     * @param stepResults receives each step's result, indexed like {@link #getSteps()}
+     * @return the last step's result, which the schema treats as the final amount
+     * @throws RowEvaluationException if a variable is missing or arithmetic fails
+     */
+    BigDecimal evaluateRow(BigDecimal[] slots, BigDecimal[] stepResults) {
+        BigDecimal result = BigDecimal.ZERO;
+        for (int i = 0; i < nodes.length; i++) {
+            try {
+                result = nodes[i].evaluate(slots);
+            } catch (RowEvaluationException | ArithmeticException e) {
+                throw new RowEvaluationException(
+                        "Formula execution failed for '" + steps[i].getId() + "': " + e.getMessage());
+            }
+            slots[outputSlots[i]] = result;
+            stepResults[i] = result;
+        }
+        return result;
+    }
+
+    int getSlotCount() {
+        return slotNames.length;
+    }
+
+    /**
+     * Slot index of a variable, or -1 if no formula references it
+     */
+    int slotOf(String variableName) {
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i].equals(variableName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Getter methods for Ballerina interop
+    public FormulaDefinition[] getSteps() {
+        return steps.clone();
+    }
+
+    public int getStepCount() {
+        return steps.length;
+    }
+
+    public String[] getStepNames() {
+        return Arrays.stream(steps).map(FormulaDefinition::getId).toArray(String[]::new);
+    }
+
+    /**
+     * All variable names the chain reads or writes, inputs first in order of use
+     */
+    public String[] getVariableNames() {
+        return slotNames.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CompiledFormulaChain{steps=%d, variables=%d}", steps.length, slotNames.length);
+    }
+}
@@ -0,0 +1,492 @@
+package com.oasis.tax.calculation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles schema calculationRules into a {@link CompiledFormulaChain}
+ *
+ * Accepts the same expression language as the Ballerina dynamic calculation
+ * engine: arithmetic with + - * / and parentheses, numeric literals, variable
+ * names, max(...), min(...), pct(x), progressiveTax(x) and
+ * "if cond then expr else expr" chains with &lt;= &gt;= &lt; &gt; == != comparisons.
+ * Arithmetic uses decimal128 precision to match Ballerina's decimal type.
+ */
+public final class FormulaCompiler {
+
+    static final MathContext DECIMAL = MathContext.DECIMAL128;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private FormulaCompiler() {
+    }
+
+    /**
+     * Compile a schema row (as returned by fetchActiveSchema) into a formula chain
+     *
+     * @param schemaJson schema JSON with calculationRules either at the top level
+     *                   or inside schema_data (object or JSON string)
+     * @param brackets   aggregated brackets for progressiveTax, in bracket order
+     * @return the compiled chain, ready to evaluate any number of rows
+     * @throws FormulaException if the schema has no formulas or an expression is invalid
+     */
+    public static CompiledFormulaChain compileSchema(String schemaJson, TaxBracket[] brackets)
+            throws FormulaException {
+        return compile(parseSchemaFormulas(schemaJson), brackets);
+    }
+
+    /**
+     * Compile a schema with brackets given as a JSON array of tax_brackets rows
+     * (min_income, max_income, rate, fixed_amount), for callers on the Ballerina side
+     */
+    public static CompiledFormulaChain compileSchema(String schemaJson, String bracketsJson)
+            throws FormulaException {
+        return compile(parseSchemaFormulas(schemaJson), parseBrackets(bracketsJson));
+    }
+
+    /**
+     * Compile formulas into a chain, sorted by their order field
+     */
+    public static CompiledFormulaChain compile(List<FormulaDefinition> formulas, TaxBracket[] brackets)
+            throws FormulaException {
+        if (formulas == null || formulas.isEmpty()) {
+            throw new FormulaException("No formulas found in calculation rules");
+        }
+
+        // Stable sort keeps schema order for equal order values, like the bubble sort in Ballerina
+        List<FormulaDefinition> sorted = new ArrayList<>(formulas);
+        sorted.sort(Comparator.comparingInt(FormulaDefinition::getOrder));
+
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        TaxBracket[] bracketTable = brackets != null ? brackets.clone() : new TaxBracket[0];
+        List<FormulaDefinition> steps = new ArrayList<>();
+        List<FormulaNode> nodes = new ArrayList<>();
+        List<Integer> outputSlots = new ArrayList<>();
+
+        for (FormulaDefinition formula : sorted) {
+            String expression = formula.getExpression().trim();
+            if (expression.isEmpty()) {
+                continue;
+            }
+            try {
+                nodes.add(new Parser(expression, slots, bracketTable).parseFormula());
+            } catch (FormulaException e) {
+                throw new FormulaException(
+                        "Formula compilation failed for '" + formula.getId() + "': " + e.getMessage(), e);
+            }
+            outputSlots.add(slots.computeIfAbsent(formula.getResultVariable(), k -> slots.size()));
+            steps.add(formula);
+        }
+
+        if (steps.isEmpty()) {
+            throw new FormulaException("No formulas found in calculation rules");
+        }
+
+        return new CompiledFormulaChain(
+                slots.keySet().toArray(new String[0]),
+                steps.toArray(new FormulaDefinition[0]),
+                nodes.toArray(new FormulaNode[0]),
+                outputSlots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Read calculationRules out of a schema JSON document
+     */
+    public static List<FormulaDefinition> parseSchemaFormulas(String schemaJson) throws FormulaException {
+        JsonNode schema;
+        try {
+            schema = MAPPER.readTree(schemaJson);
+        } catch (Exception e) {
+            throw new FormulaException("Schema must be valid JSON: " + e.getMessage(), e);
+        }
+        if (schema == null || !schema.isObject()) {
+            throw new FormulaException("Schema must be an object");
+        }
+
+        JsonNode rules = null;
+        JsonNode schemaData = schema.get("schema_data");
+        if (schemaData != null && schemaData.isTextual()) {
+            try {
+                schemaData = MAPPER.readTree(schemaData.asText());
+            } catch (Exception e) {
+                throw new FormulaException("Failed to parse schema_data JSON string: " + e.getMessage(), e);
+            }
+        }
+        if (schemaData != null && schemaData.isObject()) {
+            rules = schemaData.get("calculationRules");
+        }
+        if (rules == null || !rules.isArray()) {
+            rules = schema.get("calculationRules");
+        }
+        if (rules == null || !rules.isArray()) {
+            throw new FormulaException("No calculationRules found in schema");
+        }
+
+        List<FormulaDefinition> formulas = new ArrayList<>();
+        for (JsonNode rule : rules) {
+            if (!rule.isObject()) {
+                continue;
+            }
+            JsonNode order = rule.get("order");
+            formulas.add(new FormulaDefinition(
+                    text(rule, "id"), text(rule, "name"), text(rule, "expression"), text(rule, "output_field"),
+                    order != null && order.isInt() ? order.asInt() : 0));
+        }
+        return formulas;
+    }
+
+    /**
+     * Read a JSON array of tax_brackets rows, keeping the array order as bracket order
+     */
+    public static TaxBracket[] parseBrackets(String bracketsJson) throws FormulaException {
+        if (bracketsJson == null || bracketsJson.isBlank()) {
+            return new TaxBracket[0];
+        }
+        JsonNode rows;
+        try {
+            rows = MAPPER.readTree(bracketsJson);
+        } catch (Exception e) {
+            throw new FormulaException("Brackets must be valid JSON: " + e.getMessage(), e);
+        }
+        if (!rows.isArray()) {
+            throw new FormulaException("Brackets must be a JSON array");
+        }
+
+        List<TaxBracket> brackets = new ArrayList<>();
+        for (JsonNode row : rows) {
+            brackets.add(new TaxBracket(decimal(row, "min_income"), decimal(row, "max_income"),
+                    decimal(row, "rate"), decimal(row, "fixed_amount")));
+        }
+        return brackets.toArray(new TaxBracket[0]);
+    }
+
+    private static BigDecimal decimal(JsonNode node, String key) throws FormulaException {
+        JsonNode value = node.get(key);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        try {
+            return value.isNumber() ? value.decimalValue() : new BigDecimal(value.asText().trim());
+        } catch (NumberFormatException e) {
+            throw new FormulaException("Bracket field '" + key + "' is not a number: " + value);
+        }
+    }
+
+    private static String text(JsonNode node, String key) {
+        JsonNode value = node.get(key);
+        if (value == null || value.isNull()) {
+            return "";
+        }
+        return value.isTextual() ? value.asText() : value.toString();
+    }
+
+    /**
+     * Recursive-descent parser producing {@link FormulaNode} trees
+     *
+     * expression := 'if' expression 'then' expression 'else' expression | comparison
+     * comparison := additive [ ('<='|'>='|'<'|'>'|'=='|'!=') additive ]
+     * additive   := term { ('+'|'-') term }
+     * term       := unary { ('*'|'/') unary }
+     * unary      := '-' unary | primary
+     * primary    := number | name | name '(' args ')' | '(' expression ')'
+     */
+    private static final class Parser {
+        private final String source;
+        private final Map<String, Integer> slots;
+        private final TaxBracket[] brackets;
+        private int pos;
+
+        Parser(String source, Map<String, Integer> slots, TaxBracket[] brackets) {
+            this.source = source;
+            this.slots = slots;
+            this.brackets = brackets;
+        }
+
+        FormulaNode parseFormula() throws FormulaException {
+            FormulaNode node = parseExpression();
+            skipWhitespace();
+            if (pos < source.length()) {
+                throw error("Unexpected '" + source.charAt(pos) + "'");
+            }
+            return node;
+        }
+
+        private FormulaNode parseExpression() throws FormulaException {
+            if (acceptKeyword("if")) {
+                FormulaNode condition = parseExpression();
+                expectKeyword("then");
+                FormulaNode whenTrue = parseExpression();
+                expectKeyword("else");
+                FormulaNode whenFalse = parseExpression();
+                return slots -> condition.evaluate(slots).signum() != 0
+                        ? whenTrue.evaluate(slots)
+                        : whenFalse.evaluate(slots);
+            }
+            return parseComparison();
+        }
+
+        private FormulaNode parseComparison() throws FormulaException {
+            FormulaNode left = parseAdditive();
+            skipWhitespace();
+            String op = null;
+            for (String candidate : new String[] { "<=", ">=", "==", "!=", "<", ">" }) {
+                if (source.startsWith(candidate, pos)) {
+                    op = candidate;
+                    break;
+                }
+            }
+            if (op == null) {
+                return left;
+            }
+            pos += op.length();
+            FormulaNode right = parseAdditive();
+            final String comparison = op;
+            return slots -> {
+                int cmp = left.evaluate(slots).compareTo(right.evaluate(slots));
+                boolean result;
+                switch (comparison) {
+                    case "<=": result = cmp <= 0; break;
+                    case ">=": result = cmp >= 0; break;
+                    case "<": result = cmp < 0; break;
+                    case ">": result = cmp > 0; break;
+                    case "==": result = cmp == 0; break;
+                    default: result = cmp != 0; break;
+                }
+                return result ? BigDecimal.ONE : BigDecimal.ZERO;
+            };
+        }
+
+        private FormulaNode parseAdditive() throws FormulaException {
+            FormulaNode node = parseTerm();
+            while (true) {
+                skipWhitespace();
+                if (accept('+')) {
+                    FormulaNode left = node;
+                    FormulaNode right = parseTerm();
+                    node = slots -> left.evaluate(slots).add(right.evaluate(slots), DECIMAL);
+                } else if (accept('-')) {
+                    FormulaNode left = node;
+                    FormulaNode right = parseTerm();
+                    node = slots -> left.evaluate(slots).subtract(right.evaluate(slots), DECIMAL);
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private FormulaNode parseTerm() throws FormulaException {
+            FormulaNode node = parseUnary();
+            while (true) {
+                skipWhitespace();
+                if (accept('*')) {
+                    FormulaNode left = node;
+                    FormulaNode right = parseUnary();
+                    node = slots -> left.evaluate(slots).multiply(right.evaluate(slots), DECIMAL);
+                } else if (accept('/')) {
+                    FormulaNode left = node;
+                    FormulaNode right = parseUnary();
+                    node = slots -> {
+                        BigDecimal divisor = right.evaluate(slots);
+                        if (divisor.signum() == 0) {
+                            throw new RowEvaluationException("Division by zero");
+                        }
+                        return left.evaluate(slots).divide(divisor, DECIMAL);
+                    };
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private FormulaNode parseUnary() throws FormulaException {
+            skipWhitespace();
+            if (accept('-')) {
+                FormulaNode operand = parseUnary();
+                return slots -> operand.evaluate(slots).negate();
+            }
+            return parsePrimary();
+        }
+
+        private FormulaNode parsePrimary() throws FormulaException {
+            skipWhitespace();
+            if (pos >= source.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = source.charAt(pos);
+
+            if (accept('(')) {
+                FormulaNode inner = parseExpression();
+                expect(')');
+                return inner;
+            }
+
+            if (Character.isDigit(c) || c == '.') {
+                int start = pos;
+                while (pos < source.length()
+                        && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+                try {
+                    BigDecimal literal = new BigDecimal(source.substring(start, pos));
+                    return slots -> literal;
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number '" + source.substring(start, pos) + "'");
+                }
+            }
+
+            if (isNameStart(c)) {
+                String name = readName();
+                skipWhitespace();
+                if (accept('(')) {
+                    return parseCall(name);
+                }
+                final int slot = slotFor(name);
+                return slots -> {
+                    BigDecimal value = slots[slot];
+                    if (value == null) {
+                        throw new RowEvaluationException("Variable '" + name + "' not found");
+                    }
+                    return value;
+                };
+            }
+
+            throw error("Unexpected '" + c + "'");
+        }
+
+        private FormulaNode parseCall(String function) throws FormulaException {
+            List<FormulaNode> args = new ArrayList<>();
+            skipWhitespace();
+            if (!accept(')')) {
+                do {
+                    args.add(parseExpression());
+                    skipWhitespace();
+                } while (accept(','));
+                expect(')');
+            }
+            FormulaNode[] argv = args.toArray(new FormulaNode[0]);
+
+            switch (function) {
+                case "max":
+                case "min":
+                    if (argv.length < 2) {
+                        throw error(function + " function requires at least 2 arguments");
+                    }
+                    final boolean isMax = function.equals("max");
+                    return slots -> {
+                        BigDecimal best = argv[0].evaluate(slots);
+                        for (int i = 1; i < argv.length; i++) {
+                            BigDecimal value = argv[i].evaluate(slots);
+                            if (isMax ? value.compareTo(best) > 0 : value.compareTo(best) < 0) {
+                                best = value;
+                            }
+                        }
+                        return best;
+                    };
+                case "pct":
+                    requireArity(function, argv, 1);
+                    BigDecimal hundred = BigDecimal.valueOf(100);
+                    return slots -> argv[0].evaluate(slots).divide(hundred, DECIMAL);
+                case "progressiveTax":
+                    requireArity(function, argv, 1);
+                    if (brackets.length == 0) {
+                        throw error("progressiveTax used but no aggregated brackets were supplied");
+                    }
+                    return slots -> progressiveTax(argv[0].evaluate(slots), brackets);
+                default:
+                    throw error("Unknown function '" + function + "'");
+            }
+        }
+
+        private void requireArity(String function, FormulaNode[] argv, int arity) throws FormulaException {
+            if (argv.length != arity) {
+                throw error(function + " function expects " + arity + " argument(s)");
+            }
+        }
+
+        private int slotFor(String name) {
+            return slots.computeIfAbsent(name, k -> slots.size());
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            skipWhitespace();
+            int end = pos + keyword.length();
+            if (source.startsWith(keyword, pos)
+                    && (end >= source.length() || !isNamePart(source.charAt(end)))) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private void expectKeyword(String keyword) throws FormulaException {
+            if (!acceptKeyword(keyword)) {
+                throw error("Expected '" + keyword + "'");
+            }
+        }
+
+        private boolean accept(char c) {
+            skipWhitespace();
+            if (pos < source.length() && source.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws FormulaException {
+            if (!accept(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private String readName() {
+            int start = pos;
+            while (pos < source.length() && isNamePart(source.charAt(pos))) {
+                pos++;
+            }
+            return source.substring(start, pos);
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private static boolean isNameStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        private static boolean isNamePart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+
+        private FormulaException error(String message) {
+            return new FormulaException(message + " at position " + pos + " in: " + source);
+        }
+    }
+
+    /**
+     * Same bracket walk as computeProgressiveTaxFromDb, over in-memory brackets
+     */
+    static BigDecimal progressiveTax(BigDecimal income, TaxBracket[] brackets) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (TaxBracket bracket : brackets) {
+            BigDecimal spanUpper = bracket.isOpenEnded() ? income : bracket.getMaxIncome();
+            BigDecimal taxableInSpan = income.min(spanUpper).subtract(bracket.getMinIncome(), DECIMAL);
+            if (taxableInSpan.signum() > 0) {
+                total = total.add(taxableInSpan.multiply(bracket.getRate(), DECIMAL), DECIMAL)
+                        .add(bracket.getFixedAmount(), DECIMAL);
+            }
+        }
+        return total;
+    }
+}
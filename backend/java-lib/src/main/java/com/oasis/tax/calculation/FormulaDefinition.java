@@ -0,0 +1,62 @@
+package com.oasis.tax.calculation;
+
+/**
+ * A single entry of a schema's calculationRules array
+ * Mirrors the id/name/expression/output_field/order keys used by the
+ * Ballerina dynamic calculation engine
+ */
+public class FormulaDefinition {
+    private final String id;
+    private final String name;
+    private final String expression;
+    private final String outputField;
+    private final int order;
+
+    public FormulaDefinition(String id, String name, String expression, String outputField, int order) {
+        this.id = id != null ? id : "";
+        this.name = name != null ? name : "";
+        this.expression = expression != null ? expression : "";
+        this.outputField = outputField != null ? outputField : "";
+        this.order = order;
+    }
+
+    // Getter methods for Ballerina interop
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public String getOutputField() {
+        return outputField;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Variable name the formula result is stored under for subsequent formulas
+     */
+    public String getResultVariable() {
+        return outputField.isEmpty() ? id : outputField;
+    }
+
+    /**
+     * Display name used in the formulas-used list
+     */
+    public String getDisplayName() {
+        return name.isEmpty() ? id : name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FormulaDefinition{id='%s', order=%d, expression='%s'}", id, order, expression);
+    }
+}
@@ -0,0 +1,16 @@
+package com.oasis.tax.calculation;
+
+/**
+ * Raised when a schema formula cannot be compiled or a batch cannot be run
+ * Checked so that Ballerina interop surfaces it as an error value
+ */
+public class FormulaException extends Exception {
+
+    public FormulaException(String message) {
+        super(message);
+    }
+
+    public FormulaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.oasis.tax.calculation;
+
+import java.math.BigDecimal;
+
+/**
+ * Compiled form of a formula expression
+ * Evaluates against a row's variable slots without re-parsing the expression
+ * text, so a schema is parsed once per batch rather than once per row
+ */
+@FunctionalInterface
+interface FormulaNode {
+
+    /**
+     * @param slots the row's variable values indexed by slot; null means unset
+     * @return the expression value (comparisons yield 1 or 0)
+     * @throws RowEvaluationException if a variable is missing or arithmetic fails
+     */
+    BigDecimal evaluate(BigDecimal[] slots);
+}
@@ -0,0 +1,12 @@
+package com.oasis.tax.calculation;
+
+/**
+ * Per-row evaluation failure; carried into the row's error column rather than
+ * failing the whole batch
+ */
+class RowEvaluationException extends RuntimeException {
+
+    RowEvaluationException(String message) {
+        super(message, null, false, false);
+    }
+}
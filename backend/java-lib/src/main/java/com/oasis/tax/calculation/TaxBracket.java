@@ -0,0 +1,49 @@
+package com.oasis.tax.calculation;
+
+import java.math.BigDecimal;
+
+/**
+ * One aggregated bracket used by progressiveTax(...)
+ * Same columns as tax_brackets: rate is a fraction (0.06 for 6%) and a null
+ * maximum marks the open-ended top bracket
+ */
+public class TaxBracket {
+    private final BigDecimal minIncome;
+    private final BigDecimal maxIncome;
+    private final BigDecimal rate;
+    private final BigDecimal fixedAmount;
+
+    public TaxBracket(BigDecimal minIncome, BigDecimal maxIncome, BigDecimal rate, BigDecimal fixedAmount) {
+        this.minIncome = minIncome != null ? minIncome : BigDecimal.ZERO;
+        this.maxIncome = maxIncome;
+        this.rate = rate != null ? rate : BigDecimal.ZERO;
+        this.fixedAmount = fixedAmount != null ? fixedAmount : BigDecimal.ZERO;
+    }
+
+    // Getter methods for Ballerina interop
+    public BigDecimal getMinIncome() {
+        return minIncome;
+    }
+
+    public BigDecimal getMaxIncome() {
+        return maxIncome;
+    }
+
+    public BigDecimal getRate() {
+        return rate;
+    }
+
+    public BigDecimal getFixedAmount() {
+        return fixedAmount;
+    }
+
+    public boolean isOpenEnded() {
+        return maxIncome == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaxBracket{min=%s, max=%s, rate=%s, fixed=%s}",
+                minIncome, isOpenEnded() ? "open" : maxIncome, rate, fixedAmount);
+    }
+}
@@ -0,0 +1,421 @@
+package com.oasis.tax.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Conflict detection for rule aggregation without pairwise comparisons
+ *
+ * Each rule is canonicalised once into hashed signatures (bracket structure,
+ * required variable set, per-formula expressions, per-field types, and a
+ * combined content signature). Formula, bracket, field-metadata and
+ * required-variable conflicts fall out of grouping by signature in a single
+ * pass. Effective-date conflicts use a sweep line over the rules' intervals
+ * ordered by effective day. The rules in force are grouped by content
+ * signature, so the cost is O(n log n) plus the number of overlapping pairs
+ * reported, however many rules overlap.
+ *
+ * The report is the same JSON array the Ballerina detectConflictsBetweenRules
+ * produces, so buildConflictAnalysisReport and the LLM prompt consume it as is.
+ * Effective-date overlaps differ from it in two deliberate ways:
+ * <ul>
+ * <li>Overlapping rules with identical content are not reported. They are the
+ * same rule extracted from several documents; they cannot disagree, and the
+ * pairs among n copies would fill the LLM prompt with n(n-1)/2 non-conflicts.
+ * The content conflicts above still list every rule.</li>
+ * <li>A missing or empty expiry date is open-ended, as in the SQL filters
+ * ({@code expiry_date IS NULL OR expiry_date >= ...}). datesOverlap compares
+ * ISO strings, where "" sorts before every date, so a rule still in force was
+ * never reported as overlapping anything.</li>
+ * </ul>
+ */
+public class RuleConflictEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RuleConflictEngine.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper SORTED_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private static final String DEFAULT_RESOLUTION = "prefer_newer_effective_date_then_higher_authority";
+
+    /**
+     * Detect conflicts for rule rows passed as JSON from Ballerina
+     *
+     * @param rulesJson JSON array of rule rows (see {@link TaxRuleRecord#fromJson})
+     * @param calcType  calc type being aggregated; bracket checks apply to income_tax, paye and vat
+     * @return the conflict list as a JSON array string; rows that cannot be read
+     *         are left out of the other checks and listed at the end
+     * @throws IOException if the input is not a JSON array
+     */
+    public static String detectConflictsJson(String rulesJson, String calcType) throws IOException {
+        JsonNode rows;
+        try {
+            rows = MAPPER.readTree(rulesJson);
+        } catch (Exception e) {
+            throw new IOException("Rule rows must be valid JSON: " + e.getMessage(), e);
+        }
+        if (rows == null || !rows.isArray()) {
+            throw new IOException("Rule rows must be a JSON array");
+        }
+        List<TaxRuleRecord> rules = new ArrayList<>();
+        List<ObjectNode> invalid = new ArrayList<>();
+        for (JsonNode row : rows) {
+            try {
+                rules.add(TaxRuleRecord.fromJson(row));
+            } catch (IllegalArgumentException e) {
+                invalid.add(invalidRow(row, e));
+            }
+        }
+        ArrayNode conflicts = detectConflicts(rules, calcType);
+        conflicts.addAll(invalid);
+        return conflicts.toString();
+    }
+
+    /**
+     * A row TaxRuleRecord refuses is reported rather than failing the whole
+     * report: a bad effective period as invalid_interval, anything else (no
+     * id, rule_data that is not JSON) as invalid_rule_row
+     */
+    private static ObjectNode invalidRow(JsonNode row, IllegalArgumentException error) {
+        String id = row.path("id").asText("");
+        String effective = row.path("effective_date").asText("");
+        String expiry = row.path("expiry_date").asText("");
+        String intervalError = TaxRuleRecord.intervalError(effective, expiry);
+        ObjectNode range = MAPPER.createObjectNode();
+        range.put("effective_date", effective);
+        range.put("expiry_date", expiry);
+        List<Member> members = List.of(new Member(id, range));
+        if (intervalError != null) {
+            return conflict("fieldName", "effective_date_range", "invalid_interval",
+                    "Rule " + id + " " + intervalError, "correct_effective_dates_before_aggregation", members);
+        }
+        return conflict("fieldName", "rule_row", "invalid_rule_row", error.getMessage(),
+                "exclude_rule_from_aggregation", members);
+    }
+
+    /**
+     * Detect all conflict kinds between rules, in the Ballerina report order
+     */
+    public static ArrayNode detectConflicts(List<TaxRuleRecord> rules, String calcType) {
+        long start = System.nanoTime();
+        List<CanonicalRule> canonical = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            canonical.add(new CanonicalRule(rules.get(i), i));
+        }
+
+        ArrayNode conflicts = MAPPER.createArrayNode();
+        detectFormulaConflicts(canonical, conflicts);
+        String type = calcType != null ? calcType.toLowerCase() : "";
+        if (type.equals("income_tax") || type.equals("paye") || type.equals("vat")) {
+            detectSignatureConflicts(canonical, c -> c.bracketSignature, c -> c.rule.getRuleData().get("brackets"),
+                    "tax_brackets", "bracket_structure_mismatch", "Rules define different tax bracket structures",
+                    DEFAULT_RESOLUTION, conflicts);
+        }
+        detectFieldMetadataConflicts(canonical, conflicts);
+        detectSignatureConflicts(canonical, c -> c.variableSignature,
+                c -> c.rule.getRuleData().get("required_variables"),
+                "required_variables", "variable_set_mismatch", "Rules require different sets of input variables",
+                "merge_union_of_all_variables", conflicts);
+        detectEffectiveDateConflicts(canonical, conflicts);
+
+        logger.info("Conflict detection over {} rules found {} conflicts in {} ms",
+                rules.size(), conflicts.size(), (System.nanoTime() - start) / 1_000_000);
+        return conflicts;
+    }
+
+    /**
+     * Formulas are grouped by name; a group with more than one distinct
+     * expression hash is a conflict
+     */
+    private static void detectFormulaConflicts(List<CanonicalRule> rules, ArrayNode conflicts) {
+        Map<String, List<Member>> groups = new LinkedHashMap<>();
+        Map<String, Set<RuleSignature>> expressions = new LinkedHashMap<>();
+        for (CanonicalRule rule : rules) {
+            for (FormulaEntry formula : rule.formulas) {
+                groups.computeIfAbsent(formula.name, k -> new ArrayList<>())
+                        .add(new Member(rule.rule.getId(), formula.json));
+                expressions.computeIfAbsent(formula.name, k -> new LinkedHashSet<>()).add(formula.expression);
+            }
+        }
+        for (Map.Entry<String, List<Member>> group : groups.entrySet()) {
+            if (group.getValue().size() > 1 && expressions.get(group.getKey()).size() > 1) {
+                conflicts.add(conflict("field", "formula_" + group.getKey(), "formula_expression_mismatch",
+                        "Multiple rules define different expressions for formula: " + group.getKey(),
+                        DEFAULT_RESOLUTION, group.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Field metadata is grouped by field name; more than one distinct type is a conflict
+     */
+    private static void detectFieldMetadataConflicts(List<CanonicalRule> rules, ArrayNode conflicts) {
+        Map<String, List<Member>> groups = new LinkedHashMap<>();
+        Map<String, Set<String>> types = new LinkedHashMap<>();
+        for (CanonicalRule rule : rules) {
+            JsonNode fieldMetadata = rule.rule.getRuleData().get("field_metadata");
+            if (fieldMetadata == null || !fieldMetadata.isObject()) {
+                continue;
+            }
+            fieldMetadata.fields().forEachRemaining(field -> {
+                JsonNode type = field.getValue().get("type");
+                if (field.getValue().isObject() && type != null && type.isTextual()) {
+                    groups.computeIfAbsent(field.getKey(), k -> new ArrayList<>())
+                            .add(new Member(rule.rule.getId(), field.getValue()));
+                    types.computeIfAbsent(field.getKey(), k -> new LinkedHashSet<>()).add(type.asText());
+                }
+            });
+        }
+        for (Map.Entry<String, List<Member>> group : groups.entrySet()) {
+            if (types.get(group.getKey()).size() > 1) {
+                conflicts.add(conflict("field", "field_metadata_" + group.getKey(), "field_type_mismatch",
+                        "Multiple rules define different types for field: " + group.getKey(),
+                        DEFAULT_RESOLUTION, group.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Whole-rule signatures (brackets, variable sets): more than one distinct
+     * signature among the rules that carry one is a single conflict listing
+     * every such rule, grouped by signature
+     */
+    private static void detectSignatureConflicts(List<CanonicalRule> rules,
+            Function<CanonicalRule, RuleSignature> signatureOf, Function<CanonicalRule, JsonNode> valueOf,
+            String field, String conflictType, String description, String resolution, ArrayNode conflicts) {
+        Map<RuleSignature, List<CanonicalRule>> groups = new LinkedHashMap<>();
+        for (CanonicalRule rule : rules) {
+            RuleSignature signature = signatureOf.apply(rule);
+            if (signature != null) {
+                groups.computeIfAbsent(signature, k -> new ArrayList<>()).add(rule);
+            }
+        }
+        if (groups.size() <= 1) {
+            return;
+        }
+        List<Member> members = new ArrayList<>();
+        for (List<CanonicalRule> group : groups.values()) {
+            for (CanonicalRule rule : group) {
+                members.add(new Member(rule.rule.getId(), valueOf.apply(rule)));
+            }
+        }
+        conflicts.add(conflict("field", field, conflictType, description, resolution, members));
+    }
+
+    /**
+     * Sweep line over effective intervals: rules enter in effective-day order
+     * and are evicted by expiry day once a later rule starts after them, so
+     * each rule is only compared with the rules still in force. Those are kept
+     * in groups by content signature, and the entering rule skips its own
+     * group without visiting it.
+     */
+    private static void detectEffectiveDateConflicts(List<CanonicalRule> rules, ArrayNode conflicts) {
+        CanonicalRule[] byStart = rules.toArray(new CanonicalRule[0]);
+        Arrays.sort(byStart, Comparator.comparingLong((CanonicalRule c) -> c.rule.getEffectiveDay())
+                .thenComparingInt(c -> c.position));
+
+        // Ordered by expiry so every rule left after evicting the expired ones is still in force
+        TreeSet<CanonicalRule> inForce = new TreeSet<>(
+                Comparator.comparingLong((CanonicalRule c) -> c.rule.getExpiryDay()).thenComparingInt(c -> c.position));
+        Map<RuleSignature, Set<CanonicalRule>> inForceByContent = new LinkedHashMap<>();
+        List<long[]> pairs = new ArrayList<>();
+        for (CanonicalRule current : byStart) {
+            while (!inForce.isEmpty() && inForce.first().rule.getExpiryDay() < current.rule.getEffectiveDay()) {
+                CanonicalRule expired = inForce.pollFirst();
+                Set<CanonicalRule> group = inForceByContent.get(expired.contentSignature);
+                group.remove(expired);
+                if (group.isEmpty()) {
+                    inForceByContent.remove(expired.contentSignature);
+                }
+            }
+            for (Map.Entry<RuleSignature, Set<CanonicalRule>> group : inForceByContent.entrySet()) {
+                if (group.getKey().equals(current.contentSignature)) {
+                    continue;
+                }
+                for (CanonicalRule other : group.getValue()) {
+                    int first = Math.min(other.position, current.position);
+                    int second = Math.max(other.position, current.position);
+                    pairs.add(new long[] { first, second });
+                }
+            }
+            inForce.add(current);
+            inForceByContent.computeIfAbsent(current.contentSignature, k -> new LinkedHashSet<>()).add(current);
+        }
+
+        // Report in input order, like the nested loop in the Ballerina implementation
+        pairs.sort(Comparator.<long[]>comparingLong(p -> p[0]).thenComparingLong(p -> p[1]));
+        for (long[] pair : pairs) {
+            TaxRuleRecord rule1 = rules.get((int) pair[0]).rule;
+            TaxRuleRecord rule2 = rules.get((int) pair[1]).rule;
+            List<Member> members = List.of(
+                    new Member(rule1.getId(), dateRange(rule1)), new Member(rule2.getId(), dateRange(rule2)));
+            conflicts.add(conflict("fieldName", "effective_date_range", "overlapping_effective_periods",
+                    "Rules have overlapping effective date periods: " + rule1.getId() + " and " + rule2.getId(),
+                    "prefer_newer_rule_by_created_date", members));
+        }
+    }
+
+    private static ObjectNode dateRange(TaxRuleRecord rule) {
+        ObjectNode range = MAPPER.createObjectNode();
+        range.put("effective_date", rule.getEffectiveDate());
+        range.put("expiry_date", rule.getExpiryDate());
+        return range;
+    }
+
+    private static ObjectNode conflict(String fieldKey, String field, String conflictType, String description,
+            String resolution, List<Member> members) {
+        ObjectNode conflict = MAPPER.createObjectNode();
+        conflict.put(fieldKey, field);
+        conflict.put("conflictType", conflictType);
+        conflict.put("description", description);
+        conflict.put("resolution", resolution);
+        ArrayNode conflicting = conflict.putArray("conflictingRules");
+        for (Member member : members) {
+            ObjectNode entry = conflicting.addObject();
+            entry.put("id", member.ruleId);
+            entry.set("value", member.value);
+        }
+        return conflict;
+    }
+
+    /**
+     * A rule with its signatures computed once
+     */
+    private static final class CanonicalRule {
+        final TaxRuleRecord rule;
+        final int position;
+        final RuleSignature bracketSignature;
+        final RuleSignature variableSignature;
+        final RuleSignature contentSignature;
+        final List<FormulaEntry> formulas = new ArrayList<>();
+
+        CanonicalRule(TaxRuleRecord rule, int position) {
+            this.rule = rule;
+            this.position = position;
+            JsonNode data = rule.getRuleData();
+
+            JsonNode brackets = data.get("brackets");
+            bracketSignature = brackets != null && brackets.isArray() ? new RuleSignature(bracketCanonical(brackets))
+                    : null;
+
+            JsonNode variables = data.get("required_variables");
+            variableSignature = variables != null && variables.isArray()
+                    ? new RuleSignature(variableCanonical(variables))
+                    : null;
+
+            JsonNode formulaList = data.get("formulas");
+            StringBuilder formulaCanonical = new StringBuilder();
+            if (formulaList != null && formulaList.isArray()) {
+                for (JsonNode formula : formulaList) {
+                    JsonNode name = formula.get("name");
+                    JsonNode expression = formula.get("expression");
+                    if (formula.isObject() && name != null && name.isTextual() && expression != null
+                            && expression.isTextual()) {
+                        formulas.add(new FormulaEntry(name.asText(), new RuleSignature(expression.asText()), formula));
+                        formulaCanonical.append(name.asText()).append('=').append(expression.asText()).append(';');
+                    }
+                }
+            }
+
+            contentSignature = new RuleSignature(
+                    (bracketSignature != null ? bracketSignature.canonical() : "") + '#'
+                            + (variableSignature != null ? variableSignature.canonical() : "") + '#'
+                            + formulaCanonical + '#' + canonicalJson(data.get("field_metadata")));
+        }
+
+        private static String bracketCanonical(JsonNode brackets) {
+            StringBuilder signature = new StringBuilder();
+            for (JsonNode bracket : brackets) {
+                if (!bracket.isObject()) {
+                    continue;
+                }
+                JsonNode rate = bracket.hasNonNull("rate_percent") ? bracket.get("rate_percent")
+                        : bracket.get("rate_fraction");
+                signature.append(number(bracket.get("min_income"))).append('-')
+                        .append(number(bracket.get("max_income"))).append('-')
+                        .append(number(rate)).append('|');
+            }
+            return signature.toString();
+        }
+
+        private static String variableCanonical(JsonNode variables) {
+            TreeSet<String> sorted = new TreeSet<>();
+            for (JsonNode variable : variables) {
+                if (variable.isTextual()) {
+                    sorted.add(variable.asText());
+                }
+            }
+            return String.join("|", sorted);
+        }
+
+        /**
+         * Numbers compare by value so 500000 and 500000.0 share a signature
+         */
+        private static String number(JsonNode value) {
+            if (value == null || value.isNull()) {
+                return "null";
+            }
+            try {
+                BigDecimal decimal = value.isNumber() ? value.decimalValue() : new BigDecimal(value.asText().trim());
+                return decimal.stripTrailingZeros().toPlainString();
+            } catch (NumberFormatException e) {
+                return value.asText();
+            }
+        }
+
+        private static String canonicalJson(JsonNode node) {
+            if (node == null || node.isNull()) {
+                return "";
+            }
+            try {
+                // Sorted keys so field order in the stored JSON does not matter
+                Object tree = MAPPER.treeToValue(node, Object.class);
+                return SORTED_MAPPER.writeValueAsString(tree);
+            } catch (Exception e) {
+                return node.toString();
+            }
+        }
+    }
+
+    /**
+     * One entry of a conflict's conflictingRules list
+     */
+    private static final class Member {
+        final String ruleId;
+        final JsonNode value;
+
+        Member(String ruleId, JsonNode value) {
+            this.ruleId = ruleId;
+            this.value = value;
+        }
+    }
+
+    private static final class FormulaEntry {
+        final String name;
+        final RuleSignature expression;
+        final JsonNode json;
+
+        FormulaEntry(String name, RuleSignature expression, JsonNode json) {
+            this.name = name;
+            this.expression = expression;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.oasis.tax.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date-effective index of tax rules keyed by calc type
+ *
+ * Replaces the per-request linear scans over effective_date/expiry_date with
+ * per-calc-type immutable snapshots:
+ * <ul>
+ * <li>evidence rules sorted by effective day with an implicit interval tree
+ * (subtree max expiry) for "active at D" and "overlapping [a,b]" queries in
+ * O(log n + k)</li>
+ * <li>a sorted endpoint array of epoch days where each elementary segment
+ * holds its best rule, so "best rule at D" is one binary search</li>
+ * <li>aggregated rules bucketed by exact effective day, as fetchActiveRules
+ * looks them up</li>
+ * </ul>
+ * Readers never lock. Writers (the admin apply flow) rebuild only the snapshot
+ * of the calc type they touched and publish it atomically. {@link #refresh}
+ * pulls the rows changed in tax_rules since the previous call, and
+ * {@link #startRefresh} runs it on a timer so rules applied by the admin flow
+ * reach the index without a restart.
+ */
+public class RuleIntervalIndex {
+    private static final Logger logger = LoggerFactory.getLogger(RuleIntervalIndex.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final RuleIntervalIndex SHARED = new RuleIntervalIndex();
+
+    /**
+     * Same precedence as the aggregation query and selectBestRule: rules with
+     * LLM metadata first, then higher source_rank, then most recently updated
+     * (COALESCE(updated_at, created_at)), then most recently created
+     */
+    public static final Comparator<TaxRuleRecord> PRECEDENCE = Comparator
+            .comparing(TaxRuleRecord::hasLlmMetadata).reversed()
+            .thenComparing(Comparator.comparingInt(TaxRuleRecord::getSourceRank).reversed())
+            .thenComparing(Comparator.comparingLong(TaxRuleRecord::getChangedMicros).reversed())
+            .thenComparing(Comparator.comparingLong(TaxRuleRecord::getCreatedMicros).reversed())
+            .thenComparing(TaxRuleRecord::getId);
+
+    private static final String CHANGED_ROWS = "SELECT tr.id, tr.rule_category, tr.rule_type, tr.title, "
+            + "tr.rule_data, COALESCE(d.source_authority, '') AS source_authority, "
+            + "COALESCE(d.source_rank, 0) AS source_rank, tr.created_at, tr.updated_at, tr.effective_date, "
+            + "tr.expiry_date, COALESCE(tr.updated_at, tr.created_at) AS changed_at "
+            + "FROM tax_rules tr LEFT JOIN documents d ON tr.document_source_id = d.id";
+
+    private static final TaxRuleRecord[] NO_RULES = new TaxRuleRecord[0];
+
+    private final Map<String, Map<String, TaxRuleRecord>> rulesByCalcType = new HashMap<>();
+    private final Map<String, String> calcTypeByRuleId = new HashMap<>();
+    private final Map<String, CalcTypeSnapshot> snapshots = new ConcurrentHashMap<>();
+    private Timestamp refreshedUpTo;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Opens JDBC connections; a DataSource's getConnection or a DriverManager call
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Process-wide index shared by all Ballerina strands
+     */
+    public static RuleIntervalIndex shared() {
+        return SHARED;
+    }
+
+    /**
+     * Replace the whole index, e.g. on service start-up
+     */
+    public synchronized void loadAll(Collection<TaxRuleRecord> rules) {
+        rulesByCalcType.clear();
+        calcTypeByRuleId.clear();
+        for (TaxRuleRecord rule : rules) {
+            put(rule);
+        }
+        snapshots.clear();
+        for (Map.Entry<String, Map<String, TaxRuleRecord>> entry : rulesByCalcType.entrySet()) {
+            snapshots.put(entry.getKey(), new CalcTypeSnapshot(entry.getValue().values()));
+        }
+        logger.info("Rule interval index loaded: {} rules across {} calc types", rules.size(), snapshots.size());
+    }
+
+    /**
+     * Replace the whole index from a JSON array of rule rows
+     *
+     * @throws IOException if the JSON is malformed or a row is invalid
+     */
+    public void loadJson(String rulesJson) throws IOException {
+        loadAll(parseRows(rulesJson));
+    }
+
+    /**
+     * Insert or replace one rule and rebuild only the affected calc types
+     */
+    public synchronized void upsert(TaxRuleRecord rule) {
+        String previousType = calcTypeByRuleId.get(rule.getId());
+        if (previousType != null && !previousType.equals(rule.getCalcType())) {
+            rulesByCalcType.get(previousType).remove(rule.getId());
+            rebuild(previousType);
+        }
+        put(rule);
+        rebuild(rule.getCalcType());
+    }
+
+    /**
+     * Insert or replace the rules in a JSON array (or a single JSON object),
+     * e.g. after the admin flow applies extracted metadata
+     *
+     * @throws IOException if the JSON is malformed or a row is invalid
+     */
+    public synchronized void upsertJson(String rulesJson) throws IOException {
+        List<TaxRuleRecord> rules = parseRows(rulesJson);
+        Set<String> touched = new HashSet<>();
+        for (TaxRuleRecord rule : rules) {
+            String previousType = calcTypeByRuleId.get(rule.getId());
+            if (previousType != null && !previousType.equals(rule.getCalcType())) {
+                rulesByCalcType.get(previousType).remove(rule.getId());
+                touched.add(previousType);
+            }
+            put(rule);
+            touched.add(rule.getCalcType());
+        }
+        touched.forEach(this::rebuild);
+    }
+
+    /**
+     * Bring the index up to date with tax_rules
+     *
+     * The first call loads every row. Later calls read only the rows whose
+     * COALESCE(updated_at, created_at) is at or after the newest one seen so
+     * far, upsert them, and remove the indexed ids that are no longer in the
+     * table. A row the index cannot hold (e.g. expiring before it becomes
+     * effective) is logged and skipped, and an older copy of it is removed.
+     *
+     * @return rows upserted plus rows removed
+     */
+    public synchronized int refresh(ConnectionSource connections) throws SQLException {
+        try (Connection connection = connections.open()) {
+            boolean initial = refreshedUpTo == null;
+            List<TaxRuleRecord> changed = new ArrayList<>();
+            Set<String> invalid = new HashSet<>();
+            Timestamp newest = refreshedUpTo;
+            try (PreparedStatement query = connection.prepareStatement(initial ? CHANGED_ROWS
+                    : CHANGED_ROWS + " WHERE COALESCE(tr.updated_at, tr.created_at) >= ?")) {
+                if (!initial) {
+                    query.setTimestamp(1, refreshedUpTo);
+                }
+                try (ResultSet rows = query.executeQuery()) {
+                    while (rows.next()) {
+                        Timestamp changedAt = rows.getTimestamp("changed_at");
+                        if (changedAt != null && (newest == null || changedAt.after(newest))) {
+                            newest = changedAt;
+                        }
+                        try {
+                            changed.add(fromRow(rows));
+                        } catch (IllegalArgumentException e) {
+                            invalid.add(rows.getString("id"));
+                            logger.warn("Skipping tax rule {}: {}", rows.getString("id"), e.getMessage());
+                        }
+                    }
+                }
+            }
+
+            Set<String> removed = new HashSet<>();
+            if (!initial) {
+                removed.addAll(calcTypeByRuleId.keySet());
+                try (Statement statement = connection.createStatement();
+                        ResultSet ids = statement.executeQuery("SELECT id FROM tax_rules")) {
+                    while (ids.next()) {
+                        removed.remove(ids.getString(1));
+                    }
+                }
+                // An indexed rule whose new version the index cannot hold is dropped, not kept stale
+                for (String ruleId : invalid) {
+                    if (calcTypeByRuleId.containsKey(ruleId)) {
+                        removed.add(ruleId);
+                    }
+                }
+            }
+
+            if (initial) {
+                loadAll(changed);
+            } else {
+                Set<String> touched = new HashSet<>();
+                for (String ruleId : removed) {
+                    String calcType = calcTypeByRuleId.remove(ruleId);
+                    rulesByCalcType.get(calcType).remove(ruleId);
+                    touched.add(calcType);
+                }
+                for (TaxRuleRecord rule : changed) {
+                    String previousType = calcTypeByRuleId.get(rule.getId());
+                    if (previousType != null && !previousType.equals(rule.getCalcType())) {
+                        rulesByCalcType.get(previousType).remove(rule.getId());
+                        touched.add(previousType);
+                    }
+                    put(rule);
+                    touched.add(rule.getCalcType());
+                }
+                touched.forEach(this::rebuild);
+            }
+            refreshedUpTo = newest != null ? newest : new Timestamp(0);
+            logger.debug("Rule index refreshed: {} rows changed, {} removed", changed.size(), removed.size());
+            return changed.size() + removed.size();
+        }
+    }
+
+    /**
+     * Refresh from the database now and then every intervalMillis on a daemon
+     * thread; a failed refresh is logged and tried again at the next tick
+     */
+    public synchronized void startRefresh(String jdbcUrl, String user, String password, long intervalMillis)
+            throws SQLException {
+        ConnectionSource connections = () -> DriverManager.getConnection(jdbcUrl, user, password);
+        refresh(connections);
+        stopRefresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "oasis-rule-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh(connections);
+            } catch (Exception e) {
+                logger.warn("Rule index refresh failed: {}", e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /**
+     * Remove a rule; returns false if it was not indexed
+     */
+    public synchronized boolean remove(String ruleId) {
+        String calcType = calcTypeByRuleId.remove(ruleId);
+        if (calcType == null) {
+            return false;
+        }
+        rulesByCalcType.get(calcType).remove(ruleId);
+        rebuild(calcType);
+        return true;
+    }
+
+    /**
+     * Evidence (non-aggregated) rules active on a date, in precedence order
+     *
+     * @param date YYYY-MM-DD
+     */
+    public TaxRuleRecord[] activeRules(String calcType, String date) {
+        long day = TaxRuleRecord.parseEpochDay(date, TaxRuleRecord.OPEN_START);
+        return overlapping(calcType, day, day);
+    }
+
+    /**
+     * Evidence rules whose effective period overlaps [from, to], in precedence order
+     *
+     * @param fromDate YYYY-MM-DD, or empty for unbounded
+     * @param toDate   YYYY-MM-DD, or empty for unbounded
+     */
+    public TaxRuleRecord[] overlapping(String calcType, String fromDate, String toDate) {
+        return overlapping(calcType,
+                TaxRuleRecord.parseEpochDay(fromDate, TaxRuleRecord.OPEN_START),
+                TaxRuleRecord.parseEpochDay(toDate, TaxRuleRecord.OPEN_END));
+    }
+
+    public TaxRuleRecord[] overlapping(String calcType, long fromDay, long toDay) {
+        CalcTypeSnapshot snapshot = snapshots.get(normalise(calcType));
+        if (snapshot == null || fromDay > toDay) {
+            return NO_RULES;
+        }
+        return snapshot.overlapping(fromDay, toDay);
+    }
+
+    /**
+     * The evidence rule selectBestRule would pick on a date, or null if none is active
+     *
+     * @param date YYYY-MM-DD
+     */
+    public TaxRuleRecord bestRule(String calcType, String date) {
+        CalcTypeSnapshot snapshot = snapshots.get(normalise(calcType));
+        if (snapshot == null) {
+            return null;
+        }
+        return snapshot.bestAt(TaxRuleRecord.parseEpochDay(date, TaxRuleRecord.OPEN_START));
+    }
+
+    /**
+     * Aggregated rules whose effective_date is exactly the given date
+     *
+     * @param date YYYY-MM-DD
+     */
+    public TaxRuleRecord[] aggregatedRules(String calcType, String date) {
+        CalcTypeSnapshot snapshot = snapshots.get(normalise(calcType));
+        if (snapshot == null) {
+            return NO_RULES;
+        }
+        TaxRuleRecord[] rules = snapshot.aggregatedByEffectiveDay
+                .get(TaxRuleRecord.parseEpochDay(date, TaxRuleRecord.OPEN_START));
+        return rules != null ? rules.clone() : NO_RULES;
+    }
+
+    public String[] getCalcTypes() {
+        return snapshots.keySet().toArray(new String[0]);
+    }
+
+    public int size() {
+        return snapshots.values().stream().mapToInt(s -> s.size).sum();
+    }
+
+    private void put(TaxRuleRecord rule) {
+        rulesByCalcType.computeIfAbsent(rule.getCalcType(), k -> new LinkedHashMap<>()).put(rule.getId(), rule);
+        calcTypeByRuleId.put(rule.getId(), rule.getCalcType());
+    }
+
+    private void rebuild(String calcType) {
+        Map<String, TaxRuleRecord> rules = rulesByCalcType.get(calcType);
+        if (rules == null || rules.isEmpty()) {
+            rulesByCalcType.remove(calcType);
+            snapshots.remove(calcType);
+        } else {
+            snapshots.put(calcType, new CalcTypeSnapshot(rules.values()));
+        }
+        logger.debug("Rebuilt rule index for calc type '{}'", calcType);
+    }
+
+    // rule_category is matched exactly, as the SQL does
+    private static String normalise(String calcType) {
+        return calcType != null ? calcType : "";
+    }
+
+    private static TaxRuleRecord fromRow(ResultSet row) throws SQLException {
+        String ruleData = row.getString("rule_data");
+        JsonNode parsed;
+        try {
+            parsed = ruleData != null ? MAPPER.readTree(ruleData) : null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("rule_data is not valid JSON", e);
+        }
+        return new TaxRuleRecord(row.getString("id"), row.getString("rule_category"), row.getString("rule_type"),
+                row.getString("title"), parsed, row.getString("source_authority"), row.getInt("source_rank"),
+                row.getString("created_at"), row.getString("updated_at"), row.getString("effective_date"),
+                row.getString("expiry_date"));
+    }
+
+    private static List<TaxRuleRecord> parseRows(String rulesJson) throws IOException {
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(rulesJson);
+        } catch (Exception e) {
+            throw new IOException("Rule rows must be valid JSON: " + e.getMessage(), e);
+        }
+        List<TaxRuleRecord> rules = new ArrayList<>();
+        try {
+            if (root != null && root.isArray()) {
+                for (JsonNode row : root) {
+                    rules.add(TaxRuleRecord.fromJson(row));
+                }
+            } else if (root != null && root.isObject()) {
+                rules.add(TaxRuleRecord.fromJson(root));
+            } else {
+                throw new IOException("Rule rows must be a JSON array or object");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid rule row: " + e.getMessage(), e);
+        }
+        return rules;
+    }
+
+    /**
+     * Immutable per-calc-type view; rebuilt on every write to that calc type
+     */
+    private static final class CalcTypeSnapshot {
+        final int size;
+
+        // Evidence rules sorted by effective day; maxEnd[mid] covers the implicit subtree of mid
+        final TaxRuleRecord[] byStart;
+        final long[] starts;
+        final long[] ends;
+        final long[] maxEnd;
+
+        // Elementary segments [bounds[i], bounds[i+1]) and the best rule active over each
+        final long[] bounds;
+        final TaxRuleRecord[] bestInSegment;
+
+        final Map<Long, TaxRuleRecord[]> aggregatedByEffectiveDay;
+
+        CalcTypeSnapshot(Collection<TaxRuleRecord> rules) {
+            this.size = rules.size();
+            List<TaxRuleRecord> evidence = new ArrayList<>();
+            Map<Long, List<TaxRuleRecord>> aggregated = new HashMap<>();
+            for (TaxRuleRecord rule : rules) {
+                if (rule.isAggregated()) {
+                    aggregated.computeIfAbsent(rule.getEffectiveDay(), k -> new ArrayList<>()).add(rule);
+                } else {
+                    evidence.add(rule);
+                }
+            }
+
+            byStart = evidence.toArray(NO_RULES);
+            Arrays.sort(byStart, Comparator.comparingLong(TaxRuleRecord::getEffectiveDay)
+                    .thenComparing(TaxRuleRecord::getId));
+            int n = byStart.length;
+            starts = new long[n];
+            ends = new long[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = byStart[i].getEffectiveDay();
+                ends[i] = byStart[i].getExpiryDay();
+            }
+            maxEnd = new long[n];
+            buildMaxEnd(0, n);
+
+            bounds = buildSegmentBounds();
+            bestInSegment = bestRules(bounds);
+
+            Map<Long, TaxRuleRecord[]> byDay = new HashMap<>();
+            for (Map.Entry<Long, List<TaxRuleRecord>> entry : aggregated.entrySet()) {
+                TaxRuleRecord[] sameDay = entry.getValue().toArray(NO_RULES);
+                Arrays.sort(sameDay, PRECEDENCE);
+                byDay.put(entry.getKey(), sameDay);
+            }
+            aggregatedByEffectiveDay = byDay;
+        }
+
+        private long buildMaxEnd(int lo, int hi) {
+            if (lo >= hi) {
+                return Long.MIN_VALUE;
+            }
+            int mid = (lo + hi) >>> 1;
+            long max = Math.max(ends[mid], Math.max(buildMaxEnd(lo, mid), buildMaxEnd(mid + 1, hi)));
+            maxEnd[mid] = max;
+            return max;
+        }
+
+        TaxRuleRecord[] overlapping(long from, long to) {
+            List<TaxRuleRecord> out = new ArrayList<>();
+            collect(0, byStart.length, from, to, out);
+            TaxRuleRecord[] result = out.toArray(NO_RULES);
+            Arrays.sort(result, PRECEDENCE);
+            return result;
+        }
+
+        private void collect(int lo, int hi, long from, long to, List<TaxRuleRecord> out) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            if (maxEnd[mid] < from) {
+                return; // nothing in this subtree is still in force at 'from'
+            }
+            collect(lo, mid, from, to, out);
+            if (starts[mid] <= to) {
+                if (ends[mid] >= from) {
+                    out.add(byStart[mid]);
+                }
+                collect(mid + 1, hi, from, to, out);
+            }
+        }
+
+        private long[] buildSegmentBounds() {
+            long[] points = new long[byStart.length * 2];
+            int count = 0;
+            for (TaxRuleRecord rule : byStart) {
+                points[count++] = rule.getEffectiveDay();
+                if (rule.getExpiryDay() != TaxRuleRecord.OPEN_END) {
+                    points[count++] = rule.getExpiryDay() + 1;
+                }
+            }
+            long[] sorted = Arrays.copyOf(points, count);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, distinct);
+        }
+
+        /**
+         * Sweep the segment bounds with a precedence heap of open rules; expired
+         * entries are dropped lazily when they reach the top
+         */
+        private TaxRuleRecord[] bestRules(long[] segmentBounds) {
+            TaxRuleRecord[] best = new TaxRuleRecord[segmentBounds.length];
+            PriorityQueue<TaxRuleRecord> open = new PriorityQueue<>(PRECEDENCE);
+            int next = 0;
+            for (int i = 0; i < segmentBounds.length; i++) {
+                long segmentStart = segmentBounds[i];
+                while (next < byStart.length && starts[next] <= segmentStart) {
+                    open.add(byStart[next++]);
+                }
+                while (!open.isEmpty() && open.peek().getExpiryDay() < segmentStart) {
+                    open.poll();
+                }
+                best[i] = open.peek();
+            }
+            return best;
+        }
+
+        TaxRuleRecord bestAt(long day) {
+            int idx = Arrays.binarySearch(bounds, day);
+            int segment = idx >= 0 ? idx : -idx - 2;
+            return segment >= 0 ? bestInSegment[segment] : null;
+        }
+    }
+}
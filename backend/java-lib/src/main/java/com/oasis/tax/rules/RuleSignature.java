@@ -0,0 +1,63 @@
+package com.oasis.tax.rules;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Canonical form of part of a rule (its brackets, a variable set, ...) with a
+ * precomputed 64-bit FNV-1a hash
+ *
+ * Signatures are computed once per rule and then compared by hash; the
+ * canonical text is only consulted on a hash match, so grouping never merges
+ * two different structures on a collision.
+ */
+final class RuleSignature {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String canonical;
+    private final long hash;
+
+    RuleSignature(String canonical) {
+        this.canonical = canonical;
+        this.hash = fnv1a64(canonical);
+    }
+
+    long hash() {
+        return hash;
+    }
+
+    String canonical() {
+        return canonical;
+    }
+
+    static long fnv1a64(String text) {
+        long h = FNV_OFFSET;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RuleSignature)) {
+            return false;
+        }
+        RuleSignature that = (RuleSignature) other;
+        return hash == that.hash && canonical.equals(that.canonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x", hash);
+    }
+}
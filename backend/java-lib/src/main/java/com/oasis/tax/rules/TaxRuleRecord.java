@@ -0,0 +1,251 @@
+package com.oasis.tax.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * In-memory copy of a tax_rules row joined with its source document rank
+ *
+ * Effective and expiry dates are held as epoch days so date filtering is a
+ * long comparison; a missing effective date is open towards the past and a
+ * missing expiry date is open towards the future, as in the SQL filters.
+ * The calc type is kept as stored, since the SQL matches rule_category
+ * exactly. created_at and updated_at are also held as epoch microseconds so
+ * precedence compares instants rather than timestamp strings.
+ */
+public class TaxRuleRecord {
+    /** Epoch day used for a missing effective_date */
+    public static final long OPEN_START = Long.MIN_VALUE;
+    /** Epoch day used for a missing expiry_date */
+    public static final long OPEN_END = Long.MAX_VALUE;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String id;
+    private final String calcType;
+    private final String ruleType;
+    private final String title;
+    private final JsonNode ruleData;
+    private final String sourceAuthority;
+    private final int sourceRank;
+    private final String createdAt;
+    private final String updatedAt;
+    private final long createdMicros;
+    private final long changedMicros;
+    private final long effectiveDay;
+    private final long expiryDay;
+    private final boolean hasLlmMetadata;
+
+    public TaxRuleRecord(String id, String calcType, String ruleType, String title, JsonNode ruleData,
+            String sourceAuthority, int sourceRank, String createdAt, String effectiveDate, String expiryDate) {
+        this(id, calcType, ruleType, title, ruleData, sourceAuthority, sourceRank, createdAt, null, effectiveDate,
+                expiryDate);
+    }
+
+    public TaxRuleRecord(String id, String calcType, String ruleType, String title, JsonNode ruleData,
+            String sourceAuthority, int sourceRank, String createdAt, String updatedAt, String effectiveDate,
+            String expiryDate) {
+        if (id == null || id.isEmpty()) {
+            throw new IllegalArgumentException("Rule id is required");
+        }
+        this.id = id;
+        this.calcType = calcType != null ? calcType : "";
+        this.ruleType = ruleType != null ? ruleType : "";
+        this.title = title != null ? title : "";
+        this.ruleData = ruleData != null ? ruleData : MAPPER.createObjectNode();
+        this.sourceAuthority = sourceAuthority != null ? sourceAuthority : "";
+        this.sourceRank = sourceRank;
+        this.createdAt = createdAt != null ? createdAt : "";
+        this.updatedAt = updatedAt != null ? updatedAt : "";
+        this.createdMicros = parseEpochMicros(createdAt);
+        // COALESCE(updated_at, created_at), as the aggregation query orders by
+        this.changedMicros = this.updatedAt.isBlank() ? createdMicros : parseEpochMicros(updatedAt);
+        String intervalError = intervalError(effectiveDate, expiryDate);
+        if (intervalError != null) {
+            throw new IllegalArgumentException("Rule '" + id + "' " + intervalError);
+        }
+        this.effectiveDay = parseEpochDay(effectiveDate, OPEN_START);
+        this.expiryDay = parseEpochDay(expiryDate, OPEN_END);
+        this.hasLlmMetadata = this.ruleData.has("field_metadata") || this.ruleData.has("required_variables");
+    }
+
+    /**
+     * Why an effective period cannot be indexed (an unreadable date, or an
+     * expiry before the effective date), or null if it can
+     */
+    public static String intervalError(String effectiveDate, String expiryDate) {
+        long effective;
+        long expiry;
+        try {
+            effective = parseEpochDay(effectiveDate, OPEN_START);
+            expiry = parseEpochDay(expiryDate, OPEN_END);
+        } catch (IllegalArgumentException e) {
+            return "has an " + e.getMessage().substring(0, 1).toLowerCase() + e.getMessage().substring(1);
+        }
+        if (effective != OPEN_START && expiry != OPEN_END && expiry < effective) {
+            return String.format("expires (%s) before it becomes effective (%s)", expiryDate, effectiveDate);
+        }
+        return null;
+    }
+
+    /**
+     * Build a record from a JSON row with the column names used by the SQL
+     * queries (id, rule_category, rule_type, title, rule_data, source_authority,
+     * source_rank, created_at, effective_date, expiry_date)
+     */
+    public static TaxRuleRecord fromJson(JsonNode row) {
+        JsonNode ruleData = row.get("rule_data");
+        if (ruleData != null && ruleData.isTextual()) {
+            try {
+                ruleData = MAPPER.readTree(ruleData.asText());
+            } catch (Exception e) {
+                throw new IllegalArgumentException("rule_data is not valid JSON for rule " + text(row, "id"), e);
+            }
+        }
+        JsonNode rank = row.get("source_rank");
+        return new TaxRuleRecord(text(row, "id"), text(row, "rule_category"), text(row, "rule_type"),
+                text(row, "title"), ruleData, text(row, "source_authority"),
+                rank != null && rank.canConvertToInt() ? rank.asInt() : 0,
+                text(row, "created_at"), text(row, "updated_at"), text(row, "effective_date"),
+                text(row, "expiry_date"));
+    }
+
+    /**
+     * Parse the leading ISO date of a date or timestamp string into an epoch day
+     */
+    public static long parseEpochDay(String date, long whenMissing) {
+        if (date == null || date.isBlank()) {
+            return whenMissing;
+        }
+        String trimmed = date.trim();
+        try {
+            return LocalDate.parse(trimmed.length() > 10 ? trimmed.substring(0, 10) : trimmed).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + date + "', expected YYYY-MM-DD", e);
+        }
+    }
+
+    /**
+     * Parse an ISO or PostgreSQL timestamp (with or without offset; UTC if
+     * none) into epoch microseconds, or Long.MIN_VALUE if missing or unreadable
+     */
+    public static long parseEpochMicros(String timestamp) {
+        if (timestamp == null || timestamp.isBlank()) {
+            return Long.MIN_VALUE;
+        }
+        String iso = timestamp.trim().replace(' ', 'T');
+        // PostgreSQL prints whole-hour offsets as +05 or +00; java.time wants +05:00
+        if (iso.matches(".*T.*[+-]\\d\\d")) {
+            iso += ":00";
+        }
+        Instant instant;
+        try {
+            instant = OffsetDateTime.parse(iso).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                instant = iso.length() > 10 ? LocalDateTime.parse(iso).toInstant(ZoneOffset.UTC)
+                        : LocalDate.parse(iso).atStartOfDay().toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException unreadable) {
+                return Long.MIN_VALUE;
+            }
+        }
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+    }
+
+    private static String text(JsonNode node, String key) {
+        JsonNode value = node.get(key);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // Getter methods for Ballerina interop
+    public String getId() {
+        return id;
+    }
+
+    public String getCalcType() {
+        return calcType;
+    }
+
+    public String getRuleType() {
+        return ruleType;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public JsonNode getRuleData() {
+        return ruleData;
+    }
+
+    public String getSourceAuthority() {
+        return sourceAuthority;
+    }
+
+    public int getSourceRank() {
+        return sourceRank;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public long getCreatedMicros() {
+        return createdMicros;
+    }
+
+    /**
+     * updated_at, or created_at for a row never updated, in epoch microseconds
+     */
+    public long getChangedMicros() {
+        return changedMicros;
+    }
+
+    public long getEffectiveDay() {
+        return effectiveDay;
+    }
+
+    public long getExpiryDay() {
+        return expiryDay;
+    }
+
+    public String getEffectiveDate() {
+        return effectiveDay == OPEN_START ? "" : LocalDate.ofEpochDay(effectiveDay).toString();
+    }
+
+    public String getExpiryDate() {
+        return expiryDay == OPEN_END ? "" : LocalDate.ofEpochDay(expiryDay).toString();
+    }
+
+    public boolean hasLlmMetadata() {
+        return hasLlmMetadata;
+    }
+
+    /**
+     * True for rules written by aggregation (rule_type ILIKE 'aggregated%')
+     */
+    public boolean isAggregated() {
+        return ruleType.regionMatches(true, 0, "aggregated", 0, "aggregated".length());
+    }
+
+    public boolean isActiveOn(long epochDay) {
+        return effectiveDay <= epochDay && epochDay <= expiryDay;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TaxRuleRecord{id='%s', calcType='%s', rank=%d, effective='%s', expiry='%s'}",
+                id, calcType, sourceRank, getEffectiveDate(), getExpiryDate());
+    }
+}
@@ -0,0 +1,250 @@
+package com.oasis.audit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuditLogWriterTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deadLettersRefusedRowsAndWritesTheRestOfTheBatch() throws Exception {
+        Path spool = folder.newFolder("spool").toPath();
+        Set<String> poisonIds = new HashSet<>();
+        try (AuditTestDatabase database = new AuditTestDatabase()) {
+            AuditLogWriter writer = new AuditLogWriter(database.sink(), spool,
+                    new AuditLogWriter.Settings(1024, 50, 20, 20, 1L << 20));
+            for (int i = 0; i < 200; i++) {
+                AuditRecord record;
+                if (i == 17) {
+                    record = AuditRecord.calculation(UUID.randomUUID().toString(), "no_such_schema", "income_tax",
+                            "{}", "{}", "1.00", 1, null);
+                } else if (i == 60) {
+                    record = AuditTestDatabase.calculation("-232500.00", 3);
+                } else if (i == 150) {
+                    // Once rejected by valid_error_type; now stored as unknown_error
+                    record = AuditRecord.error(UUID.randomUUID().toString(), AuditTestDatabase.SCHEMA_ID,
+                            "CALCULATION_FAILED", "division by zero", "{}", "evaluate");
+                } else {
+                    record = AuditTestDatabase.calculation(i + ".00", i);
+                }
+                if (i == 17 || i == 60) {
+                    poisonIds.add(record.getId());
+                }
+                assertTrue(writer.publish(record));
+            }
+            writer.close();
+
+            Map<String, Object> metrics = writer.getMetricsMap();
+            assertEquals(true, metrics.get("healthy"));
+            assertEquals(0L, metrics.get("flushFailures"));
+            assertEquals(0L, metrics.get("spooled"));
+            assertEquals(2L, metrics.get("deadLettered"));
+            assertEquals(198L, metrics.get("written"));
+            assertEquals(197, database.count("calculation_audit"));
+            assertEquals("CALCULATION_FAILED: division by zero",
+                    database.queryString("SELECT error_message FROM calculation_errors"));
+        }
+        assertEquals(poisonIds, deadLetterIds(spool));
+    }
+
+    @Test
+    public void replayMovesPastRefusedRowsInASpooledSegment() throws Exception {
+        Path spool = folder.newFolder("spool").toPath();
+        // A segment left by an earlier version, holding an error type the table does not allow
+        String oldLine = "{\"id\":\"" + UUID.randomUUID() + "\",\"type\":\"error\",\"executionId\":\""
+                + UUID.randomUUID() + "\",\"schemaId\":null,\"errorType\":\"CALCULATION_FAILED\","
+                + "\"errorMessage\":\"overflow\",\"createdAt\":" + System.currentTimeMillis() + "}\n";
+        Files.write(spool.resolve("audit-00000000000000000000.seg"), oldLine.getBytes(StandardCharsets.UTF_8));
+
+        try (AuditTestDatabase database = new AuditTestDatabase()) {
+            database.down.set(true);
+            AuditLogWriter writer = new AuditLogWriter(database.sink(), spool,
+                    new AuditLogWriter.Settings(1024, 20, 10, 20, 1L << 20));
+            Set<String> poisonIds = new HashSet<>();
+            for (int i = 0; i < 100; i++) {
+                AuditRecord record = i % 25 == 7 ? AuditTestDatabase.calculation("-1.00", 1)
+                        : AuditTestDatabase.calculation("10.00", 1);
+                if (i % 25 == 7) {
+                    poisonIds.add(record.getId());
+                }
+                writer.publish(record);
+            }
+            waitFor(() -> (Long) writer.getMetricsMap().get("spooled") == 100);
+
+            database.down.set(false);
+            waitFor(() -> (Integer) writer.getMetricsMap().get("spoolSegments") == 0);
+            writer.close();
+
+            assertEquals(96, database.count("calculation_audit"));
+            assertEquals("unknown_error", database.queryString("SELECT error_type FROM calculation_errors"));
+            assertEquals(4L, writer.getDeadLetteredCount());
+            assertEquals(97L, writer.getMetricsMap().get("replayed"));
+            assertEquals(poisonIds, deadLetterIds(spool));
+        }
+    }
+
+    @Test
+    public void everyAcceptedRecordArrivesOnceThroughAnOutage() throws Exception {
+        Path spool = folder.newFolder("spool").toPath();
+        long outageStart = System.currentTimeMillis() + 100;
+        StubSink sink = new StubSink(outageStart, outageStart + 300);
+        AuditLogWriter.Settings settings = new AuditLogWriter.Settings(65_536, 500, 50, 50, 256 << 10);
+        AuditLogWriter writer = new AuditLogWriter(sink, spool, settings);
+
+        int producers = 4;
+        int perProducer = 5_000;
+        Set<String> accepted = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    AuditRecord record = AuditTestDatabase.calculation("1.00", 1);
+                    if (writer.publish(record)) {
+                        accepted.add(record.getId());
+                    }
+                    // Bursts of 16 a millisecond apart, so the run spans the outage
+                    if (i % 16 == 15) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                }
+            }, "audit-producer-" + p);
+            threads[p].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        waitFor(() -> (Integer) writer.getMetricsMap().get("spoolSegments") == 0
+                && writer.getQueueDepth() == 0);
+        writer.close();
+
+        assertEquals(producers * perProducer, accepted.size());
+        assertEquals(0L, writer.getDroppedCount());
+        assertTrue(sink.rejected.sum() > 0);
+        assertTrue((Long) writer.getMetricsMap().get("replayed") > 0);
+        // Whatever the spool still holds would be replayed by the next start
+        Set<String> stillSpooled = new HashSet<>();
+        AuditSpool leftover = new AuditSpool(spool, settings.getSegmentBytes());
+        while (!leftover.isEmpty()) {
+            List<AuditRecord> records = leftover.readOldest();
+            records.forEach(record -> stillSpooled.add(record.getId()));
+            leftover.removeOldest(records.size());
+        }
+        for (String id : accepted) {
+            LongAdder count = sink.delivered.get(id);
+            assertTrue(id, (count != null && count.sum() == 1) || (count == null && stillSpooled.contains(id)));
+        }
+    }
+
+    @Test
+    public void spoolsWhileTheSinkFallsBehindAndReplaysOnceCaughtUp() throws Exception {
+        Path spool = folder.newFolder("spool").toPath();
+        // 20 ms a batch of 10 is far slower than a burst of 600 publishes
+        StubSink sink = new StubSink(0, 0, TimeUnit.MILLISECONDS.toNanos(20));
+        AuditLogWriter writer = new AuditLogWriter(sink, spool,
+                new AuditLogWriter.Settings(1024, 10, 10, 20, 1L << 20, 100));
+        Set<String> accepted = new HashSet<>();
+        for (int i = 0; i < 600; i++) {
+            AuditRecord record = AuditTestDatabase.calculation("1.00", 1);
+            assertTrue(writer.publish(record));
+            accepted.add(record.getId());
+        }
+        waitFor(() -> sink.delivered.size() == accepted.size());
+        writer.close();
+
+        Map<String, Object> metrics = writer.getMetricsMap();
+        assertTrue((Long) metrics.get("spooledBehind") > 0);
+        assertEquals(metrics.get("spooled"), metrics.get("replayed"));
+        assertEquals(0L, writer.getDroppedCount());
+        for (String id : accepted) {
+            assertEquals(id, 1L, sink.delivered.get(id).sum());
+        }
+    }
+
+    private static Set<String> deadLetterIds(Path spool) throws Exception {
+        Set<String> ids = new HashSet<>();
+        for (String line : Files.readAllLines(spool.resolve(AuditSpool.DEAD_LETTER_FILE))) {
+            JsonNode node = MAPPER.readTree(line);
+            assertTrue(node.path("reason").asText().startsWith("23"));
+            ids.add(node.path("id").asText());
+        }
+        return ids;
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.holds()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("timed out waiting for the audit writer");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean holds() throws Exception;
+    }
+
+    // Stand-in for PostgreSQL: a short round trip per batch, and down between downFrom and downUntil
+    private static final class StubSink implements AuditSink {
+        final Map<String, LongAdder> delivered = new ConcurrentHashMap<>();
+        final LongAdder rejected = new LongAdder();
+        private final long downFrom;
+        private final long downUntil;
+        private final long roundTripNanos;
+
+        StubSink(long downFrom, long downUntil) {
+            this(downFrom, downUntil, TimeUnit.MICROSECONDS.toNanos(200));
+        }
+
+        StubSink(long downFrom, long downUntil, long roundTripNanos) {
+            this.downFrom = downFrom;
+            this.downUntil = downUntil;
+            this.roundTripNanos = roundTripNanos;
+        }
+
+        @Override
+        public void write(List<AuditRecord> batch) throws Exception {
+            long now = System.currentTimeMillis();
+            LockSupport.parkNanos(roundTripNanos);
+            if (now >= downFrom && now < downUntil) {
+                rejected.increment();
+                throw new SQLException("Connection refused", "08001");
+            }
+            for (AuditRecord record : batch) {
+                delivered.computeIfAbsent(record.getId(), id -> new LongAdder()).increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.oasis.audit;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory H2, in PostgreSQL mode, holding calculation_audit and
+ * calculation_errors with the constraints of the Supabase schema
+ */
+final class AuditTestDatabase implements AutoCloseable {
+    static final String SCHEMA_ID = "income_tax_2025";
+    private static final AtomicInteger INDEX = new AtomicInteger();
+
+    final AtomicInteger opened = new AtomicInteger();
+    // While set, opening a connection fails as if the database were unreachable
+    final AtomicBoolean down = new AtomicBoolean();
+    private final String url;
+    private final Connection keepAlive;
+
+    AuditTestDatabase() throws SQLException {
+        url = "jdbc:h2:mem:audit" + INDEX.incrementAndGet() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        keepAlive = DriverManager.getConnection(url);
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE form_schemas (id text PRIMARY KEY)");
+            statement.execute("INSERT INTO form_schemas VALUES ('" + SCHEMA_ID + "')");
+            statement.execute("CREATE TABLE calculation_audit (id uuid NOT NULL, schema_id text NOT NULL, "
+                    + "input_data jsonb NOT NULL, calculation_result jsonb NOT NULL, execution_time_ms integer, "
+                    + "rules_version text, execution_id uuid NOT NULL, user_id text, calculation_type text NOT NULL, "
+                    + "final_amount numeric(15, 2), created_at timestamp DEFAULT now(), "
+                    + "CONSTRAINT calculation_audit_pkey PRIMARY KEY (id), "
+                    + "CONSTRAINT calculation_audit_schema_id_fkey FOREIGN KEY (schema_id) "
+                    + "REFERENCES form_schemas (id), "
+                    + "CONSTRAINT valid_execution_time CHECK ((execution_time_ms >= 0)), "
+                    + "CONSTRAINT valid_final_amount CHECK ((final_amount >= (0)::numeric)))");
+            statement.execute("CREATE TABLE calculation_errors (id uuid NOT NULL, execution_id uuid NOT NULL, "
+                    + "schema_id text, error_type text NOT NULL, error_message text NOT NULL, error_stack text, "
+                    + "input_data jsonb, failed_step text, retry_count integer DEFAULT 0, resolved boolean DEFAULT "
+                    + "false, created_at timestamp DEFAULT now(), "
+                    + "CONSTRAINT calculation_errors_pkey PRIMARY KEY (id), "
+                    + "CONSTRAINT calculation_errors_schema_id_fkey FOREIGN KEY (schema_id) "
+                    + "REFERENCES form_schemas (id), "
+                    + "CONSTRAINT valid_error_type CHECK ((error_type = ANY (ARRAY['formula_parse_error'::text, "
+                    + "'variable_missing'::text, 'calculation_overflow'::text, 'rule_validation_failed'::text, "
+                    + "'database_error'::text, 'unknown_error'::text]))))");
+        }
+    }
+
+    JdbcAuditSink sink() {
+        return new JdbcAuditSink(this::open);
+    }
+
+    JdbcAuditSink sink(int queryTimeoutSeconds, int networkTimeoutMillis) {
+        return new JdbcAuditSink(this::open, queryTimeoutSeconds, networkTimeoutMillis);
+    }
+
+    // A connection of its own, e.g. to hold locks the sink has to wait for
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    private Connection open() throws SQLException {
+        if (down.get()) {
+            throw new SQLException("Connection refused", "08001");
+        }
+        opened.incrementAndGet();
+        return DriverManager.getConnection(url);
+    }
+
+    int count(String table) throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM " + table);
+    }
+
+    int queryInt(String sql) throws SQLException {
+        try (Statement statement = keepAlive.createStatement(); ResultSet rows = statement.executeQuery(sql)) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    String queryString(String sql) throws SQLException {
+        try (Statement statement = keepAlive.createStatement(); ResultSet rows = statement.executeQuery(sql)) {
+            return rows.next() ? rows.getString(1) : null;
+        }
+    }
+
+    static AuditRecord calculation(String finalAmount, int executionTimeMs) {
+        return AuditRecord.calculation(UUID.randomUUID().toString(), SCHEMA_ID, "income_tax",
+                "{\"gross_income\": 3600000}", "{\"tax\": 232500}", finalAmount, executionTimeMs, "user-1");
+    }
+
+    @Override
+    public void close() throws SQLException {
+        keepAlive.close();
+    }
+}
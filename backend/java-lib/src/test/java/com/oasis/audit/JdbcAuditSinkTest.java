@@ -0,0 +1,139 @@
+package com.oasis.audit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JdbcAuditSinkTest {
+    private AuditTestDatabase database;
+    private JdbcAuditSink sink;
+
+    @Before
+    public void open() throws Exception {
+        database = new AuditTestDatabase();
+        sink = database.sink();
+    }
+
+    @After
+    public void close() throws Exception {
+        sink.close();
+        database.close();
+    }
+
+    @Test
+    public void writesBothTablesAndIgnoresRecordsItAlreadyHolds() throws Exception {
+        AuditRecord audit = AuditTestDatabase.calculation("232500.00", -1);
+        AuditRecord error = AuditRecord.error(UUID.randomUUID().toString(), AuditTestDatabase.SCHEMA_ID, null,
+                "Variable gross_income is missing", "{}", "evaluate");
+        AuditRecord typed = AuditRecord.error(UUID.randomUUID().toString(), null, "VARIABLE_MISSING", "no input",
+                null, null);
+
+        sink.write(List.of(audit, error, typed));
+        sink.write(List.of(audit, error, typed));
+
+        assertEquals(1, database.count("calculation_audit"));
+        assertEquals(2, database.count("calculation_errors"));
+        // Unknown execution time is stored as NULL rather than breaking valid_execution_time
+        assertNull(database.queryString("SELECT execution_time_ms FROM calculation_audit"));
+        assertEquals("unknown_error", database.queryString(
+                "SELECT error_type FROM calculation_errors WHERE id = '" + error.getId() + "'"));
+        assertEquals("variable_missing", database.queryString(
+                "SELECT error_type FROM calculation_errors WHERE id = '" + typed.getId() + "'"));
+        assertEquals(1, database.opened.get());
+    }
+
+    @Test
+    public void refusesRowsThatBreakAConstraintWithoutDroppingTheConnection() throws Exception {
+        AuditRecord good = AuditTestDatabase.calculation("100.00", 4);
+        List<AuditRecord> poisons = List.of(
+                AuditRecord.calculation(UUID.randomUUID().toString(), "no_such_schema", "income_tax", "{}", "{}",
+                        "1.00", 1, null),
+                AuditTestDatabase.calculation("-5.00", 1),
+                AuditTestDatabase.calculation("12.5e99", 1),
+                AuditRecord.calculation("exec-42", AuditTestDatabase.SCHEMA_ID, "income_tax", "{}", "{}", "1.00", 1,
+                        null),
+                AuditRecord.error(UUID.randomUUID().toString(), "no_such_schema", "database_error", "down", null,
+                        null));
+
+        for (AuditRecord poison : poisons) {
+            try {
+                sink.write(List.of(good, poison));
+                fail("expected " + poison + " to be refused");
+            } catch (RejectedBatchException e) {
+                assertTrue(e.getCause() instanceof SQLException);
+                String state = ((SQLException) e.getCause()).getSQLState();
+                assertTrue(state, state.startsWith("22") || state.startsWith("23"));
+            }
+        }
+
+        // Nothing of a refused batch is committed, and the same connection goes on working
+        assertEquals(0, database.count("calculation_audit"));
+        sink.write(List.of(good));
+        assertEquals(1, database.count("calculation_audit"));
+        assertEquals(1, database.opened.get());
+    }
+
+    @Test
+    public void reportsAnUnreachableDatabaseAsRetryable() throws Exception {
+        database.down.set(true);
+        try {
+            sink.write(List.of(AuditTestDatabase.calculation("1.00", 1)));
+            fail("expected the write to fail");
+        } catch (SQLException e) {
+            assertEquals("08001", e.getSQLState());
+            assertFalse(JdbcAuditSink.isRejection(e));
+        }
+
+        SQLException batch = new SQLException("Batch entry 3 was aborted", "08006");
+        batch.setNextException(new SQLException("violates check constraint", "23514"));
+        assertTrue(JdbcAuditSink.isRejection(batch));
+    }
+
+    @Test
+    public void aWriteThatTimesOutIsRetryableAndReconnects() throws Exception {
+        JdbcAuditSink timed = database.sink(1, 30_000);
+        AuditRecord record = AuditTestDatabase.calculation("1.00", 1);
+        try (Connection locker = database.connect()) {
+            // An uncommitted row with the same id makes the sink's INSERT wait on its lock
+            locker.setAutoCommit(false);
+            try (Statement statement = locker.createStatement()) {
+                statement.execute("INSERT INTO calculation_audit (id, schema_id, input_data, calculation_result, "
+                        + "execution_id, calculation_type) VALUES ('" + record.getId() + "', '"
+                        + AuditTestDatabase.SCHEMA_ID + "', '{}', '{}', '" + record.getExecutionId()
+                        + "', 'income_tax')");
+            }
+            try {
+                timed.write(List.of(record));
+                fail("expected the write to time out");
+            } catch (RejectedBatchException e) {
+                fail("a timeout was treated as a refused batch: " + e.getMessage());
+            } catch (SQLException e) {
+                assertTrue(e.getSQLState(), JdbcAuditSink.isTimeout(e));
+            }
+            locker.rollback();
+        }
+
+        timed.write(List.of(record));
+        assertEquals(1, database.count("calculation_audit"));
+        assertEquals(2, database.opened.get());
+        timed.close();
+
+        assertTrue(JdbcAuditSink.isTimeout(new SQLTimeoutException("timed out")));
+        assertTrue(JdbcAuditSink.isTimeout(new SQLException("canceling statement due to statement timeout",
+                "57014")));
+        assertFalse(JdbcAuditSink.isTimeout(new SQLException("Connection refused", "08001")));
+    }
+}
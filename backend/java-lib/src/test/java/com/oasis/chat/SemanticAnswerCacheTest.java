@@ -0,0 +1,115 @@
+package com.oasis.chat;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class SemanticAnswerCacheTest {
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    // Rephrasings sit at cosine 0.99 of each other, other questions at 0.6 or below
+    private static final double[] WHT_RATE = { 1, 0.1, 0 };
+    private static final double[] WHT_RATE_REPHRASED = { 1, 0.25, 0 };
+    private static final double[] FILING_DEADLINE = { 0.6, 0, 0.8 };
+
+    @Test
+    public void servesRephrasingsOfACachedQuestion() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, TTL, 0.92);
+        put(cache, "WHT", "What is the WHT rate on interest?", WHT_RATE, "{\"rate\": \"5%\"}");
+
+        assertEquals("{\"rate\": \"5%\"}",
+                cache.lookup("WHT", "rate", "Withholding tax rate for interest income", WHT_RATE_REPHRASED));
+        assertEquals(1.0, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void missesOtherQuestionsCalcTypesAndScopes() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, TTL, 0.92);
+        put(cache, "WHT", "What is the WHT rate on interest?", WHT_RATE, "{}");
+
+        assertNull(cache.lookup("WHT", "rate", "When is the WHT return due?", FILING_DEADLINE));
+        assertNull(cache.lookup("PAYE", "rate", "What is the WHT rate on interest?", WHT_RATE));
+        assertNull(cache.lookup("WHT", "deadline", "What is the WHT rate on interest?", WHT_RATE));
+        assertNull(cache.lookup("WHT", "rate", "What is the WHT rate on interest?", new double[] { 0, 0, 0 }));
+        assertEquals(0.0, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void questionsWithDifferentAmountsNeverShareAnAnswer() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, TTL, 0.92);
+        put(cache, "PAYE", "How much tax on a salary of Rs 5M?", WHT_RATE, "{\"tax\": 480000}");
+
+        assertNull(cache.lookup("PAYE", "rate", "How much tax on a salary of Rs 6M?", WHT_RATE));
+        assertNull(cache.lookup("PAYE", "rate", "How much tax on a salary of Rs 5M at 12%?", WHT_RATE));
+        // The same amount written another way is the same question
+        assertEquals("{\"tax\": 480000}",
+                cache.lookup("PAYE", "rate", "Tax on a salary of Rs. 5,000,000", WHT_RATE_REPHRASED));
+        assertEquals("{\"tax\": 480000}",
+                cache.lookup("PAYE", "rate", "tax on 5 million salary", WHT_RATE_REPHRASED));
+
+        // Spelled-out amounts cannot be told apart, so they are neither stored nor served
+        put(cache, "PAYE", "How much tax on a salary of five million?", WHT_RATE, "{\"tax\": 480000}");
+        assertNull(cache.lookup("PAYE", "rate", "How much tax on a salary of six million?", WHT_RATE));
+        assertEquals(1, cache.size());
+        assertEquals(1L, cache.getMetricsMap().get("uncacheable"));
+    }
+
+    @Test
+    public void invalidationDropsAnswersOfThatCalcTypeAndGeneralAnswers() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, TTL, 0.92);
+        put(cache, "WHT", "WHT rate on interest", WHT_RATE, "wht");
+        put(cache, "PAYE", "PAYE rate on salary", WHT_RATE, "paye");
+        put(cache, "", "Who must register for tax?", WHT_RATE, "general");
+
+        long staleGeneration = cache.getGeneration("WHT");
+        cache.invalidateCalcType("WHT");
+
+        assertNull(cache.lookup("WHT", "rate", "WHT rate on interest", WHT_RATE));
+        assertNull(cache.lookup("", "rate", "Who must register for tax?", WHT_RATE));
+        assertEquals("paye", cache.lookup("PAYE", "rate", "PAYE rate on salary", WHT_RATE));
+        assertEquals(2L, cache.getMetricsMap().get("staleRejections"));
+
+        // An answer built from the old rules is not cached
+        cache.put("WHT", "rate", "WHT rate on interest", WHT_RATE, "old", staleGeneration);
+        assertNull(cache.lookup("WHT", "rate", "WHT rate on interest", WHT_RATE));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedAndExpiresOldEntries() throws Exception {
+        SemanticAnswerCache cache = new SemanticAnswerCache(2, TTL, 0.92);
+        put(cache, "WHT", "rate on Rs 1M", WHT_RATE, "1");
+        put(cache, "WHT", "rate on Rs 2M", WHT_RATE, "2");
+        assertEquals("1", cache.lookup("WHT", "rate", "rate on Rs 1M", WHT_RATE));
+        put(cache, "WHT", "rate on Rs 3M", WHT_RATE, "3");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.lookup("WHT", "rate", "rate on Rs 2M", WHT_RATE));
+        assertEquals("1", cache.lookup("WHT", "rate", "rate on Rs 1M", WHT_RATE));
+
+        SemanticAnswerCache shortLived = new SemanticAnswerCache(10, 1, 0.92);
+        put(shortLived, "WHT", "WHT rate on interest", WHT_RATE, "wht");
+        Thread.sleep(5);
+        assertNull(shortLived.lookup("WHT", "rate", "WHT rate on interest", WHT_RATE));
+        assertEquals(0, shortLived.size());
+    }
+
+    @Test
+    public void partitionKeysNormaliseAmounts() {
+        assertEquals(SemanticAnswerCache.partitionKey("PAYE", "rate", "Rs 1.2M"),
+                SemanticAnswerCache.partitionKey("PAYE", "rate", "Rs. 1,200,000"));
+        assertEquals(SemanticAnswerCache.partitionKey("PAYE", "rate", "3 lakhs"),
+                SemanticAnswerCache.partitionKey("PAYE", "rate", "300k"));
+        assertNotEquals(SemanticAnswerCache.partitionKey("PAYE", "rate", "Rs 5M over 5 months"),
+                SemanticAnswerCache.partitionKey("PAYE", "rate", "Rs 5M over 6 months"));
+        assertNull(SemanticAnswerCache.partitionKey("PAYE", "rate", "a hundred thousand rupees"));
+    }
+
+    private static void put(SemanticAnswerCache cache, String calcType, String question, double[] embedding,
+            String answer) {
+        cache.put(calcType, "rate", question, embedding, answer, cache.getGeneration(calcType));
+    }
+}
@@ -0,0 +1,173 @@
+package com.oasis.document.extractor;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveExtractorTest {
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @Test
+    public void extractsDocumentsAndSkipsNestedArchives() throws Exception {
+        byte[] inner = zip("inner/circular.pdf", TestDocuments.pdf(1, 3));
+        byte[] bundle = tarGz(
+                "2024/act.pdf", TestDocuments.pdf(2, 4),
+                "2024/notes.txt", text("PAYE notes for 2024"),
+                "2024/circulars.zip", inner,
+                "2024/scan.png", new byte[] { 1, 2, 3 },
+                "__MACOSX/2024/._act.pdf", new byte[] { 0 });
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+
+        Map<String, ArchiveEntryResult> results;
+        try (ArchiveExtractor extractor = ArchiveExtractor.open(new ByteArrayInputStream(bundle), "gazettes.tar.gz",
+                2, 1L << 20, budget, IDLE_MILLIS)) {
+            results = drain(extractor);
+            assertEquals(5, extractor.getEntriesSeen());
+            assertEquals(3, extractor.getEntriesSkipped());
+            assertEquals(2, extractor.getEntriesSubmitted());
+        }
+
+        assertEquals(Arrays.asList("2024/act.pdf", "2024/notes.txt"), new ArrayList<>(results.keySet()));
+        assertTrue(results.get("2024/act.pdf").getResult().getExtractedText().contains("Page 2 line 4"));
+        assertEquals(0, results.get("2024/act.pdf").getEntryIndex());
+        assertEquals(1, results.get("2024/notes.txt").getEntryIndex());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void entriesOverTheSizeCapOrTheBudgetAreReportedAsFailures() throws Exception {
+        byte[] large = text("x".repeat(300 * 1024));
+        byte[] huge = text("y".repeat(3 * 1024 * 1024));
+        // java.util.zip streams deflated entries without a size, so the caps apply while reading
+        byte[] bundle = zip("small.txt", text("Rate table"), "large.txt", large, "huge.txt", huge);
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(1L << 20, 1024, 0);
+
+        Map<String, ArchiveEntryResult> results;
+        try (ArchiveExtractor extractor = ArchiveExtractor.open(new ByteArrayInputStream(bundle), "bundle.zip",
+                1, 256 * 1024, budget, IDLE_MILLIS)) {
+            results = drain(extractor);
+        }
+        try (ArchiveExtractor extractor = ArchiveExtractor.open(new ByteArrayInputStream(bundle), "bundle.zip",
+                1, 8L << 20, budget, IDLE_MILLIS)) {
+            assertEquals("extraction memory budget exhausted, entry was not buffered",
+                    errorOf(drain(extractor).get("huge.txt")));
+        }
+
+        assertTrue(results.get("small.txt").isExtractionSuccessful());
+        assertEquals("entry exceeds the 262144 byte limit", errorOf(results.get("large.txt")));
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void closingEarlyStopsTheReaderAndReleasesTheBudget() throws Exception {
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+        ArchiveExtractor extractor = ArchiveExtractor.open(new ByteArrayInputStream(manyDocuments(40)),
+                "circulars.zip", 1, 1L << 20, budget, IDLE_MILLIS);
+
+        assertTrue(extractor.hasNext());
+        assertTrue(extractor.next().isExtractionSuccessful());
+        extractor.close();
+
+        waitUntil(() -> !extractor.isReading() && budget.getReservedBytes() == 0);
+        assertFalse(extractor.hasNext());
+        assertTrue(extractor.getEntriesSubmitted() < 40);
+    }
+
+    @Test
+    public void anAbandonedHandleStopsReadingAfterTheIdleTimeout() throws Exception {
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+        ArchiveExtractor extractor = ArchiveExtractor.open(new ByteArrayInputStream(manyDocuments(40)),
+                "circulars.zip", 1, 1L << 20, budget, 50);
+
+        // Nothing is consumed: the reader fills its two permits and then gives up
+        waitUntil(() -> !extractor.isReading());
+
+        assertEquals(0, budget.getReservedBytes());
+        assertEquals(2, extractor.getEntriesSubmitted());
+        assertTrue(extractor.hasNext());
+        ArchiveEntryResult stopped = extractor.next();
+        assertTrue(stopped.isArchiveError());
+        assertEquals("Archive processing stopped: no result was consumed for 50 ms", errorOf(stopped));
+        assertFalse(extractor.hasNext());
+    }
+
+    private static Map<String, ArchiveEntryResult> drain(ArchiveExtractor extractor) {
+        Map<String, ArchiveEntryResult> results = new TreeMap<>();
+        extractor.forEachRemaining(result -> results.put(result.getEntryName(), result));
+        return results;
+    }
+
+    private static String errorOf(ArchiveEntryResult result) {
+        assertFalse(result.isExtractionSuccessful());
+        return result.getResult().getErrorMessage().replace("Could not read archive entry: ", "");
+    }
+
+    private static byte[] manyDocuments(int count) throws IOException {
+        Object[] entries = new Object[count * 2];
+        for (int i = 0; i < count; i++) {
+            entries[2 * i] = "circular-" + i + ".txt";
+            entries[2 * i + 1] = text("Circular " + i + " on withholding tax");
+        }
+        return zip(entries);
+    }
+
+    private static byte[] text(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] zip(Object... namesAndContents) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zip.putNextEntry(new ZipEntry((String) namesAndContents[i]));
+                zip.write((byte[]) namesAndContents[i + 1]);
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] tarGz(Object... namesAndContents) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(out))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                byte[] content = (byte[]) namesAndContents[i + 1];
+                TarArchiveEntry entry = new TarArchiveEntry((String) namesAndContents[i]);
+                entry.setSize(content.length);
+                tar.putArchiveEntry(entry);
+                tar.write(content);
+                tar.closeArchiveEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("timed out");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
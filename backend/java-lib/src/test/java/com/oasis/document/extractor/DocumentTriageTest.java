@@ -0,0 +1,55 @@
+package com.oasis.document.extractor;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentTriageTest {
+
+    @Test
+    public void samplesTheFirstPagesAndReadsMetadataFromTheWorker() throws Exception {
+        byte[] pdf = TestDocuments.pdf(6, 20);
+
+        TriageResult result = DocumentTriage.triage(pdf, "act.pdf", 2, 100_000, 10_000);
+
+        assertNull(result.getErrorMessage());
+        assertFalse(result.isTimedOut());
+        assertEquals("application/pdf", result.getContentType());
+        assertEquals(6, result.getPageCount());
+        assertEquals(2, result.getPagesSampled());
+        assertFalse(result.isImageOnly());
+    }
+
+    @Test
+    public void concurrentTriagesEitherParseOrDegradeWithoutBlocking() throws Exception {
+        byte[] pdf = TestDocuments.pdf(3, 40);
+        byte[] text = "Value Added Tax (Amendment) Act, No. 3 of 2024".getBytes(StandardCharsets.UTF_8);
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<TriageResult>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                byte[] document = i % 2 == 0 ? pdf : text;
+                String name = i % 2 == 0 ? "act.pdf" : "notice.txt";
+                results.add(callers.submit(() -> DocumentTriage.triage(document, name, 3, 20_000, 10_000)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                TriageResult result = results.get(i).get();
+                assertEquals(i % 2 == 0 ? "application/pdf" : "text/plain", result.getContentType().split(";")[0]);
+                // A saturated pool answers from the header bytes with an explanation
+                assertTrue(result.getErrorMessage() == null || result.getErrorMessage().contains("busy"));
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+}
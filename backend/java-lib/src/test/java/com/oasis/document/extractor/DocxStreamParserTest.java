@@ -0,0 +1,169 @@
+package com.oasis.document.extractor;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFStyle;
+import org.apache.poi.xwpf.usermodel.XWPFStyles;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.junit.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTStyle;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STStyleType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocxStreamParserTest {
+
+    @Test
+    public void resolvesHeadingLevelsFromStylesAndOutlineLevels() throws Exception {
+        WordExtractionResult result = DocxStreamParser.parse(act());
+
+        Map<String, Integer> levels = new LinkedHashMap<>();
+        Map<String, String> styles = new LinkedHashMap<>();
+        for (WordParagraphInfo paragraph : result.paragraphs) {
+            if (!paragraph.isInTable()) {
+                levels.put(paragraph.text, paragraph.headingLevel);
+                styles.put(paragraph.text, paragraph.style);
+            }
+        }
+
+        assertEquals(0, (int) levels.get("Inland Revenue (Amendment) Act"));
+        // Outline level on the style, the built-in "heading N" name, and a basedOn chain
+        assertEquals(1, (int) levels.get("PART I"));
+        assertEquals(2, (int) levels.get("Rates of income tax"));
+        assertEquals(2, (int) levels.get("Section 2 - Amendment of section 4"));
+        // Outline level set on the paragraph itself, and explicit body text in a heading-based style
+        assertEquals(3, (int) levels.get("Transitional provisions"));
+        assertEquals(0, (int) levels.get("Section 4 is hereby repealed."));
+        assertEquals("Act Section", styles.get("Section 2 - Amendment of section 4"));
+        assertEquals("heading 2", styles.get("Rates of income tax"));
+
+        assertEquals("Inland Revenue (Amendment) Act", result.structure.title);
+        assertArrayEquals(new String[] { "PART I", "Rates of income tax", "Section 2 - Amendment of section 4",
+                "Transitional provisions" }, result.structure.headers);
+        // The title opens the first section; the rate table belongs to the section it follows
+        String[] sections = result.structure.sections;
+        assertEquals(5, sections.length);
+        assertEquals("Inland Revenue (Amendment) Act", sections[0]);
+        assertTrue(sections[2], sections[2].startsWith("Rates of income tax\n"));
+        assertTrue(sections[2], sections[2].contains("First Rs. 500,000\t6%"));
+        assertEquals("Section 2 - Amendment of section 4\nSection 4 is hereby repealed.", sections[3]);
+    }
+
+    @Test
+    public void readsTablesWithRepeatedHeaderRowsAndNestedTables() throws Exception {
+        WordExtractionResult result = DocxStreamParser.parse(act());
+
+        assertEquals(1, result.tables.length);
+        TableData rates = result.tables[0];
+        assertArrayEquals(new String[] { "Taxable income", "Rate" }, rates.getHeaders());
+        assertEquals(3, rates.getRowCount());
+        assertEquals("First Rs. 500,000", rates.getCell(0, 0));
+        assertEquals("6%", rates.getCell(0, 1));
+        // A table nested in a cell folds into that cell's text
+        assertEquals("Balance see note A note B", rates.getCell(2, 0));
+        // The short row is padded out to the table width
+        assertEquals("", rates.getCell(2, 1));
+        assertEquals("1", result.metadata.get("Table-Count"));
+
+        assertTrue(result.extractedText, result.extractedText.contains("First Rs. 500,000\t6%\n"));
+        long tableParagraphs = result.paragraphs.stream().filter(WordParagraphInfo::isInTable).count();
+        assertEquals(9, tableParagraphs);
+    }
+
+    @Test
+    public void extractsTheSameWordsAsTika() throws Exception {
+        TikaDocumentExtractor tikaExtractor = new TikaDocumentExtractor();
+        for (byte[] document : new byte[][] { act(), TestDocuments.docx("Gazette notice", "PAYE Table 1 revised") }) {
+            String streamed = DocxStreamParser.parse(document).extractedText;
+            String tika = tikaExtractor.extractContent(document, "act.docx").getExtractedText();
+
+            assertEquals(words(tika), words(streamed));
+        }
+    }
+
+    /**
+     * A small amendment act: title, styled headings at three levels and a rate table
+     */
+    private static byte[] act() throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            XWPFStyles styles = document.createStyles();
+            styles.addStyle(style(styles, "Title", "Title", null, -1));
+            styles.addStyle(style(styles, "Part", "Part", null, 0));
+            styles.addStyle(style(styles, "Heading2", "heading 2", null, -1));
+            styles.addStyle(style(styles, "ActSection", "Act Section", "Heading2", -1));
+            styles.addStyle(style(styles, "Repeal", "Repeal", "Heading2", 9));
+
+            paragraph(document, "Title", "Inland Revenue (Amendment) Act");
+            paragraph(document, "Part", "PART I");
+            paragraph(document, "Heading2", "Rates of income tax");
+            paragraph(document, null, "The rates in the First Schedule are replaced by the following.");
+
+            XWPFTable table = document.createTable(4, 2);
+            XWPFTableRow header = table.getRow(0);
+            header.setRepeatHeader(true);
+            header.getCell(0).setText("Taxable income");
+            header.getCell(1).setText("Rate");
+            table.getRow(1).getCell(0).setText("First Rs. 500,000");
+            table.getRow(1).getCell(1).setText("6%");
+            table.getRow(2).getCell(0).setText("Next Rs. 500,000");
+            table.getRow(2).getCell(1).setText("12%");
+            XWPFTableRow last = table.getRow(3);
+            last.removeCell(1);
+            XWPFTableCell balance = last.getCell(0);
+            balance.setText("Balance see");
+            XWPFTable notes = new XWPFTable(balance.getCTTc().addNewTbl(), balance, 1, 2);
+            notes.getRow(0).getCell(0).setText("note A");
+            notes.getRow(0).getCell(1).setText("note B");
+            // Word requires every cell to end with a paragraph
+            balance.getCTTc().addNewP();
+
+            paragraph(document, "ActSection", "Section 2 - Amendment of section 4");
+            paragraph(document, "Repeal", "Section 4 is hereby repealed.");
+            XWPFParagraph transitional = paragraph(document, null, "Transitional provisions");
+            transitional.getCTP().addNewPPr().addNewOutlineLvl().setVal(BigInteger.valueOf(2));
+            paragraph(document, null, "Assessments made before 1 April 2024 stand.");
+
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static XWPFStyle style(XWPFStyles styles, String id, String name, String basedOn, int outlineLevel) {
+        CTStyle style = CTStyle.Factory.newInstance();
+        style.setStyleId(id);
+        style.setType(STStyleType.PARAGRAPH);
+        style.addNewName().setVal(name);
+        if (basedOn != null) {
+            style.addNewBasedOn().setVal(basedOn);
+        }
+        if (outlineLevel >= 0) {
+            style.addNewPPr().addNewOutlineLvl().setVal(BigInteger.valueOf(outlineLevel));
+        }
+        return new XWPFStyle(style, styles);
+    }
+
+    private static XWPFParagraph paragraph(XWPFDocument document, String styleId, String text) {
+        XWPFParagraph paragraph = document.createParagraph();
+        if (styleId != null) {
+            paragraph.setStyle(styleId);
+        }
+        paragraph.createRun().setText(text);
+        return paragraph;
+    }
+
+    private static List<String> words(String text) {
+        return Arrays.asList(text.trim().split("\\s+"));
+    }
+}
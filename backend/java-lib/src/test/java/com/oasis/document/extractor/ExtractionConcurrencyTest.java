@@ -0,0 +1,140 @@
+package com.oasis.document.extractor;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExtractionConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void concurrentExtractionsMatchTheirSequentialResults() throws Exception {
+        Map<String, byte[]> corpus = corpus();
+        Map<String, String> expected = new TreeMap<>();
+        for (Map.Entry<String, byte[]> document : corpus.entrySet()) {
+            String fingerprint = fingerprint(document.getKey(), document.getValue());
+            assertFalse(document.getKey() + ": " + fingerprint, fingerprint.startsWith("error:"));
+            expected.put(document.getKey(), fingerprint);
+        }
+
+        List<String> names = new ArrayList<>(corpus.keySet());
+        int total = names.size() * ROUNDS;
+        AtomicInteger next = new AtomicInteger();
+        List<String> mismatches = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    // Workers pull from a shared counter so every thread mixes document types
+                    for (int i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                        String name = names.get(i % names.size());
+                        if (!fingerprint(name, corpus.get(name)).equals(expected.get(name))) {
+                            synchronized (mismatches) {
+                                mismatches.add(name + " on " + Thread.currentThread().getName());
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(), mismatches);
+        LanguageDetectorPool pool = LanguageDetectorPool.shared();
+        assertTrue(pool.getCreatedCount() <= pool.getMaxDetectors());
+    }
+
+    /**
+     * Everything a caller can observe about a result, minus timings
+     */
+    static String fingerprint(String fileName, byte[] content) {
+        DocumentExtractionResult result;
+        try {
+            result = UnifiedDocumentExtractor.extractContent(content, fileName);
+        } catch (IOException e) {
+            return "error:" + e.getMessage();
+        }
+        if (!result.isExtractionSuccessful()) {
+            return "error:" + result.getErrorMessage();
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(result.getContentType()).append('\n')
+                .append(String.join(",", result.getDetectedLanguages())).append('\n')
+                .append(result.getExtractedText()).append('\n');
+        for (TableData table : result.getTables()) {
+            fingerprint.append(Arrays.toString(table.getHeaders())).append(Arrays.deepToString(table.getData()))
+                    .append('\n');
+        }
+        fingerprint.append(new TreeMap<>(result.getMetadata()));
+        return fingerprint.toString();
+    }
+
+    /**
+     * Mixed-format, mixed-language documents in the shape of the uploads we see
+     */
+    static Map<String, byte[]> corpus() throws IOException {
+        Map<String, byte[]> corpus = new TreeMap<>();
+        String english = "Every person who derives assessable income from employment shall furnish a return "
+                + "of income for each year of assessment. Value Added Tax is charged on the supply of goods. ";
+        String sinhala = "\u0D86\u0DAF\u0DCF\u0DBA\u0DB8\u0DCA \u0DB6\u0DAF\u0DD4 \u0DB4\u0DB1\u0DAD \u0DBA\u0DA7\u0DAD\u0DDA \u0DC3\u0DD1\u0DB8 \u0DB4\u0DD4\u0DAF\u0DCA\u0D9C\u0DBD\u0DBA\u0DD9\u0D9A\u0DD4\u0DB8 \u0DAD\u0D9A\u0DCA\u0DC3\u0DDA\u0DBB\u0DD4 \u0DC0\u0DBB\u0DCA\u0DC2\u0DBA \u0DC3\u0DB3\u0DC4\u0DCF \u0D86\u0DAF\u0DCF\u0DBA\u0DB8\u0DCA \u0DC0\u0DCF\u0DBB\u0DCA\u0DAD\u0DCF\u0DC0\u0D9A\u0DCA \u0D89\u0DAF\u0DD2\u0DBB\u0DD2\u0DB4\u0DAD\u0DCA \u0D9A\u0DC5 \u0DBA\u0DD4\u0DAD\u0DD4\u0DBA. ";
+        String tamil = "\u0BB5\u0BB0\u0BC1\u0BAE\u0BBE\u0BA9 \u0BB5\u0BB0\u0BBF\u0B9A\u0BCD \u0B9A\u0B9F\u0BCD\u0B9F\u0BA4\u0BCD\u0BA4\u0BBF\u0BA9\u0BCD \u0B95\u0BC0\u0BB4\u0BCD \u0B92\u0BB5\u0BCD\u0BB5\u0BCA\u0BB0\u0BC1 \u0BA8\u0BAA\u0BB0\u0BC1\u0BAE\u0BCD \u0BAE\u0BA4\u0BBF\u0BAA\u0BCD\u0BAA\u0BC0\u0B9F\u0BCD\u0B9F\u0BC1 \u0B86\u0BA3\u0BCD\u0B9F\u0BC1\u0B95\u0BCD\u0B95\u0BBE\u0BA9 \u0BB5\u0BB0\u0BC1\u0BAE\u0BBE\u0BA9 \u0B85\u0BB1\u0BBF\u0B95\u0BCD\u0B95\u0BC8\u0BAF\u0BC8 \u0B9A\u0BAE\u0BB0\u0BCD\u0BAA\u0BCD\u0BAA\u0BBF\u0B95\u0BCD\u0B95 \u0BB5\u0BC7\u0BA3\u0BCD\u0B9F\u0BC1\u0BAE\u0BCD. ";
+        corpus.put("circular-en.txt", english.repeat(40).getBytes(StandardCharsets.UTF_8));
+        corpus.put("circular-si.txt", sinhala.repeat(40).getBytes(StandardCharsets.UTF_8));
+        corpus.put("circular-ta.txt", tamil.repeat(40).getBytes(StandardCharsets.UTF_8));
+        corpus.put("act-short.pdf", TestDocuments.act(4));
+        corpus.put("act-long.pdf", TestDocuments.act(40));
+        corpus.put("guide.docx", guide(english, 30));
+        Object[][] rows = new Object[501][];
+        rows[0] = new Object[] { "TIN", "Payee", "Gross", "Tax" };
+        for (int r = 1; r < rows.length; r++) {
+            rows[r] = new Object[] { String.format("%09d", 100000000 + r), "Payee " + r, r * 1250.5,
+                    r * 1250.5 * 0.14 };
+        }
+        corpus.put("schedule.xlsx", TestDocuments.xlsx("Withholding", rows));
+        return corpus;
+    }
+
+    private static byte[] guide(String paragraph, int sections) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int s = 1; s <= sections; s++) {
+                document.createParagraph().createRun().setText("Section " + s);
+                document.createParagraph().createRun().setText(paragraph);
+            }
+            XWPFTable table = document.createTable(4, 3);
+            String[][] rows = { { "Band", "From", "Rate" }, { "1", "0", "6%" }, { "2", "500000", "12%" },
+                    { "3", "1000000", "18%" } };
+            for (int r = 0; r < rows.length; r++) {
+                for (int c = 0; c < rows[r].length; c++) {
+                    table.getRow(r).getCell(c).setText(rows[r][c]);
+                }
+            }
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
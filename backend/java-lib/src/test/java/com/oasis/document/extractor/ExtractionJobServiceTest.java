@@ -0,0 +1,156 @@
+package com.oasis.document.extractor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExtractionJobServiceTest {
+    private static final long WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @Test
+    public void extractsADocumentInTheBackground() throws Exception {
+        ExtractionJobService service = new ExtractionJobService(2, WAIT_MILLIS);
+
+        String jobId = service.submit(TestDocuments.pdf(2, 5), "act.pdf", ExtractionJob.Lane.INTERACTIVE);
+        DocumentExtractionResult result = service.await(jobId, WAIT_MILLIS);
+
+        assertTrue(result.isExtractionSuccessful());
+        assertTrue(result.getExtractedText().contains("Page 2 line 5"));
+        assertEquals(ExtractionJob.Status.SUCCEEDED, service.poll(jobId).getStatus());
+        assertSame(result, service.await(jobId, 0));
+    }
+
+    @Test
+    public void aFailedJobThrowsIOExceptionWithOrWithoutATimeout() throws Exception {
+        ExtractionJobService service = new ExtractionJobService(2, WAIT_MILLIS, (content, name) -> {
+            if (name.endsWith(".pdf")) {
+                throw new IOException("Document processing failed for file '" + name + "': no trailer");
+            }
+            throw new IllegalStateException("parser bug");
+        });
+        String corrupt = service.submit(new byte[] { 1 }, "scan.pdf", ExtractionJob.Lane.INTERACTIVE);
+        String crashed = service.submit(new byte[] { 1 }, "x.docx", ExtractionJob.Lane.INTERACTIVE);
+
+        String message = "Document processing failed for file 'scan.pdf': no trailer";
+        assertEquals(message, awaitFailure(service, corrupt, WAIT_MILLIS));
+        // Once the job is done, a zero timeout reads the same failure without waiting
+        assertEquals(message, awaitFailure(service, corrupt, 0));
+        assertEquals(ExtractionJob.Status.FAILED, service.poll(corrupt).getStatus());
+        assertEquals(message, service.poll(corrupt).getErrorMessage());
+
+        message = "Extraction job " + crashed + " failed: parser bug";
+        assertEquals(message, awaitFailure(service, crashed, WAIT_MILLIS));
+        assertEquals(message, awaitFailure(service, crashed, 0));
+    }
+
+    @Test
+    public void interactiveJobsStartBeforeQueuedBackfills() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> started = new CopyOnWriteArrayList<>();
+        ExtractionJobService service = new ExtractionJobService(1, WAIT_MILLIS, (content, name) -> {
+            started.add(name);
+            if (name.equals("blocker")) {
+                awaitQuietly(release);
+            }
+            return new DocumentExtractionResult(name, null, "text/plain", null, null, null, null, null);
+        });
+
+        String blocker = service.submit(new byte[] { 1 }, "blocker", ExtractionJob.Lane.INTERACTIVE);
+        waitUntil(() -> service.getRunningCount() == 1);
+        String backfill = service.submit(new byte[] { 1 }, "backfill", ExtractionJob.Lane.BACKGROUND);
+        String upload = service.submit(new byte[] { 1 }, "upload", ExtractionJob.Lane.INTERACTIVE);
+        assertEquals(2, service.getQueuedCount());
+        assertNull(service.await(upload, 0));
+
+        release.countDown();
+        service.await(blocker, WAIT_MILLIS);
+        service.await(backfill, WAIT_MILLIS);
+        assertEquals("upload", service.await(upload, WAIT_MILLIS).getExtractedText());
+        assertEquals(List.of("blocker", "upload", "backfill"), started);
+    }
+
+    @Test
+    public void cancelledJobsNeverRunAndReportCancellation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> started = new CopyOnWriteArrayList<>();
+        ExtractionJobService service = new ExtractionJobService(1, WAIT_MILLIS, (content, name) -> {
+            started.add(name);
+            awaitQuietly(release);
+            return new DocumentExtractionResult(name, null, "text/plain", null, null, null, null, null);
+        });
+        String running = service.submit(new byte[] { 1 }, "running", ExtractionJob.Lane.INTERACTIVE);
+        waitUntil(() -> service.getRunningCount() == 1);
+        String queued = service.submit(new byte[] { 1 }, "queued", ExtractionJob.Lane.INTERACTIVE);
+
+        assertTrue(service.cancel(queued));
+        assertEquals(0, service.getQueuedCount());
+        assertEquals("Extraction job " + queued + " was cancelled", awaitFailure(service, queued, 0));
+        assertEquals(ExtractionJob.Status.CANCELLED, service.poll(queued).getStatus());
+
+        release.countDown();
+        assertEquals("running", service.await(running, WAIT_MILLIS).getExtractedText());
+        assertFalse(service.cancel(running));
+        assertEquals(List.of("running"), started);
+    }
+
+    @Test
+    public void finishedJobsExpireAfterTheirTtl() throws Exception {
+        ExtractionJobService service = new ExtractionJobService(1, 1, (content, name) ->
+                new DocumentExtractionResult(name, null, "text/plain", null, null, null, null, null));
+        String jobId = service.submit(new byte[] { 1 }, "done", ExtractionJob.Lane.INTERACTIVE);
+        service.await(jobId, WAIT_MILLIS);
+        // With a 1 ms TTL the job may be gone by the first poll, so only wait for it to go
+        waitUntil(() -> service.poll(jobId) == null);
+
+        try {
+            service.await(jobId, 0);
+            fail("expected an unknown job");
+        } catch (IOException e) {
+            assertEquals("Unknown or expired extraction job: " + jobId, e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEmptyDocumentsUpFront() throws Exception {
+        new ExtractionJobService(1, WAIT_MILLIS).submit(new byte[0], "empty.pdf", ExtractionJob.Lane.INTERACTIVE);
+    }
+
+    private static String awaitFailure(ExtractionJobService service, String jobId, long timeoutMillis) {
+        try {
+            service.await(jobId, timeoutMillis);
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("expected job " + jobId + " to fail");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("timed out");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
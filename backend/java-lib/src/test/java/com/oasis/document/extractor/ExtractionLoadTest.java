@@ -0,0 +1,93 @@
+package com.oasis.document.extractor;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExtractionLoadTest {
+
+    private static final double RATE = 20.0;
+    private static final int SECONDS = 3;
+    private static final int WORKERS = 4;
+
+    // Arrivals follow a Poisson schedule whatever the state of the workers, and latency is taken from the
+    // scheduled arrival, so queueing behind slow extractions counts. Nothing here is timed against a
+    // threshold; IngestionLoadDriver reports the numbers
+    @Test
+    public void openLoopReplayCompletesEveryScheduledRequest() throws Exception {
+        Map<String, byte[]> corpus = new TreeMap<>();
+        corpus.put("act-short.pdf", TestDocuments.act(4));
+        corpus.put("act-long.pdf", TestDocuments.act(40));
+        corpus.put("guide.docx", TestDocuments.docx("Section 1", "Every person who derives assessable income"));
+        corpus.put("rates.xlsx", TestDocuments.xlsx("Rates", new Object[] { "band", "rate" },
+                new Object[] { "first 500000", 6 }));
+        corpus.put("circular.txt", "Value Added Tax is charged on the supply of goods. ".repeat(40)
+                .getBytes(StandardCharsets.UTF_8));
+        List<String> names = new ArrayList<>(corpus.keySet());
+        for (String name : names) {
+            InteropBridge.extractContent(corpus.get(name), name).release();
+        }
+
+        Map<String, AtomicInteger> completedByName = new ConcurrentHashMap<>();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong maxLatencyNanos = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        Random random = new Random(42);
+        int submitted = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(SECONDS);
+        double meanGapNanos = 1e9 / RATE;
+        try {
+            for (double intended = start; intended < end;
+                    intended += -Math.log(1 - random.nextDouble()) * meanGapNanos) {
+                long scheduledAt = (long) intended;
+                long now;
+                while ((now = System.nanoTime()) < scheduledAt) {
+                    LockSupport.parkNanos(scheduledAt - now);
+                }
+                String name = names.get(random.nextInt(names.size()));
+                submitted++;
+                workers.execute(() -> {
+                    boolean ok;
+                    try {
+                        DocumentExtractionResult result = InteropBridge.extractContent(corpus.get(name), name);
+                        ok = result.isExtractionSuccessful();
+                        result.release();
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    long done = System.nanoTime();
+                    if (!ok) {
+                        failures.incrementAndGet();
+                    }
+                    maxLatencyNanos.accumulateAndGet(done - scheduledAt, Math::max);
+                    completedByName.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+                });
+            }
+        } finally {
+            workers.shutdown();
+        }
+        assertTrue(workers.awaitTermination(120, TimeUnit.SECONDS));
+
+        int completed = completedByName.values().stream().mapToInt(AtomicInteger::get).sum();
+        assertTrue("too few arrivals: " + submitted, submitted > RATE * SECONDS / 2);
+        assertEquals(submitted, completed);
+        assertEquals(0, failures.get());
+        assertTrue(maxLatencyNanos.get() > 0);
+    }
+}
@@ -0,0 +1,138 @@
+package com.oasis.document.extractor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Scaling benchmark for the shared extractor, with the concurrency check of
+ * {@link ExtractionConcurrencyTest}
+ *
+ * Every document is first extracted sequentially to record its fingerprint.
+ * The corpus is then extracted repeatedly by N threads sharing the same
+ * static extractor; docs/s is reported per thread count and every concurrent
+ * result is compared with its sequential fingerprint.
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code ExtractionStressBenchmark [corpusDir] [threads...]}
+ */
+public class ExtractionStressBenchmark {
+
+    private static final int ROUNDS = Integer.getInteger("oasis.stress.rounds", 3);
+
+    public static void main(String[] args) throws Exception {
+        int firstThreadArg = args.length > 0 && Files.isDirectory(Paths.get(args[0])) ? 1 : 0;
+        Map<String, byte[]> corpus = firstThreadArg == 1 ? loadCorpus(Paths.get(args[0]))
+                : ExtractionConcurrencyTest.corpus();
+        int[] threadCounts = args.length > firstThreadArg
+                ? Arrays.stream(args, firstThreadArg, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 2, 4, 8, 16 };
+
+        System.out.printf("Corpus: %d documents, %d rounds, %d cores%n", corpus.size(), ROUNDS,
+                Runtime.getRuntime().availableProcessors());
+
+        Map<String, String> expected = new TreeMap<>();
+        long start = System.nanoTime();
+        for (Map.Entry<String, byte[]> document : corpus.entrySet()) {
+            expected.put(document.getKey(), ExtractionConcurrencyTest.fingerprint(document.getKey(),
+                    document.getValue()));
+        }
+        System.out.printf("sequential  elapsed=%6d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        // Warm up the JIT so the first thread count is not penalised
+        boolean failed = runConcurrently(corpus, expected, threadCounts[0]).mismatches.get() > 0;
+        double baseline = 0;
+        for (int threads : threadCounts) {
+            Run run = runConcurrently(corpus, expected, threads);
+            if (baseline == 0) {
+                baseline = run.docsPerSecond();
+            }
+            System.out.printf("threads=%2d  elapsed=%6d ms  docs/s=%8.1f  scaling=%5.2fx  mismatches=%d%n",
+                    threads, run.millis, run.docsPerSecond(), run.docsPerSecond() / baseline, run.mismatches.get());
+            failed |= run.mismatches.get() > 0;
+        }
+
+        LanguageDetectorPool pool = LanguageDetectorPool.shared();
+        System.out.printf("language detectors: available=%s created=%d/%d detections=%d waits=%d%n",
+                pool.isAvailable(), pool.getCreatedCount(), pool.getMaxDetectors(), pool.getDetectionCount(),
+                pool.getWaitCount());
+        if (failed) {
+            System.out.println("FAILED: concurrent results differ from sequential results");
+            System.exit(1);
+        }
+    }
+
+    private static final class Run {
+        final int documents;
+        final AtomicInteger mismatches = new AtomicInteger();
+        long millis;
+
+        Run(int documents) {
+            this.documents = documents;
+        }
+
+        double docsPerSecond() {
+            return documents * 1000.0 / Math.max(1, millis);
+        }
+    }
+
+    private static Run runConcurrently(Map<String, byte[]> corpus, Map<String, String> expected, int threads)
+            throws Exception {
+        List<String> names = new ArrayList<>(corpus.keySet());
+        Run run = new Run(names.size() * ROUNDS);
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "extraction-stress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    // Workers pull from a shared counter so every thread mixes document types
+                    for (int i = next.getAndIncrement(); i < run.documents; i = next.getAndIncrement()) {
+                        String name = names.get(i % names.size());
+                        if (!ExtractionConcurrencyTest.fingerprint(name, corpus.get(name)).equals(expected.get(name))) {
+                            run.mismatches.incrementAndGet();
+                            System.out.printf("  mismatch: %s on %s%n", name, Thread.currentThread().getName());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            run.millis = (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            executor.shutdownNow();
+        }
+        return run;
+    }
+
+    private static Map<String, byte[]> loadCorpus(Path directory) throws IOException {
+        Map<String, byte[]> corpus = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (UnifiedDocumentExtractor.isSupportedFormat(file.getFileName().toString())) {
+                    corpus.put(directory.relativize(file).toString(), Files.readAllBytes(file));
+                }
+            }
+        }
+        return corpus;
+    }
+}
@@ -0,0 +1,59 @@
+package com.oasis.document.extractor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Speedup curve for {@link PdfParallelExtractor} against a sequential strip
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code PdfParallelBenchmark [file.pdf | pages] [threads...]}
+ */
+public class PdfParallelBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String source = args.length > 0 ? args[0] : "500";
+        int[] threadCounts = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 2, 4, 8, 16 };
+
+        Path path = Paths.get(source);
+        byte[] pdf = Files.isRegularFile(path) ? Files.readAllBytes(path) : TestDocuments.act(Integer.parseInt(source));
+        System.out.printf("PDF: %s (%,d bytes), %d cores%n", source, pdf.length,
+                Runtime.getRuntime().availableProcessors());
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        String sequential;
+        long sequentialMillis;
+        try {
+            // Warm up the JIT before measuring
+            for (int i = 0; i < 2; i++) {
+                PdfParallelExtractor.extractText(pdf, single, Integer.MAX_VALUE);
+            }
+            long start = System.nanoTime();
+            sequential = PdfParallelExtractor.extractText(pdf, single, Integer.MAX_VALUE);
+            sequentialMillis = (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            single.shutdown();
+        }
+        System.out.printf("sequential  elapsed=%6d ms  chars=%,d%n", sequentialMillis, sequential.length());
+
+        for (int threads : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                PdfParallelExtractor.extractText(pdf, pool, 0);
+                long start = System.nanoTime();
+                String text = PdfParallelExtractor.extractText(pdf, pool, 0);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("threads=%2d  elapsed=%6d ms  speedup=%5.2fx  identical=%s%n", threads, millis,
+                        sequentialMillis / (double) Math.max(1, millis), sequential.equals(text));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.oasis.document.extractor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PdfParallelExtractorTest {
+
+    @Test
+    public void parallelRangesMatchASequentialStrip() throws Exception {
+        // On a pool of four, 40 pages split into 1-10, 11-20, 21-30 and 31-40; the blank pages sit on
+        // both sides of a boundary, at the start of a range and at the end of the document
+        byte[] pdf = TestDocuments.act(40, 10, 11, 21, 40);
+        String sequential;
+        try (PDDocument document = PDDocument.load(pdf)) {
+            sequential = new PDFTextStripper().getText(document);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String singleRange = PdfParallelExtractor.extractText(pdf, pool, Integer.MAX_VALUE);
+            String parallel = PdfParallelExtractor.extractText(pdf, pool, 0);
+
+            assertEquals(sequential, singleRange);
+            assertEquals(sequential, parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void fullExtractionKeepsPageOrderAndDocumentInformation() throws Exception {
+        byte[] pdf = TestDocuments.act(40);
+
+        DocumentExtractionResult result = PdfParallelExtractor.extract(pdf, "act.pdf");
+
+        String text = result.getExtractedText();
+        int previous = -1;
+        for (int section = 1; section <= 40; section++) {
+            int at = text.indexOf("Section " + section + "\n");
+            assertTrue("Section " + section + " out of order", at > previous);
+            previous = at;
+        }
+        assertEquals("40", result.getMetadata().get("xmpTPg:NPages"));
+    }
+
+    @Test
+    public void runsFewerRangesWhenTheBudgetCoversFewerCopies() throws Exception {
+        byte[] pdf = TestDocuments.act(40);
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+        long copyBytes = (budget.estimateBytes(pdf.length) + 1023) / 1024 * 1024;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Everything but two extra copies is taken, so four wanted ranges become three
+            try (ExtractionMemoryBudget.Reservation held = budget.reserve(budget.getBudgetBytes() - 2 * copyBytes)) {
+                List<Integer> firstPages = PdfPageRanges.map(pdf, pool, 8, budget,
+                        (document, first, last) -> first);
+                assertEquals(List.of(1, 14, 27), firstPages);
+                assertEquals(held.getReservedBytes(), budget.getReservedBytes());
+            }
+            try (ExtractionMemoryBudget.Reservation held = budget.reserve(budget.getBudgetBytes())) {
+                assertEquals(List.of(1), PdfPageRanges.map(pdf, pool, 8, budget, (document, first, last) -> first));
+            }
+            assertEquals(4, PdfPageRanges.map(pdf, pool, 8, budget, (document, first, last) -> first).size());
+            assertEquals(0, budget.getReservedBytes());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void aFailedRangeGivesEveryCopyBack() throws Exception {
+        byte[] pdf = TestDocuments.act(40);
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PdfPageRanges.map(pdf, pool, 8, budget, (document, first, last) -> {
+                if (first > 1) {
+                    throw new IOException("bad page " + first);
+                }
+                return first;
+            });
+            fail("expected the range failure");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("bad page"));
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(0, budget.getReservedBytes());
+    }
+}
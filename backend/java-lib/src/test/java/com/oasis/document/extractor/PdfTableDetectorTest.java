@@ -0,0 +1,60 @@
+package com.oasis.document.extractor;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PdfTableDetectorTest {
+
+    @Test
+    public void findsUnruledTablesFromWhitespaceChannels() throws Exception {
+        assertRateSchedules(PdfTableDetector.detect(TestDocuments.rateSchedules(false)));
+    }
+
+    @Test
+    public void findsRuledTablesTheSameWay() throws Exception {
+        // Rules are drawn, not glyphs: the cells must line up exactly as without them
+        assertRateSchedules(PdfTableDetector.detect(TestDocuments.rateSchedules(true)));
+    }
+
+    @Test
+    public void reportsNoTablesInProse() throws Exception {
+        assertTrue(PdfTableDetector.detect(TestDocuments.act(6, 3)).isEmpty());
+        assertTrue(PdfTableDetector.detect(TestDocuments.pdf(3, 40)).isEmpty());
+    }
+
+    @Test
+    public void convertsToCaptionedTableData() throws Exception {
+        TableData[] tables = PdfTableDetector.toTableData(PdfTableDetector.detect(TestDocuments.rateSchedules(false)));
+
+        assertEquals(2, tables.length);
+        assertEquals("Page 1 table 1", tables[0].getTableTitle());
+        assertEquals("Page 2 table 1", tables[1].getTableTitle());
+        assertArrayEquals(new String[] { "Payee", "Rate" }, tables[1].getHeaders());
+        assertEquals("14%", tables[1].getCell(1, 1));
+    }
+
+    private static void assertRateSchedules(List<TableInfo> tables) {
+        assertEquals(2, tables.size());
+
+        TableInfo paye = tables.get(0);
+        assertEquals(1, paye.getPage());
+        assertArrayEquals(new String[] { "Taxable income", "Rate", "Tax" }, paye.getHeaders());
+        assertArrayEquals(new String[][] {
+                { "First Rs. 1,200,000", "6%", "72,000" },
+                // The wrapped line joins the row above
+                { "Next Rs. 500,000 of income", "12%", "60,000" },
+                { "Next Rs. 500,000", "18%", "90,000" },
+                { "Balance", "36%", "" } }, paye.getData());
+
+        TableInfo interest = tables.get(1);
+        assertEquals(2, interest.getPage());
+        assertEquals(3, interest.getRowCount());
+        assertEquals("Resident individual", interest.getCell(0, 0));
+        assertEquals("10%", interest.getCell(2, 1));
+    }
+}
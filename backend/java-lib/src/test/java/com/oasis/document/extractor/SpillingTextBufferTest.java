@@ -0,0 +1,89 @@
+package com.oasis.document.extractor;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpillingTextBufferTest {
+
+    @Test
+    public void keepsSmallTextOnTheHeap() throws Exception {
+        SpillingTextBuffer buffer = new SpillingTextBuffer(4096, null);
+        buffer.write("Inland Revenue Act", 7, 7);
+        buffer.close();
+
+        assertFalse(buffer.isSpilled());
+        assertEquals("Revenue", buffer.toString());
+    }
+
+    @Test
+    public void spillsStringSlicesAndCharArraysInOrder() throws Exception {
+        String source = randomText(300_000, 3);
+        StringBuilder expected = new StringBuilder();
+        SpillingTextBuffer buffer = new SpillingTextBuffer(1024, null);
+        Random random = new Random(5);
+        for (int off = 0; off < source.length();) {
+            int len = Math.min(source.length() - off, 1 + random.nextInt(20_000));
+            if (random.nextBoolean()) {
+                buffer.write(source, off, len);
+            } else {
+                buffer.write(source.toCharArray(), off, len);
+            }
+            expected.append(source, off, off + len);
+            off += len;
+        }
+        buffer.close();
+
+        assertTrue(buffer.isSpilled());
+        assertEquals(expected.length(), buffer.length());
+        assertEquals(expected.toString(), buffer.toString());
+        StringBuilder read = new StringBuilder();
+        try (Reader reader = buffer.openReader()) {
+            char[] chars = new char[777];
+            for (int n; (n = reader.read(chars)) > 0;) {
+                read.append(chars, 0, n);
+            }
+        }
+        assertEquals(expected.toString(), read.toString());
+    }
+
+    @Test
+    public void pagesThroughSpilledTextInChunks() throws Exception {
+        String source = randomText(50_000, 9);
+        SpillingTextBuffer buffer = new SpillingTextBuffer(1024, null);
+        buffer.write(source);
+        buffer.close();
+        DocumentExtractionResult result = new DocumentExtractionResult(buffer, null, "text/plain", null, null,
+                null, Map.of(), null);
+
+        StringBuilder paged = new StringBuilder();
+        for (int offset = 0;; offset += 4096) {
+            String chunk = result.getTextChunk(offset, 4096);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            paged.append(chunk);
+        }
+
+        assertEquals(source, paged.toString());
+        assertEquals(source, result.getExtractedText());
+    }
+
+    private static String randomText(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+            if (random.nextInt(50) == 0) {
+                text.append('\u0DC1');
+            }
+        }
+        return text.substring(0, length);
+    }
+}
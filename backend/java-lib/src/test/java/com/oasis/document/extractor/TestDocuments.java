@@ -0,0 +1,200 @@
+package com.oasis.document.extractor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Small documents built in memory for the extractor tests
+ */
+final class TestDocuments {
+
+    private TestDocuments() {
+    }
+
+    /**
+     * A PDF whose page p holds linesPerPage lines reading "Page p line l ..."
+     */
+    static byte[] pdf(int pages, int linesPerPage) throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 790);
+                    for (int l = 1; l <= linesPerPage; l++) {
+                        content.showText("Page " + p + " line " + l + " income tax withholding at 14% on Rs. "
+                                + (p * 1000 + l) + " interest");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Text-heavy pages in the shape of an Inland Revenue Act; the pages listed in blankPages carry no text
+     */
+    static byte[] act(int pages, int... blankPages) throws IOException {
+        String clause = "Every person who derives assessable income from employment shall furnish a return of income";
+        boolean[] blank = new boolean[pages + 1];
+        for (int p : blankPages) {
+            blank[p] = true;
+        }
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                if (blank[p]) {
+                    continue;
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA_BOLD, 12);
+                    content.newLineAtOffset(60, 790);
+                    content.showText("Section " + p);
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(13);
+                    for (int line = 0; line < 55; line++) {
+                        content.newLine();
+                        content.showText("(" + line + ") " + clause);
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Two pages of rate schedules set in columns between lines of prose
+     *
+     * Page 1 holds a three-column PAYE table whose first column wraps once and
+     * whose last column is right-aligned; page 2 holds a two-column table.
+     * With ruled set, every cell is boxed in, as in a gazette; otherwise the
+     * columns are separated by whitespace only.
+     */
+    static byte[] rateSchedules(boolean ruled) throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PDPage first = new PDPage(PDRectangle.A4);
+            document.addPage(first);
+            try (PDPageContentStream content = new PDPageContentStream(document, first)) {
+                prose(content, 60, 790, "First Schedule - Rates of income tax on employment income");
+                float bottom = table(content, ruled, 740, new float[] { 60, 280, 400, 520 }, new String[][] {
+                        { "Taxable income", "Rate", "Tax" },
+                        { "First Rs. 1,200,000", "6%", "72,000" },
+                        { "Next Rs. 500,000 of", "12%", "60,000" },
+                        { "income", "", "" },
+                        { "Next Rs. 500,000", "18%", "90,000" },
+                        { "Balance", "36%", "" } });
+                prose(content, 60, bottom - 30, "The rates apply from the year of assessment commencing 1 April.");
+            }
+            PDPage second = new PDPage(PDRectangle.A4);
+            document.addPage(second);
+            try (PDPageContentStream content = new PDPageContentStream(document, second)) {
+                prose(content, 60, 790, "Second Schedule - Withholding on interest");
+                table(content, ruled, 740, new float[] { 60, 300, 420 }, new String[][] {
+                        { "Payee", "Rate" },
+                        { "Resident individual", "5%" },
+                        { "Non-resident", "14%" },
+                        { "Company", "10%" } });
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void prose(PDPageContentStream content, float x, float y, String text) throws IOException {
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, 10);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    /**
+     * Rows from the top edge down; the last column is right-aligned. Returns the bottom edge
+     */
+    private static float table(PDPageContentStream content, boolean ruled, float top, float[] edges,
+            String[][] rows) throws IOException {
+        float rowHeight = 12;
+        for (int r = 0; r < rows.length; r++) {
+            float baseline = top - (r + 1) * rowHeight + 4;
+            for (int c = 0; c < rows[r].length; c++) {
+                String cell = rows[r][c];
+                if (cell.isEmpty()) {
+                    continue;
+                }
+                float x = edges[c] + 4;
+                if (c == rows[r].length - 1) {
+                    x = edges[c + 1] - 4 - PDType1Font.HELVETICA.getStringWidth(cell) / 1000 * 10;
+                }
+                prose(content, x, baseline, cell);
+            }
+        }
+        float bottom = top - rows.length * rowHeight;
+        if (ruled) {
+            for (int r = 0; r <= rows.length; r++) {
+                content.moveTo(edges[0], top - r * rowHeight);
+                content.lineTo(edges[edges.length - 1], top - r * rowHeight);
+            }
+            for (float edge : edges) {
+                content.moveTo(edge, top);
+                content.lineTo(edge, bottom);
+            }
+            content.stroke();
+        }
+        return bottom;
+    }
+
+    /**
+     * An XLSX workbook with one sheet of rows; the first row is the header
+     */
+    static byte[] xlsx(String sheetName, Object[]... rows) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet(sheetName);
+            for (int r = 0; r < rows.length; r++) {
+                Row row = sheet.createRow(r);
+                for (int c = 0; c < rows[r].length; c++) {
+                    Object value = rows[r][c];
+                    if (value instanceof Number) {
+                        row.createCell(c).setCellValue(((Number) value).doubleValue());
+                    } else {
+                        row.createCell(c).setCellValue(String.valueOf(value));
+                    }
+                }
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * A DOCX document with one paragraph per argument
+     */
+    static byte[] docx(String... paragraphs) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (String paragraph : paragraphs) {
+                document.createParagraph().createRun().setText(paragraph);
+            }
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
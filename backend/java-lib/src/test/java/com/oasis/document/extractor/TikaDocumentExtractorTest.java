@@ -0,0 +1,110 @@
+package com.oasis.document.extractor;
+
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TikaDocumentExtractorTest {
+
+    @Test
+    public void aParseThatFailsAfterSpillingLeavesNoTempFiles() throws Exception {
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+        TikaDocumentExtractor extractor = new TikaDocumentExtractor(budget);
+        // The first sheet streams well past the spill threshold before the second one breaks
+        byte[] workbook = truncateEntry(twoSheets(3_000), "xl/worksheets/sheet2.xml");
+        Set<Path> before = spillFiles();
+
+        for (int i = 0; i < 5; i++) {
+            DocumentExtractionResult result = extractor.extractContent(workbook, "returns.xlsx");
+            assertFalse(result.isExtractionSuccessful());
+        }
+
+        assertEquals(before, spillFiles());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void aSpilledResultStaysReadableAfterTheHtmlIsDropped() throws Exception {
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1024, 0);
+        Set<Path> before = spillFiles();
+
+        DocumentExtractionResult result = new TikaDocumentExtractor(budget)
+                .extractContent(twoSheets(3_000), "returns.xlsx");
+
+        assertTrue(result.isExtractionSuccessful());
+        assertTrue(budget.getSpillCount() > 0);
+        assertTrue(result.getExtractedText().contains("Employer 2999"));
+        assertTrue(result.getExtractedText().contains("Branch 2999"));
+        // Spilled text is mapped and its file unlinked once the buffers are closed
+        assertEquals(before, spillFiles());
+    }
+
+    @Test
+    public void pdfLayoutTablesAreDetectedBeforeTheResultIsReturned() throws Exception {
+        ExtractionMemoryBudget budget = new ExtractionMemoryBudget(64L << 20, 1 << 20, 0);
+        DocumentExtractionResult result = new TikaDocumentExtractor(budget)
+                .extractContent(TestDocuments.rateSchedules(false), "rates.pdf");
+        assertEquals(0, budget.getReservedBytes());
+
+        // The result keeps no PDF bytes to detect from later, so reading tables needs no budget
+        try (ExtractionMemoryBudget.Reservation everything = budget.reserve(budget.getBudgetBytes())) {
+            TableData[] tables = result.getTables();
+            assertEquals(2, tables.length);
+            assertEquals("Page 1 table 1", tables[0].getTableTitle());
+            assertEquals("14%", tables[1].getCell(1, 1));
+        }
+    }
+
+    private static byte[] twoSheets(int rows) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            XSSFSheet employers = workbook.createSheet("Employers");
+            XSSFSheet branches = workbook.createSheet("Branches");
+            for (int r = 0; r < rows; r++) {
+                employers.createRow(r).createCell(0).setCellValue("Employer " + r + " PAYE withheld");
+                branches.createRow(r).createCell(0).setCellValue("Branch " + r + " Colombo");
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] truncateEntry(byte[] zip, String entryName) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip));
+                ZipOutputStream rewritten = new ZipOutputStream(out)) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null;) {
+                byte[] content = in.readAllBytes();
+                rewritten.putNextEntry(new ZipEntry(entry.getName()));
+                rewritten.write(content, 0, entry.getName().equals(entryName) ? content.length / 2 : content.length);
+                rewritten.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Set<Path> spillFiles() throws IOException {
+        Set<Path> files = new HashSet<>();
+        Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(tmp, "oasis-extract-*.utf16")) {
+            entries.forEach(files::add);
+        }
+        return files;
+    }
+}
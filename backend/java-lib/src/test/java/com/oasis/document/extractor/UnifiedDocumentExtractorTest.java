@@ -0,0 +1,35 @@
+package com.oasis.document.extractor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnifiedDocumentExtractorTest {
+
+    @Test
+    public void streamsWorkbooks() throws Exception {
+        byte[] workbook = TestDocuments.xlsx("Rates",
+                new Object[] { "band", "rate" },
+                new Object[] { "first 500000", 6 },
+                new Object[] { "next 500000", 12 });
+
+        assertTrue(XlsxStreamReader.isWorkbook(workbook));
+        String text = UnifiedDocumentExtractor.extractFromExcel(workbook, "rates.xlsx").getExtractedText();
+
+        assertTrue(text, text.contains("first 500000"));
+        assertTrue(text, text.contains("next 500000"));
+    }
+
+    @Test
+    public void fallsBackToTikaForOoxmlPackagesThatAreNotWorkbooks() throws Exception {
+        byte[] document = TestDocuments.docx("Inland Revenue (Amendment) Act", "Section 2 is hereby repealed");
+
+        assertFalse(XlsxStreamReader.isWorkbook(document));
+        // Uploaded under a spreadsheet name, but the package holds a Word document
+        String text = UnifiedDocumentExtractor.extractFromExcel(document, "schedule.xlsx").getExtractedText();
+
+        assertTrue(text, text.contains("Inland Revenue (Amendment) Act"));
+        assertTrue(text, text.contains("Section 2 is hereby repealed"));
+    }
+}
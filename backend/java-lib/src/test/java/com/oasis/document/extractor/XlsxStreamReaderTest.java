@@ -0,0 +1,246 @@
+package com.oasis.document.extractor;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class XlsxStreamReaderTest {
+
+    @Test
+    public void capsTableRowsButStreamsEveryRowToTheText() throws Exception {
+        byte[] workbook = TestDocuments.xlsx("Withholding", rows(50));
+
+        DocumentExtractionResult result = XlsxStreamReader.extract(workbook, "wht.xlsx",
+                ExtractionMemoryBudget.shared(), 10);
+
+        String text = result.getExtractedText();
+        assertTrue(text, text.contains("payee 1\t"));
+        assertTrue(text, text.contains("payee 50\t"));
+        TableData table = result.getTables()[0];
+        assertArrayEquals(new String[] { "payee", "amount" }, table.getHeaders());
+        // The header is one of the ten rows kept
+        assertEquals(9, table.getRowCount());
+        assertEquals("payee 9", table.getCell(8, 0));
+        assertEquals("41", result.getMetadata().get("table-rows-omitted"));
+    }
+
+    @Test
+    public void keepsWholeTablesUnderTheCap() throws Exception {
+        byte[] workbook = TestDocuments.xlsx("Withholding", rows(50));
+
+        DocumentExtractionResult result = XlsxStreamReader.extract(workbook, "wht.xlsx",
+                ExtractionMemoryBudget.shared(), 1000);
+
+        assertEquals(50, result.getTables()[0].getRowCount());
+        assertNull(result.getMetadata().get("table-rows-omitted"));
+    }
+
+    @Test
+    public void sharedAndInlineStringsReadTheSame() throws Exception {
+        byte[] shared;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            shared = write(fillLabels(workbook));
+        }
+        byte[] inline;
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook()) {
+            inline = write(fillLabels(workbook));
+            workbook.dispose();
+        }
+        // Make sure each fixture really uses the cell type under test
+        assertTrue(sheetXml(shared).contains("t=\"s\""));
+        assertTrue(sheetXml(inline).contains("t=\"inlineStr\""));
+
+        for (byte[] workbook : new byte[][] { shared, inline }) {
+            SpreadsheetColumnBatch batch = batches(workbook).get(0);
+            SpreadsheetColumn labels = batch.getColumn(0);
+            assertEquals(SpreadsheetColumn.ValueType.TEXT, labels.getType(0));
+            assertEquals("Tax year", labels.getText(0));
+            assertEquals("Stamp duty \u2013 leases", labels.getText(1));
+            // The repeated label is one shared string, and still reads back on every row
+            assertEquals("Tax year", labels.getText(2));
+            assertEquals("2024/25", batch.getColumn(1).getText(0));
+            assertTrue(batch.getColumn(1).isEmpty(1));
+        }
+    }
+
+    @Test
+    public void dateStyledCellsComeOutAsDates() throws Exception {
+        byte[] workbook;
+        try (XSSFWorkbook xssf = new XSSFWorkbook()) {
+            CellStyle day = dateStyle(xssf, "yyyy-mm-dd");
+            CellStyle stamp = dateStyle(xssf, "dd/mm/yyyy hh:mm");
+            Row row = xssf.createSheet("Dates").createRow(0);
+            row.createCell(0).setCellValue(LocalDate.of(2024, 4, 1));
+            row.getCell(0).setCellStyle(day);
+            row.createCell(1).setCellValue(LocalDateTime.of(2025, 3, 31, 13, 30));
+            row.getCell(1).setCellStyle(stamp);
+            // Same serial number without a date format stays a number
+            row.createCell(2).setCellValue(45383);
+            row.createCell(3).setCellValue(1234.5);
+            workbook = write(xssf);
+        }
+
+        SpreadsheetColumn[] columns = batches(workbook).get(0).getColumns();
+
+        assertEquals(SpreadsheetColumn.ValueType.DATE, columns[0].getType(0));
+        assertEquals("2024-04-01", columns[0].getText(0));
+        assertEquals(45383.0, columns[0].getNumber(0), 0);
+        assertEquals(LocalDateTime.of(2025, 3, 31, 13, 30), columns[1].getDate(0));
+        assertEquals("2025-03-31T13:30", columns[1].getText(0));
+        assertEquals(SpreadsheetColumn.ValueType.NUMBER, columns[2].getType(0));
+        assertNull(columns[2].getDate(0));
+        assertEquals("1234.5", columns[3].getText(0));
+    }
+
+    @Test
+    public void date1904WorkbooksShiftTheSerialEpoch() throws Exception {
+        byte[] workbook;
+        try (XSSFWorkbook xssf = new XSSFWorkbook()) {
+            xssf.getCTWorkbook().getWorkbookPr().setDate1904(true);
+            Row row = xssf.createSheet("Dates").createRow(0);
+            // 2024-04-01 counted from 1904-01-01 (it would be 45383 from 1900)
+            row.createCell(0).setCellValue(43921);
+            row.getCell(0).setCellStyle(dateStyle(xssf, "yyyy-mm-dd"));
+            workbook = write(xssf);
+        }
+
+        SpreadsheetColumn column = batches(workbook).get(0).getColumn(0);
+
+        assertEquals(SpreadsheetColumn.ValueType.DATE, column.getType(0));
+        assertEquals("2024-04-01", column.getText(0));
+    }
+
+    @Test
+    public void formulasReadTheirCachedResults() throws Exception {
+        byte[] workbook;
+        try (XSSFWorkbook xssf = new XSSFWorkbook()) {
+            Row row = xssf.createSheet("Computed").createRow(0);
+            row.createCell(0).setCellValue(1_200_000);
+            row.createCell(1).setCellFormula("A1*0.06");
+            row.createCell(2).setCellFormula("CONCATENATE(\"Rs. \",TEXT(A1,\"#,##0\"))");
+            row.createCell(3).setCellFormula("A1>1000000");
+            row.createCell(4).setCellFormula("A1/0");
+            xssf.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook = write(xssf);
+        }
+        assertTrue(sheetXml(workbook).contains("t=\"str\""));
+
+        SpreadsheetColumn[] columns = batches(workbook).get(0).getColumns();
+
+        assertEquals(SpreadsheetColumn.ValueType.NUMBER, columns[1].getType(0));
+        assertEquals(72_000, columns[1].getNumber(0), 1e-9);
+        assertEquals(SpreadsheetColumn.ValueType.TEXT, columns[2].getType(0));
+        assertEquals("Rs. 1,200,000", columns[2].getText(0));
+        assertEquals(SpreadsheetColumn.ValueType.BOOLEAN, columns[3].getType(0));
+        assertTrue(columns[3].getBoolean(0));
+        assertEquals(SpreadsheetColumn.ValueType.ERROR, columns[4].getType(0));
+        assertEquals("#DIV/0!", columns[4].getText(0));
+    }
+
+    @Test
+    public void readsEverySheetInWorkbookOrder() throws Exception {
+        byte[] workbook;
+        try (XSSFWorkbook xssf = new XSSFWorkbook()) {
+            Sheet employers = xssf.createSheet("Employers");
+            employers.createRow(0).createCell(0).setCellValue("employer");
+            employers.createRow(1).createCell(0).setCellValue("Ceylon Tea Ltd");
+            xssf.createSheet("Notes");
+            Sheet rates = xssf.createSheet("Rates");
+            rates.createRow(4).createCell(2).setCellValue(0.06);
+            workbook = write(xssf);
+        }
+
+        List<SpreadsheetColumnBatch> batches = batches(workbook);
+
+        assertEquals(3, batches.size());
+        assertEquals("Employers", batches.get(0).getSheetName());
+        assertEquals(2, batches.get(0).getRowCount());
+        assertEquals("Notes", batches.get(1).getSheetName());
+        assertEquals(0, batches.get(1).getRowCount());
+        assertEquals(2, batches.get(2).getSheetIndex());
+        assertEquals(4, batches.get(2).getRowNumber(0));
+        assertEquals("0.06", batches.get(2).getColumn(2).getText(0));
+        for (SpreadsheetColumnBatch batch : batches) {
+            assertTrue(batch.isLastInSheet());
+        }
+
+        DocumentExtractionResult result = XlsxStreamReader.extract(workbook, "returns.xlsx",
+                ExtractionMemoryBudget.shared());
+        String text = result.getExtractedText();
+        assertTrue(text, text.indexOf("Employers\n") < text.indexOf("Rates\n"));
+        assertEquals("2", result.getMetadata().get("sheet-count"));
+        assertEquals("Rates", result.getTables()[1].getTableTitle());
+        assertFalse(text.contains("Notes\n\t"));
+    }
+
+    private static Workbook fillLabels(Workbook workbook) {
+        Sheet sheet = workbook.createSheet("Labels");
+        Row first = sheet.createRow(0);
+        first.createCell(0).setCellValue("Tax year");
+        first.createCell(1).setCellValue("2024/25");
+        sheet.createRow(1).createCell(0).setCellValue("Stamp duty \u2013 leases");
+        sheet.createRow(2).createCell(0).setCellValue("Tax year");
+        return workbook;
+    }
+
+    private static CellStyle dateStyle(XSSFWorkbook workbook, String format) {
+        CellStyle style = workbook.createCellStyle();
+        style.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat(format));
+        return style;
+    }
+
+    private static byte[] write(Workbook workbook) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+
+    private static List<SpreadsheetColumnBatch> batches(byte[] workbook) throws IOException {
+        List<SpreadsheetColumnBatch> batches = new ArrayList<>();
+        XlsxStreamReader.read(workbook, XlsxStreamReader.DEFAULT_BATCH_ROWS, batches::add);
+        return batches;
+    }
+
+    private static String sheetXml(byte[] workbook) throws IOException {
+        // SXSSF writes stored entries with data descriptors, which java.util.zip cannot stream
+        try (ZipArchiveInputStream zip = new ZipArchiveInputStream(new ByteArrayInputStream(workbook), "UTF-8",
+                true, true)) {
+            for (ZipArchiveEntry entry; (entry = zip.getNextZipEntry()) != null;) {
+                if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+                    return new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new AssertionError("no first worksheet");
+    }
+
+    private static Object[][] rows(int dataRows) {
+        Object[][] rows = new Object[dataRows + 1][];
+        rows[0] = new Object[] { "payee", "amount" };
+        for (int i = 1; i <= dataRows; i++) {
+            rows[i] = new Object[] { "payee " + i, i * 1000 };
+        }
+        return rows;
+    }
+}
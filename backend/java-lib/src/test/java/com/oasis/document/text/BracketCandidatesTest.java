@@ -0,0 +1,83 @@
+package com.oasis.document.text;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BracketCandidatesTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void progressiveTablesBecomeContiguousBrackets() {
+        assertEquals(List.of("0..1200000 @ 6", "1200000..1700000 @ 12", "1700000..2200000 @ 18",
+                "2200000.. @ 36"), brackets("On the first Rs. 1,200,000 of taxable income 6%\n"
+                        + "On the next Rs. 500,000 12%\n"
+                        + "On the next Rs. 500,000 18%\n"
+                        + "On the balance 36%"));
+    }
+
+    @Test
+    public void rangesTakeTheBareUpperBoundAfterAnAmount() {
+        assertEquals(List.of("1000001..2000000 @ 12", "1000001..2000000 @ 12", "1000001..2000000 @ 12",
+                "1000001..2000000 @ 12"), brackets("Rs. 1,000,001 - 2,000,000 at 12%\n"
+                        + "Rs. 1,000,001 to 2,000,000 12%\n"
+                        + "Rs. 1,000,001 - Rs. 2,000,000 at 12%\n"
+                        + "1,000,001 \u2013 2,000,000 12%"));
+    }
+
+    @Test
+    public void boundsFromUpToAndExceeding() {
+        assertEquals(List.of("0..500000 @ 0", "500000..1000000 @ 6", "1000000.. @ 12"), brackets(
+                "Income up to Rs. 500,000 is taxed at 0%\n"
+                        + "Exceeding Rs. 500,000 but not exceeding Rs. 1,000,000: 6%\n"
+                        + "Exceeding Rs. 1,000,000 12%"));
+    }
+
+    @Test
+    public void ignoresListNumberingSectionsAndLinesWithoutARate() {
+        // Bare numbers under 1,000 are numbering, and "/-" after an amount is not a range
+        assertEquals(List.of("..250000 @ 10", "5000.. @ 5"), brackets("Schedule 3 of section 14\n"
+                + "(2) 250,000/- 10%\n"
+                + "3. Interest over 5,000 in the year at 5 per cent is withheld by 2 banks\n"
+                + "Rs. 1,000,000 with no rate"));
+    }
+
+    @Test
+    public void parsesBracketsJsonForBallerina() throws Exception {
+        JsonNode json = MAPPER.readTree(BracketCandidates.parseBracketsJson(
+                "First Rs. 500,000 6%\nRs. 500,001 - 1,000,000 at 12%"));
+
+        assertEquals(2, json.size());
+        assertEquals(0, json.get(0).get("minIncome").decimalValue().signum());
+        assertEquals(1_000_000, json.get(1).get("maxIncome").asLong());
+        assertEquals(12, json.get(1).get("ratePercent").asInt());
+        assertTrue(json.get(1).get("fixedAmount").isNull());
+        assertEquals(2, json.get(1).get("bracketOrder").asInt());
+        assertEquals("Rs. 500,001 - 1,000,000 at 12%", json.get(1).get("sourceLine").asText());
+    }
+
+    private static List<String> brackets(String text) {
+        TaxTokenBuffer tokens = new TaxTokenBuffer();
+        TaxTextLexer.lex(text, tokens);
+        BracketCandidates candidates = new BracketCandidates();
+        candidates.assemble(text, tokens);
+
+        List<String> brackets = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            brackets.add((candidates.hasMinimum(i) ? units(candidates.minimum(i)) : "") + ".."
+                    + (candidates.hasMaximum(i) ? units(candidates.maximum(i)) : "") + " @ "
+                    + candidates.ratePercent(i).stripTrailingZeros().toPlainString());
+        }
+        return brackets;
+    }
+
+    private static String units(long value) {
+        return TaxTokenBuffer.toDecimal(value).stripTrailingZeros().toPlainString();
+    }
+}
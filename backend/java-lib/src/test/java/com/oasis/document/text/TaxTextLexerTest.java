@@ -0,0 +1,76 @@
+package com.oasis.document.text;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TaxTextLexerTest {
+
+    @Test
+    public void readsAmountsWithCurrencyMarkersAndMultipliers() {
+        TaxTokenBuffer tokens = lex("Rs. 1,200,000 and LKR 500,000/- or Rs 1.2 million, 12,00,000/= and 2 lakhs");
+
+        assertEquals(List.of("AMOUNT 1200000", "AMOUNT 500000", "AMOUNT 1200000", "AMOUNT 1200000",
+                "NUMBER 200000"), describe(tokens));
+        assertEquals("Rs. 1,200,000", text("Rs. 1,200,000 and", tokens, 0));
+        assertEquals(0, new BigDecimal("1200000").compareTo(tokens.decimalValue(0)));
+    }
+
+    @Test
+    public void readsSinhalaAndTamilRupees() {
+        assertEquals(List.of("AMOUNT 500000", "AMOUNT 250000"),
+                describe(lex("\u0DBB\u0DD4. 500,000 \u0BB0\u0BC2. 250,000")));
+    }
+
+    @Test
+    public void readsPercentagesInEveryForm() {
+        assertEquals(List.of("PERCENT 12", "PERCENT 12.5", "PERCENT 6", "PERCENT 6", "PERCENT 3"),
+                describe(lex("12% then 12.5 % then 6 per cent and 6 per centum or 3 percent")));
+    }
+
+    @Test
+    public void readsBoundsRangesAndProgressiveMarkers() {
+        assertEquals(List.of("UP_TO", "NUMBER 1000", "UP_TO", "UP_TO", "UP_TO", "UP_TO", "UP_TO"),
+                describe(lex("up to 1000, not exceeding, not more than, less than, below, <=")));
+        assertEquals(List.of("EXCEEDING", "EXCEEDING", "EXCEEDING", "EXCEEDING", "EXCEEDING", "EXCEEDING",
+                "EXCEEDING"), describe(lex("exceeding over above in excess of more than not less than >")));
+        assertEquals(List.of("NUMBER 1000", "RANGE", "NUMBER 2000", "NUMBER 3000", "RANGE", "NUMBER 4000",
+                "NUMBER 5000", "RANGE", "NUMBER 6000"), describe(lex("1000 - 2000, 3000 to 4000, 5000 \u2013 6000")));
+        assertEquals(List.of("FIRST", "NEXT", "BALANCE", "BALANCE", "NEWLINE"),
+                describe(lex("first next balance remainder\n")));
+    }
+
+    @Test
+    public void skipsDatesYearsSectionNumbersAndWordHyphens() {
+        // A hyphen inside a word is not a range, and "to" only follows a value
+        assertEquals(List.of(), describe(lex("On 25.03.2024 for 2023/2024 under 2.1.3, a non-resident went to")));
+    }
+
+    private static TaxTokenBuffer lex(String text) {
+        TaxTokenBuffer tokens = new TaxTokenBuffer();
+        TaxTextLexer.lex(text, tokens);
+        return tokens;
+    }
+
+    private static String text(String source, TaxTokenBuffer tokens, int index) {
+        return source.substring(tokens.start(index), tokens.end(index));
+    }
+
+    private static List<String> describe(TaxTokenBuffer tokens) {
+        String[] names = { "", "AMOUNT", "NUMBER", "PERCENT", "UP_TO", "EXCEEDING", "RANGE", "FIRST", "NEXT",
+                "BALANCE", "NEWLINE" };
+        List<String> described = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            int type = tokens.type(i);
+            boolean valued = type == TaxTextLexer.AMOUNT || type == TaxTextLexer.NUMBER
+                    || type == TaxTextLexer.PERCENT;
+            described.add(valued ? names[type] + " " + tokens.decimalValue(i).stripTrailingZeros().toPlainString()
+                    : names[type]);
+        }
+        return described;
+    }
+}
@@ -0,0 +1,177 @@
+package com.oasis.document.text;
+
+import com.oasis.document.extractor.DocumentExtractionResult;
+import com.oasis.document.extractor.UnifiedDocumentExtractor;
+import com.oasis.ingestion.ParagraphChunker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Token, chunk and character reduction of {@link TextNormalizer} on a corpus
+ *
+ * Each document is extracted with {@link UnifiedDocumentExtractor}, chunked
+ * before and after normalisation with the {@link ParagraphChunker} rules, and
+ * the offset map is checked: every ASCII letter or digit of the output must
+ * map back to the same character of the extracted text. Tokens are estimated
+ * as a subword tokenizer would split the text (letter runs of four
+ * characters, digit runs of three, one per symbol, newline and extra space
+ * run), since the tokenizer service is not available offline.
+ *
+ * Without a directory the corpus is synthetic: the gazette-style PDFs of
+ * {@link TextNormalizerTest}, with running headers, page numbers and
+ * hyphenated line breaks, and Sinhala and Tamil circulars with decomposed
+ * vowel signs and irregular spacing.
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code TextNormalizationReport [corpusDir]}
+ */
+public class TextNormalizationReport {
+    private static final int CHUNK_TOKENS = 512;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, byte[]> corpus = args.length > 0 ? readCorpus(Paths.get(args[0])) : syntheticCorpus();
+        ParagraphChunker chunker = new ParagraphChunker(TextNormalizationReport::estimateTokens, CHUNK_TOKENS);
+        TextNormalizer normalizer = TextNormalizer.shared();
+
+        System.out.printf("%-22s %5s %17s %17s %11s %6s %6s %5s %7s%n", "Document", "pages", "chars",
+                "tokens", "chunks", "lines-", "dehyph", "nfc", "ms");
+        long totalTokensBefore = 0;
+        long totalTokensAfter = 0;
+        long totalChunksBefore = 0;
+        long totalChunksAfter = 0;
+        int offsetMismatches = 0;
+        for (Map.Entry<String, byte[]> document : corpus.entrySet()) {
+            DocumentExtractionResult result = UnifiedDocumentExtractor.extractContent(document.getValue(),
+                    document.getKey());
+            if (!result.isExtractionSuccessful()) {
+                System.out.printf("%-22s extraction failed: %s%n", document.getKey(), result.getErrorMessage());
+                continue;
+            }
+            String original = result.getExtractedText();
+            NormalizedText normalized = normalizer.normalize(result);
+
+            // Best of several runs, so class loading and JIT are not measured
+            long bestNanos = Long.MAX_VALUE;
+            for (int run = 0; run < 30; run++) {
+                long start = System.nanoTime();
+                normalizer.normalize(original, normalized.getPageCount());
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+
+            String text = normalized.getText();
+            offsetMismatches += TextNormalizerTest.offsetMismatches(original, normalized);
+            if (!Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+                System.out.printf("%-22s output is not NFC%n", document.getKey());
+            }
+
+            int tokensBefore = estimateTokens(original);
+            int tokensAfter = estimateTokens(text);
+            int chunksBefore = chunker.chunk(document.getKey(), original).size();
+            int chunksAfter = chunker.chunk(document.getKey(), text).size();
+            totalTokensBefore += tokensBefore;
+            totalTokensAfter += tokensAfter;
+            totalChunksBefore += chunksBefore;
+            totalChunksAfter += chunksAfter;
+            System.out.printf("%-22s %5d %7d -> %6d %7d -> %6d %4d -> %3d %6d %6d %5d %7.2f%n", document.getKey(),
+                    normalized.getPageCount(), original.length(), text.length(), tokensBefore, tokensAfter,
+                    chunksBefore, chunksAfter, normalized.getRemovedLineCount(), normalized.getDehyphenationCount(),
+                    normalized.getNfcRewriteCount(), bestNanos / 1e6);
+        }
+        System.out.printf("%nTokens: %d -> %d (%.1f%% fewer)%n", totalTokensBefore, totalTokensAfter,
+                100.0 * (totalTokensBefore - totalTokensAfter) / Math.max(1, totalTokensBefore));
+        System.out.printf("Chunks: %d -> %d (%.1f%% fewer)%n", totalChunksBefore, totalChunksAfter,
+                100.0 * (totalChunksBefore - totalChunksAfter) / Math.max(1, totalChunksBefore));
+        System.out.printf("Offset map mismatches: %d%n", offsetMismatches);
+        if (offsetMismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Subword token estimate; see the class comment
+     */
+    static int estimateTokens(String text) {
+        int tokens = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i;
+            if (Character.isDigit(c)) {
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 2) / 3;
+            } else if (isWordChar(c)) {
+                while (i < length && isWordChar(text.charAt(i))) {
+                    i++;
+                }
+                tokens += (i - start + 3) / 4;
+            } else if (c == ' ' || c == '\t' || c == '\u00A0') {
+                while (i < length && (text.charAt(i) == ' ' || text.charAt(i) == '\t'
+                        || text.charAt(i) == '\u00A0')) {
+                    i++;
+                }
+                // A single space merges into the next token
+                tokens += i - start > 1 ? 1 : 0;
+            } else {
+                tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        int type = Character.getType(c);
+        return Character.isLetter(c) || type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK || c == '\u200C' || c == '\u200D';
+    }
+
+    private static Map<String, byte[]> readCorpus(Path directory) throws IOException {
+        Map<String, byte[]> corpus = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                corpus.put(file.getFileName().toString(), Files.readAllBytes(file));
+            }
+        }
+        return corpus;
+    }
+
+    private static Map<String, byte[]> syntheticCorpus() throws IOException {
+        Map<String, byte[]> corpus = new TreeMap<>();
+        corpus.put("gazette-8p.pdf", TextNormalizerTest.gazette(8, 1));
+        corpus.put("gazette-40p.pdf", TextNormalizerTest.gazette(40, 2));
+        corpus.put("act-120p.pdf", TextNormalizerTest.gazette(120, 3));
+
+        // Vowel signs typed as two code points, as legacy Sinhala and Tamil input methods produce
+        String sinhala = "\u0D86\u0DAF\u0DCF\u0DBA\u0DB8\u0DCA \u0DB6\u0DAF\u0DD4 \u0DB4\u0DB1\u0DAD \u0DBA\u0DA7\u0DAD"
+                + "\u0DDA   \u0DC3\u0DD1\u0DB8 \u0DB4\u0DD4\u0DAF\u0DCA\u0D9C\u0DBD\u0DBA\u0DD9\u0D9A\u0DD4\u0DB8 "
+                + "\u0DAD\u0D9A\u0DCA\u0DC3\u0DDA\u0DBB\u0DD4 \u0DC0\u0DBB\u0DCA\u0DC2\u0DBA \u0DC3\u0DB3\u0DC4\u0DCF"
+                + "\u00A0\u0D86\u0DAF\u0DCF\u0DBA\u0DB8\u0DCA \u0DC0\u0DCF\u0DBB\u0DCA\u0DAD\u0DCF\u0DC0\u0D9A\u0DCA "
+                + "\u0D89\u0DAF\u0DD2\u0DBB\u0DD2\u0DB4\u0DAD\u0DCA \u0D9A\u0DC5 \u0DBA\u0DD4\u0DAD\u0DD4\u0DBA. "
+                + "\u0D9C\u0DD9\u0DC0\u0DD3\u0DB8\u0DCA \u0DD9\u0DCF\u0D85\u0DC0\u0DC3\u0DB1\u0DCA \u0DAF\u0DD2\u0DB1"
+                + "\u0DBA  \u0DBD\u0DB6\u0DB1 \u0DB8\u0DC3 30.\n\n\n";
+        String tamil = "\u0BB5\u0BB0\u0BC1\u0BAE\u0BBE\u0BA9 \u0BB5\u0BB0\u0BBF\u0B9A\u0BCD \u0B9A\u0B9F\u0BCD\u0B9F"
+                + "\u0BA4\u0BCD\u0BA4\u0BBF\u0BA9\u0BCD \u0B95\u0BC0\u0BB4\u0BCD  \u0B92\u0BB5\u0BCD\u0BB5\u0BCA"
+                + "\u0BB0\u0BC1 \u0BA8\u0BAA\u0BB0\u0BC1\u0BAE\u0BCD \u0BAE\u0BA4\u0BBF\u0BAA\u0BCD\u0BAA\u0BC0\u0B9F"
+                + "\u0BCD\u0B9F\u0BC1 \u0B86\u0BA3\u0BCD\u0B9F\u0BC1\u0B95\u0BCD\u0B95\u0BBE\u0BA9 \u0BB5\u0BB0\u0BC1"
+                + "\u0BAE\u0BBE\u0BA9 \u0B85\u0BB1\u0BBF\u0B95\u0BCD\u0B95\u0BC8\u0BAF\u0BC8 \u0B9A\u0BAE\u0BB0\u0BCD"
+                + "\u0BAA\u0BCD\u0BAA\u0BBF\u0B95\u0BCD\u0B95 \u0BB5\u0BC7\u0BA3\u0BCD\u0B9F\u0BC1\u0BAE\u0BCD. "
+                + "\u0BA4\u0BCA\u0B95\u0BC6\u0BBE\u0B95\u0BC8\u00A0\u00A0\u0BB0\u0BC2. 500,000.\n\n\n";
+        corpus.put("circular-si.txt", Normalizer.normalize(sinhala.repeat(60), Normalizer.Form.NFD)
+                .getBytes(StandardCharsets.UTF_8));
+        corpus.put("circular-ta.txt", Normalizer.normalize(tamil.repeat(60), Normalizer.Form.NFD)
+                .getBytes(StandardCharsets.UTF_8));
+        return corpus;
+    }
+}
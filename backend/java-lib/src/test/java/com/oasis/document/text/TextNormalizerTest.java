@@ -0,0 +1,167 @@
+package com.oasis.document.text;
+
+import com.oasis.document.extractor.DocumentExtractionResult;
+import com.oasis.document.extractor.UnifiedDocumentExtractor;
+import com.oasis.ingestion.ParagraphChunker;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TextNormalizerTest {
+
+    @Test
+    public void removesGazetteFurnitureAndKeepsTheOffsetMap() throws Exception {
+        DocumentExtractionResult result = UnifiedDocumentExtractor.extractContent(gazette(40, 2), "gazette.pdf");
+        String original = result.getExtractedText();
+
+        NormalizedText normalized = TextNormalizer.shared().normalize(result);
+
+        String text = normalized.getText();
+        assertEquals(40, normalized.getPageCount());
+        assertTrue(original.contains("GAZETTE EXTRAORDINARY"));
+        assertFalse(text.contains("GAZETTE EXTRAORDINARY"));
+        assertFalse(text.contains("Inland Revenue (Amendment) Act, No. 45 of 2022"));
+        assertTrue(normalized.getRemovedLineCount() >= 60);
+        assertTrue(normalized.getDehyphenationCount() > 0);
+        assertEquals(0, offsetMismatches(original, normalized));
+
+        ParagraphChunker chunker = new ParagraphChunker(chunk -> (chunk.length() + 3) / 4, 512);
+        assertTrue(chunker.chunk("g", text).size() < chunker.chunk("g", original).size());
+    }
+
+    @Test
+    public void composesDecomposedSinhalaAndTamil() {
+        // Vowel signs typed as two code points, as legacy Sinhala and Tamil input methods produce
+        String sinhala = "\u0D86\u0DAF\u0DCF\u0DBA\u0DB8\u0DCA \u0DB6\u0DAF\u0DD4 \u0DB4\u0DB1\u0DAD   "
+                + "\u0D9C\u0DD9\u0DC0\u0DD3\u0DB8\u0DCA \u0DD9\u0DCF\u0D85\u0DC0\u0DC3\u0DB1\u0DCA "
+                + "\u0DAF\u0DD2\u0DB1\u0DBA  \u0DBD\u0DB6\u0DB1 \u0DB8\u0DC3 30.\n\n\n";
+        String tamil = "\u0BB5\u0BB0\u0BC1\u0BAE\u0BBE\u0BA9 \u0BB5\u0BB0\u0BBF\u0B9A\u0BCD  "
+                + "\u0B92\u0BB5\u0BCD\u0BB5\u0BCA\u0BB0\u0BC1 \u0BA8\u0BAA\u0BB0\u0BC1\u0BAE\u0BCD "
+                + "\u0BA4\u0BCA\u0B95\u0BC6\u0BBE\u0B95\u0BC8\u00A0\u00A0\u0BB0\u0BC2. 500,000.\n\n\n";
+        String original = Normalizer.normalize((sinhala + tamil).repeat(20), Normalizer.Form.NFD);
+
+        NormalizedText normalized = TextNormalizer.shared().normalize(original, 1);
+
+        String text = normalized.getText();
+        assertTrue(Normalizer.isNormalized(text, Normalizer.Form.NFC));
+        assertTrue(normalized.getNfcRewriteCount() > 0);
+        assertTrue(text.length() < original.length());
+        assertEquals(0, offsetMismatches(original, normalized));
+        // Only the trailing blank lines, which were dropped, follow the end of the last character
+        assertTrue(original.substring(normalized.toOriginalEnd(text.length())).isBlank());
+    }
+
+    @Test
+    public void keepsTheHyphenOfCompoundsBrokenAcrossLines() {
+        String original = "A non-\nresident person and a self-\nassessment by a tax-\nfree trust. The assess-\n"
+                + "ment of inter-\nest, as pre-\nscribed in sub-\nsection 2, needs co-\noperation.\n\n"
+                + "Tax-free allowances, interest and the prescribed subsection.";
+
+        NormalizedText normalized = TextNormalizer.shared().normalize(original);
+
+        String text = normalized.getText();
+        // Known prefixes keep the hyphen, and so does a compound the document writes on one line
+        assertTrue(text, text.startsWith("A non-resident person and a self-assessment by a tax-free trust."));
+        // Ordinary words are joined, even after a known prefix when the joined word is used elsewhere
+        assertTrue(text,
+                text.contains("The assessment of interest, as prescribed in subsection 2, needs co-operation."));
+        assertEquals(4, normalized.getDehyphenationCount());
+        assertEquals(0, offsetMismatches(original, normalized));
+    }
+
+    // Every ASCII letter or digit of the output must map back to the same character
+    static int offsetMismatches(String original, NormalizedText normalized) {
+        String text = normalized.getText();
+        int mismatches = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && Character.isLetterOrDigit(c) && original.charAt(normalized.toOriginalOffset(i)) != c) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Multi-page gazette with a running header, an act title on odd pages,
+     * a page number footer and body text wrapped with hyphenation
+     */
+    static byte[] gazette(int pages, long seed) throws IOException {
+        String[] words = { "assessable", "income", "employment", "person", "shall", "furnish", "return",
+                "year", "of", "assessment", "the", "Commissioner-General", "withholding", "tax", "deducted",
+                "from", "interest", "dividend", "resident", "partnership", "trust", "exempt", "amount",
+                "exceeding", "rupees", "provisions", "subsection", "paragraph", "notwithstanding",
+                "quarterly", "instalment", "payable", "on", "or", "before", "relevant", "qualifying",
+                "payment", "deemed", "to", "be", "in", "respect", "any", "such" };
+        Random random = new Random(seed);
+        try (PDDocument document = new PDDocument()) {
+            int section = 1;
+            for (int p = 1; p <= pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.setFont(PDType1Font.HELVETICA, 9);
+                    text(content, 50, 760, (p % 2 == 0 ? p + "  " : "") + "PART I : SEC. (I) - GAZETTE "
+                            + "EXTRAORDINARY OF THE DEMOCRATIC SOCIALIST REPUBLIC OF SRI LANKA - 25.03.2024"
+                            + (p % 2 == 1 ? "  " + p : ""));
+                    if (p % 2 == 1) {
+                        text(content, 50, 748, "Inland Revenue (Amendment) Act, No. 45 of 2022");
+                    }
+                    float y = 720;
+                    StringBuilder line = new StringBuilder();
+                    while (y > 80) {
+                        if (random.nextInt(9) == 0) {
+                            y -= 8;
+                            text(content, 50, y, (section++) + ". (1) Section " + (random.nextInt(200) + 1)
+                                    + " of the principal enactment is hereby amended as follows:");
+                            y -= 14;
+                            continue;
+                        }
+                        String word = words[random.nextInt(words.length)];
+                        if (line.length() + word.length() + 1 > 95) {
+                            if (word.length() >= 8 && random.nextBoolean()) {
+                                int cut = word.length() / 2;
+                                text(content, 50, y, line + " " + word.substring(0, cut) + "-");
+                                line.setLength(0);
+                                line.append(word.substring(cut));
+                            } else {
+                                text(content, 50, y, line.toString());
+                                line.setLength(0);
+                                line.append(word);
+                            }
+                            y -= 12;
+                        } else {
+                            line.append(line.length() == 0 ? "" : random.nextInt(12) == 0 ? "   " : " ")
+                                    .append(word);
+                        }
+                    }
+                    if (line.length() > 0) {
+                        text(content, 50, y, line.toString());
+                    }
+                    text(content, 290, 40, Integer.toString(p));
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static void text(PDPageContentStream content, float x, float y, String value) throws IOException {
+        content.beginText();
+        content.newLineAtOffset(x, y);
+        content.showText(value);
+        content.endText();
+    }
+}
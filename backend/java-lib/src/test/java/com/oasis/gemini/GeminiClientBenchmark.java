@@ -0,0 +1,149 @@
+package com.oasis.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedding throughput of {@link GeminiClient} against the one-call-per-item
+ * path, both driven by the same number of concurrent callers against
+ * {@link StubGeminiServer}
+ *
+ * The stub answers with a fixed latency plus a per-item cost, and returns 429
+ * once more than oasis.bench.stubCapacity requests are in flight. The
+ * one-call-per-item path mirrors the Ballerina service: one embedContent per
+ * text and a fixed one-second wait on 429. Embeddings returned by both paths
+ * are checked against the stub's deterministic vectors.
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code GeminiClientBenchmark [items] [callers] [dimensions]}
+ */
+public class GeminiClientBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int callers = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int dimensions = args.length > 2 ? Integer.parseInt(args[2]) : 768;
+        int capacity = Integer.getInteger("oasis.bench.stubCapacity", 8);
+        long latencyMillis = Long.getLong("oasis.bench.stubLatencyMillis", 40L);
+
+        try (StubGeminiServer stub = new StubGeminiServer(dimensions, capacity, latencyMillis)) {
+            stub.perItemCost = true;
+            List<String> texts = new ArrayList<>(items);
+            for (int i = 0; i < items; i++) {
+                texts.add("Section " + i + ": withholding tax on interest income at the rate of "
+                        + (i % 15) + " per centum");
+            }
+            System.out.printf("Stub: capacity=%d in flight, latency=%d ms + per-item cost, %d dimensions%n",
+                    capacity, latencyMillis, dimensions);
+            System.out.printf("Workload: %d texts from %d concurrent callers%n%n", items, callers);
+
+            // Warm up both paths so JIT and connection setup are not measured
+            runPerItem(stub, texts.subList(0, Math.min(items, 100)), callers);
+            try (GeminiClient client = stub.client(GeminiClient.Settings.defaults())) {
+                runCoalesced(client, stub, texts.subList(0, Math.min(items, 100)), callers);
+            }
+            stub.resetCounters();
+
+            long perItemStart = System.nanoTime();
+            runPerItem(stub, texts, callers);
+            double perItemSeconds = (System.nanoTime() - perItemStart) / 1e9;
+            long perItemRequests = stub.requests.sum();
+            long perItemThrottled = stub.throttled.sum();
+            stub.resetCounters();
+
+            try (GeminiClient client = stub.client(GeminiClient.Settings.defaults())) {
+                long coalescedStart = System.nanoTime();
+                runCoalesced(client, stub, texts, callers);
+                double coalescedSeconds = (System.nanoTime() - coalescedStart) / 1e9;
+
+                System.out.printf("%-22s %10s %10s %10s %10s%n", "Path", "items/s", "requests", "429s", "seconds");
+                System.out.printf("%-22s %10.1f %10d %10d %10.2f%n", "one call per item",
+                        items / perItemSeconds, perItemRequests, perItemThrottled, perItemSeconds);
+                System.out.printf("%-22s %10.1f %10d %10d %10.2f%n", "coalesced + AIMD",
+                        items / coalescedSeconds, stub.requests.sum(), stub.throttled.sum(), coalescedSeconds);
+                System.out.printf("%nSpeedup: %.1fx%n", perItemSeconds / coalescedSeconds);
+                System.out.println("Client metrics: " + client.getMetricsMap());
+            }
+        }
+    }
+
+    private static void runPerItem(StubGeminiServer stub, List<String> texts, int callers) throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        AtomicInteger next = new AtomicInteger();
+        runCallers(callers, () -> {
+            for (int i = next.getAndIncrement(); i < texts.size(); i = next.getAndIncrement()) {
+                String body = MAPPER.createObjectNode()
+                        .put("model", "models/" + GeminiClient.DEFAULT_EMBEDDING_MODEL)
+                        .put("taskType", "SEMANTIC_SIMILARITY")
+                        .set("content", MAPPER.createObjectNode().set("parts",
+                                MAPPER.createArrayNode().add(MAPPER.createObjectNode().put("text", texts.get(i)))))
+                        .toString();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/v1beta/models/"
+                                + GeminiClient.DEFAULT_EMBEDDING_MODEL + ":embedContent"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                while (true) {
+                    HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 429) {
+                        Thread.sleep(1000);
+                        continue;
+                    }
+                    JsonNode values = MAPPER.readTree(response.body()).path("embedding").path("values");
+                    float[] expected = stub.vector(texts.get(i));
+                    if (values.size() != expected.length || (float) values.get(0).asDouble() != expected[0]) {
+                        throw new IllegalStateException("Wrong embedding for text " + i);
+                    }
+                    break;
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void runCoalesced(GeminiClient client, StubGeminiServer stub, List<String> texts, int callers)
+            throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        runCallers(callers, () -> {
+            for (int i = next.getAndIncrement(); i < texts.size(); i = next.getAndIncrement()) {
+                float[] embedding = client.embed(texts.get(i));
+                float[] expected = stub.vector(texts.get(i));
+                for (int j = 0; j < expected.length; j++) {
+                    if (embedding.length != expected.length || embedding[j] != expected[j]) {
+                        throw new IllegalStateException("Wrong embedding for text " + i);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void runCallers(int callers, Callable<Void> body) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(pool.submit(body));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
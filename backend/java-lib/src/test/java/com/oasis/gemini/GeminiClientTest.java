@@ -0,0 +1,215 @@
+package com.oasis.gemini;
+
+import com.oasis.ingestion.IngestionChunk;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GeminiClientTest {
+
+    // A long window so every request in a test lands in the same merged batch
+    private static final GeminiClient.Settings ONE_BATCH = new GeminiClient.Settings(300, 100, 1, 4, 5000, 3);
+
+    @Test
+    public void coalescesConcurrentCallersIntoBatches() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(16, 4, 20);
+                GeminiClient client = stub.client(new GeminiClient.Settings(10, 100, 2, 8, 5000, 8))) {
+            List<String> texts = texts(400);
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService callers = Executors.newFixedThreadPool(16);
+            try {
+                List<Future<?>> workers = new ArrayList<>();
+                for (int c = 0; c < 16; c++) {
+                    workers.add(callers.submit(() -> {
+                        for (int i = next.getAndIncrement(); i < texts.size(); i = next.getAndIncrement()) {
+                            assertArrayEquals(stub.vector(texts.get(i)), client.embed(texts.get(i)), 0f);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } finally {
+                callers.shutdownNow();
+            }
+
+            assertEquals(400L, client.getEmbeddedItemCount());
+            assertTrue("expected merged calls, got " + client.getEmbeddingBatchCount(),
+                    client.getEmbeddingBatchCount() < 200);
+        }
+    }
+
+    @Test
+    public void rejectedTextFailsOnlyItsOwnCaller() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 8, 0); GeminiClient client = stub.client(ONE_BATCH)) {
+            List<String> texts = texts(9);
+            texts.set(5, "Section 5 " + StubGeminiServer.REJECT);
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (String text : texts) {
+                futures.add(client.embedAsync(text));
+            }
+
+            for (int i = 0; i < texts.size(); i++) {
+                if (i == 5) {
+                    assertEquals(400, statusOf(futures.get(i)));
+                } else {
+                    assertArrayEquals(stub.vector(texts.get(i)), futures.get(i).get(), 0f);
+                }
+            }
+            assertEquals(8L, client.getEmbeddedItemCount());
+            assertTrue((Long) client.getMetricsMap().get("splitBatches") > 0);
+        }
+    }
+
+    @Test
+    public void requestWideErrorsFailTheBatchWithoutSplitting() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 8, 0); GeminiClient client = stub.client(ONE_BATCH)) {
+            stub.statusOverride = 403;
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (String text : texts(6)) {
+                futures.add(client.embedAsync(text));
+            }
+
+            for (CompletableFuture<float[]> future : futures) {
+                assertEquals(403, statusOf(future));
+            }
+            assertEquals(1L, stub.requests.sum());
+            assertEquals(0L, client.getMetricsMap().get("splitBatches"));
+        }
+    }
+
+    @Test
+    public void anInvalidApiKeyFailsTheBatchWithoutSplitting() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 8, 0); GeminiClient client = stub.client(ONE_BATCH)) {
+            // What the API returns for a bad key: a 400 INVALID_ARGUMENT that names the key in its ErrorInfo
+            stub.statusOverride = 400;
+            stub.errorOverride = "{\"code\":400,\"message\":\"API key not valid.\",\"status\":\"INVALID_ARGUMENT\","
+                    + "\"details\":[{\"@type\":\"type.googleapis.com/google.rpc.ErrorInfo\","
+                    + "\"reason\":\"API_KEY_INVALID\",\"domain\":\"googleapis.com\"}]}";
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (String text : texts(50)) {
+                futures.add(client.embedAsync(text));
+            }
+
+            for (CompletableFuture<float[]> future : futures) {
+                assertEquals(400, statusOf(future));
+            }
+            assertEquals(1L, stub.requests.sum());
+            assertEquals(0L, client.getMetricsMap().get("splitBatches"));
+            try {
+                futures.get(0).get();
+            } catch (ExecutionException e) {
+                assertEquals("API_KEY_INVALID", ((GeminiException) e.getCause()).getReason());
+            }
+        }
+    }
+
+    @Test
+    public void splittingStopsAtTheSplitCap() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 8, 0); GeminiClient client = stub.client(ONE_BATCH)) {
+            List<CompletableFuture<float[]>> futures = new ArrayList<>();
+            for (String text : texts(100)) {
+                futures.add(client.embedAsync(text + " " + StubGeminiServer.REJECT));
+            }
+
+            for (CompletableFuture<float[]> future : futures) {
+                assertEquals(400, statusOf(future));
+            }
+            // The first call plus two per split, instead of 199 calls down to every single text
+            assertEquals(16L, client.getMetricsMap().get("splitBatches"));
+            assertEquals(33L, stub.requests.sum());
+        }
+    }
+
+    @Test
+    public void chunkEmbedderSkipsARejectedChunkAndEmbedsTheRest() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 8, 0); GeminiClient client = stub.client(ONE_BATCH)) {
+            List<IngestionChunk> chunks = new ArrayList<>();
+            List<String> texts = texts(6);
+            texts.set(2, "Section 2 " + StubGeminiServer.REJECT);
+            for (int i = 0; i < texts.size(); i++) {
+                chunks.add(new IngestionChunk("doc", i, texts.get(i), 0, 10, null));
+            }
+
+            client.chunkEmbedder().embed(chunks);
+
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i == 2) {
+                    assertNull(chunks.get(i).getEmbedding());
+                } else {
+                    assertArrayEquals(stub.vector(texts.get(i)), chunks.get(i).getEmbedding(), 0f);
+                }
+            }
+            assertEquals(1L, client.getMetricsMap().get("skippedItems"));
+        }
+    }
+
+    @Test
+    public void chunkEmbedderFailsThePageOnARequestWideError() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 8, 0); GeminiClient client = stub.client(ONE_BATCH)) {
+            stub.statusOverride = 403;
+            List<IngestionChunk> chunks = new ArrayList<>();
+            for (String text : texts(3)) {
+                chunks.add(new IngestionChunk("doc", chunks.size(), text, 0, 10, null));
+            }
+
+            try {
+                client.chunkEmbedder().embed(chunks);
+                fail("expected the page to fail");
+            } catch (GeminiException e) {
+                assertEquals(403, e.getStatusCode());
+            }
+            assertEquals(0L, client.getMetricsMap().get("skippedItems"));
+        }
+    }
+
+    @Test
+    public void retriesThrottledCallsUntilTheyFit() throws Exception {
+        try (StubGeminiServer stub = new StubGeminiServer(8, 1, 30);
+                GeminiClient client = stub.client(new GeminiClient.Settings(0, 1, 4, 4, 5000, 10))) {
+            List<String> texts = texts(12);
+
+            List<float[]> embeddings = client.embedBatch(texts);
+
+            for (int i = 0; i < texts.size(); i++) {
+                assertArrayEquals(stub.vector(texts.get(i)), embeddings.get(i), 0f);
+            }
+            assertTrue(stub.throttled.sum() > 0);
+            assertTrue(client.getThrottledCount() > 0);
+        }
+    }
+
+    private static int statusOf(CompletableFuture<float[]> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("expected the embedding to fail");
+            return 0;
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), e.getCause() instanceof GeminiException);
+            return ((GeminiException) e.getCause()).getStatusCode();
+        }
+    }
+
+    private static List<String> texts(int count) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add("Section " + i + ": withholding tax on interest income at the rate of " + (i % 15)
+                    + " per centum");
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,164 @@
+package com.oasis.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for generativelanguage.googleapis.com
+ *
+ * Answers embedContent, batchEmbedContents and generateContent after a fixed
+ * latency (plus a per-item cost when perItemCost is set), and returns 429
+ * once more than capacity requests are in flight, like a per-project quota.
+ * A batch holding a text that contains REJECT is answered with a 400
+ * INVALID_ARGUMENT, and every call is answered with statusOverride (and
+ * errorOverride as the error object, if set) when it is set.
+ */
+final class StubGeminiServer implements AutoCloseable {
+    static final String REJECT = "REJECT";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int dimensions;
+    private final Semaphore capacity;
+    private final long latencyMillis;
+    volatile int statusOverride;
+    volatile String errorOverride;
+    volatile boolean perItemCost;
+    final LongAdder requests = new LongAdder();
+    final LongAdder throttled = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    StubGeminiServer(int dimensions, int capacity, long latencyMillis) throws IOException {
+        this.dimensions = dimensions;
+        this.capacity = new Semaphore(capacity);
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        this.executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "gemini-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1beta/models/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    GeminiClient client(GeminiClient.Settings settings) {
+        return new GeminiClient(baseUrl(), "stub-key", GeminiClient.DEFAULT_EMBEDDING_MODEL,
+                GeminiClient.DEFAULT_TEXT_MODEL, settings);
+    }
+
+    void resetCounters() {
+        requests.reset();
+        throttled.reset();
+        rejected.reset();
+    }
+
+    /**
+     * Deterministic stand-in embedding, so results can be checked per text
+     */
+    float[] vector(String text) {
+        float[] vector = new float[dimensions];
+        int seed = text.hashCode();
+        for (int i = 0; i < dimensions; i++) {
+            seed = seed * 1103515245 + 12345;
+            vector[i] = (seed >>> 8) / (float) (1 << 24) - 0.5f;
+        }
+        return vector;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            if (statusOverride != 0) {
+                String error = errorOverride != null ? errorOverride : "{\"code\":" + statusOverride + "}";
+                respond(exchange, statusOverride, "{\"error\":" + error + "}");
+                return;
+            }
+            if (!capacity.tryAcquire()) {
+                throttled.increment();
+                respond(exchange, 429, "{\"error\":{\"code\":429,\"status\":\"RESOURCE_EXHAUSTED\"}}");
+                return;
+            }
+            try {
+                String path = exchange.getRequestURI().getPath();
+                if (path.endsWith(":batchEmbedContents")) {
+                    JsonNode items = request.path("requests");
+                    simulateWork(items.size());
+                    StringBuilder body = new StringBuilder("{\"embeddings\":[");
+                    for (int i = 0; i < items.size(); i++) {
+                        String text = items.get(i).path("content").path("parts").path(0).path("text").asText();
+                        if (text.contains(REJECT)) {
+                            rejected.increment();
+                            respond(exchange, 400, "{\"error\":{\"code\":400,\"status\":\"INVALID_ARGUMENT\"}}");
+                            return;
+                        }
+                        appendValues(body.append(i == 0 ? "" : ","), text);
+                    }
+                    respond(exchange, 200, body.append("]}").toString());
+                } else if (path.endsWith(":embedContent")) {
+                    simulateWork(1);
+                    String text = request.path("content").path("parts").path(0).path("text").asText();
+                    respond(exchange, 200, appendValues(new StringBuilder("{\"embedding\":"), text).append('}')
+                            .toString());
+                } else if (path.endsWith(":generateContent")) {
+                    simulateWork(1);
+                    respond(exchange, 200, "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"stub\"}]}}]}");
+                } else {
+                    respond(exchange, 404, "{}");
+                }
+            } finally {
+                capacity.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Batch calls amortise the round trip but, with perItemCost, still pay a little per item
+    private void simulateWork(int items) throws InterruptedException {
+        Thread.sleep(latencyMillis + (perItemCost ? items / 4 : 0));
+    }
+
+    private StringBuilder appendValues(StringBuilder body, String text) {
+        body.append("{\"values\":[");
+        float[] vector = vector(text);
+        for (int j = 0; j < vector.length; j++) {
+            body.append(j == 0 ? "" : ",").append(vector[j]);
+        }
+        return body.append("]}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.oasis.ingestion;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EmbeddingBackfillTest {
+    private static final AtomicInteger DATABASE_INDEX = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final EmbeddingBackfill.Target target = new EmbeddingBackfill.Target("document_chunks", "id",
+            "chunk_text", "embedding", "?", "embedding_generated_at = CURRENT_TIMESTAMP");
+    private String url;
+    private Connection keepAlive;
+    private Path checkpoint;
+
+    @Before
+    public void createTable() throws Exception {
+        url = "jdbc:h2:mem:backfill" + DATABASE_INDEX.incrementAndGet();
+        keepAlive = DriverManager.getConnection(url);
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE document_chunks (id VARCHAR(64) PRIMARY KEY, chunk_text VARCHAR(1000), "
+                    + "embedding VARCHAR(4000), embedding_generated_at TIMESTAMP)");
+        }
+        checkpoint = folder.getRoot().toPath().resolve("backfill.checkpoint.json");
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        keepAlive.close();
+    }
+
+    @Test
+    public void pagesThroughTextKeysInLexicographicOrder() throws Exception {
+        // chunk-10 sorts before chunk-9, so numeric order would skip or repeat rows at page boundaries
+        List<String> ids = insertRows(250, false);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        EmbeddingBackfill backfill = new EmbeddingBackfill(this::connect, target, chunks -> {
+            List<String> keys = new ArrayList<>();
+            for (IngestionChunk chunk : chunks) {
+                keys.add(chunk.getDocumentId());
+                chunk.setEmbedding(new float[] { chunk.getChunkText().length(), 1f });
+            }
+            batches.add(keys);
+            // Later pages finish first now and then, so the writer sees them out of order
+            Thread.sleep(keys.get(0).hashCode() & 7);
+        }, checkpoint, new EmbeddingBackfill.Settings(16, 4, 4, 0));
+
+        Map<String, Object> metrics = backfill.run();
+
+        List<String> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(sorted.get(sorted.size() - 1), backfill.getCheckpointKey());
+        assertEquals(250L, metrics.get("rowsRead"));
+        assertEquals(250L, metrics.get("rowsUpdated"));
+        assertEquals(250L, metrics.get("rowsCommitted"));
+        assertEquals(0L, metrics.get("rowsFailed"));
+
+        Set<String> seen = new TreeSet<>();
+        batches.sort((a, b) -> a.get(0).compareTo(b.get(0)));
+        List<String> visited = new ArrayList<>();
+        for (List<String> batch : batches) {
+            for (String key : batch) {
+                assertTrue("embedded twice: " + key, seen.add(key));
+            }
+            visited.addAll(batch);
+        }
+        assertEquals(sorted, visited);
+        assertEquals(0, countNullEmbeddings());
+        assertEquals(sorted.get(sorted.size() - 1), readCheckpoint().path("lastKey").asText());
+    }
+
+    @Test
+    public void countsAFailedPageAndSkipsItUntilTheCheckpointIsReset() throws Exception {
+        insertRows(100, true);
+        Set<String> poisoned = ConcurrentHashMap.newKeySet();
+        poisoned.add("chunk-0040");
+        IngestionStages.ChunkEmbedder embedder = chunks -> {
+            for (IngestionChunk chunk : chunks) {
+                if (poisoned.contains(chunk.getDocumentId())) {
+                    throw new IllegalStateException("embedding provider rejected the batch");
+                }
+            }
+            for (IngestionChunk chunk : chunks) {
+                chunk.setEmbedding(new float[] { 1f, 2f });
+            }
+        };
+        EmbeddingBackfill.Settings settings = new EmbeddingBackfill.Settings(10, 2, 2, 0);
+        EmbeddingBackfill backfill = new EmbeddingBackfill(this::connect, target, embedder, checkpoint, settings);
+
+        Map<String, Object> metrics = backfill.run();
+
+        assertEquals(100L, metrics.get("rowsRead"));
+        assertEquals(90L, metrics.get("rowsUpdated"));
+        assertEquals(10L, metrics.get("rowsFailed"));
+        assertEquals(10L, metrics.get("pagesWritten"));
+        // The checkpoint counts the page as passed, so a plain rerun leaves its rows alone
+        assertEquals(100L, metrics.get("rowsCommitted"));
+        assertEquals(10, countNullEmbeddings());
+        assertTrue(isNull("chunk-0040"));
+        assertFalse(isNull("chunk-0039"));
+
+        Map<String, Object> rerun = new EmbeddingBackfill(this::connect, target, embedder, checkpoint, settings).run();
+        assertEquals(0L, rerun.get("rowsRead"));
+        assertEquals(10, countNullEmbeddings());
+
+        poisoned.clear();
+        EmbeddingBackfill retry = new EmbeddingBackfill(this::connect, target, embedder, checkpoint, settings);
+        retry.resetCheckpoint();
+        Map<String, Object> retried = retry.run();
+        assertEquals(10L, retried.get("rowsRead"));
+        assertEquals(10L, retried.get("rowsUpdated"));
+        assertEquals(0L, retried.get("rowsFailed"));
+        assertEquals(0, countNullEmbeddings());
+    }
+
+    @Test
+    public void resumesAfterACrashBetweenTheCommitAndTheCheckpointMove() throws Exception {
+        insertRows(120, true);
+        ConcurrentHashMap<String, AtomicInteger> embedCalls = new ConcurrentHashMap<>();
+        IngestionStages.ChunkEmbedder embedder = chunks -> {
+            for (IngestionChunk chunk : chunks) {
+                embedCalls.computeIfAbsent(chunk.getDocumentId(), key -> new AtomicInteger()).incrementAndGet();
+                chunk.setEmbedding(new float[] { 3f, 4f });
+            }
+        };
+        // One worker keeps the pages in order, so the second commit is the second page
+        EmbeddingBackfill.Settings settings = new EmbeddingBackfill.Settings(20, 1, 1, 0);
+        AtomicInteger commits = new AtomicInteger();
+
+        EmbeddingBackfill crashing = new EmbeddingBackfill(() -> crashAfterCommit(connect(), commits, 2), target,
+                embedder, checkpoint, settings);
+        try {
+            crashing.run();
+            fail("the second commit should have crashed the run");
+        } catch (SQLException e) {
+            assertEquals("crash after commit", e.getMessage());
+        }
+
+        // The second page is in the table but the checkpoint still ends at the first
+        assertEquals("chunk-0019", readCheckpoint().path("lastKey").asText());
+        assertEquals(20L, readCheckpoint().path("rowsCommitted").asLong());
+        assertFalse(isNull("chunk-0039"));
+
+        Map<String, Object> resumed = new EmbeddingBackfill(this::connect, target, embedder, checkpoint, settings)
+                .run();
+
+        // Rows committed before the crash no longer match IS NULL and are not embedded again
+        assertEquals(80L, resumed.get("rowsRead"));
+        assertEquals(80L, resumed.get("rowsUpdated"));
+        assertEquals("chunk-0119", resumed.get("checkpointKey"));
+        assertEquals(0, countNullEmbeddings());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(1, embedCalls.get(String.format("chunk-%04d", i)).get());
+        }
+        assertEquals(120, embedCalls.size());
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url);
+    }
+
+    // Commits for real, then fails as if the process died before the checkpoint was moved
+    private static Connection crashAfterCommit(Connection connection, AtomicInteger commits, int crashAt) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if ("commit".equals(method.getName()) && commits.incrementAndGet() == crashAt) {
+                        throw new SQLException("crash after commit");
+                    }
+                    return result;
+                });
+    }
+
+    // Unpadded ids ("chunk-10" before "chunk-9") sort differently as text than in insert order
+    private List<String> insertRows(int count, boolean padded) throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try (PreparedStatement insert = keepAlive.prepareStatement(
+                "INSERT INTO document_chunks (id, chunk_text) VALUES (?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                String id = padded ? String.format("chunk-%04d", i) : "chunk-" + i;
+                ids.add(id);
+                insert.setString(1, id);
+                insert.setString(2, "Section " + i + " of the Inland Revenue Act");
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        return ids;
+    }
+
+    private int countNullEmbeddings() throws SQLException {
+        try (Statement statement = keepAlive.createStatement();
+                ResultSet rows = statement.executeQuery(
+                        "SELECT COUNT(*) FROM document_chunks WHERE embedding IS NULL")) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private boolean isNull(String id) throws SQLException {
+        try (PreparedStatement query = keepAlive.prepareStatement(
+                "SELECT embedding FROM document_chunks WHERE id = ?")) {
+            query.setString(1, id);
+            try (ResultSet rows = query.executeQuery()) {
+                assertTrue(rows.next());
+                return rows.getString(1) == null;
+            }
+        }
+    }
+
+    private JsonNode readCheckpoint() throws Exception {
+        return new ObjectMapper().readTree(checkpoint.toFile());
+    }
+}
@@ -0,0 +1,63 @@
+package com.oasis.ingestion;
+
+import com.oasis.document.extractor.UnifiedDocumentExtractor;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IngestionPipelineTest {
+
+    @Test
+    public void normalizedChunksPointIntoTheExtractedText() throws Exception {
+        StringBuilder circular = new StringBuilder();
+        for (int p = 1; p <= 12; p++) {
+            circular.append("Paragraph ").append(p).append(": the assess-\nable income   of every    resident ")
+                    .append("person shall be charged at  the rate of ").append(p).append(" per cent.\n\n\n");
+        }
+        byte[] content = circular.toString().getBytes(StandardCharsets.UTF_8);
+        String extracted = UnifiedDocumentExtractor.extractContent(content, "circular.txt").getExtractedText();
+        List<IngestionChunk> persisted = Collections.synchronizedList(new ArrayList<>());
+
+        try (IngestionPipeline pipeline = new IngestionPipeline(IngestionPipeline.normalizedTikaExtractor(),
+                IngestionPipelineTest::paragraphs, chunks -> { }, persisted::addAll)) {
+            assertEquals(12, pipeline.submit(new IngestionDocument("c1", "circular.txt", content)).get()
+                    .getChunkCount());
+        }
+
+        persisted.sort(Comparator.comparingInt(IngestionChunk::getSequence));
+        for (IngestionChunk chunk : persisted) {
+            String text = chunk.getChunkText();
+            assertTrue(text, text.contains("assessable income of every resident"));
+            String span = extracted.substring(chunk.getStartPosition(), chunk.getEndPosition());
+            assertTrue(span, span.startsWith("Paragraph " + chunk.getSequence() + ":"));
+            assertTrue(span, span.endsWith(" per cent."));
+            assertTrue(span.contains("assess-\nable income   of every    resident"));
+        }
+    }
+
+    // Paragraphs with exact offsets into the text handed to the chunker
+    private static List<IngestionChunk> paragraphs(String documentId, String text) {
+        List<IngestionChunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf("\n\n", start);
+            end = end < 0 ? text.length() : end;
+            String paragraph = text.substring(start, end);
+            if (!paragraph.isBlank()) {
+                int lead = paragraph.length() - paragraph.stripLeading().length();
+                String trimmed = paragraph.strip();
+                chunks.add(new IngestionChunk(documentId, chunks.size() + 1, trimmed, start + lead,
+                        trimmed.length() / 4, "paragraph"));
+            }
+            start = end + 2;
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,41 @@
+package com.oasis.retrieval;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Bm25IndexTest {
+
+    @Test
+    public void compactsChunksReplacedByReingestion() {
+        Bm25Index index = new Bm25Index();
+        for (int version = 0; version < 30; version++) {
+            for (int chunk = 0; chunk < 200; chunk++) {
+                index.addChunk("act-7-2024#" + chunk,
+                        "Section " + chunk + " withholding tax at " + (version + 5) + " per cent");
+            }
+        }
+
+        assertEquals(200, index.getChunkCount());
+        assertTrue((Long) index.getMetricsMap().get("compactions") > 0);
+        // Without compaction every replaced version would still be held
+        assertTrue((Integer) index.getMetricsMap().get("deletedPendingCompaction") < 2000);
+
+        RankedChunk[] hits = index.searchExactTerms("section 17 34 per cent", 5);
+        assertEquals(1, hits.length);
+        assertEquals("act-7-2024#17", hits[0].getChunkId());
+    }
+
+    @Test
+    public void removedChunksStopMatching() {
+        Bm25Index index = new Bm25Index();
+        index.addChunk("a", "value added tax registration threshold");
+        index.addChunk("b", "income tax rates for individuals");
+
+        assertTrue(index.removeChunk("a"));
+
+        assertEquals(0, index.search("registration threshold", 10).length);
+        assertEquals("b", index.search("income tax", 10)[0].getChunkId());
+    }
+}
@@ -0,0 +1,260 @@
+package com.oasis.retrieval;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContextPackerTest {
+    private static final Pattern FACT = Pattern.compile("\\(ref (S\\d+\\.\\d+)\\)");
+    private static final int SECTIONS = 30;
+    private static final int SENTENCES_PER_SECTION = 6;
+    private static final int WINDOW_WORDS = 90;
+    private static final int STRIDE_WORDS = 60;
+    private static final int EMBEDDING_DIMENSIONS = 256;
+
+    @Test
+    public void estimatesTokenCountsThatAreMissingOrNotNumbers() throws Exception {
+        String text = "Withholding tax on interest paid to a resident individual is five per cent. ".repeat(5);
+        String json = "[{\"id\": \"a\", \"sourceId\": \"act\", \"text\": \"" + text + "\", \"score\": 0.9},"
+                + "{\"id\": \"b\", \"sourceId\": \"act\", \"text\": \"" + text + "b\", \"score\": 0.8,"
+                + " \"tokenCount\": \"many\"},"
+                + "{\"id\": \"c\", \"sourceId\": \"act\", \"text\": \"" + text + "c\", \"score\": 0.7,"
+                + " \"tokenCount\": null},"
+                + "{\"id\": \"d\", \"sourceId\": \"act\", \"text\": \"short\", \"score\": 0.1, \"tokenCount\": 2}]";
+        int estimated = ContextCandidate.estimateTokens(text);
+        int label = 4 + ContextCandidate.estimateTokens("act");
+
+        // Room for one long candidate and the short one; counted as free, all four would fit
+        JsonNode packed = new ObjectMapper().readTree(
+                new ContextPacker(1.0, 1.01, 4).packJson(json, estimated + 2 * label + 10));
+
+        assertEquals(2, packed.path("attributions").size());
+        assertEquals("a", packed.path("attributions").get(0).path("candidateId").asText());
+        assertEquals("d", packed.path("attributions").get(1).path("candidateId").asText());
+        // Both blocks, both labels and the blank line between them
+        assertEquals(estimated + 2 + 2 * label + 1, packed.path("tokensUsed").asInt());
+        assertEquals(2, packed.path("droppedOverBudget").asInt());
+    }
+
+    @Test
+    public void blankLinesBetweenBlocksCountAgainstTheBudget() {
+        List<ContextCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            candidates.add(new ContextCandidate("c" + i, "act", "Section " + i + " text", 1.0 - i * 0.1, 10, null,
+                    -1, -1));
+        }
+        int block = 10 + 4 + ContextCandidate.estimateTokens("act");
+
+        // Four blocks and their labels fill the budget exactly, with no room for the three blank lines
+        PackedContext packed = new ContextPacker(1.0, 1.01, 4).pack(candidates, 4 * block);
+
+        assertEquals(3, packed.getAttributions().size());
+        assertEquals(3 * block + 2, packed.getTokensUsed());
+        assertEquals(1, packed.getDroppedOverBudget());
+        assertEquals(4 * block + 3, new ContextPacker(1.0, 1.01, 4).pack(candidates, 4 * block + 3)
+                .getTokensUsed());
+    }
+
+    @Test
+    public void mmrPackingCoversMoreFactsWithFewerRepeatsThanTopScoreOnly() {
+        Random random = new Random(11);
+        Corpus corpus = new Corpus(random);
+        List<ContextCandidate> candidates = corpus.retrieve(random, 40);
+
+        int concatenated = 0;
+        for (ContextCandidate candidate : candidates) {
+            concatenated += candidate.getTokenCount();
+        }
+        for (int budget : new int[] { 800, 1600 }) {
+            assertTrue(concatenated > 2 * budget);
+            PackedContext greedy = new ContextPacker(1.0, 1.01, 4).pack(candidates, budget);
+            PackedContext packed = new ContextPacker(0.7, 0.92, 4).pack(candidates, budget);
+
+            assertTrue(packed.getTokensUsed() <= budget);
+            assertTrue(ContextCandidate.estimateTokens(packed.getText()) <= budget);
+            assertTrue(packed.getDroppedRedundant() > 0);
+            int[] greedyFacts = facts(greedy.getText(), corpus.targetFacts);
+            int[] packedFacts = facts(packed.getText(), corpus.targetFacts);
+            assertTrue("budget " + budget + ": " + packedFacts[0] + " vs " + greedyFacts[0] + " target facts",
+                    packedFacts[0] >= greedyFacts[0]);
+            assertTrue("budget " + budget + ": " + packedFacts[1] + " vs " + greedyFacts[1] + " repeats",
+                    packedFacts[1] < greedyFacts[1]);
+        }
+    }
+
+    @Test
+    public void attributionsPointBackIntoThePromptAndTheSource() {
+        Random random = new Random(11);
+        Corpus corpus = new Corpus(random);
+        PackedContext packed = ContextPacker.shared().pack(corpus.retrieve(random, 40), 1600);
+
+        assertTrue(packed.getAttributions().size() > 1);
+        for (PackedContext.Attribution attribution : packed.getAttributions()) {
+            String block = packed.getText().substring(attribution.getStart(), attribution.getEnd());
+            String label = "[" + attribution.getLabel() + "] " + attribution.getSourceId() + "\n";
+            assertTrue(packed.getText().startsWith(label, attribution.getStart() - label.length()));
+            String source = corpus.documents.get(attribution.getSourceId());
+            assertEquals(block, source.substring(attribution.getSourceStart(), attribution.getSourceEnd()));
+        }
+    }
+
+    // Target facts that reach the prompt, fact sentences that appear more than once, and all fact sentences
+    static int[] facts(String context, Set<String> targetFacts) {
+        Matcher matcher = FACT.matcher(context);
+        Set<String> seen = new HashSet<>();
+        int occurrences = 0;
+        while (matcher.find()) {
+            occurrences++;
+            seen.add(matcher.group(1));
+        }
+        int covered = 0;
+        for (String fact : targetFacts) {
+            covered += seen.contains(fact) ? 1 : 0;
+        }
+        return new int[] { covered, occurrences - seen.size(), occurrences };
+    }
+
+    /**
+     * An act of 30 sections, a reprint of it with light edits and a circular
+     * quoting a third of it, chunked into overlapping windows so retrieval
+     * returns the same passage several times over. Every sentence carries a
+     * fact marker; the question targets sections 0-2. Embeddings are hashed
+     * bags of words.
+     */
+    static final class Corpus {
+        final Map<String, String> documents = new LinkedHashMap<>();
+        final Set<String> targetFacts = new HashSet<>();
+        final List<ContextCandidate> chunks = new ArrayList<>();
+        final float[] query;
+
+        Corpus(Random random) {
+            String[] general = { "person", "shall", "the", "of", "any", "year", "assessment", "amount", "paid",
+                    "under", "section", "provided", "that", "such", "in", "respect", "be", "deemed", "to", "income",
+                    "commissioner", "general", "return", "furnish", "relevant", "period", "liable", "payable" };
+            String[] topical = { "dividend", "royalty", "partnership", "trust", "exemption", "capital", "gains",
+                    "employment", "terminal", "benefits", "pension", "gratuity", "charitable", "donation", "relief",
+                    "export", "agriculture", "construction", "insurance", "banking", "leasing", "depreciation",
+                    "loss", "carry", "forward", "foreign", "remittance", "penalty", "appeal", "refund", "audit",
+                    "registration", "threshold", "turnover", "vehicle", "housing", "lottery", "betting", "gaming",
+                    "liquor", "tobacco", "software", "tourism", "shipping", "aircraft", "mining", "gem", "tea" };
+            String[][] topics = new String[SECTIONS][];
+            topics[0] = new String[] { "withholding", "interest", "deduction", "bank", "savings" };
+            topics[1] = new String[] { "rent", "withholding", "landlord", "lease", "premises" };
+            topics[2] = new String[] { "service", "fees", "instalment", "quarterly", "advance" };
+            for (int s = 3; s < SECTIONS; s++) {
+                topics[s] = new String[5];
+                for (int w = 0; w < 5; w++) {
+                    topics[s][w] = topical[random.nextInt(topical.length)];
+                }
+            }
+            String[][] sections = new String[SECTIONS][SENTENCES_PER_SECTION];
+            for (int s = 0; s < SECTIONS; s++) {
+                for (int j = 0; j < SENTENCES_PER_SECTION; j++) {
+                    StringBuilder sentence = new StringBuilder();
+                    for (int w = 0; w < 12; w++) {
+                        sentence.append(w % 3 == 1 ? topics[s][random.nextInt(5)]
+                                : general[random.nextInt(general.length)]).append(' ');
+                    }
+                    sections[s][j] = sentence.append("(ref S").append(s).append('.').append(j).append(").")
+                            .toString();
+                    if (s < 3) {
+                        targetFacts.add("S" + s + "." + j);
+                    }
+                }
+            }
+            chunk("act-2017-24", document(sections, SECTIONS, null, random));
+            chunk("act-2017-24-reprint-2023", document(sections, SECTIONS, general, random));
+            chunk("circular-sec-2023-07", document(sections, SECTIONS / 3, null, random));
+            query = embed("What are the withholding and instalment rules for interest, rent and service fees? "
+                    + String.join(" ", topics[0]) + " " + String.join(" ", topics[1]) + " "
+                    + String.join(" ", topics[2]));
+        }
+
+        List<ContextCandidate> retrieve(Random random, int count) {
+            List<ContextCandidate> scored = new ArrayList<>();
+            for (ContextCandidate chunk : chunks) {
+                double score = 0;
+                for (int i = 0; i < query.length; i++) {
+                    score += query[i] * chunk.getEmbedding()[i];
+                }
+                scored.add(new ContextCandidate(chunk.getId(), chunk.getSourceId(), chunk.getText(),
+                        score + random.nextGaussian() * 0.01, chunk.getTokenCount(), chunk.getEmbedding(),
+                        chunk.getSourceStart(), chunk.getSourceEnd()));
+            }
+            scored.sort(Comparator.comparingDouble(ContextCandidate::getScore).reversed());
+            return scored.subList(0, Math.min(count, scored.size()));
+        }
+
+        // With edits, one word in ten is swapped, as a reprint's amendments would
+        private static String document(String[][] sections, int to, String[] edits, Random random) {
+            StringBuilder text = new StringBuilder();
+            for (int s = 0; s < to; s++) {
+                text.append("Section ").append(s + 1).append(". ");
+                for (String sentence : sections[s]) {
+                    if (edits == null) {
+                        text.append(sentence).append(' ');
+                        continue;
+                    }
+                    for (String word : sentence.split(" ")) {
+                        boolean marker = word.startsWith("(ref") || word.startsWith("S");
+                        text.append(!marker && random.nextInt(10) == 0 ? edits[random.nextInt(edits.length)]
+                                : word).append(' ');
+                    }
+                }
+            }
+            return text.toString();
+        }
+
+        private void chunk(String sourceId, String text) {
+            documents.put(sourceId, text);
+            List<Integer> wordStarts = new ArrayList<>();
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) != ' ' && (i == 0 || text.charAt(i - 1) == ' ')) {
+                    wordStarts.add(i);
+                }
+            }
+            for (int w = 0, n = 0; w < wordStarts.size(); w += STRIDE_WORDS, n++) {
+                int start = wordStarts.get(w);
+                int end = w + WINDOW_WORDS < wordStarts.size() ? wordStarts.get(w + WINDOW_WORDS) - 1
+                        : text.length();
+                String chunk = text.substring(start, end).trim();
+                chunks.add(new ContextCandidate(sourceId + "_chunk_" + n, sourceId, chunk, 0,
+                        ContextCandidate.estimateTokens(chunk), embed(chunk), start, start + chunk.length()));
+                if (w + WINDOW_WORDS >= wordStarts.size()) {
+                    break;
+                }
+            }
+        }
+
+        // Signed feature hashing of the words, fact markers left out
+        private static float[] embed(String text) {
+            float[] vector = new float[EMBEDDING_DIMENSIONS];
+            for (String token : ChunkTokenizer.tokenize(FACT.matcher(text).replaceAll(" "))) {
+                int hash = token.hashCode() * 0x9E3779B9;
+                vector[(hash >>> 1) % EMBEDDING_DIMENSIONS] += (hash & 1) == 0 ? 1 : -1;
+            }
+            double norm = 0;
+            for (float value : vector) {
+                norm += value * value;
+            }
+            for (int i = 0; i < vector.length && norm > 0; i++) {
+                vector[i] /= (float) Math.sqrt(norm);
+            }
+            return vector;
+        }
+    }
+}
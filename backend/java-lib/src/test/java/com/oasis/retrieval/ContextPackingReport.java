@@ -0,0 +1,90 @@
+package com.oasis.retrieval;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.oasis.gemini.GeminiClient;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Prompt size and fact coverage of {@link ContextPacker} against concatenating
+ * every retrieved chunk, as chat_service.bal does today
+ *
+ * Uses the synthetic act, reprint and circular of {@link ContextPackerTest}:
+ * overlapping chunk windows, so retrieval returns the same passage several
+ * times over, and a question about three sections. Each variant reports its
+ * prompt tokens, how many of the target facts reach the prompt, and how many
+ * sentences are repeats. Tokens are estimated at four characters each.
+ *
+ * With GEMINI_API_KEY set, each prompt is also sent to the text model to
+ * measure end-to-end latency (median of oasis.context.latencyRuns, default 3).
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code ContextPackingReport [candidates] [budget...]}
+ */
+public class ContextPackingReport {
+    private static final String QUESTION = "What are the withholding and instalment rules for interest, "
+            + "rent and service fees?";
+
+    public static void main(String[] args) throws Exception {
+        int candidateCount = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int[] budgets = args.length > 1
+                ? Arrays.stream(args).skip(1).mapToInt(Integer::parseInt).toArray() : new int[] { 800, 1600, 3200 };
+
+        Random random = new Random(11);
+        ContextPackerTest.Corpus corpus = new ContextPackerTest.Corpus(random);
+        List<ContextCandidate> candidates = corpus.retrieve(random, candidateCount);
+
+        System.out.printf("%d chunks in corpus, top %d retrieved, %d target facts%n%n", corpus.chunks.size(),
+                candidates.size(), corpus.targetFacts.size());
+        System.out.printf("%-30s %7s %8s %10s %9s %10s%n", "Context", "blocks", "tokens", "facts", "repeats",
+                "latency ms");
+
+        StringBuilder all = new StringBuilder();
+        for (ContextCandidate candidate : candidates) {
+            all.append(candidate.getText()).append("\n\n");
+        }
+        report("all candidates (current)", candidates.size(), all.toString(), corpus);
+        for (int budget : budgets) {
+            PackedContext greedy = new ContextPacker(1.0, 1.01, 4).pack(candidates, budget);
+            report("top score only, " + budget, greedy.getAttributions().size(), greedy.getText(), corpus);
+            PackedContext packed = ContextPacker.shared().pack(candidates, budget);
+            report("MMR packed, " + budget, packed.getAttributions().size(), packed.getText(), corpus);
+        }
+    }
+
+    private static void report(String label, int blocks, String context, ContextPackerTest.Corpus corpus)
+            throws Exception {
+        int[] facts = ContextPackerTest.facts(context, corpus.targetFacts);
+        System.out.printf("%-30s %7d %8d %5d/%-4d %8.0f%% %10s%n", label, blocks,
+                ContextCandidate.estimateTokens(context), facts[0], corpus.targetFacts.size(),
+                facts[2] == 0 ? 0.0 : 100.0 * facts[1] / facts[2], measureLatency(context));
+    }
+
+    private static String measureLatency(String context) throws Exception {
+        String apiKey = System.getenv("GEMINI_API_KEY");
+        if (apiKey == null || apiKey.isEmpty()) {
+            return "-";
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode request = mapper.createObjectNode();
+        request.putArray("contents").addObject().putArray("parts").addObject()
+                .put("text", "Answer using only this context, citing [n] labels.\n\n" + context + "\n\nQuestion: "
+                        + QUESTION);
+        int runs = Integer.getInteger("oasis.context.latencyRuns", 3);
+        long[] millis = new long[runs];
+        try (GeminiClient client = new GeminiClient(GeminiClient.DEFAULT_BASE_URL, apiKey,
+                GeminiClient.DEFAULT_EMBEDDING_MODEL, GeminiClient.DEFAULT_TEXT_MODEL)) {
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                client.generateContent(mapper.writeValueAsString(request));
+                millis[i] = (System.nanoTime() - start) / 1_000_000;
+            }
+        }
+        Arrays.sort(millis);
+        return Long.toString(millis[runs / 2]);
+    }
+}
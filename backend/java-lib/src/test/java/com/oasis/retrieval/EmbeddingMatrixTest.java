@@ -0,0 +1,161 @@
+package com.oasis.retrieval;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class EmbeddingMatrixTest {
+
+    @Test
+    public void exactSearchMatchesABruteForceCosineRanking() {
+        Random random = new Random(3);
+        int dimensions = 48;
+        EmbeddingMatrix matrix = new EmbeddingMatrix(dimensions, true, false, 16, SimilarityKernels.SCALAR);
+        List<float[]> rows = new ArrayList<>();
+        for (int r = 0; r < 2_000; r++) {
+            float[] row = gaussian(random, dimensions, 1f);
+            rows.add(row);
+            matrix.add("chunk-" + r, row);
+        }
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = gaussian(random, dimensions, 1f);
+            RankedChunk[] hits = matrix.search(query, 10);
+
+            Integer[] order = new Integer[rows.size()];
+            double[] cosines = new double[rows.size()];
+            for (int r = 0; r < rows.size(); r++) {
+                order[r] = r;
+                cosines[r] = cosine(query, rows.get(r));
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(cosines[b], cosines[a]));
+            assertEquals(10, hits.length);
+            for (int i = 0; i < hits.length; i++) {
+                assertEquals("chunk-" + order[i], hits[i].getChunkId());
+                assertEquals(cosines[order[i]], hits[i].getScore(), 1e-4);
+            }
+        }
+    }
+
+    @Test
+    public void parallelScanReturnsTheSingleThreadedResult() {
+        // Above the 16,384 rows per task the scan is split into ranges and the heaps merged
+        EmbeddingMatrix matrix = clustered(new Random(11), 40_000, 32);
+        Random random = new Random(12);
+        for (int q = 0; q < 10; q++) {
+            float[] query = gaussian(random, 32, 1f);
+            matrix.setParallelism(1);
+            RankedChunk[] sequential = matrix.search(query, 25);
+            matrix.setParallelism(4);
+            RankedChunk[] parallel = matrix.search(query, 25);
+
+            assertEquals(sequential.length, parallel.length);
+            for (int i = 0; i < sequential.length; i++) {
+                assertEquals(sequential[i].getChunkId(), parallel[i].getChunkId());
+                assertEquals(sequential[i].getScore(), parallel[i].getScore(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void int8ScanWithRescoringKeepsRecallOnClusteredEmbeddings() {
+        Random random = new Random(7);
+        EmbeddingMatrix matrix = clustered(random, 20_000, 256);
+        int found = 0;
+        int queries = 30;
+        for (int q = 0; q < queries; q++) {
+            float[] query = gaussian(random, 256, 1f);
+            Set<String> truth = new HashSet<>();
+            for (RankedChunk chunk : matrix.search(query, 10)) {
+                truth.add(chunk.getChunkId());
+            }
+            RankedChunk[] approximate = matrix.searchInt8(query, 10);
+            assertEquals(10, approximate.length);
+            for (RankedChunk chunk : approximate) {
+                found += truth.contains(chunk.getChunkId()) ? 1 : 0;
+            }
+        }
+        double recall = (double) found / (queries * 10);
+        assertTrue("int8 recall@10 was " + recall, recall >= 0.95);
+    }
+
+    @Test
+    public void vectorKernelAgreesWithTheScalarKernel() {
+        // Surefire adds jdk.incubator.vector; skipped only on a JVM started without it
+        SimilarityKernel vector = SimilarityKernels.vectorOrNull();
+        assumeNotNull(vector);
+
+        Random random = new Random(5);
+        for (int length : new int[] { 1, 7, 31, 64, 100, 768 }) {
+            float[] a = gaussian(random, length + 5, 1f);
+            float[] b = gaussian(random, length + 3, 1f);
+            float expected = SimilarityKernels.SCALAR.dot(a, 5, b, 3, length);
+            assertEquals(expected, vector.dot(a, 5, b, 3, length), 1e-3f * Math.max(1f, Math.abs(expected)));
+
+            byte[] x = new byte[length + 2];
+            byte[] y = new byte[length + 1];
+            random.nextBytes(x);
+            random.nextBytes(y);
+            assertEquals(SimilarityKernels.SCALAR.dot(x, 2, y, 1, length), vector.dot(x, 2, y, 1, length));
+        }
+
+        EmbeddingMatrix matrix = clustered(new Random(9), 5_000, 96);
+        for (int q = 0; q < 10; q++) {
+            float[] query = gaussian(random, 96, 1f);
+            matrix.setKernel(SimilarityKernels.SCALAR);
+            RankedChunk[] scalar = matrix.search(query, 10);
+            matrix.setKernel(vector);
+            RankedChunk[] simd = matrix.search(query, 10);
+            for (int i = 0; i < scalar.length; i++) {
+                assertEquals(scalar[i].getScore(), simd[i].getScore(), 1e-4);
+            }
+        }
+    }
+
+    // Documents are chunked, so real embeddings come in groups of near neighbours
+    private static EmbeddingMatrix clustered(Random random, int rows, int dimensions) {
+        float[][] centroids = new float[Math.max(1, rows / 50)][];
+        for (int c = 0; c < centroids.length; c++) {
+            centroids[c] = gaussian(random, dimensions, 1f);
+        }
+        EmbeddingMatrix matrix = new EmbeddingMatrix(dimensions, true, true, rows, SimilarityKernels.SCALAR);
+        for (int r = 0; r < rows; r++) {
+            float[] centre = centroids[random.nextInt(centroids.length)];
+            float[] row = new float[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                row[i] = centre[i] + (float) random.nextGaussian() * 0.6f;
+            }
+            matrix.add("chunk-" + r, row);
+        }
+        return matrix;
+    }
+
+    static float[] gaussian(Random random, int dimensions, float sigma) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double aa = 0;
+        double bb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * (double) b[i];
+            aa += a[i] * (double) a[i];
+            bb += b[i] * (double) b[i];
+        }
+        return dot / Math.sqrt(aa * bb);
+    }
+}
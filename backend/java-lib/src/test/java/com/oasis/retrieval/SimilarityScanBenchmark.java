@@ -0,0 +1,119 @@
+package com.oasis.retrieval;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Scan throughput of {@link EmbeddingMatrix} in vectors per second
+ *
+ * Fills a matrix with clustered random unit vectors (documents are chunked, so
+ * real embeddings come in groups of near neighbours). Then it times exact top-k
+ * queries with the scalar and Vector API kernels, single-threaded and across
+ * all cores, and the int8 scan with exact rescoring. It also reports int8
+ * recall against the exact float results. The Vector API rows appear only
+ * when the JVM is started with --add-modules jdk.incubator.vector.
+ * A million 768-dimension rows needs about -Xmx4g.
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code SimilarityScanBenchmark [rows] [dimensions] [queries] [k]}
+ */
+public class SimilarityScanBenchmark {
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int dimensions = args.length > 1 ? Integer.parseInt(args[1]) : 768;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int k = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        SimilarityKernel vector = SimilarityKernels.vectorOrNull();
+        System.out.printf("%d rows x %d dimensions, %d queries, k=%d, %d cores, vector kernel: %s%n", rows,
+                dimensions, queries, k, cores, vector != null ? vector.name() : "unavailable");
+
+        Random random = new Random(7);
+        float[][] centroids = new float[Math.max(1, rows / 50)][];
+        for (int c = 0; c < centroids.length; c++) {
+            centroids[c] = EmbeddingMatrixTest.gaussian(random, dimensions, 1f);
+        }
+        EmbeddingMatrix matrix = new EmbeddingMatrix(dimensions, true, true, rows, SimilarityKernels.SCALAR);
+        for (int r = 0; r < rows; r++) {
+            matrix.add("chunk-" + r, jitter(random, centroids[random.nextInt(centroids.length)], 0.6f));
+        }
+        float[][] queryVectors = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = jitter(random, centroids[random.nextInt(centroids.length)], 0.8f);
+        }
+
+        System.out.printf("%n%-36s %10s %14s %9s%n", "Scan", "ms/query", "vectors/s", "speed-up");
+        SimilarityKernel[] kernels = vector != null ? new SimilarityKernel[] { SimilarityKernels.SCALAR, vector }
+                : new SimilarityKernel[] { SimilarityKernels.SCALAR };
+        double baseline = 0;
+        for (SimilarityKernel kernel : kernels) {
+            matrix.setKernel(kernel);
+            for (int threads : cores > 1 ? new int[] { 1, cores } : new int[] { 1 }) {
+                double perQuery = time(kernel.name() + " float32, " + threads + " thread(s)", matrix, threads,
+                        queryVectors, k, false, baseline);
+                baseline = baseline == 0 ? perQuery : baseline;
+                time(kernel.name() + " int8+rescore, " + threads + " thread(s)", matrix, threads, queryVectors, k,
+                        true, baseline);
+            }
+        }
+
+        int found = 0;
+        int mismatchedTop = 0;
+        for (float[] query : queryVectors) {
+            matrix.setKernel(kernels[kernels.length - 1]);
+            RankedChunk[] exact = matrix.search(query, k);
+            RankedChunk[] approximate = matrix.searchInt8(query, k);
+            matrix.setKernel(SimilarityKernels.SCALAR);
+            RankedChunk[] scalar = matrix.search(query, k);
+            Set<String> truth = new HashSet<>();
+            for (RankedChunk chunk : exact) {
+                truth.add(chunk.getChunkId());
+            }
+            for (RankedChunk chunk : approximate) {
+                found += truth.contains(chunk.getChunkId()) ? 1 : 0;
+            }
+            if (!exact[0].getChunkId().equals(scalar[0].getChunkId())) {
+                mismatchedTop++;
+            }
+        }
+        System.out.printf("%nint8 recall@%d: %.3f (oversample %dx); top-1 differences between kernels: %d%n", k,
+                (double) found / (queries * k), EmbeddingMatrix.INT8_OVERSAMPLE, mismatchedTop);
+    }
+
+    // Best of three passes over the queries after a warm-up pass
+    private static double time(String label, EmbeddingMatrix matrix, int threads, float[][] queries, int k,
+            boolean int8, double baselineNanos) {
+        matrix.setParallelism(threads);
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 4; pass++) {
+            long start = System.nanoTime();
+            for (float[] query : queries) {
+                if (int8) {
+                    matrix.searchInt8(query, k);
+                } else {
+                    matrix.search(query, k);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (pass > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        double perQuery = (double) best / queries.length;
+        System.out.printf("%-36s %10.2f %14.0f %8.1fx%n", label, perQuery / 1e6,
+                matrix.getRowCount() * 1e9 / perQuery, baselineNanos > 0 ? baselineNanos / perQuery : 1.0);
+        return perQuery;
+    }
+
+    private static float[] jitter(Random random, float[] centre, float sigma) {
+        float[] vector = new float[centre.length];
+        for (int i = 0; i < centre.length; i++) {
+            vector[i] = centre[i] + (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,43 @@
+package com.oasis.tax.calculation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Rows/second benchmark for {@link BulkTaxCalculator} on synthetic employees
+ *
+ * Not a unit test: surefire skips it, and it is not in the shaded jar. Run it
+ * from the test classpath, see "Running the Benchmarks" in the README:
+ * {@code BulkCalculationBenchmark [rows] [threads...]}
+ */
+public class BulkCalculationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int[] threadCounts = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, Runtime.getRuntime().availableProcessors() };
+
+        CompiledFormulaChain chain = FormulaCompiler.compile(BulkTaxCalculatorTest.payeFormulas(),
+                BulkTaxCalculatorTest.payeBrackets());
+        ColumnarInputBatch batch = BulkTaxCalculatorTest.syntheticEmployees(rows, 42L);
+        System.out.printf("Synthetic PAYE batch: %d employees, %d formulas%n", rows, chain.getStepCount());
+
+        for (int threads : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                BulkTaxCalculator calculator = new BulkTaxCalculator(pool, 1024);
+                // Warm up the JIT before measuring
+                for (int i = 0; i < 3; i++) {
+                    calculator.calculate(chain, batch);
+                }
+                BulkCalculationResult result = calculator.calculate(chain, batch);
+                System.out.printf("threads=%2d  rows/s=%,12.0f  elapsed=%6d ms  failed=%d%n",
+                        threads, result.getRowsPerSecond(), result.getElapsedNanos() / 1_000_000,
+                        result.getFailedRowCount());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
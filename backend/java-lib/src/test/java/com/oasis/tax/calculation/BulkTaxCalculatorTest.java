@@ -0,0 +1,149 @@
+package com.oasis.tax.calculation;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BulkTaxCalculatorTest {
+
+    @Test
+    public void computesProgressivePayeForOneEmployee() throws Exception {
+        CompiledFormulaChain chain = FormulaCompiler.compile(payeFormulas(), payeBrackets());
+        ColumnarInputBatch batch = new ColumnarInputBatch(1)
+                .addColumn("basic_salary", new BigDecimal[] { new BigDecimal("200000") })
+                .addColumn("allowances", new BigDecimal[] { BigDecimal.ZERO })
+                .addColumn("bonus", new BigDecimal[] { BigDecimal.ZERO })
+                .addColumn("pension_rate", new BigDecimal[] { BigDecimal.ZERO });
+
+        BulkCalculationResult result = new BulkTaxCalculator().calculate(chain, batch);
+
+        // 2.4M a year less 1.2M relief: 500k at 6%, 500k at 12%, 200k at 18% = 126,000
+        assertTrue(result.isRowSuccessful(0));
+        assertEquals(0, new BigDecimal("126000").compareTo(result.getStepResult(4, 0)));
+        assertEquals(0, new BigDecimal("10500").compareTo(result.getFinalAmount(0)));
+    }
+
+    @Test
+    public void parallelResultsMatchSingleThreaded() throws Exception {
+        CompiledFormulaChain chain = FormulaCompiler.compile(payeFormulas(), payeBrackets());
+        ColumnarInputBatch batch = syntheticEmployees(20_000, 42L);
+
+        BulkCalculationResult sequential = calculate(chain, batch, 1, Integer.MAX_VALUE);
+        BulkCalculationResult parallel = calculate(chain, batch, 4, 256);
+
+        assertEquals(0, sequential.getFailedRowCount());
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            assertEquals("row " + row, sequential.getFinalAmount(row), parallel.getFinalAmount(row));
+            for (int step = 0; step < chain.getStepCount(); step++) {
+                assertEquals(sequential.getStepResult(step, row), parallel.getStepResult(step, row));
+            }
+        }
+    }
+
+    @Test
+    public void rowErrorsStayInTheirRow() throws Exception {
+        CompiledFormulaChain chain = FormulaCompiler.compile(List.of(
+                new FormulaDefinition("ratio", "Ratio", "basic_salary / allowances", "ratio", 1)), payeBrackets());
+        ColumnarInputBatch batch = new ColumnarInputBatch(3)
+                .addColumn("basic_salary", new BigDecimal[] { new BigDecimal("10"), null, new BigDecimal("10") })
+                .addColumn("allowances", new BigDecimal[] { new BigDecimal("4"), new BigDecimal("4"),
+                        BigDecimal.ZERO });
+
+        BulkCalculationResult result = new BulkTaxCalculator().calculate(chain, batch);
+
+        assertEquals(2, result.getFailedRowCount());
+        assertNull(result.getError(0));
+        assertEquals(0, new BigDecimal("2.5").compareTo(result.getFinalAmount(0)));
+        assertTrue(result.getError(1).contains("basic_salary"));
+        assertTrue(result.getError(2).contains("Division by zero"));
+    }
+
+    @Test
+    public void streamsCsvInBlocksWithGlobalRowNumbers() throws Exception {
+        CompiledFormulaChain chain = FormulaCompiler.compile(payeFormulas(), payeBrackets());
+        StringBuilder csv = new StringBuilder("basic_salary,allowances,bonus,pension_rate\n");
+        for (int i = 0; i < 25; i++) {
+            csv.append(100_000 + i * 10_000).append(",5000,0,").append(i == 7 ? "x" : "4").append('\n');
+        }
+        StringWriter output = new StringWriter();
+
+        BulkCalculationSummary summary = new BulkTaxCalculator().calculateCsv(chain,
+                new StringReader(csv.toString()), output, 10);
+
+        assertEquals(25, summary.getRowCount());
+        assertEquals(1, summary.getFailedRowCount());
+        String[] lines = output.toString().split("\n");
+        assertEquals(26, lines.length);
+        assertTrue(lines[0].startsWith("row,"));
+        assertTrue(lines[25].startsWith("24,"));
+        // The non-numeric pension rate leaves row 7 without a value and with an error
+        assertTrue(lines[8].startsWith("7,") && lines[8].contains("pension_rate"));
+        assertTrue(lines[9].endsWith(","));
+    }
+
+    private static BulkCalculationResult calculate(CompiledFormulaChain chain, ColumnarInputBatch batch,
+            int threads, int splitThreshold) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return new BulkTaxCalculator(pool, splitThreshold).calculate(chain, batch);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // A PAYE chain in the shape produced by schema generation
+    static List<FormulaDefinition> payeFormulas() {
+        return List.of(
+                new FormulaDefinition("gross", "Gross monthly pay",
+                        "basic_salary + allowances + bonus", "gross_income", 1),
+                new FormulaDefinition("annualised", "Annualised income", "gross_income * 12", "annual_income", 2),
+                new FormulaDefinition("relief", "Personal relief",
+                        "if annual_income > 1200000 then 1200000 else annual_income", "personal_relief", 3),
+                new FormulaDefinition("taxable", "Taxable income",
+                        "max(annual_income - personal_relief - pct(pension_rate) * annual_income, 0)",
+                        "taxable_income", 4),
+                new FormulaDefinition("annual_tax", "Annual tax", "progressiveTax(taxable_income)", "annual_tax", 5),
+                new FormulaDefinition("monthly_paye", "Monthly PAYE", "annual_tax / 12", "monthly_paye", 6));
+    }
+
+    static TaxBracket[] payeBrackets() {
+        long[][] spans = { { 0, 500_000 }, { 500_000, 1_000_000 }, { 1_000_000, 1_500_000 },
+                { 1_500_000, 2_000_000 }, { 2_000_000, 2_500_000 }, { 2_500_000, -1 } };
+        String[] rates = { "0.06", "0.12", "0.18", "0.24", "0.30", "0.36" };
+        TaxBracket[] brackets = new TaxBracket[spans.length];
+        for (int i = 0; i < spans.length; i++) {
+            brackets[i] = new TaxBracket(BigDecimal.valueOf(spans[i][0]),
+                    spans[i][1] < 0 ? null : BigDecimal.valueOf(spans[i][1]),
+                    new BigDecimal(rates[i]), BigDecimal.ZERO);
+        }
+        return brackets;
+    }
+
+    static ColumnarInputBatch syntheticEmployees(int rows, long seed) {
+        Random random = new Random(seed);
+        BigDecimal[] basic = new BigDecimal[rows];
+        BigDecimal[] allowances = new BigDecimal[rows];
+        BigDecimal[] bonus = new BigDecimal[rows];
+        BigDecimal[] pension = new BigDecimal[rows];
+        for (int i = 0; i < rows; i++) {
+            basic[i] = BigDecimal.valueOf(50_000 + random.nextInt(950_000));
+            allowances[i] = BigDecimal.valueOf(random.nextInt(100_000));
+            bonus[i] = random.nextInt(10) == 0 ? BigDecimal.valueOf(random.nextInt(200_000)) : BigDecimal.ZERO;
+            pension[i] = BigDecimal.valueOf(random.nextInt(3) * 4);
+        }
+        return new ColumnarInputBatch(rows)
+                .addColumn("basic_salary", basic)
+                .addColumn("allowances", allowances)
+                .addColumn("bonus", bonus)
+                .addColumn("pension_rate", pension);
+    }
+}
@@ -0,0 +1,112 @@
+package com.oasis.tax.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RuleConflictEngineTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void reportsOverlapsBetweenDifferentRulesOnly() throws Exception {
+        List<TaxRuleRecord> rules = List.of(
+                rule("a", "x * 0.1", "2024-01-01", "2024-12-31"),
+                rule("b", "x * 0.2", "2024-06-01", "2025-05-31"),
+                rule("c", "x * 0.2", "2025-01-01", "2025-12-31"),
+                rule("d", "x * 0.3", "2026-01-01", "2026-12-31"));
+
+        List<String> pairs = overlapPairs(RuleConflictEngine.detectConflicts(rules, "paye"));
+
+        // b and c overlap but have the same content
+        assertEquals(List.of("a+b"), pairs);
+    }
+
+    @Test
+    public void identicalOverlappingRulesAreNotPairedButStillListedAsContentConflicts() throws Exception {
+        List<TaxRuleRecord> rules = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rules.add(rule("copy" + i, "x * 0.1", "2024-01-01", "2024-12-31"));
+        }
+        rules.add(rule("other", "x * 0.2", "2024-03-01", "2024-03-31"));
+
+        ArrayNode conflicts = RuleConflictEngine.detectConflicts(rules, "paye");
+
+        List<String> pairs = overlapPairs(conflicts);
+        assertEquals(200, pairs.size());
+        assertTrue(pairs.stream().allMatch(pair -> pair.endsWith("+other")));
+        JsonNode formula = conflicts.get(0);
+        assertEquals("formula_expression_mismatch", formula.get("conflictType").asText());
+        assertEquals(201, formula.get("conflictingRules").size());
+    }
+
+    @Test
+    public void emptyExpiryIsOpenEnded() throws Exception {
+        List<TaxRuleRecord> rules = List.of(
+                rule("open", "x * 0.1", "2020-01-01", ""),
+                rule("later", "x * 0.2", "2030-01-01", "2030-12-31"),
+                rule("before", "x * 0.3", "2019-01-01", "2019-12-31"));
+
+        assertEquals(List.of("open+later"), overlapPairs(RuleConflictEngine.detectConflicts(rules, "paye")));
+    }
+
+    @Test
+    public void reportsPairsInInputOrder() throws Exception {
+        List<TaxRuleRecord> rules = List.of(
+                rule("late", "x * 0.1", "2024-06-01", "2024-12-31"),
+                rule("early", "x * 0.2", "2024-01-01", "2024-12-31"),
+                rule("middle", "x * 0.3", "2024-03-01", "2024-07-01"));
+
+        assertEquals(List.of("late+early", "late+middle", "early+middle"),
+                overlapPairs(RuleConflictEngine.detectConflicts(rules, "paye")));
+    }
+
+    @Test
+    public void reportsMalformedRowsInsteadOfFailingTheReport() throws Exception {
+        String rows = "[{\"id\": \"a\", \"rule_data\": {}, \"effective_date\": \"2024-01-01\","
+                + " \"expiry_date\": \"2024-12-31\"},"
+                + "{\"id\": \"backwards\", \"effective_date\": \"2025-01-01\", \"expiry_date\": \"2024-01-01\"},"
+                + "{\"id\": \"typo\", \"effective_date\": \"2024-13-01\"},"
+                + "{\"id\": \"broken\", \"rule_data\": \"{not json\"},"
+                + "{\"id\": \"b\", \"rule_data\": {\"required_variables\": [\"x\"]},"
+                + " \"effective_date\": \"2024-06-01\"}]";
+
+        JsonNode conflicts = MAPPER.readTree(RuleConflictEngine.detectConflictsJson(rows, "paye"));
+
+        List<String> kinds = new ArrayList<>();
+        for (JsonNode conflict : conflicts) {
+            kinds.add(conflict.path("conflictType").asText() + ":"
+                    + conflict.path("conflictingRules").get(0).path("id").asText());
+        }
+        assertEquals(List.of("overlapping_effective_periods:a", "invalid_interval:backwards", "invalid_interval:typo",
+                "invalid_rule_row:broken"), kinds);
+        JsonNode backwards = conflicts.get(1);
+        assertEquals("Rule backwards expires (2024-01-01) before it becomes effective (2025-01-01)",
+                backwards.path("description").asText());
+        assertEquals("2025-01-01", backwards.path("conflictingRules").get(0).path("value")
+                .path("effective_date").asText());
+    }
+
+    private static TaxRuleRecord rule(String id, String expression, String effective, String expiry) {
+        JsonNode data = MAPPER.createObjectNode().set("formulas", MAPPER.createArrayNode()
+                .add(MAPPER.createObjectNode().put("name", "tax").put("expression", expression)));
+        return new TaxRuleRecord(id, "paye", "formula", id, data, "IRD", 1, "2024-01-01", effective, expiry);
+    }
+
+    private static List<String> overlapPairs(ArrayNode conflicts) {
+        List<String> pairs = new ArrayList<>();
+        for (JsonNode conflict : conflicts) {
+            if ("overlapping_effective_periods".equals(conflict.path("conflictType").asText())) {
+                JsonNode members = conflict.get("conflictingRules");
+                pairs.add(members.get(0).get("id").asText() + "+" + members.get(1).get("id").asText());
+            }
+        }
+        return pairs;
+    }
+}
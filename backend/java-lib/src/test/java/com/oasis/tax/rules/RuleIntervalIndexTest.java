@@ -0,0 +1,184 @@
+package com.oasis.tax.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RuleIntervalIndexTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void answersLikeALinearScanOverRandomRules() {
+        Random random = new Random(5);
+        List<TaxRuleRecord> rules = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int start = random.nextInt(3_000);
+            String effective = random.nextInt(10) == 0 ? null : day(start);
+            String expiry = random.nextInt(5) == 0 ? null : day(start + random.nextInt(400));
+            String ruleData = random.nextBoolean() ? "{\"field_metadata\": {}}" : "{}";
+            rules.add(new TaxRuleRecord("r" + i, i % 2 == 0 ? "paye" : "vat", "evidence", "Rule " + i,
+                    json(ruleData), "IRD", random.nextInt(4), "2024-01-0" + (1 + random.nextInt(9)) + " 10:00:00",
+                    effective, expiry));
+        }
+        RuleIntervalIndex index = new RuleIntervalIndex();
+        index.loadAll(rules);
+
+        for (int probe = 0; probe < 300; probe++) {
+            long from = random.nextInt(3_600) - 100;
+            long to = from + random.nextInt(60);
+            List<TaxRuleRecord> expected = rules.stream()
+                    .filter(rule -> rule.getCalcType().equals("paye"))
+                    .filter(rule -> rule.getEffectiveDay() <= to && rule.getExpiryDay() >= from)
+                    .sorted(RuleIntervalIndex.PRECEDENCE)
+                    .collect(Collectors.toList());
+            assertEquals(expected, Arrays.asList(index.overlapping("paye", day(from), day(to))));
+
+            List<TaxRuleRecord> active = rules.stream()
+                    .filter(rule -> rule.getCalcType().equals("paye") && rule.isActiveOn(from))
+                    .sorted(RuleIntervalIndex.PRECEDENCE)
+                    .collect(Collectors.toList());
+            assertEquals(active, Arrays.asList(index.activeRules("paye", day(from))));
+            assertEquals(active.isEmpty() ? null : active.get(0), index.bestRule("paye", day(from)));
+        }
+    }
+
+    @Test
+    public void effectiveAndExpiryDaysAreBothInForce() {
+        RuleIntervalIndex index = new RuleIntervalIndex();
+        index.loadAll(List.of(
+                rule("2024", "paye", 1, "2024-04-01", "2025-03-31"),
+                rule("2025", "paye", 1, "2025-04-01", null)));
+
+        assertNull(index.bestRule("paye", "2024-03-31"));
+        assertEquals("2024", index.bestRule("paye", "2024-04-01").getId());
+        assertEquals("2024", index.bestRule("paye", "2025-03-31").getId());
+        assertEquals("2025", index.bestRule("paye", "2025-04-01").getId());
+        assertEquals("2025", index.bestRule("paye", "2099-12-31").getId());
+        assertEquals(2, index.overlapping("paye", "2025-03-31", "2025-04-01").length);
+        assertEquals(0, index.overlapping("paye", "2025-04-01", "2025-03-31").length);
+    }
+
+    @Test
+    public void sameDayDuplicatesResolveByUpdatedAt() {
+        TaxRuleRecord older = new TaxRuleRecord("a", "paye", "evidence", "", null, "IRD", 2,
+                "2024-05-01 09:00:00+00", "2024-06-01 08:00:00+00", "2024-04-01", null);
+        TaxRuleRecord newer = new TaxRuleRecord("b", "paye", "evidence", "", null, "IRD", 2,
+                "2024-05-01 09:00:00+00", "2024-06-01 08:00:00.5+00", "2024-04-01", null);
+        TaxRuleRecord neverUpdated = new TaxRuleRecord("c", "paye", "evidence", "", null, "IRD", 2,
+                "2024-05-02 09:00:00+00", null, "2024-04-01", null);
+        RuleIntervalIndex index = new RuleIntervalIndex();
+        index.loadAll(List.of(neverUpdated, older, newer));
+
+        assertArrayEquals(new TaxRuleRecord[] { newer, older, neverUpdated }, index.activeRules("paye", "2024-07-01"));
+        // An offset is honoured: 13:30 at +05:30 is 08:00 UTC
+        assertEquals(older.getChangedMicros(), TaxRuleRecord.parseEpochMicros("2024-06-01T13:30:00+05:30"));
+    }
+
+    @Test
+    public void matchesCalcTypeExactlyAsTheSqlDoes() {
+        RuleIntervalIndex index = new RuleIntervalIndex();
+        index.loadAll(List.of(rule("upper", "PAYE", 1, null, null), rule("lower", "paye", 1, null, null)));
+
+        assertEquals("upper", index.bestRule("PAYE", "2024-01-01").getId());
+        assertEquals("lower", index.bestRule("paye", "2024-01-01").getId());
+        assertNull(index.bestRule("Paye", "2024-01-01"));
+    }
+
+    @Test
+    public void upsertReplacesMovesAndRemovesRules() throws Exception {
+        RuleIntervalIndex index = new RuleIntervalIndex();
+        index.loadJson("[{\"id\": \"a\", \"rule_category\": \"paye\", \"rule_type\": \"evidence\","
+                + " \"source_rank\": 1, \"effective_date\": \"2024-04-01\"},"
+                + "{\"id\": \"b\", \"rule_category\": \"paye\", \"rule_type\": \"aggregated_v2\","
+                + " \"effective_date\": \"2024-04-01\"}]");
+        assertEquals(1, index.aggregatedRules("paye", "2024-04-01").length);
+        assertEquals(0, index.aggregatedRules("paye", "2024-04-02").length);
+
+        index.upsertJson("[{\"id\": \"c\", \"rule_category\": \"paye\", \"source_rank\": 3,"
+                + " \"effective_date\": \"2024-05-01\", \"rule_data\": \"{\\\"required_variables\\\": []}\"},"
+                + "{\"id\": \"a\", \"rule_category\": \"vat\", \"effective_date\": \"2024-04-01\"}]");
+
+        assertEquals("c", index.bestRule("paye", "2024-06-01").getId());
+        assertNull(index.bestRule("paye", "2024-04-15"));
+        assertEquals("a", index.bestRule("vat", "2024-04-15").getId());
+        assertEquals(3, index.size());
+
+        assertEquals(true, index.remove("a"));
+        assertEquals(false, index.remove("a"));
+        assertArrayEquals(new String[] { "paye" }, index.getCalcTypes());
+    }
+
+    @Test
+    public void refreshPicksUpAppliedRulesAndDeletions() throws Exception {
+        String url = "jdbc:h2:mem:rules;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        try (Connection keepAlive = DriverManager.getConnection(url);
+                Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE documents (id text PRIMARY KEY, source_authority text, "
+                    + "source_rank integer)");
+            statement.execute("CREATE TABLE tax_rules (id text PRIMARY KEY, rule_category text, rule_type text, "
+                    + "title text, rule_data jsonb, document_source_id text, effective_date date, expiry_date date, "
+                    + "created_at timestamp with time zone DEFAULT now(), updated_at timestamp with time zone)");
+            statement.execute("INSERT INTO documents VALUES ('act', 'IRD', 5)");
+            statement.execute("INSERT INTO tax_rules (id, rule_category, rule_type, rule_data, document_source_id, "
+                    + "effective_date, created_at) VALUES "
+                    + "('a', 'paye', 'evidence', '{}' FORMAT JSON, NULL, DATE '2024-04-01', "
+                    + "TIMESTAMP WITH TIME ZONE '2024-05-01 10:00:00+00'), "
+                    + "('b', 'paye', 'evidence', '{}' FORMAT JSON, 'act', DATE '2024-04-01', "
+                    + "TIMESTAMP WITH TIME ZONE '2024-05-01 10:00:00+00'), "
+                    + "('gone', 'vat', 'evidence', '{}' FORMAT JSON, NULL, NULL, "
+                    + "TIMESTAMP WITH TIME ZONE '2024-05-01 10:00:00+00')");
+
+            RuleIntervalIndex index = new RuleIntervalIndex();
+            RuleIntervalIndex.ConnectionSource connections = () -> DriverManager.getConnection(url);
+            assertEquals(3, index.refresh(connections));
+            assertEquals("b", index.bestRule("paye", "2024-06-01").getId());
+            assertEquals(5, index.bestRule("paye", "2024-06-01").getSourceRank());
+
+            // The admin flow applies metadata to a; gone is deleted and a broken row arrives
+            statement.execute("UPDATE tax_rules SET rule_data = '{\"field_metadata\": {}}' FORMAT JSON, "
+                    + "updated_at = TIMESTAMP WITH TIME ZONE '2024-06-01 10:00:00+00' WHERE id = 'a'");
+            statement.execute("DELETE FROM tax_rules WHERE id = 'gone'");
+            statement.execute("INSERT INTO tax_rules (id, rule_category, rule_type, rule_data, effective_date, "
+                    + "expiry_date, created_at) VALUES ('broken', 'paye', 'evidence', '{}' FORMAT JSON, "
+                    + "DATE '2024-04-01', DATE '2024-01-01', TIMESTAMP WITH TIME ZONE '2024-06-02 10:00:00+00')");
+
+            // a, b (changed at the newest timestamp seen so far) and the removal of gone
+            assertEquals(3, index.refresh(connections));
+            assertEquals("a", index.bestRule("paye", "2024-06-01").getId());
+            assertEquals(0, index.activeRules("vat", "2024-06-01").length);
+            assertEquals(2, index.size());
+            assertEquals(0, index.refresh(connections));
+        }
+    }
+
+    private static TaxRuleRecord rule(String id, String calcType, int rank, String effective, String expiry) {
+        return new TaxRuleRecord(id, calcType, "evidence", id, null, "IRD", rank, "2024-05-01 10:00:00",
+                effective, expiry);
+    }
+
+    private static String day(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    private static JsonNode json(String text) {
+        try {
+            return MAPPER.readTree(text);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}